@@ -2,8 +2,10 @@ package com.iot.telemetry.simulator.controller;
 
 import com.iot.telemetry.simulator.models.UserBehaviorData;
 import com.iot.telemetry.simulator.service.TelemetryHttpService;
+import com.iot.telemetry.simulator.service.TelemetryTcpClient;
 import com.iot.telemetry.simulator.service.UserBehaviorSimulator;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -20,6 +22,9 @@ public class SimulatorController {
     @Autowired
     private TelemetryHttpService telemetryHttpService;
     
+    @Autowired
+    private TelemetryTcpClient telemetryTcpClient;
+    
     @GetMapping("/health")
     public ResponseEntity<String> health() {
         return ResponseEntity.ok("Simulator is running!");
@@ -53,4 +58,40 @@ public class SimulatorController {
     public ResponseEntity<String> stopGeneration() {
         return ResponseEntity.ok("Data generation stopped!");
     }
-}
\ No newline at end of file
+    
+    // Drives the ingestion service's raw TCP listener (ingestion.tcp.enabled=true)
+    @PostMapping("/tcp/run")
+    public ResponseEntity<Map<String, Object>> runTcpLoad(@RequestParam(defaultValue = "10000") int events,
+                                                          @RequestParam(defaultValue = "100") int batchSize,
+                                                          @RequestParam(defaultValue = "4") int connections,
+                                                          @RequestParam(defaultValue = "4") int maxInFlight) {
+        try {
+            return ResponseEntity.ok(telemetryTcpClient.run(events, batchSize, connections, maxInFlight));
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(errorResponse);
+        } catch (Exception e) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", "TCP run failed: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+        }
+    }
+    
+    // Posts generated batches to /ingest/batch with the given Content-Encoding (none, gzip or zstd)
+    @PostMapping("/http/batch-run")
+    public ResponseEntity<Map<String, Object>> runHttpBatches(@RequestParam(defaultValue = "10000") int events,
+                                                              @RequestParam(defaultValue = "100") int batchSize,
+                                                              @RequestParam(defaultValue = "${simulator.ingestion.compression:none}") String compression) {
+        try {
+            return ResponseEntity.ok(telemetryHttpService.runBatches(events, batchSize, compression));
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(errorResponse);
+        }
+    }
+}
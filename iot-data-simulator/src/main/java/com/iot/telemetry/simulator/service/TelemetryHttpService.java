@@ -1,5 +1,7 @@
 package com.iot.telemetry.simulator.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iot.telemetry.common.compression.ContentCoding;
 import com.iot.telemetry.simulator.models.UserBehaviorData;
 
 import reactor.util.retry.Retry;
@@ -8,13 +10,20 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class TelemetryHttpService {
@@ -24,6 +33,14 @@ public class TelemetryHttpService {
     @Autowired
     private WebClient webClient;
     
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    // Lazy: the simulator itself sends through this service
+    @Lazy
+    @Autowired
+    private UserBehaviorSimulator simulator;
+    
     @Value("${simulator.ingestion.url:http://localhost:8082}")
     private String ingestionServiceUrl;
 
@@ -35,6 +52,9 @@ public class TelemetryHttpService {
 
     private final AtomicInteger failureCount = new AtomicInteger(0);
     private final AtomicInteger successCount = new AtomicInteger(0);
+    private final AtomicLong rawBytes = new AtomicLong(0);
+    private final AtomicLong wireBytes = new AtomicLong(0);
+    private final AtomicLong encodeNanos = new AtomicLong(0);
     
     public void sendTelemetryData(UserBehaviorData data) {
         try {
@@ -83,6 +103,112 @@ public class TelemetryHttpService {
         }
     }
     
+    /**
+     * Posts the batch to /ingest/batch as one JSON array, compressed with {@code coding}
+     * (null sends it uncompressed). Returns the ingestion service's batch summary.
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> sendTelemetryBatch(List<UserBehaviorData> batch, ContentCoding coding) {
+        try {
+            List<Map<String, Object>> requestBody = new ArrayList<>(batch.size());
+            for (UserBehaviorData data : batch) {
+                requestBody.add(createIngestionRequest(data));
+            }
+            byte[] json = objectMapper.writeValueAsBytes(requestBody);
+            long start = System.nanoTime();
+            byte[] body = coding == null ? json : coding.encode(json);
+            encodeNanos.addAndGet(System.nanoTime() - start);
+            rawBytes.addAndGet(json.length);
+            wireBytes.addAndGet(body.length);
+            
+            Map<String, Object> response = webClient.post()
+                .uri(ingestionServiceUrl + "/api/v1/telemetry/ingest/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .headers(headers -> {
+                    if (coding != null) {
+                        headers.set(HttpHeaders.CONTENT_ENCODING, coding.getToken());
+                    }
+                })
+                .bodyValue(body)
+                .retrieve()
+                .bodyToMono(Map.class)
+                .timeout(Duration.ofSeconds(30))
+                .block();
+            successCount.incrementAndGet();
+            logger.debug("Sent batch of {} events ({} bytes on the wire, {} uncompressed)", batch.size(), body.length, json.length);
+            return response;
+        } catch (Exception e) {
+            failureCount.incrementAndGet();
+            if (e instanceof WebClientResponseException) {
+                WebClientResponseException ex = (WebClientResponseException) e;
+                logger.error("Failed to send telemetry batch. Status: {}, Response: {}", ex.getStatusCode(), ex.getResponseBodyAsString());
+            } else {
+                logger.error("Error sending telemetry batch", e);
+            }
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", e.getMessage());
+            return errorResponse;
+        }
+    }
+    
+    /**
+     * Sends {@code events} generated events in batches of {@code batchSize}, one request at a time.
+     * Throws IllegalArgumentException for a batch size below one or an unknown compression.
+     */
+    public Map<String, Object> runBatches(int events, int batchSize, String compression) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be at least 1, got " + batchSize);
+        }
+        ContentCoding coding = parseCompression(compression);
+        long rawBefore = rawBytes.get();
+        long wireBefore = wireBytes.get();
+        long encodeBefore = encodeNanos.get();
+        long accepted = 0;
+        int requests = 0;
+        int failedRequests = 0;
+        long start = System.nanoTime();
+        for (int sent = 0; sent < events; sent += batchSize) {
+            int size = Math.min(batchSize, events - sent);
+            List<UserBehaviorData> batch = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                batch.add(simulator.generateUserBehavior());
+            }
+            Map<String, Object> response = sendTelemetryBatch(batch, coding);
+            requests++;
+            // "ingested" from the servlet service, "succeeded" from the reactive one
+            Object ingested = response.containsKey("ingested") ? response.get("ingested") : response.get("succeeded");
+            if (ingested instanceof Number) {
+                accepted += ((Number) ingested).longValue();
+            } else {
+                failedRequests++;
+            }
+        }
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+        long raw = rawBytes.get() - rawBefore;
+        long wire = wireBytes.get() - wireBefore;
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("compression", coding == null ? "none" : coding.getToken());
+        result.put("events", events);
+        result.put("batchSize", batchSize);
+        result.put("requests", requests);
+        result.put("failedRequests", failedRequests);
+        result.put("accepted", accepted);
+        result.put("rawBytes", raw);
+        result.put("wireBytes", wire);
+        result.put("compressionRatio", wire == 0 ? 0.0 : (double) raw / wire);
+        result.put("encodeMs", (encodeNanos.get() - encodeBefore) / 1_000_000);
+        result.put("elapsedMs", Math.round(elapsedSeconds * 1000));
+        result.put("eventsPerSecond", Math.round(accepted / elapsedSeconds));
+        logger.info("HTTP batch run finished: {}", result);
+        return result;
+    }
+    
+    private static ContentCoding parseCompression(String compression) {
+        return "none".equalsIgnoreCase(compression) ? null : ContentCoding.forHeader(compression);
+    }
+    
     private Map<String, Object> createIngestionRequest(UserBehaviorData data) {
         return Map.of(
             "userId", data.getUserId(),
@@ -100,7 +226,9 @@ public class TelemetryHttpService {
             "failureCount", failureCount.get(),
             "totalAttempts", successCount.get() + failureCount.get(),
             "successRate", successCount.get() + failureCount.get() > 0 ? 
-                (double) successCount.get() / (successCount.get() + failureCount.get()) : 0.0
+                (double) successCount.get() / (successCount.get() + failureCount.get()) : 0.0,
+            "batchRawBytes", rawBytes.get(),
+            "batchWireBytes", wireBytes.get()
         );
     }
 }
\ No newline at end of file
@@ -0,0 +1,173 @@
+package com.iot.telemetry.simulator.service;
+
+import com.iot.telemetry.common.codec.TelemetryFrames;
+import com.iot.telemetry.common.codec.TelemetryRecord;
+import com.iot.telemetry.simulator.models.UserBehaviorData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Load driver for the ingestion service's raw TCP listener. Each connection pipelines up to
+ * {@code maxInFlight} frames of {@code batchSize} generated events and counts the acks.
+ * Rejected or failed frames are counted, not resent.
+ */
+@Service
+public class TelemetryTcpClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(TelemetryTcpClient.class);
+
+    @Autowired
+    private UserBehaviorSimulator simulator;
+
+    @Value("${simulator.tcp.host:localhost}")
+    private String host;
+
+    @Value("${simulator.tcp.port:7071}")
+    private int port;
+
+    /** Throws IllegalArgumentException unless batchSize, connections and maxInFlight are at least 1. */
+    public Map<String, Object> run(int events, int batchSize, int connections, int maxInFlight)
+            throws InterruptedException, ExecutionException {
+        if (batchSize <= 0 || connections <= 0 || maxInFlight <= 0) {
+            throw new IllegalArgumentException("batchSize, connections and maxInFlight must be at least 1, got "
+                + batchSize + ", " + connections + " and " + maxInFlight);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(connections);
+        long start = System.nanoTime();
+        RunResult total = new RunResult();
+        try {
+            List<Future<RunResult>> futures = new ArrayList<>(connections);
+            for (int i = 0; i < connections; i++) {
+                int share = events / connections + (i < events % connections ? 1 : 0);
+                futures.add(executor.submit(() -> runConnection(share, batchSize, maxInFlight)));
+            }
+            for (Future<RunResult> future : futures) {
+                total.add(future.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("target", host + ":" + port);
+        result.put("connections", connections);
+        result.put("batchSize", batchSize);
+        result.put("maxInFlight", maxInFlight);
+        result.put("frames", total.frames);
+        result.put("events", total.events);
+        result.put("accepted", total.accepted);
+        result.put("rejectedFrames", total.rejected);
+        result.put("failedFrames", total.failed);
+        result.put("bytesSent", total.bytesSent);
+        result.put("bytesPerEvent", total.events == 0 ? 0.0 : (double) total.bytesSent / total.events);
+        result.put("elapsedMs", Math.round(elapsedSeconds * 1000));
+        result.put("eventsPerSecond", Math.round(total.accepted / elapsedSeconds));
+        result.put("avgAckLatencyMs", total.frames == 0 ? 0.0 : total.ackLatencyNanos / 1e6 / total.frames);
+        logger.info("TCP run finished: {}", result);
+        return result;
+    }
+
+    private RunResult runConnection(int events, int batchSize, int maxInFlight) throws IOException {
+        RunResult result = new RunResult();
+        try (SocketChannel channel = SocketChannel.open(new InetSocketAddress(host, port))) {
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            ByteBuffer ack = ByteBuffer.allocate(TelemetryFrames.ACK_BYTES);
+            Map<Integer, Long> sentAt = new HashMap<>();
+            int sequence = 0;
+            int remaining = events;
+            while (remaining > 0 || !sentAt.isEmpty()) {
+                if (remaining > 0 && sentAt.size() < maxInFlight) {
+                    int size = Math.min(batchSize, remaining);
+                    List<TelemetryRecord> records = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++) {
+                        records.add(toRecord(simulator.generateUserBehavior()));
+                    }
+                    ByteBuffer frame = TelemetryFrames.encodeRequest(sequence, records);
+                    result.bytesSent += frame.remaining();
+                    while (frame.hasRemaining()) {
+                        channel.write(frame);
+                    }
+                    sentAt.put(sequence++, System.nanoTime());
+                    remaining -= size;
+                    result.events += size;
+                    continue;
+                }
+
+                ack.clear();
+                while (ack.hasRemaining()) {
+                    if (channel.read(ack) < 0) {
+                        throw new EOFException("Connection closed by server with " + sentAt.size() + " frames unacknowledged");
+                    }
+                }
+                ack.flip();
+                ack.getInt(); // length
+                int acked = ack.getInt();
+                byte status = ack.get();
+                int accepted = ack.getInt();
+                Long sent = sentAt.remove(acked);
+                if (sent != null) {
+                    result.ackLatencyNanos += System.nanoTime() - sent;
+                }
+                result.frames++;
+                result.accepted += accepted;
+                if (status == TelemetryFrames.STATUS_REJECTED) {
+                    result.rejected++;
+                } else if (status != TelemetryFrames.STATUS_OK) {
+                    result.failed++;
+                }
+            }
+        }
+        return result;
+    }
+
+    private TelemetryRecord toRecord(UserBehaviorData data) {
+        TelemetryRecord record = new TelemetryRecord();
+        record.setUserId(data.getUserId());
+        record.setSessionId(data.getSessionId());
+        record.setFeature(data.getFeature());
+        record.setAction(data.getAction());
+        record.setTimestampMillis(data.getTimestamp().toEpochMilli());
+        record.setCreatedAtMillis(System.currentTimeMillis());
+        record.setMetrics(data.getMetrics());
+        return record;
+    }
+
+    private static final class RunResult {
+        private long frames;
+        private long events;
+        private long accepted;
+        private long rejected;
+        private long failed;
+        private long bytesSent;
+        private long ackLatencyNanos;
+
+        private void add(RunResult other) {
+            frames += other.frames;
+            events += other.events;
+            accepted += other.accepted;
+            rejected += other.rejected;
+            failed += other.failed;
+            bytesSent += other.bytesSent;
+            ackLatencyNanos += other.ackLatencyNanos;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.iot.telemetry.ingestion.reactive;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.data.r2dbc.repository.config.EnableR2dbcRepositories;
+
+@SpringBootApplication
+@EnableR2dbcRepositories
+public class ReactiveIngestionServiceApplication {
+    public static void main(String[] args) {
+        SpringApplication.run(ReactiveIngestionServiceApplication.class, args);
+    }
+}
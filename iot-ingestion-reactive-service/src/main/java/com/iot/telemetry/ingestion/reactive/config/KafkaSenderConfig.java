@@ -0,0 +1,43 @@
+package com.iot.telemetry.ingestion.reactive.config;
+
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.kafka.sender.KafkaSender;
+import reactor.kafka.sender.SenderOptions;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Configuration
+public class KafkaSenderConfig {
+    
+    @Value("${kafka.bootstrap-servers:localhost:9092}")
+    private String bootstrapServers;
+    
+    // Unacknowledged records across the service: ReactiveIngestionService feeds every record into
+    // one send pipeline, which stops requesting more once this many are outstanding
+    @Value("${kafka.producer.max-in-flight:1024}")
+    private int maxInFlight;
+    
+    // Values are pre-encoded (JSON text or TelemetryCodec bytes), so one sender serves both wire formats
+    @Bean(destroyMethod = "close")
+    public KafkaSender<String, byte[]> kafkaSender() {
+        Map<String, Object> configProps = new HashMap<>();
+        configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        configProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class);
+        configProps.put(ProducerConfig.ACKS_CONFIG, "all");
+        configProps.put(ProducerConfig.RETRIES_CONFIG, 3);
+        configProps.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        
+        SenderOptions<String, byte[]> senderOptions = SenderOptions.<String, byte[]>create(configProps)
+            .maxInFlight(maxInFlight)
+            // a failed record completes its own caller with an error instead of ending the shared pipeline
+            .stopOnError(false);
+        return KafkaSender.create(senderOptions);
+    }
+}
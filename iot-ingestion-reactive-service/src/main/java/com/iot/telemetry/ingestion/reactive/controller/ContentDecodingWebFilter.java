@@ -0,0 +1,178 @@
+package com.iot.telemetry.ingestion.reactive.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iot.telemetry.common.compression.ContentCoding;
+import com.iot.telemetry.common.compression.CountingInputStream;
+import com.iot.telemetry.common.compression.StreamingDecoder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Accepts {@code Content-Encoding: gzip} and {@code zstd} bodies on the ingest endpoints.
+ * Each body buffer is inflated on the event loop as it arrives, through a
+ * {@link StreamingDecoder}, in pieces of at most 8 KB as the decoder downstream asks for them.
+ * Nothing blocks, no extra threads are involved, and the whole body is never buffered.
+ * Bodies inflating past {@code max-inflated-bytes} fail with 413, corrupt or truncated ones with 400.
+ */
+@Component
+@ConditionalOnProperty(name = "ingestion.compression.enabled", havingValue = "true", matchIfMissing = true)
+public class ContentDecodingWebFilter implements WebFilter {
+
+    private static final String INGEST_PATH = "/api/v1/telemetry/ingest";
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${ingestion.compression.max-inflated-bytes:67108864}")
+    private long maxInflatedBytes;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        String path = request.getPath().pathWithinApplication().value();
+        if (!path.equals(INGEST_PATH) && !path.startsWith(INGEST_PATH + "/")) {
+            return chain.filter(exchange);
+        }
+
+        ContentCoding coding;
+        try {
+            coding = ContentCoding.forHeader(request.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        } catch (IllegalArgumentException e) {
+            return unsupported(exchange.getResponse(), e.getMessage());
+        }
+        if (coding == null) {
+            return chain.filter(exchange);
+        }
+        return chain.filter(exchange.mutate().request(new DecodedRequest(request, coding, exchange.getResponse())).build());
+    }
+
+    private Mono<Void> unsupported(ServerHttpResponse response, String message) {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("success", false);
+        errorResponse.put("message", message + ". Supported: gzip, zstd");
+        byte[] bytes;
+        try {
+            bytes = objectMapper.writeValueAsBytes(errorResponse);
+        } catch (JsonProcessingException e) {
+            return Mono.error(e);
+        }
+        response.setStatusCode(HttpStatus.UNSUPPORTED_MEDIA_TYPE);
+        response.getHeaders().set(HttpHeaders.ACCEPT_ENCODING, "gzip, zstd");
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(bytes)));
+    }
+
+    private final class DecodedRequest extends ServerHttpRequestDecorator {
+        private final ContentCoding coding;
+        private final ServerHttpResponse response;
+        private final HttpHeaders headers;
+
+        private DecodedRequest(ServerHttpRequest delegate, ContentCoding coding, ServerHttpResponse response) {
+            super(delegate);
+            this.coding = coding;
+            this.response = response;
+            HttpHeaders decodedHeaders = new HttpHeaders();
+            decodedHeaders.putAll(delegate.getHeaders());
+            // The inflated length is unknown up front
+            decodedHeaders.remove(HttpHeaders.CONTENT_ENCODING);
+            decodedHeaders.remove(HttpHeaders.CONTENT_LENGTH);
+            this.headers = HttpHeaders.readOnlyHttpHeaders(decodedHeaders);
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+
+        @Override
+        public Flux<DataBuffer> getBody() {
+            return Flux.defer(() -> {
+                StreamingDecoder decoder = coding.newDecoder();
+                long[] counts = new long[2];  // wire, inflated
+                return super.getBody()
+                    .concatMap(chunk -> inflate(decoder, chunk, counts))
+                    .concatWith(Mono.defer(() -> {
+                        try {
+                            decoder.finish();
+                            return Mono.empty();
+                        } catch (IOException e) {
+                            return Mono.error(rejected(e));
+                        }
+                    }))
+                    .doFinally(signal -> {
+                        decoder.close();
+                        record(counts[0], counts[1]);
+                    });
+            });
+        }
+
+        // Inflates one compressed chunk lazily, one decoder output buffer per downstream request
+        private Flux<DataBuffer> inflate(StreamingDecoder decoder, DataBuffer chunk, long[] counts) {
+            byte[] compressed = new byte[chunk.readableByteCount()];
+            chunk.read(compressed);
+            DataBufferUtils.release(chunk);
+            counts[0] += compressed.length;
+            ByteBuffer input = ByteBuffer.wrap(compressed);
+            return Flux.generate(sink -> {
+                try {
+                    ByteBuffer inflated = decoder.decode(input);
+                    if (!inflated.hasRemaining()) {
+                        sink.complete();
+                        return;
+                    }
+                    counts[1] += inflated.remaining();
+                    if (counts[1] > maxInflatedBytes) {
+                        sink.error(rejected(new CountingInputStream.LimitExceededException(maxInflatedBytes)));
+                        return;
+                    }
+                    sink.next(response.bufferFactory().allocateBuffer(inflated.remaining()).write(inflated));
+                } catch (IOException e) {
+                    sink.error(rejected(e));
+                }
+            });
+        }
+
+        // 413 for a body inflating past the limit, 400 for one that is not valid gzip or zstd
+        private ResponseStatusException rejected(IOException e) {
+            HttpStatus status = e instanceof CountingInputStream.LimitExceededException
+                ? HttpStatus.PAYLOAD_TOO_LARGE : HttpStatus.BAD_REQUEST;
+            return new ResponseStatusException(status, "Cannot decode " + coding.getToken() + " body: " + e.getMessage(), e);
+        }
+
+        private void record(long wireBytes, long inflatedBytes) {
+            String encoding = coding.getToken();
+            Counter.builder("ingestion.compression.requests").tag("encoding", encoding)
+                .register(meterRegistry).increment();
+            Counter.builder("ingestion.compression.wire.bytes").tag("encoding", encoding).baseUnit("bytes")
+                .register(meterRegistry).increment(wireBytes);
+            Counter.builder("ingestion.compression.inflated.bytes").tag("encoding", encoding).baseUnit("bytes")
+                .register(meterRegistry).increment(inflatedBytes);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.iot.telemetry.ingestion.reactive.controller;
+
+import com.iot.telemetry.ingestion.reactive.models.TelemetryData;
+import com.iot.telemetry.ingestion.reactive.repository.TelemetryRepository;
+import com.iot.telemetry.ingestion.reactive.service.ReactiveIngestionService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Same ingestion contract as iot-ingestion-service, served from the Netty event loop.
+ * Request bodies are decoded element by element and each request keeps at most
+ * {@code ingestion.reactive.concurrency} events in flight, so a slow database or Kafka
+ * cluster stops demand and, with it, reads from the client's connection.
+ */
+@RestController
+@RequestMapping("/api/v1/telemetry")
+@CrossOrigin(origins = "*")
+public class ReactiveTelemetryController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveTelemetryController.class);
+
+    @Autowired
+    private ReactiveIngestionService reactiveIngestionService;
+
+    @Autowired
+    private TelemetryRepository telemetryRepository;
+
+    @Value("${ingestion.batch.max-size:1000}")
+    private int maxBatchSize;
+
+    @Value("${ingestion.reactive.concurrency:256}")
+    private int concurrency;
+
+    @PostMapping("/ingest")
+    public Mono<ResponseEntity<Map<String, Object>>> ingestTelemetryData(@RequestBody Mono<TelemetryRequest> body) {
+        return body.flatMap(request -> {
+            String validationError = validate(request);
+            if (validationError != null) {
+                Map<String, Object> errorResponse = new HashMap<>();
+                errorResponse.put("success", false);
+                errorResponse.put("message", validationError);
+                return Mono.just(ResponseEntity.badRequest().body(errorResponse));
+            }
+            return ingest(request).map(saved -> {
+                Map<String, Object> response = new HashMap<>();
+                response.put("success", true);
+                response.put("message", "Telemetry data ingested successfully");
+                response.put("dataId", saved.getId());
+                return ResponseEntity.ok(response);
+            });
+        }).onErrorResume(e -> {
+            logger.error("Error ingesting telemetry data", e);
+
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", "Failed to ingest telemetry data: " + e.getMessage());
+
+            return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse));
+        });
+    }
+
+    // JSON array body; the response summarizes every element like the servlet service does
+    @PostMapping(value = "/ingest/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<Map<String, Object>>> ingestTelemetryBatch(@RequestBody Flux<TelemetryRequest> body) {
+        return body.take(maxBatchSize + 1L).collectList().flatMap(requests -> {
+            if (requests.size() > maxBatchSize) {
+                Map<String, Object> errorResponse = new HashMap<>();
+                errorResponse.put("success", false);
+                errorResponse.put("message", "Batch size exceeds maximum of " + maxBatchSize);
+                return Mono.just(ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(errorResponse));
+            }
+            return ingestAll(Flux.fromIterable(requests)).collectList().map(results -> {
+                long succeeded = results.stream().filter(r -> Boolean.TRUE.equals(r.get("success"))).count();
+
+                Map<String, Object> response = new HashMap<>();
+                response.put("success", succeeded == results.size());
+                response.put("total", results.size());
+                response.put("succeeded", succeeded);
+                response.put("failed", results.size() - succeeded);
+                response.put("results", results);
+
+                if (succeeded == results.size()) {
+                    return ResponseEntity.ok(response);
+                }
+                return ResponseEntity.status(succeeded == 0 ? HttpStatus.INTERNAL_SERVER_ERROR : HttpStatus.MULTI_STATUS)
+                    .body(response);
+            });
+        });
+    }
+
+    // Newline-delimited JSON in and out: one result line per event, written as soon as Kafka acknowledges it
+    @PostMapping(value = "/ingest/stream", consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Map<String, Object>> ingestTelemetryStream(@RequestBody Flux<TelemetryRequest> body) {
+        return ingestAll(body);
+    }
+
+    @GetMapping("/user/{userId}")
+    public Flux<TelemetryData> getTelemetryByUser(@PathVariable String userId) {
+        return telemetryRepository.findByUserId(userId);
+    }
+
+    @GetMapping("/session/{sessionId}")
+    public Flux<TelemetryData> getTelemetryBySession(@PathVariable String sessionId) {
+        return telemetryRepository.findBySessionId(sessionId);
+    }
+
+    @GetMapping("/health")
+    public Mono<Map<String, String>> health() {
+        Map<String, String> health = new HashMap<>();
+        health.put("status", "UP");
+        health.put("service", "iot-ingestion-reactive-service");
+        health.put("timestamp", LocalDateTime.now().toString());
+        return Mono.just(health);
+    }
+
+    // flatMapSequential keeps result order while still overlapping up to `concurrency` events
+    private Flux<Map<String, Object>> ingestAll(Flux<TelemetryRequest> requests) {
+        return requests.index()
+            .flatMapSequential(indexed -> ingestResult(indexed.getT1(), indexed.getT2()), concurrency);
+    }
+
+    private Mono<Map<String, Object>> ingestResult(long index, TelemetryRequest request) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("index", index);
+
+        String validationError = validate(request);
+        if (validationError != null) {
+            result.put("success", false);
+            result.put("message", validationError);
+            result.put("retryable", false);
+            return Mono.just(result);
+        }
+        return ingest(request)
+            .map(saved -> {
+                result.put("success", true);
+                result.put("dataId", saved.getId());
+                return result;
+            })
+            .onErrorResume(e -> {
+                logger.error("Error ingesting telemetry data at index {}", index, e);
+                result.put("success", false);
+                result.put("message", "Failed to ingest telemetry data: " + e.getMessage());
+                result.put("retryable", true);
+                return Mono.just(result);
+            });
+    }
+
+    private Mono<TelemetryData> ingest(TelemetryRequest request) {
+        return Mono.fromCallable(() -> reactiveIngestionService.createTelemetryData(
+                request.getUserId(),
+                request.getSessionId(),
+                request.getFeature(),
+                request.getAction(),
+                request.getTimestamp() != null ? request.getTimestamp() : LocalDateTime.now(ZoneOffset.UTC),
+                request.getMetrics()))
+            .flatMap(reactiveIngestionService::ingestTelemetryData);
+    }
+
+    private String validate(TelemetryRequest request) {
+        if (request == null) return "Request is required";
+        if (isBlank(request.getUserId())) return "User ID is required";
+        if (isBlank(request.getSessionId())) return "Session ID is required";
+        if (isBlank(request.getFeature())) return "Feature is required";
+        if (isBlank(request.getAction())) return "Action is required";
+        return null;
+    }
+
+    private boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    // Request DTO, same shape as iot-ingestion-service
+    public static class TelemetryRequest {
+        private String userId;
+        private String sessionId;
+        private String feature;
+        private String action;
+        private LocalDateTime timestamp;
+        private Map<String, Object> metrics;
+
+        // Getters and Setters
+        public String getUserId() { return userId; }
+        public void setUserId(String userId) { this.userId = userId; }
+
+        public String getSessionId() { return sessionId; }
+        public void setSessionId(String sessionId) { this.sessionId = sessionId; }
+
+        public String getFeature() { return feature; }
+        public void setFeature(String feature) { this.feature = feature; }
+
+        public String getAction() { return action; }
+        public void setAction(String action) { this.action = action; }
+
+        public LocalDateTime getTimestamp() { return timestamp; }
+        public void setTimestamp(LocalDateTime timestamp) { this.timestamp = timestamp; }
+
+        public Map<String, Object> getMetrics() { return metrics; }
+        public void setMetrics(Map<String, Object> metrics) { this.metrics = metrics; }
+    }
+}
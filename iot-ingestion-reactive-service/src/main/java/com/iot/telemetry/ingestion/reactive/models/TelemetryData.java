@@ -0,0 +1,98 @@
+package com.iot.telemetry.ingestion.reactive.models;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+// Same telemetry_data layout as iot-ingestion-service (see schema.sql)
+@Table("telemetry_data")
+public class TelemetryData {
+    
+    @Id
+    private Long id;
+    
+    @Column("user_id")
+    private String userId;
+    
+    @Column("session_id")
+    private String sessionId;
+    
+    @Column("feature")
+    private String feature;
+    
+    @Column("action")
+    private String action;
+    
+    @Column("timestamp")
+    private LocalDateTime timestamp;
+    
+    @Column("metrics")
+    private String metricsJson;
+    
+    @Column("created_at")
+    private LocalDateTime createdAt;
+    
+    @Transient
+    @JsonIgnore
+    private Map<String, Object> metrics; // Original metrics of a freshly ingested event, not persisted
+    
+    // Constructors
+    public TelemetryData() {
+        this.createdAt = LocalDateTime.now();
+    }
+    
+    public TelemetryData(String userId, String sessionId, String feature, String action, LocalDateTime timestamp) {
+        this();
+        this.userId = userId;
+        this.sessionId = sessionId;
+        this.feature = feature;
+        this.action = action;
+        this.timestamp = timestamp;
+    }
+    
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    
+    public String getUserId() { return userId; }
+    public void setUserId(String userId) { this.userId = userId; }
+    
+    public String getSessionId() { return sessionId; }
+    public void setSessionId(String sessionId) { this.sessionId = sessionId; }
+    
+    public String getFeature() { return feature; }
+    public void setFeature(String feature) { this.feature = feature; }
+    
+    public String getAction() { return action; }
+    public void setAction(String action) { this.action = action; }
+    
+    public LocalDateTime getTimestamp() { return timestamp; }
+    public void setTimestamp(LocalDateTime timestamp) { this.timestamp = timestamp; }
+    
+    public String getMetricsJson() { return metricsJson; }
+    public void setMetricsJson(String metricsJson) { this.metricsJson = metricsJson; }
+    
+    public Map<String, Object> getMetrics() { return metrics; }
+    public void setMetrics(Map<String, Object> metrics) { this.metrics = metrics; }
+    
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+    
+    @Override
+    public String toString() {
+        return "TelemetryData{" +
+                "id=" + id +
+                ", userId='" + userId + '\'' +
+                ", sessionId='" + sessionId + '\'' +
+                ", feature='" + feature + '\'' +
+                ", action='" + action + '\'' +
+                ", timestamp=" + timestamp +
+                ", createdAt=" + createdAt +
+                '}';
+    }
+}
@@ -0,0 +1,14 @@
+package com.iot.telemetry.ingestion.reactive.repository;
+
+import com.iot.telemetry.ingestion.reactive.models.TelemetryData;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+@Repository
+public interface TelemetryRepository extends ReactiveCrudRepository<TelemetryData, Long> {
+    
+    Flux<TelemetryData> findByUserId(String userId);
+    
+    Flux<TelemetryData> findBySessionId(String sessionId);
+}
@@ -0,0 +1,159 @@
+package com.iot.telemetry.ingestion.reactive.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iot.telemetry.common.codec.TelemetryCodec;
+import com.iot.telemetry.common.codec.TelemetryRecord;
+import com.iot.telemetry.common.partition.PartitionKeys;
+import com.iot.telemetry.ingestion.reactive.models.TelemetryData;
+import com.iot.telemetry.ingestion.reactive.repository.TelemetryRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.kafka.sender.KafkaSender;
+import reactor.kafka.sender.SenderRecord;
+import reactor.kafka.sender.SenderResult;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Non-blocking counterpart of the servlet ingestion path: the event is inserted through R2DBC
+ * and the returned {@link Mono} completes only once Kafka has acknowledged it, so a caller that
+ * bounds its outstanding Monos bounds the work in the database and the producer as well.
+ * All records go through one shared {@link KafkaSender#send} pipeline, which stops taking
+ * records once {@code kafka.producer.max-in-flight} are unacknowledged; the rest wait in its
+ * queue and their callers' Monos stay pending, which in turn stops demand on their requests.
+ */
+@Service
+public class ReactiveIngestionService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveIngestionService.class);
+    
+    @Autowired
+    private TelemetryRepository telemetryRepository;
+    
+    @Autowired
+    private KafkaSender<String, byte[]> kafkaSender;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Value("${kafka.topic.telemetry:telemetry-data}")
+    private String telemetryTopic;
+    
+    @Value("${kafka.topic.telemetry-format:json}")
+    private String telemetryFormat;
+    
+    private boolean binaryFormat;
+    
+    // Feeds the shared send pipeline; FluxSink.next is serialized, so any request thread may call it
+    private volatile FluxSink<SenderRecord<String, byte[], MonoSink<RecordMetadata>>> sendQueue;
+    
+    private volatile Throwable sendPipelineError;
+    
+    @PostConstruct
+    public void init() {
+        binaryFormat = "binary".equalsIgnoreCase(telemetryFormat);
+        logger.info("Publishing telemetry to topic {} in {} format", telemetryTopic, binaryFormat ? "binary" : "json");
+        
+        Flux<SenderRecord<String, byte[], MonoSink<RecordMetadata>>> records =
+            Flux.create(sink -> sendQueue = sink, FluxSink.OverflowStrategy.BUFFER);
+        kafkaSender.send(records).subscribe(this::completeSend, e -> {
+            sendPipelineError = e;
+            logger.error("Kafka send pipeline terminated", e);
+        });
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        sendQueue.complete();
+    }
+    
+    public Mono<TelemetryData> ingestTelemetryData(TelemetryData data) {
+        return telemetryRepository.save(data)
+            .flatMap(saved -> Mono.fromCallable(() -> createProducerRecord(saved))
+                .flatMap(this::send)
+                .doOnNext(metadata -> logger.debug("Sent telemetry data {} to Kafka. Partition: {}, Offset: {}",
+                                                   saved.getId(), metadata.partition(), metadata.offset()))
+                .thenReturn(saved));
+    }
+    
+    // Completes once Kafka acknowledges the record; the record itself waits for a free in-flight slot
+    private Mono<RecordMetadata> send(ProducerRecord<String, byte[]> record) {
+        return Mono.create(result -> {
+            Throwable error = sendPipelineError;
+            if (error != null) {
+                result.error(new IllegalStateException("Kafka send pipeline terminated", error));
+                return;
+            }
+            sendQueue.next(SenderRecord.create(record, result));
+        });
+    }
+    
+    private void completeSend(SenderResult<MonoSink<RecordMetadata>> result) {
+        if (result.exception() != null) {
+            result.correlationMetadata().error(result.exception());
+        } else {
+            result.correlationMetadata().success(result.recordMetadata());
+        }
+    }
+    
+    public TelemetryData createTelemetryData(String userId, String sessionId, String feature,
+                                             String action, LocalDateTime timestamp, Map<String, Object> metrics) throws JsonProcessingException {
+        TelemetryData telemetryData = new TelemetryData(userId, sessionId, feature, action, timestamp);
+        if (metrics != null && !metrics.isEmpty()) {
+            telemetryData.setMetricsJson(objectMapper.writeValueAsString(metrics));
+            telemetryData.setMetrics(metrics);
+        }
+        return telemetryData;
+    }
+    
+    private ProducerRecord<String, byte[]> createProducerRecord(TelemetryData data) throws JsonProcessingException {
+        byte[] value = binaryFormat
+            ? TelemetryCodec.encode(createTelemetryRecord(data))
+            : objectMapper.writeValueAsBytes(createKafkaMessage(data));
+        return new ProducerRecord<>(telemetryTopic, PartitionKeys.of(data.getUserId()), value);
+    }
+    
+    private TelemetryRecord createTelemetryRecord(TelemetryData data) {
+        TelemetryRecord record = new TelemetryRecord();
+        record.setId(data.getId() != null ? data.getId() : TelemetryRecord.NO_ID);
+        record.setUserId(data.getUserId());
+        record.setSessionId(data.getSessionId());
+        record.setFeature(data.getFeature());
+        record.setAction(data.getAction());
+        record.setTimestamp(data.getTimestamp());
+        record.setCreatedAt(data.getCreatedAt());
+        record.setMetrics(data.getMetrics());
+        return record;
+    }
+    
+    // Same envelope as iot-ingestion-service, so the stream processor cannot tell the two apart
+    private Map<String, Object> createKafkaMessage(TelemetryData data) {
+        Map<String, Object> message = new HashMap<>();
+        message.put("id", data.getId());
+        message.put("userId", data.getUserId());
+        message.put("sessionId", data.getSessionId());
+        message.put("feature", data.getFeature());
+        message.put("action", data.getAction());
+        message.put("timestamp", data.getTimestamp().toString());
+        message.put("metrics", data.getMetricsJson());
+        message.put("createdAt", data.getCreatedAt().toString());
+        message.put("eventType", "TELEMETRY_DATA");
+        message.put("source", "ingestion-service");
+        
+        return message;
+    }
+}
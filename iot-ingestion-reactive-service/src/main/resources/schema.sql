@@ -0,0 +1,15 @@
+CREATE TABLE IF NOT EXISTS telemetry_data (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    user_id VARCHAR(255) NOT NULL,
+    session_id VARCHAR(255) NOT NULL,
+    feature VARCHAR(255) NOT NULL,
+    action VARCHAR(255) NOT NULL,
+    timestamp TIMESTAMP NOT NULL,
+    metrics TEXT,
+    created_at TIMESTAMP NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_telemetry_user_ts_id ON telemetry_data (user_id, timestamp, id);
+CREATE INDEX IF NOT EXISTS idx_telemetry_session_ts_id ON telemetry_data (session_id, timestamp, id);
+CREATE INDEX IF NOT EXISTS idx_telemetry_feature_ts_id ON telemetry_data (feature, timestamp, id);
+CREATE INDEX IF NOT EXISTS idx_telemetry_ts_id ON telemetry_data (timestamp, id);
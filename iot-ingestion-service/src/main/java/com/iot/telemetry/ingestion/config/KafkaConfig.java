@@ -1,5 +1,7 @@
 package com.iot.telemetry.ingestion.config;
 
+import com.iot.telemetry.common.codec.TelemetryRecord;
+import com.iot.telemetry.common.codec.TelemetryRecordSerializer;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.beans.factory.annotation.Value;
@@ -39,6 +41,25 @@ public class KafkaConfig {
         return new KafkaTemplate<>(producerFactory());
     }
     
+    // Binary wire format, used when kafka.topic.telemetry-format=binary
+    @Bean
+    public ProducerFactory<String, TelemetryRecord> telemetryRecordProducerFactory() {
+        Map<String, Object> configProps = new HashMap<>();
+        configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        configProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, TelemetryRecordSerializer.class);
+        configProps.put(ProducerConfig.ACKS_CONFIG, "all");
+        configProps.put(ProducerConfig.RETRIES_CONFIG, 3);
+        configProps.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        
+        return new DefaultKafkaProducerFactory<>(configProps);
+    }
+    
+    @Bean
+    public KafkaTemplate<String, TelemetryRecord> telemetryRecordKafkaTemplate() {
+        return new KafkaTemplate<>(telemetryRecordProducerFactory());
+    }
+    
     @Bean
     public String telemetryTopic() {
         return telemetryTopic;
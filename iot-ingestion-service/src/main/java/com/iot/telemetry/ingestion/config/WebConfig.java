@@ -0,0 +1,49 @@
+package com.iot.telemetry.ingestion.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iot.telemetry.ingestion.controller.AdmissionInterceptor;
+import com.iot.telemetry.ingestion.controller.ContentDecodingFilter;
+import com.iot.telemetry.ingestion.service.AdmissionController;
+import org.springframework.beans.factory.annotation.Autowired;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    // Absent when ingestion.admission.enabled=false
+    @Autowired(required = false)
+    private AdmissionController admissionController;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${ingestion.admission.retry-after-seconds:1}")
+    private long retryAfterSeconds;
+
+    @Value("${ingestion.compression.max-inflated-bytes:67108864}")
+    private long maxInflatedBytes;
+
+    @Bean
+    @ConditionalOnProperty(name = "ingestion.compression.enabled", havingValue = "true", matchIfMissing = true)
+    public FilterRegistrationBean<ContentDecodingFilter> contentDecodingFilter(MeterRegistry meterRegistry) {
+        FilterRegistrationBean<ContentDecodingFilter> registration =
+            new FilterRegistrationBean<>(new ContentDecodingFilter(objectMapper, meterRegistry, maxInflatedBytes));
+        registration.addUrlPatterns("/api/v1/telemetry/ingest", "/api/v1/telemetry/ingest/*");
+        return registration;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        if (admissionController != null) {
+            registry.addInterceptor(new AdmissionInterceptor(admissionController, objectMapper, retryAfterSeconds))
+                .addPathPatterns("/api/v1/telemetry/ingest", "/api/v1/telemetry/ingest/**");
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.iot.telemetry.ingestion.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iot.telemetry.ingestion.service.AdmissionController;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Runs every ingestion request through the {@link AdmissionController}. Rejected requests get
+ * 429 with {@code Retry-After} before any work is done; admitted requests report their latency
+ * and outcome back to the controller when they complete.
+ */
+public class AdmissionInterceptor implements HandlerInterceptor {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdmissionInterceptor.class);
+
+    private static final String START_ATTRIBUTE = AdmissionInterceptor.class.getName() + ".start";
+
+    private final AdmissionController admissionController;
+    private final ObjectMapper objectMapper;
+    private final long retryAfterSeconds;
+
+    public AdmissionInterceptor(AdmissionController admissionController, ObjectMapper objectMapper, long retryAfterSeconds) {
+        this.admissionController = admissionController;
+        this.objectMapper = objectMapper;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        AdmissionController.Decision decision = admissionController.tryAcquire();
+        if (decision == AdmissionController.Decision.ADMITTED) {
+            request.setAttribute(START_ATTRIBUTE, System.nanoTime());
+            return true;
+        }
+
+        logger.debug("Rejected {} {}: {}", request.getMethod(), request.getRequestURI(), decision);
+
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("success", false);
+        errorResponse.put("message", decision == AdmissionController.Decision.REJECTED_KAFKA
+            ? "Ingestion is overloaded: Kafka producer is backed up"
+            : "Ingestion is overloaded: concurrency limit reached");
+        errorResponse.put("retryAfterSeconds", retryAfterSeconds);
+
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), errorResponse);
+        return false;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Object start = request.getAttribute(START_ATTRIBUTE);
+        if (start == null) {
+            return; // Not admitted, nothing to release
+        }
+        request.removeAttribute(START_ATTRIBUTE);
+        boolean failed = ex != null || response.getStatus() >= 500;
+        admissionController.release(System.nanoTime() - (Long) start, failed);
+    }
+}
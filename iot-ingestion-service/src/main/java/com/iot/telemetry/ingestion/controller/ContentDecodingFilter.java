@@ -0,0 +1,227 @@
+package com.iot.telemetry.ingestion.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iot.telemetry.common.compression.ContentCoding;
+import com.iot.telemetry.common.compression.CountingInputStream;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Accepts {@code Content-Encoding: gzip} and {@code zstd} request bodies. The body is
+ * inflated while the JSON parser reads it, never buffered whole, and reading fails once
+ * the inflated size passes {@code max-inflated-bytes}. Unsupported codings get 415.
+ * Wire and inflated byte counts and the CPU time spent inflating are recorded per coding.
+ */
+public class ContentDecodingFilter extends OncePerRequestFilter {
+
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final long maxInflatedBytes;
+    private final boolean cpuTimeSupported = THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported();
+
+    public ContentDecodingFilter(ObjectMapper objectMapper, MeterRegistry meterRegistry, long maxInflatedBytes) {
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.maxInflatedBytes = maxInflatedBytes;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        ContentCoding coding;
+        try {
+            coding = ContentCoding.forHeader(request.getHeader(HttpHeaders.CONTENT_ENCODING));
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", e.getMessage() + ". Supported: gzip, zstd");
+            response.setStatus(HttpStatus.UNSUPPORTED_MEDIA_TYPE.value());
+            response.setHeader(HttpHeaders.ACCEPT_ENCODING, "gzip, zstd");
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            objectMapper.writeValue(response.getOutputStream(), errorResponse);
+            return;
+        }
+        if (coding == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        DecodedRequest decoded = new DecodedRequest(request, coding);
+        try {
+            chain.doFilter(decoded, response);
+        } finally {
+            decoded.close();
+            record(coding, decoded);
+        }
+    }
+
+    private void record(ContentCoding coding, DecodedRequest decoded) {
+        String encoding = coding.getToken();
+        Counter.builder("ingestion.compression.requests").tag("encoding", encoding)
+            .register(meterRegistry).increment();
+        if (decoded.wire == null) {
+            return; // Body never read
+        }
+        Counter.builder("ingestion.compression.wire.bytes").tag("encoding", encoding).baseUnit("bytes")
+            .register(meterRegistry).increment(decoded.wire.getCount());
+        Counter.builder("ingestion.compression.inflated.bytes").tag("encoding", encoding).baseUnit("bytes")
+            .register(meterRegistry).increment(decoded.inflated.getCount());
+        if (cpuTimeSupported) {
+            Timer.builder("ingestion.compression.decode.cpu").tag("encoding", encoding)
+                .description("Thread CPU time spent reading through the decompressor, per request")
+                .register(meterRegistry).record(decoded.decodeCpuNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private final class DecodedRequest extends HttpServletRequestWrapper {
+        private final ContentCoding coding;
+        private CountingInputStream wire;
+        private CountingInputStream inflated;
+        private InputStream decoder;
+        private ServletInputStream inputStream;
+        private BufferedReader reader;
+        private long decodeCpuNanos;
+
+        private DecodedRequest(HttpServletRequest request, ContentCoding coding) {
+            super(request);
+            this.coding = coding;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            if (reader != null) {
+                throw new IllegalStateException("getReader() has already been called for this request");
+            }
+            if (inputStream == null) {
+                wire = new CountingInputStream(super.getInputStream());
+                decoder = coding.decode(wire);
+                inflated = new CountingInputStream(decoder, maxInflatedBytes);
+                inputStream = new DecodedInputStream();
+            }
+            return inputStream;
+        }
+
+        @Override
+        public BufferedReader getReader() throws IOException {
+            if (reader == null) {
+                String encoding = getCharacterEncoding();
+                Charset charset = encoding != null ? Charset.forName(encoding) : StandardCharsets.UTF_8;
+                ServletInputStream in = getInputStream();
+                reader = new BufferedReader(new InputStreamReader(in, charset));
+            }
+            return reader;
+        }
+
+        // The inflated length is unknown up front
+        @Override
+        public int getContentLength() {
+            return -1;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return -1L;
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return isHiddenHeader(name) ? null : super.getHeader(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            return isHiddenHeader(name) ? Collections.emptyEnumeration() : super.getHeaders(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaderNames() {
+            return Collections.enumeration(Collections.list(super.getHeaderNames()).stream()
+                .filter(name -> !isHiddenHeader(name))
+                .toList());
+        }
+
+        private boolean isHiddenHeader(String name) {
+            return HttpHeaders.CONTENT_ENCODING.equalsIgnoreCase(name) || HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name);
+        }
+
+        // Frees the decompressor's native state even if the handler did not read to the end
+        private void close() {
+            if (decoder != null) {
+                try {
+                    decoder.close();
+                } catch (IOException e) {
+                    logger.debug("Error closing request decoder", e);
+                }
+            }
+        }
+
+        private final class DecodedInputStream extends ServletInputStream {
+            private boolean finished;
+
+            @Override
+            public int read() throws IOException {
+                long start = cpuTime();
+                int value = inflated.read();
+                decodeCpuNanos += cpuTime() - start;
+                finished = value < 0;
+                return value;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                long start = cpuTime();
+                int read = inflated.read(b, off, len);
+                decodeCpuNanos += cpuTime() - start;
+                finished = read < 0;
+                return read;
+            }
+
+            @Override
+            public boolean isFinished() {
+                return finished;
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setReadListener(ReadListener readListener) {
+                throw new UnsupportedOperationException("Compressed request bodies are read blocking");
+            }
+
+            private long cpuTime() {
+                return cpuTimeSupported ? THREAD_MX_BEAN.getCurrentThreadCpuTime() : 0L;
+            }
+        }
+    }
+}
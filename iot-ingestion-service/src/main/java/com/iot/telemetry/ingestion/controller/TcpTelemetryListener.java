@@ -0,0 +1,516 @@
+package com.iot.telemetry.ingestion.controller;
+
+import com.iot.telemetry.common.codec.TelemetryCodec;
+import com.iot.telemetry.common.codec.TelemetryFrames;
+import com.iot.telemetry.common.codec.TelemetryRecord;
+import com.iot.telemetry.ingestion.models.TelemetryData;
+import com.iot.telemetry.ingestion.service.AdmissionController;
+import com.iot.telemetry.ingestion.service.TelemetryIngestionService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Raw TCP entry point for constrained devices ({@code ingestion.tcp.enabled}). Devices send
+ * {@link TelemetryFrames} request frames of {@link TelemetryCodec} records; each frame goes
+ * through {@link TelemetryIngestionService#ingestTelemetryBatch} like an HTTP batch and is
+ * answered with one ack.
+ * <p>
+ * One selector thread accepts, reads and writes. Frames are decoded straight out of pooled
+ * direct buffers and handed to a worker pool (virtual threads when
+ * {@code spring.threads.virtual.enabled} is active). A frame counts against its connection's
+ * {@code max-in-flight-frames} from being dispatched until its ack is written, so a connection
+ * stops being read both while its frames are processed and while a device does not read its
+ * acks. A fast device fills its TCP window instead of the heap. Frames also pass the
+ * {@link AdmissionController} when it is enabled and get a {@code REJECTED} ack when it
+ * refuses them.
+ * <p>
+ * Frames carry no eventId, so TCP ingestion bypasses duplicate suppression.
+ */
+@Component
+@ConditionalOnProperty(name = "ingestion.tcp.enabled", havingValue = "true")
+public class TcpTelemetryListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(TcpTelemetryListener.class);
+
+    @Autowired
+    private TelemetryIngestionService telemetryIngestionService;
+
+    // Absent when ingestion.admission.enabled=false
+    @Autowired(required = false)
+    private AdmissionController admissionController;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private Environment environment;
+
+    @Value("${ingestion.tcp.bind-address:0.0.0.0}")
+    private String bindAddress;
+
+    @Value("${ingestion.tcp.port:7071}")
+    private int port;
+
+    @Value("${ingestion.tcp.max-frame-bytes:262144}")
+    private int maxFrameBytes;
+
+    @Value("${ingestion.batch.max-size:1000}")
+    private int maxEventsPerFrame;
+
+    @Value("${ingestion.tcp.max-in-flight-frames:4}")
+    private int maxInFlightFrames;
+
+    @Value("${ingestion.tcp.worker-threads:8}")
+    private int workerThreads;
+
+    @Value("${ingestion.tcp.buffer-pool-size:64}")
+    private int bufferPoolSize;
+
+    @Value("${ingestion.tcp.idle-timeout-ms:300000}")
+    private long idleTimeoutMs;
+
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private final Queue<Connection> completions = new ConcurrentLinkedQueue<>();
+
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread selectorThread;
+    private Executor workers;
+    private DirectBufferPool bufferPool;
+    private volatile boolean running;
+
+    private Counter acceptedConnections;
+    private Counter bytesReceived;
+    private Counter framesOk;
+    private Counter framesRejected;
+    private Counter framesFailed;
+    private Counter framesMalformed;
+    private Counter eventsIngested;
+    private Counter eventsInvalid;
+    private Counter readPauses;
+    private Timer frameLatency;
+
+    @PostConstruct
+    public void start() throws IOException {
+        bufferPool = new DirectBufferPool(maxFrameBytes, bufferPoolSize);
+        if (Threading.VIRTUAL.isActive(environment)) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("tcp-ingest-");
+            executor.setVirtualThreads(true);
+            workers = executor;
+        } else {
+            workers = Executors.newFixedThreadPool(workerThreads, new CustomizableThreadFactory("tcp-ingest-"));
+        }
+
+        acceptedConnections = Counter.builder("ingestion.tcp.connections.accepted")
+            .description("TCP connections accepted")
+            .register(meterRegistry);
+        Gauge.builder("ingestion.tcp.connections", connections, Set::size)
+            .description("Open TCP connections")
+            .register(meterRegistry);
+        bytesReceived = Counter.builder("ingestion.tcp.bytes.received")
+            .description("Bytes read from device connections")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+        framesOk = Counter.builder("ingestion.tcp.frames").tag("result", "ok").register(meterRegistry);
+        framesRejected = Counter.builder("ingestion.tcp.frames").tag("result", "rejected").register(meterRegistry);
+        framesFailed = Counter.builder("ingestion.tcp.frames").tag("result", "failed").register(meterRegistry);
+        framesMalformed = Counter.builder("ingestion.tcp.frames").tag("result", "malformed").register(meterRegistry);
+        eventsIngested = Counter.builder("ingestion.tcp.events").tag("result", "ingested").register(meterRegistry);
+        eventsInvalid = Counter.builder("ingestion.tcp.events").tag("result", "invalid").register(meterRegistry);
+        readPauses = Counter.builder("ingestion.tcp.read.paused")
+            .description("Times a connection stopped being read because it had max-in-flight-frames pending or unacknowledged")
+            .register(meterRegistry);
+        frameLatency = Timer.builder("ingestion.tcp.frame.latency")
+            .description("Time from a frame being decoded to its ack being queued")
+            .publishPercentiles(0.5, 0.95, 0.99)
+            .register(meterRegistry);
+        Gauge.builder("ingestion.tcp.buffers.pooled", bufferPool, DirectBufferPool::getPooled)
+            .description("Idle direct read buffers")
+            .register(meterRegistry);
+        Gauge.builder("ingestion.tcp.buffers.allocated", bufferPool, DirectBufferPool::getAllocations)
+            .description("Direct read buffers allocated because the pool was empty")
+            .register(meterRegistry);
+
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(bindAddress, port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        running = true;
+        selectorThread = new Thread(this::runSelector, "tcp-ingest-selector");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+        logger.info("TCP ingestion listening on {}:{}. Max frame: {} bytes, max in-flight frames per connection: {}",
+                   bindAddress, port, maxFrameBytes, maxInFlightFrames);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException, IOException {
+        running = false;
+        selector.wakeup();
+        selectorThread.join(TimeUnit.SECONDS.toMillis(10));
+        if (workers instanceof ExecutorService executorService) {
+            executorService.shutdown();
+            executorService.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        serverChannel.close();
+        selector.close();
+    }
+
+    private void runSelector() {
+        long lastIdleCheck = System.currentTimeMillis();
+        while (running) {
+            try {
+                selector.select(1000);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (key.isWritable()) {
+                            flush(connection);
+                        }
+                        if (key.isValid() && key.isReadable()) {
+                            read(connection);
+                        }
+                        if (key.isValid()) {
+                            updateInterest(connection);
+                        }
+                    } catch (IOException e) {
+                        logger.debug("Connection {} failed: {}", connection.remote, e.getMessage());
+                        close(connection);
+                    }
+                }
+                processCompletions();
+
+                long now = System.currentTimeMillis();
+                if (now - lastIdleCheck >= 1000) {
+                    lastIdleCheck = now;
+                    closeIdle(now);
+                }
+            } catch (IOException e) {
+                logger.error("TCP ingestion selector loop error", e);
+            }
+        }
+        for (Connection connection : connections) {
+            close(connection);
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            Connection connection = new Connection(channel);
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+            connections.add(connection);
+            acceptedConnections.increment();
+            logger.debug("Accepted TCP connection from {}", connection.remote);
+        }
+    }
+
+    private void read(Connection connection) throws IOException {
+        if (connection.readBuffer == null) {
+            connection.readBuffer = bufferPool.acquire();
+        }
+        int read = connection.channel.read(connection.readBuffer);
+        if (read < 0) {
+            close(connection);
+            return;
+        }
+        bytesReceived.increment(read);
+        connection.lastActivityMillis = System.currentTimeMillis();
+        drainFrames(connection);
+    }
+
+    // Dispatches every complete frame in the read buffer while the connection has in-flight room
+    private int drainFrames(Connection connection) {
+        ByteBuffer buffer = connection.readBuffer;
+        if (buffer == null) {
+            return 0;
+        }
+        int dispatched = 0;
+        buffer.flip();
+        while (!connection.closeAfterFlush && hasRoom(connection)
+                && buffer.remaining() >= TelemetryFrames.LENGTH_BYTES) {
+            int length = buffer.getInt(buffer.position());
+            if (length < TelemetryFrames.REQUEST_HEADER_BYTES || length > maxFrameBytes - TelemetryFrames.LENGTH_BYTES) {
+                malformed(connection, -1, "frame length " + length);
+                break;
+            }
+            if (buffer.remaining() < TelemetryFrames.LENGTH_BYTES + length) {
+                break;
+            }
+            int frameEnd = buffer.position() + TelemetryFrames.LENGTH_BYTES + length;
+            buffer.position(buffer.position() + TelemetryFrames.LENGTH_BYTES);
+            int sequence = buffer.getInt();
+            try {
+                List<TelemetryData> events = decodeEvents(buffer, frameEnd);
+                dispatch(connection, sequence, events);
+            } catch (RuntimeException e) {
+                malformed(connection, sequence, e.getMessage());
+            }
+            buffer.position(frameEnd);
+            dispatched++;
+        }
+        buffer.compact();
+        if (buffer.position() == 0) {
+            bufferPool.release(buffer);
+            connection.readBuffer = null;
+        }
+        return dispatched;
+    }
+
+    private List<TelemetryData> decodeEvents(ByteBuffer buffer, int frameEnd) {
+        int count = buffer.getInt();
+        if (count < 0 || count > maxEventsPerFrame) {
+            throw new IllegalArgumentException("event count " + count + " outside 0.." + maxEventsPerFrame);
+        }
+        ByteBuffer frame = buffer.duplicate().limit(frameEnd);
+        List<TelemetryData> events = new ArrayList<>(count);
+        TelemetryRecord record = new TelemetryRecord();
+        for (int i = 0; i < count; i++) {
+            TelemetryCodec.decode(frame, record);
+            if (isBlank(record.getUserId()) || isBlank(record.getSessionId())
+                    || isBlank(record.getFeature()) || isBlank(record.getAction())) {
+                eventsInvalid.increment();
+                continue;
+            }
+            LocalDateTime timestamp = record.getTimestampMillis() > 0 ? record.getTimestamp() : LocalDateTime.now(ZoneOffset.UTC);
+            events.add(telemetryIngestionService.createTelemetryData(record.getUserId(), record.getSessionId(),
+                record.getFeature(), record.getAction(), timestamp, record.toMetricsMap()));
+        }
+        if (frame.position() != frameEnd) {
+            throw new IllegalArgumentException((frameEnd - frame.position()) + " trailing bytes");
+        }
+        return events;
+    }
+
+    private void dispatch(Connection connection, int sequence, List<TelemetryData> events) {
+        if (events.isEmpty()) {
+            framesOk.increment();
+            enqueueAck(connection, sequence, TelemetryFrames.STATUS_OK, 0);
+            return;
+        }
+        if (admissionController != null
+                && admissionController.tryAcquire() != AdmissionController.Decision.ADMITTED) {
+            framesRejected.increment();
+            enqueueAck(connection, sequence, TelemetryFrames.STATUS_REJECTED, 0);
+            return;
+        }
+        connection.inFlight++;
+        try {
+            workers.execute(() -> process(connection, sequence, events));
+        } catch (RejectedExecutionException e) {
+            connection.inFlight--;
+            releaseAdmission(0, true);
+            framesRejected.increment();
+            enqueueAck(connection, sequence, TelemetryFrames.STATUS_REJECTED, 0);
+        }
+    }
+
+    // Runs on a worker; the ack goes back to the selector thread through the completions queue
+    private void process(Connection connection, int sequence, List<TelemetryData> events) {
+        long start = System.nanoTime();
+        byte status = TelemetryFrames.STATUS_OK;
+        int accepted = 0;
+        try {
+            accepted = telemetryIngestionService.ingestTelemetryBatch(events).size();
+            framesOk.increment();
+            eventsIngested.increment(accepted);
+        } catch (Exception e) {
+            logger.error("Error ingesting TCP frame {} from {}", sequence, connection.remote, e);
+            status = TelemetryFrames.STATUS_FAILED;
+            framesFailed.increment();
+        }
+        long latency = System.nanoTime() - start;
+        releaseAdmission(latency, status != TelemetryFrames.STATUS_OK);
+        frameLatency.record(latency, TimeUnit.NANOSECONDS);
+
+        connection.outbound.add(ack(sequence, status, accepted));
+        completions.add(connection);
+        selector.wakeup();
+    }
+
+    private void releaseAdmission(long latencyNanos, boolean failed) {
+        if (admissionController != null) {
+            admissionController.release(latencyNanos, failed);
+        }
+    }
+
+    private void processCompletions() {
+        Connection connection;
+        while ((connection = completions.poll()) != null) {
+            connection.inFlight--;
+            if (!connection.channel.isOpen()) {
+                continue;
+            }
+            try {
+                flush(connection);
+                drainFrames(connection);
+                updateInterest(connection);
+            } catch (IOException e) {
+                logger.debug("Connection {} failed: {}", connection.remote, e.getMessage());
+                close(connection);
+            }
+        }
+    }
+
+    private void malformed(Connection connection, int sequence, String reason) {
+        logger.warn("Malformed frame from {}: {}. Closing connection", connection.remote, reason);
+        framesMalformed.increment();
+        enqueueAck(connection, sequence, TelemetryFrames.STATUS_MALFORMED, 0);
+        connection.closeAfterFlush = true;
+    }
+
+    private void enqueueAck(Connection connection, int sequence, byte status, int accepted) {
+        connection.outbound.add(ack(sequence, status, accepted));
+    }
+
+    private ByteBuffer ack(int sequence, byte status, int accepted) {
+        ByteBuffer ack = ByteBuffer.allocate(TelemetryFrames.ACK_BYTES);
+        TelemetryFrames.writeAck(ack, sequence, status, accepted);
+        return ack.flip();
+    }
+
+    private void flush(Connection connection) throws IOException {
+        ByteBuffer pending;
+        while ((pending = connection.outbound.peek()) != null) {
+            connection.channel.write(pending);
+            if (pending.hasRemaining()) {
+                return;
+            }
+            connection.outbound.poll();
+        }
+        if (connection.closeAfterFlush && connection.inFlight == 0) {
+            close(connection);
+        }
+    }
+
+    private void updateInterest(Connection connection) throws IOException {
+        if (!connection.key.isValid()) {
+            return;
+        }
+        flush(connection);
+        // Acks written synchronously free room for frames already buffered, which no read event will announce
+        while (connection.key.isValid() && drainFrames(connection) > 0) {
+            flush(connection);
+        }
+        if (!connection.key.isValid()) {
+            return;
+        }
+        boolean readable = !connection.closeAfterFlush && hasRoom(connection);
+        if (!readable && connection.reading && !connection.closeAfterFlush) {
+            readPauses.increment();
+        }
+        connection.reading = readable;
+        int ops = readable ? SelectionKey.OP_READ : 0;
+        if (!connection.outbound.isEmpty()) {
+            ops |= SelectionKey.OP_WRITE;
+        }
+        connection.key.interestOps(ops);
+    }
+
+    // Frames being processed plus acks not yet written; the ack queue holds only a handful
+    private boolean hasRoom(Connection connection) {
+        return connection.inFlight + connection.outbound.size() < maxInFlightFrames;
+    }
+
+    private void closeIdle(long now) {
+        for (Connection connection : connections) {
+            if (connection.inFlight == 0 && now - connection.lastActivityMillis > idleTimeoutMs) {
+                logger.debug("Closing idle TCP connection {}", connection.remote);
+                close(connection);
+            }
+        }
+    }
+
+    private void close(Connection connection) {
+        if (!connections.remove(connection)) {
+            return;
+        }
+        connection.key.cancel();
+        try {
+            connection.channel.close();
+        } catch (IOException e) {
+            logger.debug("Error closing connection {}", connection.remote, e);
+        }
+        if (connection.readBuffer != null) {
+            bufferPool.release(connection.readBuffer);
+            connection.readBuffer = null;
+        }
+    }
+
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    private boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    // State of one device connection; everything but `outbound` is touched by the selector thread only
+    private static final class Connection {
+        private final SocketChannel channel;
+        private final String remote;
+        private final Queue<ByteBuffer> outbound = new ConcurrentLinkedQueue<>();
+        private SelectionKey key;
+        private ByteBuffer readBuffer; // Pooled; held only while a partial frame is buffered
+        private int inFlight;
+        private boolean reading = true;
+        private boolean closeAfterFlush;
+        private long lastActivityMillis = System.currentTimeMillis();
+
+        private Connection(SocketChannel channel) throws IOException {
+            this.channel = channel;
+            this.remote = String.valueOf(channel.getRemoteAddress());
+        }
+    }
+}
@@ -1,19 +1,41 @@
 package com.iot.telemetry.ingestion.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.iot.telemetry.ingestion.models.TelemetryData;
+import com.iot.telemetry.ingestion.service.EventDeduplicator;
+import com.iot.telemetry.ingestion.service.GroupCommitWriter;
 import com.iot.telemetry.ingestion.service.TelemetryIngestionService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import jakarta.validation.Valid;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/api/v1/telemetry")
@@ -22,31 +44,111 @@ public class TelemetryController {
     
     private static final Logger logger = LoggerFactory.getLogger(TelemetryController.class);
     
+    private static final String NDJSON = "application/x-ndjson";
+    private static final String DERIVED_ID_DIGEST_PREFIX = "sha256:";
+    
     @Autowired
     private TelemetryIngestionService telemetryIngestionService;
     
+    @Autowired(required = false)
+    private GroupCommitWriter groupCommitWriter;
+    
+    // Absent when ingestion.dedup.enabled=false
+    @Autowired(required = false)
+    private EventDeduplicator eventDeduplicator;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Value("${ingestion.query.max-page-size:1000}")
+    private int maxPageSize;
+    
+    @Value("${ingestion.batch.max-size:1000}")
+    private int maxBatchSize;
+    
+    @Value("${ingestion.write-behind.response-timeout-ms:5000}")
+    private long writeBehindTimeoutMs;
+    
     @PostMapping("/ingest")
     public ResponseEntity<Map<String, Object>> ingestTelemetryData(@Valid @RequestBody TelemetryRequest request) {
+        String eventIdError = validateEventId(request);
+        if (eventIdError != null) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", eventIdError);
+            return ResponseEntity.badRequest().body(errorResponse);
+        }
+        String eventId = resolveEventId(request);
         try {
             logger.info("Received telemetry data: {}", request);
             
-            TelemetryData savedData = telemetryIngestionService.ingestTelemetryData(
+            EventDeduplicator.Reservation reservation = reserve(eventId);
+            if (reservation != null && reservation.getStatus() != EventDeduplicator.Status.NEW) {
+                return duplicateResponse(eventId, reservation);
+            }
+            
+            TelemetryData telemetryData = telemetryIngestionService.createTelemetryData(
                 request.getUserId(),
                 request.getSessionId(),
                 request.getFeature(),
                 request.getAction(),
-                request.getTimestamp() != null ? request.getTimestamp() : LocalDateTime.now(),
+                request.getTimestamp() != null ? request.getTimestamp() : LocalDateTime.now(ZoneOffset.UTC),
                 request.getMetrics()
             );
+            telemetryData.setEventId(eventId);
+            
+            TelemetryData savedData;
+            if (groupCommitWriter != null) {
+                // Write-behind: wait for the group commit that covers this event. The claim follows
+                // the commit itself, which may still finish after this request has timed out
+                CompletableFuture<TelemetryData> future;
+                try {
+                    future = groupCommitWriter.submit(telemetryData);
+                } catch (RuntimeException e) {
+                    release(eventId, reservation);
+                    throw e;
+                }
+                if (reservation != null) {
+                    future.whenComplete((saved, ex) -> {
+                        if (ex == null) {
+                            eventDeduplicator.commit(eventId, saved.getId());
+                        } else {
+                            eventDeduplicator.release(eventId);
+                        }
+                    });
+                }
+                savedData = awaitGroupCommit(future);
+            } else {
+                try {
+                    savedData = telemetryIngestionService.ingestTelemetryData(telemetryData);
+                } catch (RuntimeException e) {
+                    release(eventId, reservation);
+                    throw e;
+                }
+                if (reservation != null) {
+                    eventDeduplicator.commit(eventId, savedData.getId());
+                }
+            }
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("message", "Telemetry data ingested successfully");
             response.put("dataId", savedData.getId());
             response.put("timestamp", savedData.getCreatedAt());
+            if (eventId != null) {
+                response.put("eventId", eventId);
+            }
             
             return ResponseEntity.ok(response);
             
+        } catch (RejectedExecutionException e) {
+            logger.warn("Rejected telemetry data: {}", e.getMessage());
+            
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", "Ingestion is overloaded: " + e.getMessage());
+            
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(errorResponse);
         } catch (Exception e) {
             logger.error("Error ingesting telemetry data", e);
             
@@ -58,6 +160,102 @@ public class TelemetryController {
         }
     }
     
+    @PostMapping("/ingest/batch")
+    public ResponseEntity<Map<String, Object>> ingestTelemetryBatch(@RequestBody List<TelemetryRequest> requests) {
+        if (requests.size() > maxBatchSize) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", "Batch size " + requests.size() + " exceeds maximum of " + maxBatchSize);
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(errorResponse);
+        }
+        
+        logger.info("Received telemetry batch of {} events", requests.size());
+        
+        // Validate each item up front so one bad event does not fail the whole batch
+        List<Map<String, Object>> results = new ArrayList<>(requests.size());
+        List<TelemetryData> accepted = new ArrayList<>(requests.size());
+        List<Map<String, Object>> acceptedResults = new ArrayList<>(requests.size());
+        List<String> reservedEventIds = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            TelemetryRequest request = requests.get(i);
+            Map<String, Object> result = new HashMap<>();
+            result.put("index", i);
+            results.add(result);
+            
+            String validationError = validate(request);
+            if (validationError != null) {
+                result.put("success", false);
+                result.put("retryable", false);
+                result.put("message", validationError);
+                continue;
+            }
+            
+            String eventId = resolveEventId(request);
+            EventDeduplicator.Reservation reservation = reserve(eventId);
+            if (reservation != null && reservation.getStatus() != EventDeduplicator.Status.NEW) {
+                // Also catches an event repeated within this batch
+                putDuplicateResult(result, eventId, reservation);
+                continue;
+            }
+            TelemetryData telemetryData = telemetryIngestionService.createTelemetryData(
+                request.getUserId(),
+                request.getSessionId(),
+                request.getFeature(),
+                request.getAction(),
+                request.getTimestamp() != null ? request.getTimestamp() : LocalDateTime.now(ZoneOffset.UTC),
+                request.getMetrics()
+            );
+            telemetryData.setEventId(eventId);
+            accepted.add(telemetryData);
+            acceptedResults.add(result);
+            if (reservation != null) {
+                reservedEventIds.add(eventId);
+            }
+        }
+        
+        if (!accepted.isEmpty()) {
+            try {
+                List<TelemetryData> savedData = telemetryIngestionService.ingestTelemetryBatch(accepted);
+                for (int i = 0; i < savedData.size(); i++) {
+                    acceptedResults.get(i).put("success", true);
+                    acceptedResults.get(i).put("dataId", savedData.get(i).getId());
+                    if (eventDeduplicator != null && savedData.get(i).getEventId() != null) {
+                        eventDeduplicator.commit(savedData.get(i).getEventId(), savedData.get(i).getId());
+                    }
+                }
+            } catch (Exception e) {
+                logger.error("Error ingesting telemetry batch", e);
+                for (String eventId : reservedEventIds) {
+                    eventDeduplicator.release(eventId);
+                }
+                // Only a failed save throws, and its transaction stored none of the batch, so every
+                // accepted item can be retried
+                for (Map<String, Object> result : acceptedResults) {
+                    result.put("success", false);
+                    result.put("retryable", true);
+                    result.put("message", "Failed to ingest telemetry data: " + e.getMessage());
+                }
+            }
+        }
+        
+        long succeeded = results.stream().filter(r -> Boolean.TRUE.equals(r.get("success"))).count();
+        long duplicates = results.stream().filter(r -> Boolean.TRUE.equals(r.get("duplicate"))).count();
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", succeeded == requests.size());
+        response.put("received", requests.size());
+        response.put("ingested", succeeded);
+        response.put("duplicates", duplicates);
+        response.put("failed", requests.size() - succeeded);
+        response.put("results", results);
+        
+        if (succeeded == requests.size()) {
+            return ResponseEntity.ok(response);
+        }
+        return ResponseEntity.status(succeeded == 0 ? HttpStatus.INTERNAL_SERVER_ERROR : HttpStatus.MULTI_STATUS)
+            .body(response);
+    }
+    
     @GetMapping("/user/{userId}")
     public ResponseEntity<List<TelemetryData>> getTelemetryByUser(@PathVariable String userId) {
         List<TelemetryData> data = telemetryIngestionService.getTelemetryByUserId(userId);
@@ -76,17 +274,48 @@ public class TelemetryController {
         return ResponseEntity.ok(data);
     }
     
+    // Keyset-paginated variants: pass the returned nextCursor to fetch the following page
+    @GetMapping("/user/{userId}/page")
+    public ResponseEntity<Map<String, Object>> getTelemetryPageByUser(@PathVariable String userId,
+                                                                      @RequestParam(required = false) String cursor,
+                                                                      @RequestParam(defaultValue = "100") int limit) {
+        return page(() -> telemetryIngestionService.getTelemetryPageByUserId(userId, cursor, clampLimit(limit)));
+    }
+    
+    @GetMapping("/session/{sessionId}/page")
+    public ResponseEntity<Map<String, Object>> getTelemetryPageBySession(@PathVariable String sessionId,
+                                                                         @RequestParam(required = false) String cursor,
+                                                                         @RequestParam(defaultValue = "100") int limit) {
+        return page(() -> telemetryIngestionService.getTelemetryPageBySessionId(sessionId, cursor, clampLimit(limit)));
+    }
+    
+    @GetMapping("/feature/{feature}/page")
+    public ResponseEntity<Map<String, Object>> getTelemetryPageByFeature(@PathVariable String feature,
+                                                                         @RequestParam(required = false) String cursor,
+                                                                         @RequestParam(defaultValue = "100") int limit) {
+        return page(() -> telemetryIngestionService.getTelemetryPageByFeature(feature, cursor, clampLimit(limit)));
+    }
+    
+    // Streaming variants: newline-delimited JSON written row by row from a database cursor
+    @GetMapping(value = "/user/{userId}/stream", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamTelemetryByUser(@PathVariable String userId) {
+        return ndjson(sink -> telemetryIngestionService.streamTelemetryByUserId(userId, sink));
+    }
+    
+    @GetMapping(value = "/session/{sessionId}/stream", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamTelemetryBySession(@PathVariable String sessionId) {
+        return ndjson(sink -> telemetryIngestionService.streamTelemetryBySessionId(sessionId, sink));
+    }
+    
+    @GetMapping(value = "/feature/{feature}/stream", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamTelemetryByFeature(@PathVariable String feature) {
+        return ndjson(sink -> telemetryIngestionService.streamTelemetryByFeature(feature, sink));
+    }
+    
     @GetMapping("/stats")
-    public ResponseEntity<Map<String, Object>> getTelemetryStats() {
-        List<TelemetryData> allData = telemetryIngestionService.getAllTelemetry();
-        
-        Map<String, Object> stats = new HashMap<>();
-        stats.put("totalRecords", allData.size());
-        stats.put("uniqueUsers", allData.stream().map(TelemetryData::getUserId).distinct().count());
-        stats.put("uniqueSessions", allData.stream().map(TelemetryData::getSessionId).distinct().count());
-        stats.put("uniqueFeatures", allData.stream().map(TelemetryData::getFeature).distinct().count());
-        
-        return ResponseEntity.ok(stats);
+    public ResponseEntity<Map<String, Object>> getTelemetryStats(@RequestParam(defaultValue = "0") int buckets) {
+        // Maintained incrementally on ingest; buckets > 0 adds the most recent time-bucket breakdown
+        return ResponseEntity.ok(telemetryIngestionService.getTelemetryStats(buckets));
     }
     
     @GetMapping("/health")
@@ -98,8 +327,131 @@ public class TelemetryController {
         return ResponseEntity.ok(health);
     }
     
+    private ResponseEntity<Map<String, Object>> page(Supplier<Map<String, Object>> query) {
+        try {
+            return ResponseEntity.ok(query.get());
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(errorResponse);
+        }
+    }
+    
+    private int clampLimit(int limit) {
+        return Math.max(1, Math.min(limit, maxPageSize));
+    }
+    
+    private ResponseEntity<StreamingResponseBody> ndjson(Consumer<Consumer<TelemetryData>> query) {
+        StreamingResponseBody body = outputStream -> {
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream);
+            generator.setRootValueSeparator(new SerializedString("\n"));
+            query.accept(data -> {
+                try {
+                    generator.writeObject(data);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            generator.writeRaw('\n');
+            generator.flush();
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON)).body(body);
+    }
+    
+    private TelemetryData awaitGroupCommit(CompletableFuture<TelemetryData> future) throws Exception {
+        try {
+            return future.get(writeBehindTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+    
+    /**
+     * The client's eventId, or userId|sessionId|timestamp when the client sent its own timestamp.
+     * Without either there is nothing stable across retries, so the event is not deduplicated.
+     * A derived id longer than the event_id column is replaced by its SHA-256 digest.
+     */
+    private String resolveEventId(TelemetryRequest request) {
+        if (request == null) return null;
+        if (!isBlank(request.getEventId())) return request.getEventId();
+        if (request.getTimestamp() == null || isBlank(request.getUserId()) || isBlank(request.getSessionId())) return null;
+        String derived = request.getUserId() + "|" + request.getSessionId() + "|" + request.getTimestamp();
+        return derived.length() <= TelemetryData.MAX_EVENT_ID_LENGTH ? derived : DERIVED_ID_DIGEST_PREFIX + sha256(derived);
+    }
+    
+    private static String sha256(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+    
+    // A client id is stored as sent, so one that does not fit is the client's error and not worth retrying
+    private String validateEventId(TelemetryRequest request) {
+        if (request != null && request.getEventId() != null && request.getEventId().length() > TelemetryData.MAX_EVENT_ID_LENGTH) {
+            return "Event ID longer than " + TelemetryData.MAX_EVENT_ID_LENGTH + " characters";
+        }
+        return null;
+    }
+    
+    private EventDeduplicator.Reservation reserve(String eventId) {
+        return eventDeduplicator != null && eventId != null ? eventDeduplicator.reserve(eventId) : null;
+    }
+    
+    private void release(String eventId, EventDeduplicator.Reservation reservation) {
+        if (reservation != null) {
+            eventDeduplicator.release(eventId);
+        }
+    }
+    
+    // A stored duplicate is acknowledged as success so the client stops retrying; one still in flight is a 409
+    private ResponseEntity<Map<String, Object>> duplicateResponse(String eventId, EventDeduplicator.Reservation reservation) {
+        Map<String, Object> response = new HashMap<>();
+        putDuplicateResult(response, eventId, reservation);
+        logger.info("Ignored duplicate telemetry event {} ({})", eventId, reservation.getStatus());
+        return reservation.getStatus() == EventDeduplicator.Status.DUPLICATE
+            ? ResponseEntity.ok(response)
+            : ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+    }
+    
+    private void putDuplicateResult(Map<String, Object> result, String eventId, EventDeduplicator.Reservation reservation) {
+        result.put("eventId", eventId);
+        result.put("duplicate", true);
+        if (reservation.getStatus() == EventDeduplicator.Status.DUPLICATE) {
+            result.put("success", true);
+            result.put("message", "Duplicate event already ingested");
+            if (reservation.getDataId() != null) {
+                result.put("dataId", reservation.getDataId());
+            }
+        } else {
+            result.put("success", false);
+            result.put("retryable", true);
+            result.put("message", "Event with the same id is still being ingested");
+        }
+    }
+    
+    private String validate(TelemetryRequest request) {
+        if (request == null) return "Request is required";
+        if (isBlank(request.getUserId())) return "User ID is required";
+        if (isBlank(request.getSessionId())) return "Session ID is required";
+        if (isBlank(request.getFeature())) return "Feature is required";
+        if (isBlank(request.getAction())) return "Action is required";
+        return validateEventId(request);
+    }
+    
+    private boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+    
     // Request DTO for validation
     public static class TelemetryRequest {
+        private String eventId; // Optional idempotency key
         private String userId;
         private String sessionId;
         private String feature;
@@ -108,6 +460,9 @@ public class TelemetryController {
         private Map<String, Object> metrics;
         
         // Getters and Setters
+        public String getEventId() { return eventId; }
+        public void setEventId(String eventId) { this.eventId = eventId; }
+        
         public String getUserId() { return userId; }
         public void setUserId(String userId) { this.userId = userId; }
         
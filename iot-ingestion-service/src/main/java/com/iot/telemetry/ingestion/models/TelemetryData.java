@@ -1,17 +1,29 @@
 package com.iot.telemetry.ingestion.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import java.time.LocalDateTime;
+import java.util.Map;
 
 @Entity
-@Table(name = "telemetry_data")
+@Table(name = "telemetry_data", indexes = {
+    // Composite indexes backing the keyset-paginated and streaming queries (ordered by timestamp, id)
+    @Index(name = "idx_telemetry_user_ts_id", columnList = "user_id, timestamp, id"),
+    @Index(name = "idx_telemetry_session_ts_id", columnList = "session_id, timestamp, id"),
+    @Index(name = "idx_telemetry_feature_ts_id", columnList = "feature, timestamp, id"),
+    @Index(name = "idx_telemetry_ts_id", columnList = "timestamp, id")
+})
 public class TelemetryData {
     
+    // Longest eventId the event_id column and the segment log accept, in characters
+    public static final int MAX_EVENT_ID_LENGTH = 255;
+    
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
-    private Long id;
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "telemetry_data_seq")
+    @SequenceGenerator(name = "telemetry_data_seq", sequenceName = "telemetry_data_seq", allocationSize = 50)
+    private Long id; // Sequence (not IDENTITY) so Hibernate can batch inserts
     
     @NotBlank(message = "User ID is required")
     @Column(name = "user_id", nullable = false)
@@ -39,6 +51,13 @@ public class TelemetryData {
     @Column(name = "created_at", nullable = false)
     private LocalDateTime createdAt;
     
+    @Column(name = "event_id", length = MAX_EVENT_ID_LENGTH)
+    private String eventId; // Client-supplied or derived idempotency key, null when neither is available
+    
+    @Transient
+    @JsonIgnore
+    private Map<String, Object> metrics; // Original metrics of a freshly ingested event, not persisted
+    
     // Constructors
     public TelemetryData() {
         this.createdAt = LocalDateTime.now();
@@ -75,9 +94,15 @@ public class TelemetryData {
     public String getMetricsJson() { return metricsJson; }
     public void setMetricsJson(String metricsJson) { this.metricsJson = metricsJson; }
     
+    public Map<String, Object> getMetrics() { return metrics; }
+    public void setMetrics(Map<String, Object> metrics) { this.metrics = metrics; }
+    
     public LocalDateTime getCreatedAt() { return createdAt; }
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
     
+    public String getEventId() { return eventId; }
+    public void setEventId(String eventId) { this.eventId = eventId; }
+    
     @Override
     public String toString() {
         return "TelemetryData{" +
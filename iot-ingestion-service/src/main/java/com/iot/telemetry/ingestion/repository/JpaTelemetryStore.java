@@ -0,0 +1,149 @@
+package com.iot.telemetry.ingestion.repository;
+
+import com.iot.telemetry.ingestion.models.TelemetryData;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+// Default backend: the telemetry_data table through JPA
+@Component
+@ConditionalOnProperty(name = "ingestion.storage.backend", havingValue = "jpa", matchIfMissing = true)
+@Transactional
+public class JpaTelemetryStore implements TelemetryStore {
+
+    @Autowired
+    private TelemetryRepository telemetryRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public TelemetryData save(TelemetryData data) {
+        return telemetryRepository.save(data);
+    }
+
+    // One transaction with JDBC-batched inserts
+    @Override
+    public List<TelemetryData> saveAll(List<TelemetryData> batch) {
+        List<TelemetryData> savedData = telemetryRepository.saveAll(batch);
+        telemetryRepository.flush();
+        return savedData;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<TelemetryData> findByUserId(String userId) {
+        return telemetryRepository.findByUserId(userId);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<TelemetryData> findBySessionId(String sessionId) {
+        return telemetryRepository.findBySessionId(sessionId);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<TelemetryData> findByFeature(String feature) {
+        return telemetryRepository.findByFeature(feature);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<TelemetryData> findByTimestampBetween(LocalDateTime startTime, LocalDateTime endTime) {
+        return telemetryRepository.findByTimestampBetween(startTime, endTime);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long countByTimestampBetween(LocalDateTime startTime, LocalDateTime endTime) {
+        return telemetryRepository.countByTimestampBetween(startTime, endTime);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<TelemetryData> findPageByUserId(String userId, TelemetryData after, int limit) {
+        Pageable page = PageRequest.of(0, limit);
+        return after == null
+            ? telemetryRepository.findByUserIdOrderByTimestampAscIdAsc(userId, page)
+            : telemetryRepository.findByUserIdAfter(userId, after.getTimestamp(), after.getId(), page);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<TelemetryData> findPageBySessionId(String sessionId, TelemetryData after, int limit) {
+        Pageable page = PageRequest.of(0, limit);
+        return after == null
+            ? telemetryRepository.findBySessionIdOrderByTimestampAscIdAsc(sessionId, page)
+            : telemetryRepository.findBySessionIdAfter(sessionId, after.getTimestamp(), after.getId(), page);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<TelemetryData> findPageByFeature(String feature, TelemetryData after, int limit) {
+        Pageable page = PageRequest.of(0, limit);
+        return after == null
+            ? telemetryRepository.findByFeatureOrderByTimestampAscIdAsc(feature, page)
+            : telemetryRepository.findByFeatureAfter(feature, after.getTimestamp(), after.getId(), page);
+    }
+
+    // Streaming queries: rows are handed to the sink one at a time and detached, so memory stays flat
+    @Override
+    @Transactional(readOnly = true)
+    public long streamByUserId(String userId, Consumer<TelemetryData> sink) {
+        try (Stream<TelemetryData> stream = telemetryRepository.streamByUserId(userId)) {
+            return forEachDetached(stream, sink);
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long streamBySessionId(String sessionId, Consumer<TelemetryData> sink) {
+        try (Stream<TelemetryData> stream = telemetryRepository.streamBySessionId(sessionId)) {
+            return forEachDetached(stream, sink);
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long streamByFeature(String feature, Consumer<TelemetryData> sink) {
+        try (Stream<TelemetryData> stream = telemetryRepository.streamByFeature(feature)) {
+            return forEachDetached(stream, sink);
+        }
+    }
+
+    // No row count: /stats stays free of table scans
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("backend", "jpa");
+        return stats;
+    }
+
+    private long forEachDetached(Stream<TelemetryData> stream, Consumer<TelemetryData> sink) {
+        long count = 0;
+        Iterator<TelemetryData> iterator = stream.iterator();
+        while (iterator.hasNext()) {
+            TelemetryData data = iterator.next();
+            sink.accept(data);
+            entityManager.detach(data);
+            count++;
+        }
+        return count;
+    }
+}
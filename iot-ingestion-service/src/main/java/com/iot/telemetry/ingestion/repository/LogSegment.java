@@ -0,0 +1,302 @@
+package com.iot.telemetry.ingestion.repository;
+
+import com.iot.telemetry.common.codec.TelemetryCodec;
+import com.iot.telemetry.common.codec.TelemetryRecord;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.zip.CRC32C;
+
+/**
+ * One file of the segment log, preallocated to its full size and memory-mapped once. Records
+ * are appended by a single thread and read concurrently from the same mapping.
+ *
+ * <pre>
+ * int      payload length (0 = end of written data)
+ * int      CRC32C of the payload
+ * long     event timestamp (epoch millis, UTC)
+ * short    eventId length (-1 = null), then eventId UTF-8 bytes
+ * ...      TelemetryCodec record
+ * </pre>
+ *
+ * Every {@code blockRecords} records are summarized in the sparse time index as one block
+ * (offset range, record count, min and max event timestamp), so time-range queries skip
+ * whole blocks and count fully covered ones without reading them.
+ */
+final class LogSegment {
+
+    static final int FRAME_HEADER_BYTES = 16;
+
+    private static final int BLOCK_STRIDE = 4;
+
+    private final int index;
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final int blockRecords;
+
+    // Published to readers in this order: committed, then blockCount
+    private volatile int committed;
+    private volatile long[] blocks = new long[BLOCK_STRIDE * 64];
+    private volatile int blockCount;
+
+    private volatile int recordCount;
+    private volatile long minTimestamp = Long.MAX_VALUE;
+    private volatile long maxTimestamp = Long.MIN_VALUE;
+    private volatile long lastAppendMillis;
+
+    // Block still being filled; touched by the appending thread only
+    private int openStart;
+    private int openRecords;
+    private long openMin = Long.MAX_VALUE;
+    private long openMax = Long.MIN_VALUE;
+
+    private LogSegment(int index, Path path, MappedByteBuffer buffer, int blockRecords, long lastAppendMillis) {
+        this.index = index;
+        this.path = path;
+        this.buffer = buffer;
+        this.blockRecords = blockRecords;
+        this.lastAppendMillis = lastAppendMillis;
+    }
+
+    static String fileName(int index) {
+        return String.format("%010d.log", index);
+    }
+
+    static LogSegment create(Path directory, int index, int capacity, int blockRecords) throws IOException {
+        Path path = directory.resolve(fileName(index));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // Sparse on common file systems: only written pages take disk space
+            channel.write(ByteBuffer.allocate(1), capacity - 1L);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            return new LogSegment(index, path, buffer, blockRecords, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Maps an existing segment and replays it, handing every intact record to {@code visitor}.
+     * Replay stops at the end marker or at the first torn or corrupt frame, which is where
+     * the next append will go.
+     */
+    static LogSegment recover(Path path, int index, int blockRecords, ObjIntConsumer<TelemetryRecord> visitor) throws IOException {
+        LogSegment segment;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            segment = new LogSegment(index, path, buffer, blockRecords, Files.getLastModifiedTime(path).toMillis());
+        }
+
+        ByteBuffer view = segment.view();
+        TelemetryRecord record = new TelemetryRecord();
+        CRC32C crc = new CRC32C();
+        int offset = 0;
+        while (offset + FRAME_HEADER_BYTES <= view.capacity()) {
+            int length = view.getInt(offset);
+            int payloadStart = offset + FRAME_HEADER_BYTES;
+            if (length <= 0 || length > view.capacity() - payloadStart) {
+                break;
+            }
+            crc.reset();
+            crc.update(view.duplicate().limit(payloadStart + length).position(payloadStart));
+            if ((int) crc.getValue() != view.getInt(offset + 4)) {
+                break;
+            }
+            segment.decode(view, offset, record);
+            visitor.accept(record, offset);
+            segment.appended(offset, payloadStart + length, view.getLong(offset + 8));
+            offset = payloadStart + length;
+        }
+        if (offset + 4 <= view.capacity()) {
+            view.putInt(offset, 0); // Drop whatever a torn write left behind
+        }
+        return segment;
+    }
+
+    /**
+     * Appends one record and returns its offset, or -1 if it does not fit. The eventId is
+     * passed pre-encoded so the caller can do that outside its lock.
+     */
+    int append(byte[] eventId, TelemetryRecord record) {
+        int offset = committed;
+        int payloadStart = offset + FRAME_HEADER_BYTES;
+        if (payloadStart + 2 > buffer.capacity()) {
+            return -1;
+        }
+        ByteBuffer out = buffer.duplicate().position(payloadStart);
+        try {
+            if (eventId == null) {
+                out.putShort((short) -1);
+            } else {
+                out.putShort((short) eventId.length);
+                out.put(eventId);
+            }
+            TelemetryCodec.encode(record, out);
+        } catch (BufferOverflowException e) {
+            return -1;
+        }
+        int end = out.position();
+
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.duplicate().limit(end).position(payloadStart));
+        out.putLong(offset + 8, record.getTimestampMillis());
+        out.putInt(offset + 4, (int) crc.getValue());
+        out.putInt(offset, end - payloadStart); // Length last: a torn frame reads as the end marker
+
+        lastAppendMillis = System.currentTimeMillis();
+        appended(offset, end, record.getTimestampMillis());
+        return offset;
+    }
+
+    private void appended(int offset, int end, long timestampMillis) {
+        if (openRecords == 0) {
+            openStart = offset;
+        }
+        openRecords++;
+        openMin = Math.min(openMin, timestampMillis);
+        openMax = Math.max(openMax, timestampMillis);
+        recordCount++;
+        if (timestampMillis < minTimestamp) minTimestamp = timestampMillis;
+        if (timestampMillis > maxTimestamp) maxTimestamp = timestampMillis;
+        committed = end;
+        if (openRecords == blockRecords) {
+            publishBlock();
+        }
+    }
+
+    private void publishBlock() {
+        int n = blockCount;
+        long[] data = blocks;
+        if ((n + 1) * BLOCK_STRIDE > data.length) {
+            data = Arrays.copyOf(data, data.length * 2);
+            blocks = data;
+        }
+        int base = n * BLOCK_STRIDE;
+        data[base] = (long) openStart << 32 | openRecords;
+        data[base + 1] = committed;
+        data[base + 2] = openMin;
+        data[base + 3] = openMax;
+        blockCount = n + 1;
+
+        openRecords = 0;
+        openMin = Long.MAX_VALUE;
+        openMax = Long.MIN_VALUE;
+    }
+
+    /** Closes the open index block and flushes the mapping; no appends follow. */
+    void seal() {
+        if (openRecords > 0) {
+            publishBlock();
+        }
+        buffer.force();
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    /** Calls {@code visitor} with the offset of every record whose event timestamp is in [from, to]. */
+    void forEachInRange(long from, long to, IntConsumer visitor) {
+        scanRange(from, to, visitor, false);
+    }
+
+    long countInRange(long from, long to) {
+        return scanRange(from, to, null, true);
+    }
+
+    private long scanRange(long from, long to, IntConsumer visitor, boolean countOnly) {
+        int n = blockCount;
+        long[] data = blocks;
+        int end = committed;
+        if (end == 0 || maxTimestamp < from || minTimestamp > to) {
+            return 0;
+        }
+        ByteBuffer view = view();
+        long count = 0;
+        for (int i = 0; i < n; i++) {
+            int base = i * BLOCK_STRIDE;
+            long min = data[base + 2];
+            long max = data[base + 3];
+            if (max < from || min > to) {
+                continue;
+            }
+            if (countOnly && min >= from && max <= to) {
+                count += (int) data[base];
+                continue;
+            }
+            count += scanFrames(view, (int) (data[base] >>> 32), (int) data[base + 1], from, to, visitor);
+        }
+        int openFrom = n == 0 ? 0 : (int) data[(n - 1) * BLOCK_STRIDE + 1];
+        return count + scanFrames(view, openFrom, end, from, to, visitor);
+    }
+
+    private long scanFrames(ByteBuffer view, int offset, int end, long from, long to, IntConsumer visitor) {
+        long count = 0;
+        while (offset < end) {
+            long timestamp = view.getLong(offset + 8);
+            if (timestamp >= from && timestamp <= to) {
+                count++;
+                if (visitor != null) {
+                    visitor.accept(offset);
+                }
+            }
+            offset += FRAME_HEADER_BYTES + view.getInt(offset);
+        }
+        return count;
+    }
+
+    void forEach(IntConsumer visitor) {
+        ByteBuffer view = view();
+        int end = committed;
+        int offset = 0;
+        while (offset < end) {
+            visitor.accept(offset);
+            offset += FRAME_HEADER_BYTES + view.getInt(offset);
+        }
+    }
+
+    /** A private cursor over the mapping; cheap, take one per query. */
+    ByteBuffer view() {
+        return buffer.duplicate();
+    }
+
+    long timestampAt(ByteBuffer view, int offset) {
+        return view.getLong(offset + 8);
+    }
+
+    String eventIdAt(ByteBuffer view, int offset) {
+        int payloadStart = offset + FRAME_HEADER_BYTES;
+        int length = view.getShort(payloadStart);
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        view.get(payloadStart + 2, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    void decode(ByteBuffer view, int offset, TelemetryRecord target) {
+        int payloadStart = offset + FRAME_HEADER_BYTES;
+        int eventIdLength = Math.max(0, view.getShort(payloadStart));
+        view.position(payloadStart + 2 + eventIdLength);
+        TelemetryCodec.decode(view, target);
+    }
+
+    int getIndex() { return index; }
+
+    Path getPath() { return path; }
+
+    int getSizeBytes() { return committed; }
+
+    int getRecordCount() { return recordCount; }
+
+    long getLastAppendMillis() { return lastAppendMillis; }
+}
@@ -0,0 +1,566 @@
+package com.iot.telemetry.ingestion.repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iot.telemetry.common.codec.TelemetryRecord;
+import com.iot.telemetry.ingestion.models.TelemetryData;
+import com.iot.telemetry.ingestion.service.IngestionStatistics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Append-only segmented log on local disk. Events are encoded with the shared
+ * {@code TelemetryCodec} into memory-mapped segment files of {@code segment-bytes} each;
+ * a full segment is sealed and a new one started. Lookups by user and session go through
+ * in-memory position lists (8 bytes per event each), time-range queries through each
+ * segment's sparse time index, and feature queries scan the log.
+ * <p>
+ * Appends are serialized by one lock and land in the page cache; the active segment is
+ * flushed to disk every {@code flush-interval-ms}. On startup the segments are replayed
+ * to rebuild the indexes and the id sequence, and each event is fed to
+ * {@link IngestionStatistics} so {@code /stats} covers what is already on disk. Retention drops whole sealed segments,
+ * oldest first, once they are older than {@code retention-hours} or the log exceeds
+ * {@code retention-bytes}.
+ * <p>
+ * Timestamps are stored as epoch millis (UTC), so sub-millisecond precision is dropped.
+ */
+@Component
+@ConditionalOnProperty(name = "ingestion.storage.backend", havingValue = "segment-log")
+public class SegmentLogTelemetryStore implements TelemetryStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(SegmentLogTelemetryStore.class);
+
+    private static final Comparator<TelemetryData> TIMESTAMP_ID_ORDER =
+        Comparator.comparing(TelemetryData::getTimestamp).thenComparing(TelemetryData::getId);
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private IngestionStatistics ingestionStatistics;
+
+    @Value("${ingestion.storage.segment-log.directory:./data/telemetry-log}")
+    private String directory;
+
+    @Value("${ingestion.storage.segment-log.segment-bytes:67108864}")
+    private int segmentBytes;
+
+    @Value("${ingestion.storage.segment-log.index-interval:64}")
+    private int indexInterval;
+
+    @Value("${ingestion.storage.segment-log.retention-hours:168}")
+    private long retentionHours;
+
+    @Value("${ingestion.storage.segment-log.retention-bytes:-1}")
+    private long retentionBytes;
+
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ConcurrentSkipListMap<Integer, LogSegment> segments = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<String, PositionList> userIndex = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, PositionList> sessionIndex = new ConcurrentHashMap<>();
+
+    private Path logDirectory;
+    private volatile LogSegment activeSegment;
+    private long nextId = 1; // Guarded by appendLock
+
+    private Counter appendedEvents;
+    private Counter deletedSegments;
+
+    @PostConstruct
+    public void init() throws IOException {
+        logDirectory = Paths.get(directory);
+        Files.createDirectories(logDirectory);
+
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(logDirectory)) {
+            files = listing.filter(path -> path.getFileName().toString().matches("\\d+\\.log")).sorted().toList();
+        }
+        long started = System.nanoTime();
+        long[] maxId = {0};
+        for (Path file : files) {
+            int index = Integer.parseInt(file.getFileName().toString().replace(".log", ""));
+            LogSegment segment = LogSegment.recover(file, index, indexInterval, (record, offset) -> {
+                long position = position(index, offset);
+                userIndex.computeIfAbsent(record.getUserId(), key -> new PositionList()).add(position);
+                sessionIndex.computeIfAbsent(record.getSessionId(), key -> new PositionList()).add(position);
+                maxId[0] = Math.max(maxId[0], record.getId());
+                ingestionStatistics.record(record.getUserId(), record.getSessionId(), record.getFeature(),
+                    record.getCreatedAt());
+            });
+            segments.put(index, segment);
+        }
+        nextId = maxId[0] + 1;
+
+        if (segments.isEmpty()) {
+            activeSegment = LogSegment.create(logDirectory, 0, segmentBytes, indexInterval);
+            segments.put(0, activeSegment);
+        } else {
+            activeSegment = segments.lastEntry().getValue();
+            segments.headMap(activeSegment.getIndex()).values().forEach(LogSegment::seal);
+        }
+        logger.info("Segment log at {}: recovered {} segments, {} events, {} users in {} ms",
+            logDirectory.toAbsolutePath(), files.size(), getEventCount(), userIndex.size(),
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+
+        appendedEvents = Counter.builder("ingestion.storage.appended")
+            .description("Events appended to the segment log")
+            .register(meterRegistry);
+        deletedSegments = Counter.builder("ingestion.storage.segments.deleted")
+            .description("Segments dropped by retention")
+            .register(meterRegistry);
+        Gauge.builder("ingestion.storage.segments", segments, Map::size)
+            .description("Segments in the log, including the active one")
+            .register(meterRegistry);
+        Gauge.builder("ingestion.storage.bytes", this, SegmentLogTelemetryStore::getTotalBytes)
+            .description("Bytes written to live segments")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void close() {
+        activeSegment.force();
+    }
+
+    @Override
+    public TelemetryData save(TelemetryData data) {
+        return saveAll(List.of(data)).get(0);
+    }
+
+    @Override
+    public List<TelemetryData> saveAll(List<TelemetryData> batch) {
+        // Encode inputs outside the lock; only id assignment and the copy into the log are serialized
+        TelemetryRecord[] records = new TelemetryRecord[batch.size()];
+        byte[][] eventIds = new byte[batch.size()][];
+        for (int i = 0; i < records.length; i++) {
+            records[i] = toRecord(batch.get(i));
+            eventIds[i] = encodeEventId(batch.get(i).getEventId());
+        }
+
+        appendLock.lock();
+        try {
+            for (int i = 0; i < records.length; i++) {
+                long id = nextId++;
+                records[i].setId(id);
+                append(eventIds[i], records[i]);
+                batch.get(i).setId(id);
+            }
+        } finally {
+            appendLock.unlock();
+        }
+        appendedEvents.increment(records.length);
+        return batch;
+    }
+
+    private void append(byte[] eventId, TelemetryRecord record) {
+        LogSegment segment = activeSegment;
+        int offset = segment.append(eventId, record);
+        if (offset < 0) {
+            if (segment.getSizeBytes() == 0) {
+                throw new IllegalArgumentException("Telemetry event does not fit in a segment of " + segmentBytes + " bytes");
+            }
+            segment = roll(segment);
+            offset = segment.append(eventId, record);
+            if (offset < 0) {
+                throw new IllegalArgumentException("Telemetry event does not fit in a segment of " + segmentBytes + " bytes");
+            }
+        }
+        long position = position(segment.getIndex(), offset);
+        userIndex.computeIfAbsent(record.getUserId(), key -> new PositionList()).add(position);
+        sessionIndex.computeIfAbsent(record.getSessionId(), key -> new PositionList()).add(position);
+    }
+
+    private LogSegment roll(LogSegment full) {
+        full.seal();
+        try {
+            LogSegment next = LogSegment.create(logDirectory, full.getIndex() + 1, segmentBytes, indexInterval);
+            segments.put(next.getIndex(), next);
+            activeSegment = next;
+            logger.debug("Sealed segment {} ({} events), started segment {}", full.getIndex(), full.getRecordCount(), next.getIndex());
+            return next;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create segment " + (full.getIndex() + 1), e);
+        }
+    }
+
+    @Override
+    public List<TelemetryData> findByUserId(String userId) {
+        return readPositions(userIndex.get(userId));
+    }
+
+    @Override
+    public List<TelemetryData> findBySessionId(String sessionId) {
+        return readPositions(sessionIndex.get(sessionId));
+    }
+
+    @Override
+    public List<TelemetryData> findByFeature(String feature) {
+        List<TelemetryData> results = new ArrayList<>();
+        TelemetryRecord record = new TelemetryRecord();
+        for (LogSegment segment : segments.values()) {
+            ByteBuffer view = segment.view();
+            segment.forEach(offset -> {
+                segment.decode(view, offset, record);
+                if (feature.equals(record.getFeature())) {
+                    results.add(toTelemetryData(record, segment.eventIdAt(view, offset)));
+                }
+            });
+        }
+        return results;
+    }
+
+    @Override
+    public List<TelemetryData> findByTimestampBetween(LocalDateTime startTime, LocalDateTime endTime) {
+        List<TelemetryData> results = new ArrayList<>();
+        TelemetryRecord record = new TelemetryRecord();
+        long from = toMillis(startTime);
+        long to = toMillis(endTime);
+        for (LogSegment segment : segments.values()) {
+            ByteBuffer view = segment.view();
+            segment.forEachInRange(from, to, offset -> results.add(read(segment, view, offset, record)));
+        }
+        return results;
+    }
+
+    @Override
+    public long countByTimestampBetween(LocalDateTime startTime, LocalDateTime endTime) {
+        long from = toMillis(startTime);
+        long to = toMillis(endTime);
+        long count = 0;
+        for (LogSegment segment : segments.values()) {
+            count += segment.countInRange(from, to);
+        }
+        return count;
+    }
+
+    @Override
+    public List<TelemetryData> findPageByUserId(String userId, TelemetryData after, int limit) {
+        return pageOfPositions(userIndex.get(userId), after, limit);
+    }
+
+    @Override
+    public List<TelemetryData> findPageBySessionId(String sessionId, TelemetryData after, int limit) {
+        return pageOfPositions(sessionIndex.get(sessionId), after, limit);
+    }
+
+    @Override
+    public List<TelemetryData> findPageByFeature(String feature, TelemetryData after, int limit) {
+        PriorityQueue<TelemetryData> page = new PriorityQueue<>(TIMESTAMP_ID_ORDER.reversed());
+        TelemetryRecord record = new TelemetryRecord();
+        for (LogSegment segment : segments.values()) {
+            ByteBuffer view = segment.view();
+            segment.forEach(offset -> {
+                segment.decode(view, offset, record);
+                if (feature.equals(record.getFeature())) {
+                    offer(page, toTelemetryData(record, segment.eventIdAt(view, offset)), after, limit);
+                }
+            });
+        }
+        return sorted(page);
+    }
+
+    // The log is not ordered by event time, so a stream sorts the matching events first
+    @Override
+    public long streamByUserId(String userId, Consumer<TelemetryData> sink) {
+        return streamSorted(findByUserId(userId), sink);
+    }
+
+    @Override
+    public long streamBySessionId(String sessionId, Consumer<TelemetryData> sink) {
+        return streamSorted(findBySessionId(sessionId), sink);
+    }
+
+    @Override
+    public long streamByFeature(String feature, Consumer<TelemetryData> sink) {
+        return streamSorted(findByFeature(feature), sink);
+    }
+
+    @Override
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("backend", "segment-log");
+        stats.put("events", getEventCount());
+        stats.put("segments", segments.size());
+        stats.put("bytes", getTotalBytes());
+        stats.put("users", userIndex.size());
+        stats.put("sessions", sessionIndex.size());
+        stats.put("activeSegment", activeSegment.getIndex());
+        return stats;
+    }
+
+    @Scheduled(fixedDelayString = "${ingestion.storage.segment-log.flush-interval-ms:1000}")
+    public void flush() {
+        activeSegment.force();
+    }
+
+    /** Deletes sealed segments from the oldest on while they are expired or the log is over its byte budget. */
+    @Scheduled(fixedDelayString = "${ingestion.storage.segment-log.retention-check-interval-ms:60000}")
+    public void enforceRetention() {
+        long cutoff = retentionHours > 0
+            ? System.currentTimeMillis() - TimeUnit.HOURS.toMillis(retentionHours)
+            : Long.MIN_VALUE;
+        long totalBytes = getTotalBytes();
+        int deleted = 0;
+        for (LogSegment segment : segments.values()) {
+            boolean expired = segment.getLastAppendMillis() < cutoff;
+            boolean overBudget = retentionBytes > 0 && totalBytes > retentionBytes;
+            if (segment == activeSegment || (!expired && !overBudget)) {
+                break;
+            }
+            segments.remove(segment.getIndex());
+            totalBytes -= segment.getSizeBytes();
+            try {
+                Files.deleteIfExists(segment.getPath());
+            } catch (IOException e) {
+                logger.warn("Failed to delete segment file {}", segment.getPath(), e);
+            }
+            logger.info("Retention dropped segment {} ({} events)", segment.getIndex(), segment.getRecordCount());
+            deletedSegments.increment();
+            deleted++;
+        }
+        if (deleted > 0) {
+            trimIndexes(position(segments.firstKey(), 0));
+        }
+    }
+
+    // Positions are appended in log order, so entries of deleted segments form a prefix of every list
+    private void trimIndexes(long firstLivePosition) {
+        appendLock.lock();
+        try {
+            for (ConcurrentHashMap<String, PositionList> index : List.of(userIndex, sessionIndex)) {
+                index.replaceAll((key, positions) -> positions.trimBefore(firstLivePosition));
+                index.values().removeIf(PositionList::isEmpty);
+            }
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    public long getTotalBytes() {
+        long total = 0;
+        for (LogSegment segment : segments.values()) {
+            total += segment.getSizeBytes();
+        }
+        return total;
+    }
+
+    public long getEventCount() {
+        long total = 0;
+        for (LogSegment segment : segments.values()) {
+            total += segment.getRecordCount();
+        }
+        return total;
+    }
+
+    private List<TelemetryData> readPositions(PositionList positions) {
+        List<TelemetryData> results = new ArrayList<>();
+        if (positions != null) {
+            TelemetryRecord record = new TelemetryRecord();
+            positions.forEach((segment, view, offset) -> results.add(read(segment, view, offset, record)));
+        }
+        return results;
+    }
+
+    // Only events past the cursor by header timestamp are decoded; a bounded heap keeps the first `limit`
+    private List<TelemetryData> pageOfPositions(PositionList positions, TelemetryData after, int limit) {
+        PriorityQueue<TelemetryData> page = new PriorityQueue<>(TIMESTAMP_ID_ORDER.reversed());
+        if (positions != null) {
+            long afterMillis = after == null ? Long.MIN_VALUE : toMillis(after.getTimestamp());
+            TelemetryRecord record = new TelemetryRecord();
+            positions.forEach((segment, view, offset) -> {
+                if (segment.timestampAt(view, offset) >= afterMillis) {
+                    offer(page, read(segment, view, offset, record), after, limit);
+                }
+            });
+        }
+        return sorted(page);
+    }
+
+    private void offer(PriorityQueue<TelemetryData> page, TelemetryData data, TelemetryData after, int limit) {
+        if (after != null && TIMESTAMP_ID_ORDER.compare(data, after) <= 0) {
+            return;
+        }
+        if (page.size() < limit) {
+            page.add(data);
+        } else if (TIMESTAMP_ID_ORDER.compare(data, page.peek()) < 0) {
+            page.poll();
+            page.add(data);
+        }
+    }
+
+    private List<TelemetryData> sorted(PriorityQueue<TelemetryData> page) {
+        List<TelemetryData> results = new ArrayList<>(page);
+        results.sort(TIMESTAMP_ID_ORDER);
+        return results;
+    }
+
+    private long streamSorted(List<TelemetryData> events, Consumer<TelemetryData> sink) {
+        events.sort(TIMESTAMP_ID_ORDER);
+        events.forEach(sink);
+        return events.size();
+    }
+
+    private TelemetryData read(LogSegment segment, ByteBuffer view, int offset, TelemetryRecord record) {
+        segment.decode(view, offset, record);
+        return toTelemetryData(record, segment.eventIdAt(view, offset));
+    }
+
+    private TelemetryData toTelemetryData(TelemetryRecord record, String eventId) {
+        TelemetryData data = new TelemetryData(record.getUserId(), record.getSessionId(),
+            record.getFeature(), record.getAction(), record.getTimestamp());
+        data.setId(record.getId());
+        data.setCreatedAt(record.getCreatedAt());
+        data.setEventId(eventId);
+        if (record.getPresentMask() != 0 || record.getExtraMetrics() != null) {
+            try {
+                data.setMetricsJson(objectMapper.writeValueAsString(record.toMetricsMap()));
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Failed to render metrics of event " + record.getId(), e);
+            }
+        }
+        return data;
+    }
+
+    @SuppressWarnings("unchecked")
+    private TelemetryRecord toRecord(TelemetryData data) {
+        TelemetryRecord record = new TelemetryRecord();
+        record.setUserId(data.getUserId());
+        record.setSessionId(data.getSessionId());
+        record.setFeature(data.getFeature());
+        record.setAction(data.getAction());
+        record.setTimestamp(data.getTimestamp());
+        record.setCreatedAt(data.getCreatedAt());
+
+        // Freshly ingested events still carry the metrics map; otherwise fall back to the JSON
+        Map<String, Object> metrics = data.getMetrics();
+        if (metrics == null && data.getMetricsJson() != null) {
+            try {
+                metrics = objectMapper.readValue(data.getMetricsJson(), Map.class);
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException("Invalid metrics JSON for user " + data.getUserId(), e);
+            }
+        }
+        record.setMetrics(metrics);
+        return record;
+    }
+
+    private byte[] encodeEventId(String eventId) {
+        if (eventId == null) {
+            return null;
+        }
+        byte[] bytes = eventId.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Event id longer than " + Short.MAX_VALUE + " bytes");
+        }
+        return bytes;
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static long position(int segmentIndex, int offset) {
+        return (long) segmentIndex << 32 | offset;
+    }
+
+    @FunctionalInterface
+    private interface PositionVisitor {
+        void visit(LogSegment segment, ByteBuffer view, int offset);
+    }
+
+    /**
+     * Growable array of log positions, appended under the store's lock and read without one:
+     * readers take {@code size} first, and the array they see afterwards holds at least that many.
+     */
+    private final class PositionList {
+        private volatile long[] positions;
+        private volatile int size;
+
+        private PositionList() {
+            this(new long[4], 0);
+        }
+
+        private PositionList(long[] positions, int size) {
+            this.positions = positions;
+            this.size = size;
+        }
+
+        private void add(long position) {
+            long[] data = positions;
+            int n = size;
+            if (n == data.length) {
+                data = Arrays.copyOf(data, n * 2);
+                positions = data;
+            }
+            data[n] = position;
+            size = n + 1;
+        }
+
+        private boolean isEmpty() {
+            return size == 0;
+        }
+
+        private PositionList trimBefore(long firstLivePosition) {
+            int n = size;
+            long[] data = positions;
+            int from = Arrays.binarySearch(data, 0, n, firstLivePosition);
+            from = from < 0 ? -from - 1 : from;
+            return from == 0 ? this : new PositionList(Arrays.copyOfRange(data, from, Math.max(n, from + 4)), n - from);
+        }
+
+        // Positions in deleted segments are skipped; one view per segment is reused across its positions
+        private void forEach(PositionVisitor visitor) {
+            int n = size;
+            long[] data = positions;
+            LogSegment segment = null;
+            ByteBuffer view = null;
+            for (int i = 0; i < n; i++) {
+                int segmentIndex = (int) (data[i] >>> 32);
+                if (segment == null || segment.getIndex() != segmentIndex) {
+                    segment = segments.get(segmentIndex);
+                    if (segment == null) {
+                        continue;
+                    }
+                    view = segment.view();
+                }
+                visitor.visit(segment, view, (int) data[i]);
+            }
+        }
+    }
+}
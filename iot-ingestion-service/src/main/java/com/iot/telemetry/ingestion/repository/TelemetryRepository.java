@@ -1,12 +1,17 @@
 package com.iot.telemetry.ingestion.repository;
 
 import com.iot.telemetry.ingestion.models.TelemetryData;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface TelemetryRepository extends JpaRepository<TelemetryData, Long> {
@@ -24,4 +29,48 @@ public interface TelemetryRepository extends JpaRepository<TelemetryData, Long>
     @Query("SELECT COUNT(t) FROM TelemetryData t WHERE t.timestamp BETWEEN :startTime AND :endTime")
     Long countByTimestampBetween(@Param("startTime") LocalDateTime startTime, 
                                 @Param("endTime") LocalDateTime endTime);
+    
+    // Keyset pagination on (timestamp, id): first page, then everything after the cursor
+    List<TelemetryData> findByUserIdOrderByTimestampAscIdAsc(String userId, Pageable pageable);
+    
+    @Query("SELECT t FROM TelemetryData t WHERE t.userId = :userId " +
+           "AND (t.timestamp > :timestamp OR (t.timestamp = :timestamp AND t.id > :id)) ORDER BY t.timestamp, t.id")
+    List<TelemetryData> findByUserIdAfter(@Param("userId") String userId, @Param("timestamp") LocalDateTime timestamp, 
+                                          @Param("id") Long id, Pageable pageable);
+    
+    List<TelemetryData> findBySessionIdOrderByTimestampAscIdAsc(String sessionId, Pageable pageable);
+    
+    @Query("SELECT t FROM TelemetryData t WHERE t.sessionId = :sessionId " +
+           "AND (t.timestamp > :timestamp OR (t.timestamp = :timestamp AND t.id > :id)) ORDER BY t.timestamp, t.id")
+    List<TelemetryData> findBySessionIdAfter(@Param("sessionId") String sessionId, @Param("timestamp") LocalDateTime timestamp, 
+                                             @Param("id") Long id, Pageable pageable);
+    
+    List<TelemetryData> findByFeatureOrderByTimestampAscIdAsc(String feature, Pageable pageable);
+    
+    @Query("SELECT t FROM TelemetryData t WHERE t.feature = :feature " +
+           "AND (t.timestamp > :timestamp OR (t.timestamp = :timestamp AND t.id > :id)) ORDER BY t.timestamp, t.id")
+    List<TelemetryData> findByFeatureAfter(@Param("feature") String feature, @Param("timestamp") LocalDateTime timestamp, 
+                                           @Param("id") Long id, Pageable pageable);
+    
+    // Cursor-backed streams for NDJSON export; callers must consume them inside a transaction and close them
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT t FROM TelemetryData t WHERE t.userId = :userId ORDER BY t.timestamp, t.id")
+    Stream<TelemetryData> streamByUserId(@Param("userId") String userId);
+    
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT t FROM TelemetryData t WHERE t.sessionId = :sessionId ORDER BY t.timestamp, t.id")
+    Stream<TelemetryData> streamBySessionId(@Param("sessionId") String sessionId);
+    
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT t FROM TelemetryData t WHERE t.feature = :feature ORDER BY t.timestamp, t.id")
+    Stream<TelemetryData> streamByFeature(@Param("feature") String feature);
 }
\ No newline at end of file
@@ -0,0 +1,44 @@
+package com.iot.telemetry.ingestion.repository;
+
+import com.iot.telemetry.ingestion.models.TelemetryData;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Storage backend for raw telemetry events, selected with {@code ingestion.storage.backend}.
+ * Implementations assign ids on save. Page and stream methods order by (timestamp, id);
+ * {@code after} is the last event of the previous page, or null for the first page.
+ */
+public interface TelemetryStore {
+
+    TelemetryData save(TelemetryData data);
+
+    List<TelemetryData> saveAll(List<TelemetryData> batch);
+
+    List<TelemetryData> findByUserId(String userId);
+
+    List<TelemetryData> findBySessionId(String sessionId);
+
+    List<TelemetryData> findByFeature(String feature);
+
+    List<TelemetryData> findByTimestampBetween(LocalDateTime startTime, LocalDateTime endTime);
+
+    long countByTimestampBetween(LocalDateTime startTime, LocalDateTime endTime);
+
+    List<TelemetryData> findPageByUserId(String userId, TelemetryData after, int limit);
+
+    List<TelemetryData> findPageBySessionId(String sessionId, TelemetryData after, int limit);
+
+    List<TelemetryData> findPageByFeature(String feature, TelemetryData after, int limit);
+
+    long streamByUserId(String userId, Consumer<TelemetryData> sink);
+
+    long streamBySessionId(String sessionId, Consumer<TelemetryData> sink);
+
+    long streamByFeature(String feature, Consumer<TelemetryData> sink);
+
+    Map<String, Object> getStatistics();
+}
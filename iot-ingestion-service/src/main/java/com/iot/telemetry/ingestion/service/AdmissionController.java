@@ -0,0 +1,202 @@
+package com.iot.telemetry.ingestion.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Adaptive concurrency limit for the ingestion endpoints (AIMD). A request that completes
+ * within {@code target-latency-ms} while the limit is at least half used raises the limit
+ * by {@code 1/limit}, i.e. by about one per limit's worth of requests; a slow or failed
+ * request multiplies it by {@code backoff-ratio}. Only requests admitted after the previous
+ * decrease can cause another one, so a burst of slow completions from the same overload
+ * lowers the limit once rather than once per request. Independently of
+ * the limit, new work is refused while the Kafka producer's buffer is nearly exhausted or
+ * records sit in it for too long, since accepting more would only block request threads.
+ */
+@Service
+@ConditionalOnProperty(name = "ingestion.admission.enabled", havingValue = "true", matchIfMissing = true)
+public class AdmissionController {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdmissionController.class);
+
+    public enum Decision { ADMITTED, REJECTED_CONCURRENCY, REJECTED_KAFKA }
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private KafkaProducerService kafkaProducerService;
+
+    @Value("${ingestion.admission.initial-limit:50}")
+    private int initialLimit;
+
+    @Value("${ingestion.admission.min-limit:4}")
+    private int minLimit;
+
+    @Value("${ingestion.admission.max-limit:200}")
+    private int maxLimit;
+
+    @Value("${ingestion.admission.target-latency-ms:250}")
+    private long targetLatencyMs;
+
+    @Value("${ingestion.admission.backoff-ratio:0.9}")
+    private double backoffRatio;
+
+    @Value("${ingestion.admission.kafka.max-buffer-utilization:0.8}")
+    private double maxBufferUtilization;
+
+    @Value("${ingestion.admission.kafka.max-queue-time-ms:500}")
+    private double maxQueueTimeMs;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // The limit is kept as a double so additive increases below one request are not lost
+    private final AtomicLong limitBits = new AtomicLong();
+    private final AtomicLong lastDecreaseNanos = new AtomicLong();
+
+    private volatile double kafkaBufferUtilization;
+    private volatile double kafkaQueueTimeMs;
+    private volatile boolean kafkaOverloaded;
+
+    private Counter concurrencyRejections;
+    private Counter kafkaRejections;
+
+    @PostConstruct
+    public void init() {
+        setLimit(initialLimit);
+        lastDecreaseNanos.set(System.nanoTime());
+
+        Gauge.builder("ingestion.admission.limit", this, AdmissionController::getLimit)
+            .description("Current adaptive concurrency limit")
+            .register(meterRegistry);
+        Gauge.builder("ingestion.admission.inflight", inFlight, AtomicInteger::get)
+            .description("Ingestion requests currently admitted")
+            .register(meterRegistry);
+        Gauge.builder("ingestion.admission.kafka.buffer.utilization", this, c -> c.kafkaBufferUtilization)
+            .description("Fraction of the Kafka producer buffer.memory in use")
+            .register(meterRegistry);
+        concurrencyRejections = Counter.builder("ingestion.admission.rejected")
+            .tag("reason", "concurrency")
+            .register(meterRegistry);
+        kafkaRejections = Counter.builder("ingestion.admission.rejected")
+            .tag("reason", "kafka")
+            .register(meterRegistry);
+    }
+
+    public Decision tryAcquire() {
+        if (kafkaOverloaded) {
+            kafkaRejections.increment();
+            return Decision.REJECTED_KAFKA;
+        }
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) getLimit()) {
+                concurrencyRejections.increment();
+                return Decision.REJECTED_CONCURRENCY;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return Decision.ADMITTED;
+            }
+        }
+    }
+
+    /** Releases an admitted request and feeds its outcome into the limit. */
+    public void release(long latencyNanos, boolean failed) {
+        int current = inFlight.getAndDecrement();
+        boolean slow = latencyNanos > TimeUnit.MILLISECONDS.toNanos(targetLatencyMs);
+        if ((failed || slow) && !claimDecrease(latencyNanos)) {
+            return;
+        }
+
+        while (true) {
+            long bits = limitBits.get();
+            double limit = Double.longBitsToDouble(bits);
+            double next;
+            if (failed || slow) {
+                next = Math.max(minLimit, limit * backoffRatio);
+            } else if (current * 2 >= limit) {
+                // Only grow while the limit is actually being used
+                next = Math.min(maxLimit, limit + 1.0 / limit);
+            } else {
+                return;
+            }
+            if (limitBits.compareAndSet(bits, Double.doubleToLongBits(next))) {
+                return;
+            }
+        }
+    }
+
+    // A request already running at the last decrease was admitted under the old limit, so its
+    // outcome says nothing about the new one. At most one of the racing releases wins the CAS.
+    private boolean claimDecrease(long latencyNanos) {
+        long now = System.nanoTime();
+        long started = now - latencyNanos;
+        long last = lastDecreaseNanos.get();
+        return started - last > 0 && lastDecreaseNanos.compareAndSet(last, now);
+    }
+
+    @Scheduled(fixedDelayString = "${ingestion.admission.kafka.sample-interval-ms:500}")
+    public void sampleKafkaPressure() {
+        Map<MetricName, ? extends Metric> metrics = kafkaProducerService.getProducerMetrics();
+        double total = metricValue(metrics, "buffer-total-bytes");
+        double available = metricValue(metrics, "buffer-available-bytes");
+        double utilization = total > 0 ? 1.0 - available / total : 0.0;
+        double queueTime = metricValue(metrics, "record-queue-time-avg");
+
+        boolean overloaded = utilization > maxBufferUtilization || queueTime > maxQueueTimeMs;
+        if (overloaded != kafkaOverloaded) {
+            logger.warn("Kafka producer pressure {}. Buffer utilization: {}, record queue time: {} ms",
+                       overloaded ? "detected, rejecting ingestion" : "cleared", utilization, queueTime);
+        }
+        kafkaBufferUtilization = utilization;
+        kafkaQueueTimeMs = queueTime;
+        kafkaOverloaded = overloaded;
+    }
+
+    public double getLimit() {
+        return Double.longBitsToDouble(limitBits.get());
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("limit", (int) getLimit());
+        stats.put("inFlight", inFlight.get());
+        stats.put("rejectedConcurrency", (long) concurrencyRejections.count());
+        stats.put("rejectedKafka", (long) kafkaRejections.count());
+        stats.put("kafkaBufferUtilization", kafkaBufferUtilization);
+        stats.put("kafkaRecordQueueTimeMs", kafkaQueueTimeMs);
+        return stats;
+    }
+
+    private void setLimit(double limit) {
+        limitBits.set(Double.doubleToLongBits(limit));
+    }
+
+    private double metricValue(Map<MetricName, ? extends Metric> metrics, String name) {
+        for (Map.Entry<MetricName, ? extends Metric> entry : metrics.entrySet()) {
+            if (name.equals(entry.getKey().name()) && "producer-metrics".equals(entry.getKey().group())) {
+                Object value = entry.getValue().metricValue();
+                if (value instanceof Number && !Double.isNaN(((Number) value).doubleValue())) {
+                    return ((Number) value).doubleValue();
+                }
+            }
+        }
+        return 0.0;
+    }
+}
@@ -0,0 +1,246 @@
+package com.iot.telemetry.ingestion.service;
+
+import com.iot.telemetry.common.sketch.BloomFilter;
+import com.iot.telemetry.common.sketch.HyperLogLog;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory duplicate detection for client event ids, without touching the database.
+ * Recently seen ids live in an exact cache bounded by {@code ttl-seconds} and
+ * {@code max-entries} (oldest committed ids evicted first; claims still in flight are kept). Committed ids are also added to a two-generation
+ * Bloom filter that keeps answering after the cache has let them go; when the current
+ * generation reaches {@code expected-insertions} it becomes the previous one and a fresh
+ * generation starts, so the tail covers between one and two generations of events.
+ * A Bloom hit is treated as a duplicate, which drops a genuinely new event at roughly the
+ * configured false-positive probability.
+ */
+@Component
+@ConditionalOnProperty(name = "ingestion.dedup.enabled", havingValue = "true", matchIfMissing = true)
+public class EventDeduplicator {
+
+    public enum Status { NEW, DUPLICATE, IN_FLIGHT }
+
+    // Rough heap cost of one cached id besides its characters: map node, entry, queue node, String
+    private static final long ENTRY_OVERHEAD_BYTES = 144;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${ingestion.dedup.ttl-seconds:600}")
+    private long ttlSeconds;
+
+    @Value("${ingestion.dedup.max-entries:100000}")
+    private int maxEntries;
+
+    @Value("${ingestion.dedup.bloom.expected-insertions:1000000}")
+    private long bloomExpectedInsertions;
+
+    @Value("${ingestion.dedup.bloom.false-positive-probability:0.0001}")
+    private double bloomFalsePositiveProbability;
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Queue<Entry> evictionQueue = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final ReentrantLock rotationLock = new ReentrantLock();
+    private final LongAdder keyBytes = new LongAdder();
+
+    private volatile BloomFilter currentBloom;
+    private volatile BloomFilter previousBloom;
+    private long ttlNanos;
+
+    private Counter checks;
+    private Counter cacheHits;
+    private Counter bloomHits;
+    private Counter inFlightHits;
+
+    @PostConstruct
+    public void init() {
+        ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        currentBloom = new BloomFilter(bloomExpectedInsertions, bloomFalsePositiveProbability);
+        previousBloom = new BloomFilter(bloomExpectedInsertions, bloomFalsePositiveProbability);
+
+        checks = Counter.builder("ingestion.dedup.checks")
+            .description("Events checked for duplicates")
+            .register(meterRegistry);
+        cacheHits = Counter.builder("ingestion.dedup.duplicates").tag("source", "cache").register(meterRegistry);
+        bloomHits = Counter.builder("ingestion.dedup.duplicates").tag("source", "bloom").register(meterRegistry);
+        inFlightHits = Counter.builder("ingestion.dedup.duplicates").tag("source", "inflight").register(meterRegistry);
+        Gauge.builder("ingestion.dedup.hit.ratio", this, EventDeduplicator::getHitRatio)
+            .description("Fraction of checked events that were duplicates")
+            .register(meterRegistry);
+        Gauge.builder("ingestion.dedup.cache.size", entries, Map::size)
+            .description("Event ids held in the exact cache")
+            .register(meterRegistry);
+        Gauge.builder("ingestion.dedup.memory.bytes", this, EventDeduplicator::getEstimatedMemoryBytes)
+            .description("Estimated heap used by the cache and both Bloom filter generations")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Claims {@code eventId} for the caller. {@link Status#NEW} must be followed by
+     * {@link #commit} once the event is stored or {@link #release} if storing fails;
+     * {@link Status#IN_FLIGHT} means another request holds the claim and has not finished yet.
+     */
+    public Reservation reserve(String eventId) {
+        checks.increment();
+        evictExpired();
+
+        Entry fresh = new Entry(eventId, System.nanoTime());
+        Entry existing = entries.putIfAbsent(eventId, fresh);
+        if (existing != null) {
+            if (existing.committed) {
+                cacheHits.increment();
+                return new Reservation(Status.DUPLICATE, existing.dataId);
+            }
+            inFlightHits.increment();
+            return new Reservation(Status.IN_FLIGHT, null);
+        }
+
+        long hash = HyperLogLog.hash64(eventId);
+        if (currentBloom.mightContainHash(hash) || previousBloom.mightContainHash(hash)) {
+            entries.remove(eventId, fresh);
+            bloomHits.increment();
+            return new Reservation(Status.DUPLICATE, null);
+        }
+
+        keyBytes.add(eventId.length());
+        evictionQueue.add(fresh);
+        return new Reservation(Status.NEW, null);
+    }
+
+    public void commit(String eventId, Long dataId) {
+        Entry entry = entries.get(eventId);
+        if (entry != null) {
+            entry.dataId = dataId;
+            entry.committed = true;
+        }
+        BloomFilter bloom = currentBloom;
+        bloom.putHash(HyperLogLog.hash64(eventId));
+        if (bloom.isSaturated()) {
+            rotate(bloom);
+        }
+    }
+
+    /** Drops a claim whose event was not stored, so a retry of it is accepted. */
+    public void release(String eventId) {
+        Entry entry = entries.get(eventId);
+        if (entry != null && !entry.committed && entries.remove(eventId, entry)) {
+            keyBytes.add(-eventId.length()); // Its queue node is skipped once eviction reaches it
+        }
+    }
+
+    public double getHitRatio() {
+        double total = checks.count();
+        return total == 0 ? 0.0 : getDuplicates() / total;
+    }
+
+    private double getDuplicates() {
+        return cacheHits.count() + bloomHits.count() + inFlightHits.count();
+    }
+
+    public long getEstimatedMemoryBytes() {
+        return entries.size() * ENTRY_OVERHEAD_BYTES + keyBytes.sum()
+            + currentBloom.getSizeInBytes() + previousBloom.getSizeInBytes();
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("checks", (long) checks.count());
+        stats.put("duplicates", (long) getDuplicates());
+        stats.put("hitRatio", getHitRatio());
+        stats.put("cacheSize", entries.size());
+        stats.put("bloomInsertions", currentBloom.getInsertions() + previousBloom.getInsertions());
+        stats.put("estimatedMemoryBytes", getEstimatedMemoryBytes());
+        return stats;
+    }
+
+    // One thread at a time walks the queue from the oldest entry; the others skip eviction.
+    // Claims still in flight are moved to the back rather than dropped, since dropping one would
+    // let a retry of the same event through while the original is still being stored. The walk
+    // stops when it comes back round to the first claim it moved.
+    private void evictExpired() {
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            long now = System.nanoTime();
+            Entry firstRequeued = null;
+            Entry head;
+            while ((head = evictionQueue.peek()) != null && head != firstRequeued
+                    && (now - head.createdAtNanos > ttlNanos || entries.size() > maxEntries)) {
+                evictionQueue.poll();
+                if (entries.get(head.eventId) != head) {
+                    continue; // Released
+                }
+                if (head.committed) {
+                    if (entries.remove(head.eventId, head)) {
+                        keyBytes.add(-head.eventId.length());
+                    }
+                } else {
+                    evictionQueue.add(head);
+                    if (firstRequeued == null) {
+                        firstRequeued = head;
+                    }
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private void rotate(BloomFilter saturated) {
+        rotationLock.lock();
+        try {
+            if (currentBloom == saturated) {
+                previousBloom = saturated;
+                currentBloom = new BloomFilter(bloomExpectedInsertions, bloomFalsePositiveProbability);
+            }
+        } finally {
+            rotationLock.unlock();
+        }
+    }
+
+    public static final class Reservation {
+        private final Status status;
+        private final Long dataId;
+
+        private Reservation(Status status, Long dataId) {
+            this.status = status;
+            this.dataId = dataId;
+        }
+
+        public Status getStatus() { return status; }
+
+        /** Id of the stored original when it is still cached, otherwise null. */
+        public Long getDataId() { return dataId; }
+    }
+
+    private static final class Entry {
+        private final String eventId;
+        private final long createdAtNanos;
+        private volatile Long dataId;
+        private volatile boolean committed;
+
+        private Entry(String eventId, long createdAtNanos) {
+            this.eventId = eventId;
+            this.createdAtNanos = createdAtNanos;
+        }
+    }
+}
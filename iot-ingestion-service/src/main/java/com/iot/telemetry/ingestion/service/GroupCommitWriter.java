@@ -0,0 +1,177 @@
+package com.iot.telemetry.ingestion.service;
+
+import com.iot.telemetry.ingestion.models.TelemetryData;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind buffer for single-event ingestion. Accepted events wait in a bounded queue
+ * and a committer thread persists them in group commits of up to {@code max-batch-size}
+ * rows, or whatever arrived within {@code max-linger-ms} of the first queued event.
+ * Each caller's future completes once the group commit covering its event has finished.
+ */
+@Service
+@ConditionalOnProperty(name = "ingestion.write-behind.enabled", havingValue = "true")
+public class GroupCommitWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(GroupCommitWriter.class);
+
+    @Autowired
+    private TelemetryIngestionService telemetryIngestionService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${ingestion.write-behind.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${ingestion.write-behind.max-batch-size:500}")
+    private int maxBatchSize;
+
+    @Value("${ingestion.write-behind.max-linger-ms:5}")
+    private long maxLingerMs;
+
+    private BlockingQueue<PendingWrite> queue;
+    private Thread committer;
+    private volatile boolean running;
+
+    private DistributionSummary flushSize;
+    private Timer flushLatency;
+    private Counter rejectedCount;
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        Gauge.builder("ingestion.writebehind.queue.depth", queue, BlockingQueue::size)
+            .description("Events waiting for a group commit")
+            .register(meterRegistry);
+        flushSize = DistributionSummary.builder("ingestion.writebehind.flush.size")
+            .description("Events persisted per group commit")
+            .register(meterRegistry);
+        flushLatency = Timer.builder("ingestion.writebehind.flush.latency")
+            .description("Duration of a group commit including the Kafka hand-off")
+            .publishPercentiles(0.5, 0.95, 0.99)
+            .register(meterRegistry);
+        rejectedCount = Counter.builder("ingestion.writebehind.rejected")
+            .description("Events rejected because the write-behind queue was full")
+            .register(meterRegistry);
+
+        running = true;
+        committer = new Thread(this::runCommitter, "write-behind-committer");
+        committer.setDaemon(true);
+        committer.start();
+        logger.info("Write-behind enabled. Queue capacity: {}, max batch size: {}, max linger: {} ms",
+                   queueCapacity, maxBatchSize, maxLingerMs);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        // The committer drains whatever is still queued before it exits
+        running = false;
+        committer.interrupt();
+        committer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    public CompletableFuture<TelemetryData> submit(TelemetryData data) {
+        PendingWrite pendingWrite = new PendingWrite(data);
+        if (!running || !queue.offer(pendingWrite)) {
+            rejectedCount.increment();
+            pendingWrite.future.completeExceptionally(new RejectedExecutionException("Write-behind queue is full"));
+        }
+        return pendingWrite.future;
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    private void runCommitter() {
+        List<PendingWrite> group = new ArrayList<>(maxBatchSize);
+        long lingerNanos = TimeUnit.MILLISECONDS.toNanos(maxLingerMs);
+
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingWrite first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+
+                // Keep collecting until the group is full or the linger window of the first event expires
+                long deadline = System.nanoTime() + lingerNanos;
+                while (group.size() < maxBatchSize) {
+                    queue.drainTo(group, maxBatchSize - group.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (group.size() >= maxBatchSize || remaining <= 0) {
+                        break;
+                    }
+                    PendingWrite next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    group.add(next);
+                }
+            } catch (InterruptedException e) {
+                // Shutdown requested; loop condition decides whether anything is left to flush
+                queue.drainTo(group, maxBatchSize - group.size());
+            }
+
+            if (!group.isEmpty()) {
+                commit(group);
+                group.clear();
+            }
+        }
+    }
+
+    private void commit(List<PendingWrite> group) {
+        List<TelemetryData> batch = new ArrayList<>(group.size());
+        for (PendingWrite pendingWrite : group) {
+            batch.add(pendingWrite.data);
+        }
+
+        long start = System.nanoTime();
+        try {
+            List<TelemetryData> savedData = telemetryIngestionService.ingestTelemetryBatch(batch);
+            for (int i = 0; i < group.size(); i++) {
+                group.get(i).future.complete(savedData.get(i));
+            }
+        } catch (Exception e) {
+            logger.error("Group commit of {} events failed", group.size(), e);
+            for (PendingWrite pendingWrite : group) {
+                pendingWrite.future.completeExceptionally(e);
+            }
+        } finally {
+            flushLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            flushSize.record(group.size());
+        }
+    }
+
+    private static final class PendingWrite {
+        private final TelemetryData data;
+        private final CompletableFuture<TelemetryData> future = new CompletableFuture<>();
+
+        private PendingWrite(TelemetryData data) {
+            this.data = data;
+        }
+    }
+}
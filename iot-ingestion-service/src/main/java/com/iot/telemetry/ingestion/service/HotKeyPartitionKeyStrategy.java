@@ -0,0 +1,140 @@
+package com.iot.telemetry.ingestion.service;
+
+import com.iot.telemetry.common.partition.PartitionKeys;
+import com.iot.telemetry.common.sketch.CountMinSketch;
+import com.iot.telemetry.common.sketch.HyperLogLog;
+import com.iot.telemetry.ingestion.models.TelemetryData;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keys by user id, except for users whose share of recent traffic exceeds {@code threshold}:
+ * their sessions are spread over {@code sub-partitions} keys of the form {@code userId#n},
+ * with n derived from the session id. A Count-Min sketch, halved every
+ * {@code decay-interval-ms}, measures the share. The key chosen for a session's first event is
+ * kept until the session has been idle for {@code session-idle-ms}. A user turning hot or cold
+ * therefore never moves a running session to another partition. Once {@code max-sessions}
+ * sessions are pinned, new sessions are keyed by the plain user id, which does not depend on
+ * hotness, rather than by a split key nothing would remember. Such a session is pinned when the
+ * next sweep makes room, and only moves then if its user has become hot in the meantime.
+ */
+@Component
+@ConditionalOnProperty(name = "kafka.partitioning.strategy", havingValue = "hot-key")
+public class HotKeyPartitionKeyStrategy implements PartitionKeyStrategy {
+
+    private static final Logger logger = LoggerFactory.getLogger(HotKeyPartitionKeyStrategy.class);
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${kafka.partitioning.hot-key.sub-partitions:8}")
+    private int subPartitions;
+
+    @Value("${kafka.partitioning.hot-key.threshold:0.05}")
+    private double threshold;
+
+    @Value("${kafka.partitioning.hot-key.min-events:1000}")
+    private long minEvents;
+
+    @Value("${kafka.partitioning.hot-key.session-idle-ms:1800000}")
+    private long sessionIdleMs;
+
+    @Value("${kafka.partitioning.hot-key.max-sessions:100000}")
+    private int maxSessions;
+
+    private final CountMinSketch sketch = new CountMinSketch(4, 2048);
+    private final Map<String, SessionKey> sessionKeys = new ConcurrentHashMap<>();
+    private final Set<String> hotUsers = ConcurrentHashMap.newKeySet();
+
+    private Counter splitRecords;
+    private Counter unpinnedRecords;
+
+    @PostConstruct
+    public void init() {
+        splitRecords = Counter.builder("ingestion.partitioning.split.records")
+            .description("Events published under a split hot-user key")
+            .register(meterRegistry);
+        unpinnedRecords = Counter.builder("ingestion.partitioning.unpinned.records")
+            .description("Events keyed by user id because the sticky-session table was full")
+            .register(meterRegistry);
+        Gauge.builder("ingestion.partitioning.hot.users", hotUsers, Set::size)
+            .description("Users currently treated as hot keys")
+            .register(meterRegistry);
+        Gauge.builder("ingestion.partitioning.sticky.sessions", sessionKeys, Map::size)
+            .description("Sessions with a pinned partition key")
+            .register(meterRegistry);
+        logger.info("Hot-key partitioning enabled: threshold {}, {} sub-partitions", threshold, subPartitions);
+    }
+
+    @Override
+    public String partitionKey(TelemetryData data) {
+        String userId = data.getUserId();
+        long estimate = sketch.add(userId);
+        long now = System.currentTimeMillis();
+
+        SessionKey pinned = sessionKeys.get(data.getSessionId());
+        if (pinned != null) {
+            pinned.lastSeenMillis = now;
+            return countSplit(pinned.key);
+        }
+
+        if (sessionKeys.size() >= maxSessions) {
+            // Without a pin, only a key that ignores hotness keeps the session on one partition
+            unpinnedRecords.increment();
+            return PartitionKeys.of(userId);
+        }
+
+        String key = PartitionKeys.of(userId);
+        long total = sketch.getTotal();
+        if (total >= minEvents && estimate >= threshold * total) {
+            hotUsers.add(userId);
+            int subPartition = (int) Math.floorMod(HyperLogLog.hash64(data.getSessionId()), (long) subPartitions);
+            key = PartitionKeys.split(userId, subPartition);
+        }
+        SessionKey existing = sessionKeys.putIfAbsent(data.getSessionId(), new SessionKey(key, now));
+        if (existing != null) {
+            key = existing.key; // Lost a race with another event of the same session
+        }
+        return countSplit(key);
+    }
+
+    @Scheduled(fixedDelayString = "${kafka.partitioning.hot-key.decay-interval-ms:60000}")
+    public void decay() {
+        sketch.decay();
+        long total = sketch.getTotal();
+        hotUsers.removeIf(userId -> total < minEvents || sketch.estimate(userId) < threshold * total);
+
+        long idleBefore = System.currentTimeMillis() - sessionIdleMs;
+        sessionKeys.values().removeIf(sessionKey -> sessionKey.lastSeenMillis < idleBefore);
+    }
+
+    private String countSplit(String key) {
+        if (PartitionKeys.isSplit(key)) {
+            splitRecords.increment();
+        }
+        return key;
+    }
+
+    private static final class SessionKey {
+        private final String key;
+        private volatile long lastSeenMillis;
+
+        private SessionKey(String key, long lastSeenMillis) {
+            this.key = key;
+            this.lastSeenMillis = lastSeenMillis;
+        }
+    }
+}
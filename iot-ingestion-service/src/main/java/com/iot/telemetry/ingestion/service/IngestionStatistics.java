@@ -0,0 +1,198 @@
+package com.iot.telemetry.ingestion.service;
+
+import com.iot.telemetry.common.sketch.HyperLogLog;
+import com.iot.telemetry.ingestion.models.TelemetryData;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Ingestion statistics maintained on the write path so that {@code /stats} never has to
+ * scan {@code telemetry_data}. Record counts are exact; distinct users and sessions are
+ * HyperLogLog estimates. Features are counted exactly until {@code max-exact-features}
+ * distinct names have been seen, then the estimate takes over.
+ * A ring of ingestion-time buckets keeps the same figures for the recent past.
+ */
+@Component
+public class IngestionStatistics {
+
+    @Value("${ingestion.stats.precision:14}")
+    private int precision;
+
+    @Value("${ingestion.stats.bucket-precision:11}")
+    private int bucketPrecision;
+
+    @Value("${ingestion.stats.bucket-seconds:60}")
+    private long bucketSeconds;
+
+    @Value("${ingestion.stats.bucket-count:60}")
+    private int bucketCount;
+
+    @Value("${ingestion.stats.max-exact-features:1024}")
+    private int maxExactFeatures;
+
+    private final LongAdder totalRecords = new LongAdder();
+    private final Set<String> features = ConcurrentHashMap.newKeySet();
+    private HyperLogLog users;
+    private HyperLogLog sessions;
+    private HyperLogLog featureSketch;
+    private Bucket[] buckets;
+
+    @PostConstruct
+    public void init() {
+        users = new HyperLogLog(precision);
+        sessions = new HyperLogLog(precision);
+        featureSketch = new HyperLogLog(precision);
+        buckets = new Bucket[bucketCount];
+        for (int i = 0; i < bucketCount; i++) {
+            buckets[i] = new Bucket(bucketPrecision);
+        }
+    }
+
+    public void record(TelemetryData data) {
+        record(data.getUserId(), data.getSessionId(), data.getFeature(), data.getCreatedAt());
+    }
+
+    /** Same as {@link #record(TelemetryData)}, for callers that hold the fields without an entity. */
+    public void record(String userId, String sessionId, String feature, LocalDateTime createdAt) {
+        totalRecords.increment();
+        long userHash = HyperLogLog.hash64(userId);
+        long sessionHash = HyperLogLog.hash64(sessionId);
+        users.offerHash(userHash);
+        sessions.offerHash(sessionHash);
+        featureSketch.offer(feature);
+        if (features.size() < maxExactFeatures) {
+            features.add(feature);
+        }
+
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now();
+        }
+        long bucketStart = bucketStart(createdAt.toEpochSecond(ZoneOffset.UTC));
+        bucketFor(bucketStart).record(bucketStart, userHash, sessionHash);
+    }
+
+    public void recordAll(List<TelemetryData> batch) {
+        for (TelemetryData data : batch) {
+            record(data);
+        }
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("totalRecords", totalRecords.sum());
+        stats.put("uniqueUsers", users.cardinality());
+        stats.put("uniqueSessions", sessions.cardinality());
+        stats.put("uniqueFeatures", features.size() < maxExactFeatures ? features.size() : featureSketch.cardinality());
+        stats.put("distinctCountsEstimated", true);
+        return stats;
+    }
+
+    /**
+     * Per-bucket breakdown for the most recent {@code count} buckets, newest first, plus the
+     * distinct users and sessions across all of them (from merged bucket sketches).
+     */
+    public Map<String, Object> getBucketStatistics(int count) {
+        long currentStart = bucketStart(LocalDateTime.now().toEpochSecond(ZoneOffset.UTC));
+        int limit = Math.min(Math.max(count, 1), bucketCount);
+
+        List<Map<String, Object>> breakdown = new ArrayList<>(limit);
+        HyperLogLog windowUsers = new HyperLogLog(bucketPrecision);
+        HyperLogLog windowSessions = new HyperLogLog(bucketPrecision);
+        long windowRecords = 0;
+        for (int i = 0; i < limit; i++) {
+            long start = currentStart - i * bucketSeconds;
+            Bucket bucket = bucketFor(start);
+            Map<String, Object> entry = new HashMap<>();
+            entry.put("start", toDateTime(start));
+            entry.put("end", toDateTime(start + bucketSeconds));
+            if (bucket.start == start) {
+                long records = bucket.records.sum();
+                entry.put("records", records);
+                entry.put("uniqueUsers", bucket.users.cardinality());
+                entry.put("uniqueSessions", bucket.sessions.cardinality());
+                windowRecords += records;
+                windowUsers.merge(bucket.users);
+                windowSessions.merge(bucket.sessions);
+            } else {
+                entry.put("records", 0L);
+                entry.put("uniqueUsers", 0L);
+                entry.put("uniqueSessions", 0L);
+            }
+            breakdown.add(entry);
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("bucketSeconds", bucketSeconds);
+        result.put("buckets", breakdown);
+        result.put("windowRecords", windowRecords);
+        result.put("windowUniqueUsers", windowUsers.cardinality());
+        result.put("windowUniqueSessions", windowSessions.cardinality());
+        return result;
+    }
+
+    private long bucketStart(long epochSecond) {
+        return epochSecond - Math.floorMod(epochSecond, bucketSeconds);
+    }
+
+    private Bucket bucketFor(long bucketStart) {
+        return buckets[(int) Math.floorMod(bucketStart / bucketSeconds, (long) bucketCount)];
+    }
+
+    private LocalDateTime toDateTime(long epochSecond) {
+        return LocalDateTime.ofInstant(Instant.ofEpochSecond(epochSecond), ZoneOffset.UTC);
+    }
+
+    private static final class Bucket {
+        private final ReentrantLock rotationLock = new ReentrantLock();
+        private final LongAdder records = new LongAdder();
+        private final HyperLogLog users;
+        private final HyperLogLog sessions;
+        private volatile long start = Long.MIN_VALUE;
+
+        private Bucket(int precision) {
+            this.users = new HyperLogLog(precision);
+            this.sessions = new HyperLogLog(precision);
+        }
+
+        private void record(long bucketStart, long userHash, long sessionHash) {
+            long current = start;
+            if (current != bucketStart) {
+                if (bucketStart < current) {
+                    return; // Older than the period now occupying this slot
+                }
+                rotate(bucketStart);
+            }
+            records.increment();
+            users.offerHash(userHash);
+            sessions.offerHash(sessionHash);
+        }
+
+        // The slot is reused once the ring wraps around; only the first writer of the new period resets it
+        private void rotate(long bucketStart) {
+            rotationLock.lock();
+            try {
+                if (start < bucketStart) {
+                    records.reset();
+                    users.clear();
+                    sessions.clear();
+                    start = bucketStart;
+                }
+            } finally {
+                rotationLock.unlock();
+            }
+        }
+    }
+}
@@ -1,7 +1,14 @@
 package com.iot.telemetry.ingestion.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iot.telemetry.common.codec.TelemetryRecord;
 import com.iot.telemetry.ingestion.models.TelemetryData;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -10,9 +17,12 @@ import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class KafkaProducerService {
@@ -25,22 +35,36 @@ public class KafkaProducerService {
     @Autowired
     private ObjectMapper objectMapper;
     
+    @Autowired
+    private KafkaTemplate<String, TelemetryRecord> telemetryRecordKafkaTemplate;
+    
+    @Autowired
+    private PartitionKeyStrategy partitionKeyStrategy;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
     @Value("${kafka.topic.telemetry:telemetry-data}")
     private String telemetryTopic;
     
+    @Value("${kafka.topic.telemetry-format:json}")
+    private String telemetryFormat;
+    
+    private boolean binaryFormat;
+    
+    // Acknowledged records per partition, to see how evenly the keys spread
+    private final Map<Integer, Counter> partitionCounters = new ConcurrentHashMap<>();
+    
+    @PostConstruct
+    public void init() {
+        binaryFormat = "binary".equalsIgnoreCase(telemetryFormat);
+        logger.info("Publishing telemetry to topic {} in {} format", telemetryTopic, binaryFormat ? "binary" : "json");
+    }
+    
     public void sendTelemetryData(TelemetryData data) {
         try {
-            Map<String, Object> kafkaMessage = createKafkaMessage(data);
-            String messageJson = objectMapper.writeValueAsString(kafkaMessage);
-            
-            String partitionKey = data.getUserId();
-            
             // Send to Kafka
-            CompletableFuture<SendResult<String, String>> future = kafkaTemplate.send(
-                telemetryTopic, 
-                partitionKey, 
-                messageJson
-            );
+            CompletableFuture<? extends SendResult<String, ?>> future = send(data);
             
             future.whenComplete((result, ex) -> {
                 if (ex == null) {
@@ -56,6 +80,80 @@ public class KafkaProducerService {
         }
     }
     
+    /**
+     * Sends every event without waiting in between, then flushes once so the whole
+     * batch leaves the producer together instead of trickling out per linger.ms.
+     */
+    public void sendTelemetryBatch(List<TelemetryData> batch) {
+        List<CompletableFuture<? extends SendResult<String, ?>>> futures = new ArrayList<>(batch.size());
+        for (TelemetryData data : batch) {
+            try {
+                futures.add(send(data));
+            } catch (Exception e) {
+                logger.error("Error sending telemetry data {} to Kafka", data.getId(), e);
+            }
+        }
+        if (binaryFormat) {
+            telemetryRecordKafkaTemplate.flush();
+        } else {
+            kafkaTemplate.flush();
+        }
+        
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).whenComplete((ignored, ex) -> {
+            if (ex == null) {
+                logger.info("Successfully sent telemetry batch of {} events to Kafka. Topic: {}", futures.size(), telemetryTopic);
+            } else {
+                logger.error("Failed to send part of telemetry batch to Kafka", ex);
+            }
+        });
+    }
+    
+    /** Client metrics of the producer behind the configured wire format (buffer usage, queue time, ...). */
+    public Map<MetricName, ? extends Metric> getProducerMetrics() {
+        return binaryFormat ? telemetryRecordKafkaTemplate.metrics() : kafkaTemplate.metrics();
+    }
+    
+    private CompletableFuture<? extends SendResult<String, ?>> send(TelemetryData data) throws JsonProcessingException {
+        String partitionKey = partitionKeyStrategy.partitionKey(data);
+        CompletableFuture<? extends SendResult<String, ?>> future;
+        if (binaryFormat) {
+            future = telemetryRecordKafkaTemplate.send(telemetryTopic, partitionKey, createTelemetryRecord(data));
+        } else {
+            String messageJson = objectMapper.writeValueAsString(createKafkaMessage(data));
+            future = kafkaTemplate.send(telemetryTopic, partitionKey, messageJson);
+        }
+        future.thenAccept(result -> countPartition(result.getRecordMetadata().partition()));
+        return future;
+    }
+    
+    private void countPartition(int partition) {
+        partitionCounters.computeIfAbsent(partition, p -> Counter.builder("ingestion.kafka.partition.records")
+            .description("Telemetry records acknowledged per partition")
+            .tag("topic", telemetryTopic)
+            .tag("partition", String.valueOf(p))
+            .register(meterRegistry)).increment();
+    }
+    
+    @SuppressWarnings("unchecked")
+    private TelemetryRecord createTelemetryRecord(TelemetryData data) throws JsonProcessingException {
+        TelemetryRecord record = new TelemetryRecord();
+        record.setId(data.getId() != null ? data.getId() : TelemetryRecord.NO_ID);
+        record.setUserId(data.getUserId());
+        record.setSessionId(data.getSessionId());
+        record.setFeature(data.getFeature());
+        record.setAction(data.getAction());
+        record.setTimestamp(data.getTimestamp());
+        record.setCreatedAt(data.getCreatedAt());
+        
+        // Freshly ingested events still carry the metrics map; stored ones only have the JSON column
+        Map<String, Object> metrics = data.getMetrics();
+        if (metrics == null && data.getMetricsJson() != null) {
+            metrics = objectMapper.readValue(data.getMetricsJson(), Map.class);
+        }
+        record.setMetrics(metrics);
+        return record;
+    }
+    
     private Map<String, Object> createKafkaMessage(TelemetryData data) {
         Map<String, Object> message = new HashMap<>();
         message.put("id", data.getId());
@@ -0,0 +1,13 @@
+package com.iot.telemetry.ingestion.service;
+
+import com.iot.telemetry.ingestion.models.TelemetryData;
+
+/**
+ * Chooses the Kafka record key, and with it the partition, of a telemetry event.
+ * Implementations must give every event of one session the same key so that the
+ * session stays in order on a single partition.
+ */
+public interface PartitionKeyStrategy {
+
+    String partitionKey(TelemetryData data);
+}
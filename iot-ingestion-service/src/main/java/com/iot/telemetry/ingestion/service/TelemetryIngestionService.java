@@ -1,81 +1,210 @@
 package com.iot.telemetry.ingestion.service;
 
 import com.iot.telemetry.ingestion.models.TelemetryData;
-import com.iot.telemetry.ingestion.repository.TelemetryRepository;
+import com.iot.telemetry.ingestion.repository.TelemetryStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
 
+// Transactions, where the backend has them, are handled by the TelemetryStore implementation
 @Service
-@Transactional
 public class TelemetryIngestionService {
     
     private static final Logger logger = LoggerFactory.getLogger(TelemetryIngestionService.class);
     
     @Autowired
-    private TelemetryRepository telemetryRepository;
+    private TelemetryStore telemetryStore;
 
     @Autowired
     private KafkaProducerService kafkaProducerService;
     
+    @Autowired
+    private IngestionStatistics ingestionStatistics;
+    
+    @Autowired(required = false)
+    private EventDeduplicator eventDeduplicator;
+    
     public TelemetryData ingestTelemetryData(String userId, String sessionId, String feature, 
                                            String action, LocalDateTime timestamp, Map<String, Object> metrics) {
+        return ingestTelemetryData(createTelemetryData(userId, sessionId, feature, action, timestamp, metrics));
+    }
+    
+    /**
+     * Saves the event, then records and publishes it. Only a failed save throws: once the row
+     * is committed, a failure to record or publish it is logged, so that callers never retry
+     * (and store twice) an event that is already in the database.
+     */
+    public TelemetryData ingestTelemetryData(TelemetryData telemetryData) {
+        logger.info("Ingesting telemetry data for user: {}, session: {}, feature: {}, action: {}", 
+                telemetryData.getUserId(), telemetryData.getSessionId(), telemetryData.getFeature(), telemetryData.getAction());
         
-        try {                                    
-            logger.info("Ingesting telemetry data for user: {}, session: {}, feature: {}, action: {}", 
-                    userId, sessionId, feature, action);
-            
-            // Create new telemetry data entity
-            TelemetryData telemetryData = new TelemetryData(userId, sessionId, feature, action, timestamp);
-            
-            // Convert metrics map to JSON string (simple implementation)
-            if (metrics != null && !metrics.isEmpty()) {
-                telemetryData.setMetricsJson(convertMetricsToJson(metrics));
-            }
-            
-            // Save to database
-            TelemetryData savedData = telemetryRepository.save(telemetryData);
-            logger.info("Telemetry data saved to database with ID: {}", savedData.getId());
-            
-            // send data to Kafka for stream processing
-            kafkaProducerService.sendTelemetryData(savedData);
-            logger.info("Telemetry data sent to Kafka for stream processing");
-            
-            return savedData;
+        // Save to database
+        TelemetryData savedData;
+        try {
+            savedData = telemetryStore.save(telemetryData);
         } catch (Exception e) {
             logger.error("Error ingesting telemetry data", e);
             throw new RuntimeException("Failed to ingest telemetry data", e);
         }
+        logger.info("Telemetry data saved to database with ID: {}", savedData.getId());
+        
+        try {
+            ingestionStatistics.record(savedData);
+        } catch (Exception e) {
+            logger.error("Error recording statistics for telemetry data {}", savedData.getId(), e);
+        }
+        
+        // send data to Kafka for stream processing
+        try {
+            kafkaProducerService.sendTelemetryData(savedData);
+            logger.info("Telemetry data sent to Kafka for stream processing");
+        } catch (Exception e) {
+            logger.error("Telemetry data {} was saved but not sent to Kafka", savedData.getId(), e);
+        }
+        
+        return savedData;
+    }
+    
+    /**
+     * Persists a batch of events in one transaction (JDBC-batched inserts) and publishes
+     * them to Kafka as a single producer batch. As with a single event, only a failed save
+     * throws, and then nothing of the batch was stored.
+     */
+    public List<TelemetryData> ingestTelemetryBatch(List<TelemetryData> batch) {
+        logger.info("Ingesting telemetry batch of {} events", batch.size());
+        
+        List<TelemetryData> savedData;
+        try {
+            savedData = telemetryStore.saveAll(batch);
+        } catch (Exception e) {
+            logger.error("Error ingesting telemetry batch", e);
+            throw new RuntimeException("Failed to ingest telemetry batch", e);
+        }
+        logger.info("Telemetry batch of {} events saved to database", savedData.size());
+        
+        try {
+            ingestionStatistics.recordAll(savedData);
+        } catch (Exception e) {
+            logger.error("Error recording statistics for telemetry batch of {} events", savedData.size(), e);
+        }
+        
+        try {
+            kafkaProducerService.sendTelemetryBatch(savedData);
+        } catch (Exception e) {
+            logger.error("Telemetry batch of {} events was saved but not sent to Kafka", savedData.size(), e);
+        }
+        
+        return savedData;
+    }
+    
+    public TelemetryData createTelemetryData(String userId, String sessionId, String feature, 
+                                           String action, LocalDateTime timestamp, Map<String, Object> metrics) {
+        TelemetryData telemetryData = new TelemetryData(userId, sessionId, feature, action, timestamp);
+        
+        // Convert metrics map to JSON string (simple implementation)
+        if (metrics != null && !metrics.isEmpty()) {
+            telemetryData.setMetricsJson(convertMetricsToJson(metrics));
+            telemetryData.setMetrics(metrics);
+        }
+        return telemetryData;
     }
     
     public List<TelemetryData> getTelemetryByUserId(String userId) {
-        return telemetryRepository.findByUserId(userId);
+        return telemetryStore.findByUserId(userId);
     }
     
     public List<TelemetryData> getTelemetryBySessionId(String sessionId) {
-        return telemetryRepository.findBySessionId(sessionId);
+        return telemetryStore.findBySessionId(sessionId);
     }
     
     public List<TelemetryData> getTelemetryByFeature(String feature) {
-        return telemetryRepository.findByFeature(feature);
+        return telemetryStore.findByFeature(feature);
+    }
+    
+    // Keyset-paginated queries: the cursor is the (timestamp, id) of the last row of the previous page
+    public Map<String, Object> getTelemetryPageByUserId(String userId, String cursor, int limit) {
+        return getTelemetryPage(cursor, limit, (after, pageSize) -> telemetryStore.findPageByUserId(userId, after, pageSize));
+    }
+    
+    public Map<String, Object> getTelemetryPageBySessionId(String sessionId, String cursor, int limit) {
+        return getTelemetryPage(cursor, limit, (after, pageSize) -> telemetryStore.findPageBySessionId(sessionId, after, pageSize));
+    }
+    
+    public Map<String, Object> getTelemetryPageByFeature(String feature, String cursor, int limit) {
+        return getTelemetryPage(cursor, limit, (after, pageSize) -> telemetryStore.findPageByFeature(feature, after, pageSize));
+    }
+    
+    // Streaming queries: rows are handed to the sink one at a time
+    public long streamTelemetryByUserId(String userId, Consumer<TelemetryData> sink) {
+        return telemetryStore.streamByUserId(userId, sink);
+    }
+    
+    public long streamTelemetryBySessionId(String sessionId, Consumer<TelemetryData> sink) {
+        return telemetryStore.streamBySessionId(sessionId, sink);
+    }
+    
+    public long streamTelemetryByFeature(String feature, Consumer<TelemetryData> sink) {
+        return telemetryStore.streamByFeature(feature, sink);
     }
     
     public List<TelemetryData> getTelemetryByTimeRange(LocalDateTime startTime, LocalDateTime endTime) {
-        return telemetryRepository.findByTimestampBetween(startTime, endTime);
+        return telemetryStore.findByTimestampBetween(startTime, endTime);
     }
     
     public Long getTelemetryCountByTimeRange(LocalDateTime startTime, LocalDateTime endTime) {
-        return telemetryRepository.countByTimestampBetween(startTime, endTime);
+        return telemetryStore.countByTimestampBetween(startTime, endTime);
+    }
+    
+    public Map<String, Object> getTelemetryStats(int buckets) {
+        Map<String, Object> stats = ingestionStatistics.getStatistics();
+        if (buckets > 0) {
+            stats.put("timeBuckets", ingestionStatistics.getBucketStatistics(buckets));
+        }
+        if (eventDeduplicator != null) {
+            stats.put("deduplication", eventDeduplicator.getStatistics());
+        }
+        stats.put("storage", telemetryStore.getStatistics());
+        return stats;
+    }
+    
+    private Map<String, Object> getTelemetryPage(String cursor, int limit,
+                                                 BiFunction<TelemetryData, Integer, List<TelemetryData>> page) {
+        TelemetryData after = cursor == null || cursor.isBlank() ? null : decodeCursor(cursor);
+        List<TelemetryData> items = page.apply(after, limit);
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("items", items);
+        result.put("limit", limit);
+        result.put("nextCursor", items.size() < limit ? null : encodeCursor(items.get(items.size() - 1)));
+        return result;
     }
     
-    public List<TelemetryData> getAllTelemetry() {
-        return telemetryRepository.findAll();
+    private String encodeCursor(TelemetryData last) {
+        String raw = last.getTimestamp() + "|" + last.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private TelemetryData decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf('|');
+            TelemetryData after = new TelemetryData();
+            after.setTimestamp(LocalDateTime.parse(raw.substring(0, separator)));
+            after.setId(Long.parseLong(raw.substring(separator + 1)));
+            return after;
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
     }
     
     private String convertMetricsToJson(Map<String, Object> metrics) {
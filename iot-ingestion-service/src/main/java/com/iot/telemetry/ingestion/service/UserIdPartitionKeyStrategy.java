@@ -0,0 +1,17 @@
+package com.iot.telemetry.ingestion.service;
+
+import com.iot.telemetry.common.partition.PartitionKeys;
+import com.iot.telemetry.ingestion.models.TelemetryData;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+// Default: one key per user, so all of a user's events share a partition
+@Component
+@ConditionalOnProperty(name = "kafka.partitioning.strategy", havingValue = "user", matchIfMissing = true)
+public class UserIdPartitionKeyStrategy implements PartitionKeyStrategy {
+
+    @Override
+    public String partitionKey(TelemetryData data) {
+        return PartitionKeys.of(data.getUserId());
+    }
+}
@@ -0,0 +1,90 @@
+package com.iot.telemetry.processor.config;
+
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.TopicBuilder;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Producer for the processed-telemetry and window-aggregates topics, used when
+// processor.timeseries.transport=kafka
+@Configuration
+@ConditionalOnProperty(name = "processor.timeseries.transport", havingValue = "kafka")
+public class KafkaProducerConfig {
+
+    @Value("${kafka.bootstrap-servers:localhost:9092}")
+    private String bootstrapServers;
+
+    @Value("${kafka.topic.processed-telemetry:processed-telemetry}")
+    private String processedTelemetryTopic;
+
+    // Upper bound on time-series service consumers sharing the topic
+    @Value("${kafka.topic.processed-telemetry-partitions:6}")
+    private int processedTelemetryPartitions;
+
+    @Value("${kafka.topic.window-aggregates:window-aggregates}")
+    private String windowAggregatesTopic;
+
+    // How long the producer waits to fill a batch
+    @Value("${kafka.producer.linger-ms:20}")
+    private int lingerMs;
+
+    @Value("${kafka.producer.batch-size:65536}")
+    private int batchSize;
+
+    @Value("${kafka.producer.compression-type:lz4}")
+    private String compressionType;
+
+    @Bean
+    public ProducerFactory<String, String> producerFactory() {
+        Map<String, Object> configProps = new HashMap<>();
+        configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        configProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        configProps.put(ProducerConfig.ACKS_CONFIG, "all");
+        configProps.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        configProps.put(ProducerConfig.LINGER_MS_CONFIG, lingerMs);
+        configProps.put(ProducerConfig.BATCH_SIZE_CONFIG, batchSize);
+        configProps.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compressionType);
+
+        return new DefaultKafkaProducerFactory<>(configProps);
+    }
+
+    @Bean
+    public KafkaTemplate<String, String> kafkaTemplate() {
+        return new KafkaTemplate<>(producerFactory());
+    }
+
+    // Boot's admin reads spring.kafka.*; this one uses the same brokers as everything else here
+    @Bean
+    public KafkaAdmin kafkaAdmin() {
+        return new KafkaAdmin(Map.of(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers));
+    }
+
+    // Created on startup if missing; an existing topic is left as it is
+    @Bean
+    public NewTopic processedTelemetryTopic() {
+        return TopicBuilder.name(processedTelemetryTopic)
+            .partitions(processedTelemetryPartitions)
+            .build();
+    }
+
+    // A few records per flush; one partition keeps every window's revisions in order
+    @Bean
+    public NewTopic windowAggregatesTopic() {
+        return TopicBuilder.name(windowAggregatesTopic)
+            .partitions(1)
+            .build();
+    }
+}
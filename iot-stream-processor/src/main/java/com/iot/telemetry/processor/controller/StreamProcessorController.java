@@ -1,10 +1,16 @@
 package com.iot.telemetry.processor.controller;
 
+import com.iot.telemetry.processor.models.AnomalyRule;
+import com.iot.telemetry.processor.service.AnomalyRuleEngine;
+import com.iot.telemetry.processor.service.FeatureSketchService;
 import com.iot.telemetry.processor.service.TelemetryConsumerService;
+import com.iot.telemetry.processor.service.WindowingService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Instant;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -14,6 +20,15 @@ public class StreamProcessorController {
     @Autowired
     private TelemetryConsumerService consumerService;
     
+    @Autowired
+    private WindowingService windowingService;
+    
+    @Autowired
+    private FeatureSketchService featureSketchService;
+    
+    @Autowired
+    private AnomalyRuleEngine anomalyRuleEngine;
+    
     @GetMapping("/health")
     public ResponseEntity<String> health() {
         return ResponseEntity.ok("Stream Processor is running!");
@@ -24,14 +39,23 @@ public class StreamProcessorController {
         return ResponseEntity.ok(consumerService.getStatistics());
     }
     
+    // Retained samples of the user's sessions, optionally limited to [from, to) as ISO-8601 instants
     @GetMapping("/engagement/{userId}")
-    public ResponseEntity<Map<String, Object>> getEngagementMetrics(@PathVariable String userId) {
-        return ResponseEntity.ok(consumerService.getEngagementMetrics(userId));
+    public ResponseEntity<Map<String, Object>> getEngagementMetrics(@PathVariable String userId,
+                                                                    @RequestParam(required = false) Instant from,
+                                                                    @RequestParam(required = false) Instant to,
+                                                                    @RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok(consumerService.getEngagementMetrics(userId, millis(from, Long.MIN_VALUE),
+                                                                      millis(to, Long.MAX_VALUE), Math.max(1, limit)));
     }
     
     @GetMapping("/anomalies/{userId}")
-    public ResponseEntity<Map<String, Object>> getAnomalyEvents(@PathVariable String userId) {
-        return ResponseEntity.ok(consumerService.getAnomalyEvents(userId));
+    public ResponseEntity<Map<String, Object>> getAnomalyEvents(@PathVariable String userId,
+                                                                @RequestParam(required = false) Instant from,
+                                                                @RequestParam(required = false) Instant to,
+                                                                @RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok(consumerService.getAnomalyEvents(userId, millis(from, Long.MIN_VALUE),
+                                                                  millis(to, Long.MAX_VALUE), Math.max(1, limit)));
     }
     
     @GetMapping("/features/engagement")
@@ -43,6 +67,51 @@ public class StreamProcessorController {
         ));
     }
 
+    // p50/p95/p99 of engagement score, response time and page load time per feature
+    @GetMapping("/features/percentiles")
+    public ResponseEntity<Map<String, Object>> getFeaturePercentiles() {
+        return ResponseEntity.ok(featureSketchService.getPercentiles());
+    }
+
+    // Serialized sketches, for merging the percentiles of several processor instances
+    @GetMapping("/features/sketches")
+    public ResponseEntity<Map<String, Map<String, String>>> getFeatureSketches() {
+        return ResponseEntity.ok(featureSketchService.exportSketches());
+    }
+
+    // Percentiles across this instance and the /features/sketches exports of others
+    @PostMapping("/features/percentiles/merged")
+    public ResponseEntity<Map<String, Object>> getMergedFeaturePercentiles(
+            @RequestBody List<Map<String, Map<String, String>>> exports) {
+        try {
+            return ResponseEntity.ok(featureSketchService.getMergedPercentiles(exports));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", String.valueOf(e.getMessage())));
+        }
+    }
+
+    // Configured windows with their watermarks, and the most recently emitted results
+    @GetMapping("/windows")
+    public ResponseEntity<Map<String, Object>> getWindows() {
+        return ResponseEntity.ok(windowingService.getStatistics());
+    }
+
+    // Current anomaly rules and their version
+    @GetMapping("/anomaly-rules")
+    public ResponseEntity<Map<String, Object>> getAnomalyRules() {
+        return ResponseEntity.ok(anomalyRuleEngine.getRules());
+    }
+
+    // Replaces the anomaly rules; an invalid rule set is rejected and the current rules are kept
+    @PutMapping("/anomaly-rules")
+    public ResponseEntity<Map<String, Object>> replaceAnomalyRules(@RequestBody List<AnomalyRule> rules) {
+        try {
+            return ResponseEntity.ok(anomalyRuleEngine.replaceRules(rules));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", String.valueOf(e.getMessage())));
+        }
+    }
+
     @PostMapping("/test-anomaly")
     public ResponseEntity<Map<String, Object>> testAnomaly() {
         // Simulate high response time data to trigger anomaly
@@ -66,4 +135,8 @@ public class StreamProcessorController {
             "checkStats", "Use /stats endpoint to see anomaly count"
         ));
     }
-}
\ No newline at end of file
+
+    private static long millis(Instant instant, long defaultValue) {
+        return instant != null ? instant.toEpochMilli() : defaultValue;
+    }
+}
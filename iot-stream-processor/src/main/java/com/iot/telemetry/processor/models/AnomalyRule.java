@@ -0,0 +1,56 @@
+package com.iot.telemetry.processor.models;
+
+import java.util.List;
+
+public class AnomalyRule {
+    private String id;
+    private String metric;
+    private String comparator;
+    private double threshold;
+    private String anomalyType;
+    private String severity;
+    private String description;
+    private List<String> features;
+    private boolean enabled = true;
+
+    public AnomalyRule() {}
+
+    public AnomalyRule(String id, String metric, String comparator, double threshold,
+                       String anomalyType, String severity, String description) {
+        this.id = id;
+        this.metric = metric;
+        this.comparator = comparator;
+        this.threshold = threshold;
+        this.anomalyType = anomalyType;
+        this.severity = severity;
+        this.description = description;
+    }
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public String getMetric() { return metric; }
+    public void setMetric(String metric) { this.metric = metric; }
+
+    public String getComparator() { return comparator; }
+    public void setComparator(String comparator) { this.comparator = comparator; }
+
+    public double getThreshold() { return threshold; }
+    public void setThreshold(double threshold) { this.threshold = threshold; }
+
+    public String getAnomalyType() { return anomalyType; }
+    public void setAnomalyType(String anomalyType) { this.anomalyType = anomalyType; }
+
+    public String getSeverity() { return severity; }
+    public void setSeverity(String severity) { this.severity = severity; }
+
+    public String getDescription() { return description; }
+    public void setDescription(String description) { this.description = description; }
+
+    // Features the rule applies to; null or empty means every feature
+    public List<String> getFeatures() { return features; }
+    public void setFeatures(List<String> features) { this.features = features; }
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+}
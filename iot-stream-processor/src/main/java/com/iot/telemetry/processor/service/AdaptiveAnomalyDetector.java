@@ -0,0 +1,470 @@
+package com.iot.telemetry.processor.service;
+
+import com.iot.telemetry.common.sketch.HyperLogLog;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Flags metric values that are far from their own user×feature baseline. Each baseline is an
+ * exponentially weighted mean and variance per metric; a value is anomalous when its z-score
+ * in the metric's bad direction reaches {@code z-threshold}. Error and click counts arrive as
+ * running totals, so the detector scores their increase since the previous event of the same
+ * user and feature. The first event of a baseline only records the totals, and a decrease is
+ * taken as a reset; both score as no increase.
+ *
+ * <p>A baseline is a plain average until it has {@code warm-up-events} events, then an EWMA
+ * with weight {@code alpha}. Until a user×feature baseline is warm, values are scored against
+ * the feature-wide baseline instead, and nothing is flagged while both are cold. Once a
+ * baseline is warm, values are clamped to within the threshold before they update it, so a
+ * burst of outliers does not drag the baseline along.
+ *
+ * <p>Baselines live in primitive open-addressing tables split into lock stripes, keyed by a
+ * 64-bit hash of user and feature. Evaluating an event is O(1) and allocates nothing, apart
+ * from the occasional table resize. A full stripe drops its least recently seen half.
+ *
+ * <p>An incremental checkpoint holds the baselines updated since the previous one, and per
+ * stripe the last-seen cutoff below which entries have been dropped since then.
+ */
+@Component
+public class AdaptiveAnomalyDetector implements CheckpointedState {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveAnomalyDetector.class);
+
+    public static final int RESPONSE_TIME = 0;
+    public static final int ERRORS = 1;
+    public static final int CLICKS = 2;
+    public static final int ENGAGEMENT = 3;
+    public static final int METRICS = 4;
+
+    public static final String[] METRIC_NAMES = {"responseTime", "errorIncrease", "clickIncrease", "engagementScore"};
+
+    // 1 flags values above the baseline, -1 values below it
+    private static final double[] DIRECTION = {1, 1, 1, -1};
+    // Floor for the standard deviation, so a metric that has been nearly constant does not flag on any change
+    private static final double[] MIN_STD_DEV = {50.0, 0.5, 1.0, 2.0};
+
+    private static final int STRIPE_BITS = 6;
+    private static final int INITIAL_CAPACITY = 64;
+    // Bytes per slot across the parallel arrays
+    private static final int SLOT_BYTES = 8 + 4 + 8 + 2 * METRICS * 8 + 2 * 8 + 1;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${processor.anomaly.adaptive.alpha:0.05}")
+    private double alpha;
+
+    @Value("${processor.anomaly.adaptive.z-threshold:3.5}")
+    private double zThreshold;
+
+    @Value("${processor.anomaly.adaptive.warm-up-events:20}")
+    private int warmUpEvents;
+
+    @Value("${processor.anomaly.adaptive.max-baselines:262144}")
+    private int maxBaselines;
+
+    private Stripe[] stripes;
+    private Stripe featureBaselines;
+    private final Counter[] flagged = new Counter[METRICS];
+    private Counter evictions;
+
+    @PostConstruct
+    public void init() {
+        int maxPerStripe = Integer.highestOneBit(Math.max(INITIAL_CAPACITY, maxBaselines >> STRIPE_BITS));
+        stripes = new Stripe[1 << STRIPE_BITS];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe(maxPerStripe, true);
+        }
+        featureBaselines = new Stripe(maxPerStripe, false);
+
+        Gauge.builder("processor.anomaly.baselines", this, AdaptiveAnomalyDetector::baselineCount)
+            .description("User×feature baselines held by the adaptive anomaly detector")
+            .register(meterRegistry);
+        for (int m = 0; m < METRICS; m++) {
+            flagged[m] = Counter.builder("processor.anomaly.flagged")
+                .description("Values flagged by the adaptive anomaly detector")
+                .tag("metric", METRIC_NAMES[m])
+                .register(meterRegistry);
+        }
+        evictions = Counter.builder("processor.anomaly.baseline.evictions")
+            .description("Baselines dropped because their stripe was full")
+            .register(meterRegistry);
+        logger.info("Adaptive anomaly detection with alpha {}, z-threshold {}, warm-up {} events, up to {} baselines",
+            alpha, zThreshold, warmUpEvents, maxPerStripe * stripes.length);
+    }
+
+    /**
+     * Scores one event against its baselines and folds it into them. Fills {@code result}
+     * and returns a bit mask of the flagged metrics ({@code 1 << RESPONSE_TIME} and so on).
+     */
+    public int evaluate(String userId, String feature, double responseTime, double errorCount, double clickCount,
+                        double engagementScore, Result result) {
+        long featureHash = HyperLogLog.hash64(feature) | 1L;
+        long key = mix(HyperLogLog.hash64(userId) ^ (featureHash * 0x9E3779B97F4A7C15L));
+        long now = System.currentTimeMillis();
+        double[] values = result.values;
+        values[RESPONSE_TIME] = responseTime;
+        values[ENGAGEMENT] = engagementScore;
+
+        boolean warm;
+        Stripe stripe = stripes[(int) (key >>> (64 - STRIPE_BITS))];
+        stripe.lock.lock();
+        try {
+            int slot = stripe.findOrInsert(key, now);
+            int raw = slot * 2;
+            // Increase of the running totals since the previous event
+            boolean first = stripe.counts[slot] == 0;
+            values[ERRORS] = first ? 0 : Math.max(0, errorCount - stripe.lastRaw[raw]);
+            values[CLICKS] = first ? 0 : Math.max(0, clickCount - stripe.lastRaw[raw + 1]);
+            stripe.lastRaw[raw] = errorCount;
+            stripe.lastRaw[raw + 1] = clickCount;
+            warm = stripe.counts[slot] >= warmUpEvents;
+            if (warm) {
+                score(stripe, slot, values, result);
+            }
+            stripe.update(slot, values);
+        } finally {
+            stripe.lock.unlock();
+        }
+
+        featureBaselines.lock.lock();
+        try {
+            int slot = featureBaselines.findOrInsert(featureHash, now);
+            if (!warm) {
+                if (featureBaselines.counts[slot] >= warmUpEvents) {
+                    score(featureBaselines, slot, values, result);
+                    result.baseline = Result.FEATURE;
+                } else {
+                    Arrays.fill(result.zScores, 0.0);
+                    Arrays.fill(result.thresholds, Double.NaN);
+                    result.baseline = Result.NONE;
+                }
+            } else {
+                result.baseline = Result.USER_FEATURE;
+            }
+            featureBaselines.update(slot, values);
+        } finally {
+            featureBaselines.lock.unlock();
+        }
+
+        int mask = 0;
+        for (int m = 0; m < METRICS; m++) {
+            if (result.zScores[m] >= zThreshold) {
+                mask |= 1 << m;
+                flagged[m].increment();
+            }
+        }
+        return mask;
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("baselines", (long) baselineCount());
+        stats.put("estimatedBytes", estimatedBytes());
+        stats.put("evictions", (long) evictions.count());
+        stats.put("alpha", alpha);
+        stats.put("zThreshold", zThreshold);
+        stats.put("warmUpEvents", warmUpEvents);
+        Map<String, Long> flaggedByMetric = new HashMap<>();
+        for (int m = 0; m < METRICS; m++) {
+            flaggedByMetric.put(METRIC_NAMES[m], (long) flagged[m].count());
+        }
+        stats.put("flagged", flaggedByMetric);
+        return stats;
+    }
+
+    @Override
+    public String checkpointName() { return "adaptive-baselines"; }
+
+    @Override
+    public void writeCheckpoint(DataOutput out, boolean full) throws IOException {
+        out.writeInt(stripes.length);
+        for (Stripe stripe : stripes) {
+            stripe.write(out, full);
+        }
+        featureBaselines.write(out, full);
+    }
+
+    @Override
+    public void readCheckpoint(DataInput in, boolean full) throws IOException {
+        if (in.readInt() != stripes.length) {
+            throw new IOException("Checkpoint has a different number of baseline stripes");
+        }
+        for (Stripe stripe : stripes) {
+            stripe.read(in);
+        }
+        featureBaselines.read(in);
+    }
+
+    private void score(Stripe stripe, int slot, double[] values, Result result) {
+        int base = slot * METRICS;
+        for (int m = 0; m < METRICS; m++) {
+            double mean = stripe.means[base + m];
+            double stdDev = Math.max(Math.sqrt(stripe.variances[base + m]), MIN_STD_DEV[m]);
+            result.zScores[m] = DIRECTION[m] * (values[m] - mean) / stdDev;
+            result.thresholds[m] = mean + DIRECTION[m] * zThreshold * stdDev;
+        }
+    }
+
+    private double baselineCount() {
+        long count = 0;
+        for (Stripe stripe : stripes) {
+            count += stripe.size;
+        }
+        return count;
+    }
+
+    private long estimatedBytes() {
+        long bytes = 0;
+        for (Stripe stripe : stripes) {
+            bytes += (long) stripe.keys.length * SLOT_BYTES;
+        }
+        return bytes;
+    }
+
+    // MurmurHash3 finalizer
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash == 0 ? 1 : hash;
+    }
+
+    /** Per-caller scratch space for {@link #evaluate}, reused across events. */
+    public static final class Result {
+        public static final int NONE = 0;
+        public static final int FEATURE = 1;
+        public static final int USER_FEATURE = 2;
+
+        private final double[] values = new double[METRICS];
+        private final double[] zScores = new double[METRICS];
+        private final double[] thresholds = new double[METRICS];
+        private int baseline;
+
+        /** The scored value: the raw metric, or the increase for errors and clicks. */
+        public double getValue(int metric) { return values[metric]; }
+
+        public double getZScore(int metric) { return zScores[metric]; }
+
+        /** The value at which the metric would have been flagged. */
+        public double getThreshold(int metric) { return thresholds[metric]; }
+
+        /** Which baseline the event was scored against. */
+        public int getBaseline() { return baseline; }
+    }
+
+    /**
+     * Linear-probing table of baselines in parallel primitive arrays. Key 0 marks an empty slot.
+     * Guarded by its lock.
+     */
+    private final class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final int maxCapacity;
+        private final boolean evictable;
+        private long[] keys;
+        private int[] counts;
+        private long[] lastSeen;
+        private double[] means;
+        private double[] variances;
+        private double[] lastRaw;
+        // Updated since the last checkpoint
+        private boolean[] dirty;
+        private int size;
+        // Highest cutoff of a rebuild that dropped entries since the last checkpoint
+        private long droppedBefore = Long.MIN_VALUE;
+
+        private Stripe(int maxCapacity, boolean evictable) {
+            this.maxCapacity = maxCapacity;
+            this.evictable = evictable;
+            allocate(INITIAL_CAPACITY);
+        }
+
+        private void allocate(int capacity) {
+            keys = new long[capacity];
+            counts = new int[capacity];
+            lastSeen = new long[capacity];
+            means = new double[capacity * METRICS];
+            variances = new double[capacity * METRICS];
+            lastRaw = new double[capacity * 2];
+            dirty = new boolean[capacity];
+            size = 0;
+        }
+
+        private int findOrInsert(long key, long now) {
+            int mask = keys.length - 1;
+            int slot = (int) key & mask;
+            while (keys[slot] != 0) {
+                if (keys[slot] == key) {
+                    lastSeen[slot] = now;
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            // Keep the load factor at or under 3/4
+            if ((size + 1) * 4 > keys.length * 3) {
+                if (keys.length < maxCapacity || !evictable) {
+                    rebuild(keys.length * 2, Long.MIN_VALUE);
+                } else {
+                    rebuild(keys.length, medianLastSeen());
+                }
+                return findOrInsert(key, now);
+            }
+            keys[slot] = key;
+            lastSeen[slot] = now;
+            size++;
+            return slot;
+        }
+
+        // Copies every entry seen at or after the cutoff into fresh arrays of the given capacity
+        private void rebuild(int capacity, long cutoff) {
+            long[] oldKeys = keys;
+            int[] oldCounts = counts;
+            long[] oldLastSeen = lastSeen;
+            double[] oldMeans = means;
+            double[] oldVariances = variances;
+            double[] oldLastRaw = lastRaw;
+            boolean[] oldDirty = dirty;
+            int before = size;
+            allocate(capacity);
+            int mask = capacity - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] == 0 || oldLastSeen[i] < cutoff) {
+                    continue;
+                }
+                int slot = (int) oldKeys[i] & mask;
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+                lastSeen[slot] = oldLastSeen[i];
+                System.arraycopy(oldMeans, i * METRICS, means, slot * METRICS, METRICS);
+                System.arraycopy(oldVariances, i * METRICS, variances, slot * METRICS, METRICS);
+                System.arraycopy(oldLastRaw, i * 2, lastRaw, slot * 2, 2);
+                dirty[slot] = oldDirty[i];
+                size++;
+            }
+            if (size < before) {
+                evictions.increment(before - size);
+                droppedBefore = Math.max(droppedBefore, cutoff);
+            }
+        }
+
+        // Cutoff that drops roughly the older half; if the older half all share the oldest
+        // timestamp, that timestamp is dropped too, so a rebuild always frees space
+        private long medianLastSeen() {
+            long[] seen = new long[size];
+            int n = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != 0) {
+                    seen[n++] = lastSeen[i];
+                }
+            }
+            Arrays.sort(seen);
+            long median = seen[n / 2];
+            return median > seen[0] ? median : median + 1;
+        }
+
+        // Plain average while warming up, EWMA afterwards; warm baselines see clamped values
+        private void update(int slot, double[] values) {
+            int count = counts[slot];
+            double weight = Math.max(alpha, 1.0 / (count + 1));
+            boolean clamp = count >= warmUpEvents;
+            int base = slot * METRICS;
+            for (int m = 0; m < METRICS; m++) {
+                double mean = means[base + m];
+                double value = values[m];
+                if (clamp) {
+                    double limit = zThreshold * Math.max(Math.sqrt(variances[base + m]), MIN_STD_DEV[m]);
+                    value = Math.max(mean - limit, Math.min(mean + limit, value));
+                }
+                double diff = value - mean;
+                double increment = weight * diff;
+                means[base + m] = mean + increment;
+                variances[base + m] = (1 - weight) * (variances[base + m] + diff * increment);
+            }
+            if (count < Integer.MAX_VALUE) {
+                counts[slot] = count + 1;
+            }
+            dirty[slot] = true;
+        }
+
+        private void write(DataOutput out, boolean full) throws IOException {
+            lock.lock();
+            try {
+                out.writeLong(droppedBefore);
+                int entries = 0;
+                for (int i = 0; i < keys.length; i++) {
+                    if (keys[i] != 0 && (full || dirty[i])) {
+                        entries++;
+                    }
+                }
+                out.writeInt(entries);
+                for (int i = 0; i < keys.length; i++) {
+                    if (keys[i] == 0 || !(full || dirty[i])) {
+                        continue;
+                    }
+                    out.writeLong(keys[i]);
+                    out.writeInt(counts[i]);
+                    out.writeLong(lastSeen[i]);
+                    for (int m = 0; m < METRICS; m++) {
+                        out.writeDouble(means[i * METRICS + m]);
+                        out.writeDouble(variances[i * METRICS + m]);
+                    }
+                    out.writeDouble(lastRaw[i * 2]);
+                    out.writeDouble(lastRaw[i * 2 + 1]);
+                }
+                Arrays.fill(dirty, false);
+                droppedBefore = Long.MIN_VALUE;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Drops what the original dropped, then inserts or overwrites the saved entries
+        private void read(DataInput in) throws IOException {
+            lock.lock();
+            try {
+                long cutoff = in.readLong();
+                if (cutoff != Long.MIN_VALUE) {
+                    rebuild(keys.length, cutoff);
+                }
+                int entries = in.readInt();
+                for (int e = 0; e < entries; e++) {
+                    long key = in.readLong();
+                    int count = in.readInt();
+                    long seen = in.readLong();
+                    int slot = findOrInsert(key, seen);
+                    counts[slot] = count;
+                    for (int m = 0; m < METRICS; m++) {
+                        means[slot * METRICS + m] = in.readDouble();
+                        variances[slot * METRICS + m] = in.readDouble();
+                    }
+                    lastRaw[slot * 2] = in.readDouble();
+                    lastRaw[slot * 2 + 1] = in.readDouble();
+                }
+                Arrays.fill(dirty, false);
+                droppedBefore = Long.MIN_VALUE;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.iot.telemetry.processor.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iot.telemetry.common.codec.TelemetryRecord;
+import com.iot.telemetry.processor.models.AnomalyEvent;
+import com.iot.telemetry.processor.models.AnomalyRule;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Threshold anomaly rules that can be changed without a redeploy. Rules come from a JSON file,
+ * polled for changes, or from the rules endpoint, and are compiled into a
+ * {@link CompiledRulePlan}. Processing threads read the current plan from an atomic reference,
+ * so a new plan replaces the old one between two events without pausing consumption. A rule
+ * set that fails validation is rejected and the running plan is kept. Without a file, the
+ * built-in rules reproduce the original fixed thresholds.
+ */
+@Component
+public class AnomalyRuleEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(AnomalyRuleEngine.class);
+
+    private static final TypeReference<List<AnomalyRule>> RULE_LIST = new TypeReference<>() {};
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // JSON array of rules, or an object with a "rules" array; empty for the built-in rules
+    @Value("${processor.anomaly.rules.file:}")
+    private String rulesFile;
+
+    private final AtomicReference<CompiledRulePlan> plan = new AtomicReference<>();
+    private final ThreadLocal<double[]> metricValues = ThreadLocal.withInitial(() -> new double[8]);
+    // Serializes reloads from the file poll and the endpoint; evaluation never takes it
+    private final ReentrantLock reloadLock = new ReentrantLock();
+    private long version;
+    private long rulesFileModified;
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("processor.anomaly.rules", plan, ref -> ref.get().getActiveRules())
+            .description("Enabled anomaly rules in the current plan")
+            .register(meterRegistry);
+        Gauge.builder("processor.anomaly.rules.version", plan, ref -> ref.get().getVersion())
+            .description("Version of the current anomaly rule plan, incremented on every reload")
+            .register(meterRegistry);
+
+        install(defaultRules(), "default");
+        if (!rulesFile.isBlank()) {
+            checkRulesFile();
+        }
+    }
+
+    /** Anomalies the current rules find in one event. */
+    public List<AnomalyEvent> evaluate(String userId, String sessionId, String feature,
+                                       TelemetryRecord record, double engagementScore) {
+        CompiledRulePlan current = plan.get();
+        double[] values = metricValues.get();
+        if (values.length < current.getMetricCount()) {
+            values = new double[current.getMetricCount()];
+            metricValues.set(values);
+        }
+        return current.evaluate(userId, sessionId, feature, record, engagementScore, values);
+    }
+
+    /**
+     * Replaces the rules with {@code rules}. Throws IllegalArgumentException, leaving the
+     * current plan in place, if any rule is invalid. The rules file, if configured, takes
+     * over again the next time it changes.
+     */
+    public Map<String, Object> replaceRules(List<AnomalyRule> rules) {
+        try {
+            install(rules, "api");
+            reloads("api", "success").increment();
+        } catch (IllegalArgumentException e) {
+            reloads("api", "failure").increment();
+            throw e;
+        }
+        return getRules();
+    }
+
+    /** Reloads the rules file when its modification time has changed. */
+    @Scheduled(fixedDelayString = "${processor.anomaly.rules.reload-interval-ms:10000}")
+    public void checkRulesFile() {
+        if (rulesFile.isBlank()) {
+            return;
+        }
+        Path path = Paths.get(rulesFile);
+        reloadLock.lock();
+        try {
+            long modified = Files.getLastModifiedTime(path).toMillis();
+            if (modified == rulesFileModified) {
+                return;
+            }
+            // Recorded before parsing so that a bad file is reported once, not on every poll
+            rulesFileModified = modified;
+            install(readRules(path), path.toString());
+            reloads("file", "success").increment();
+        } catch (IOException | IllegalArgumentException e) {
+            reloads("file", "failure").increment();
+            logger.error("Failed to load anomaly rules from {}, keeping version {}: {}",
+                rulesFile, plan.get().getVersion(), e.getMessage());
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    public Map<String, Object> getRules() {
+        CompiledRulePlan current = plan.get();
+        Map<String, Object> result = new HashMap<>();
+        result.put("version", current.getVersion());
+        result.put("source", current.getSource());
+        result.put("loadedAt", current.getLoadedAt());
+        result.put("activeRules", current.getActiveRules());
+        result.put("rules", current.getRules());
+        return result;
+    }
+
+    public Map<String, Object> getStatistics() {
+        CompiledRulePlan current = plan.get();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("version", current.getVersion());
+        stats.put("source", current.getSource());
+        stats.put("activeRules", current.getActiveRules());
+        stats.put("metrics", current.getMetrics());
+        stats.put("scopedFeatures", current.getScopedFeatures());
+        return stats;
+    }
+
+    private void install(List<AnomalyRule> rules, String source) {
+        reloadLock.lock();
+        try {
+            CompiledRulePlan compiled = CompiledRulePlan.compile(rules, source, version + 1);
+            version++;
+            plan.set(compiled);
+            logger.info("Anomaly rules version {} from {}: {} enabled of {}, reading {} metrics, {} scoped features",
+                compiled.getVersion(), source, compiled.getActiveRules(), rules.size(),
+                compiled.getMetricCount(), compiled.getScopedFeatures().size());
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    private List<AnomalyRule> readRules(Path path) throws IOException {
+        JsonNode root = objectMapper.readTree(path.toFile());
+        JsonNode rules = root != null && root.isObject() ? root.get("rules") : root;
+        if (rules == null || !rules.isArray()) {
+            throw new IllegalArgumentException("Expected a JSON array of rules or an object with a \"rules\" array");
+        }
+        return objectMapper.convertValue(rules, RULE_LIST);
+    }
+
+    private Counter reloads(String source, String result) {
+        return Counter.builder("processor.anomaly.rules.reloads")
+            .description("Anomaly rule reloads by source and result")
+            .tag("source", source)
+            .tag("result", result)
+            .register(meterRegistry);
+    }
+
+    // The original fixed thresholds
+    private static List<AnomalyRule> defaultRules() {
+        return List.of(
+            new AnomalyRule("high-response-time", CompiledRulePlan.RESPONSE_TIME_SECONDS, ">", 5.0,
+                            "HIGH_RESPONSE_TIME", "WARNING", "Response time exceeds 5 seconds"),
+            new AnomalyRule("high-error-rate", "errorCount", ">", 3,
+                            "HIGH_ERROR_RATE", "ERROR", "Error count exceeds 3"),
+            new AnomalyRule("low-engagement", CompiledRulePlan.ENGAGEMENT_SCORE, "<", 30.0,
+                            "LOW_ENGAGEMENT", "WARNING", "User engagement is very low"),
+            new AnomalyRule("unusual-click-pattern", "clickCount", ">", 20,
+                            "UNUSUAL_CLICK_PATTERN", "INFO", "Unusually high click count detected"));
+    }
+}
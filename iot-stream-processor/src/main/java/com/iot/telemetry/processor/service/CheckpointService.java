@@ -0,0 +1,422 @@
+package com.iot.telemetry.processor.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.kafka.listener.ConsumerSeekAware.ConsumerSeekCallback;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Saves processor state to local files every {@code interval-ms}, together with the offset of
+ * the next record to read from each partition, and restores the latest of them at startup.
+ * Checkpoints are taken on the consumer thread between records, so the state covers exactly
+ * the records before those offsets. After a restore each partition is sought to its saved
+ * offset on first assignment; records between that offset and the committed one are
+ * processed again, so their results reach the time-series service twice.
+ * Every {@code full-every}-th checkpoint holds all state; the ones in between hold only what
+ * changed since the previous one. A file is written under a temporary name, synced and then
+ * renamed, and carries a CRC32, so a torn or damaged file is never restored. With
+ * {@code compress} the state is deflated at the fastest level. Windows are not checkpointed.
+ * Used when {@code processor.checkpoint.enabled=true}.
+ */
+@Component
+@ConditionalOnProperty(name = "processor.checkpoint.enabled", havingValue = "true")
+public class CheckpointService implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(CheckpointService.class);
+
+    private static final int MAGIC = 0x49505443;  // "IPTC"
+    private static final int FORMAT_VERSION = 1;
+    private static final String FULL = "full";
+    private static final String DELTA = "delta";
+
+    // Lazy, so that TelemetryConsumerService, which uses this service, can take part too
+    @Autowired
+    private ObjectProvider<CheckpointedState> participantProvider;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${processor.checkpoint.dir:checkpoints}")
+    private String directory;
+
+    @Value("${processor.checkpoint.interval-ms:30000}")
+    private long intervalMs;
+
+    // Every n-th checkpoint is full; 1 makes them all full
+    @Value("${processor.checkpoint.full-every:10}")
+    private int fullEvery;
+
+    @Value("${processor.checkpoint.compress:true}")
+    private boolean compress;
+
+    @Value("${kafka.topic.telemetry:telemetry-data}")
+    private String topic;
+
+    private Path dir;
+    private List<CheckpointedState> participants;
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile boolean running;
+
+    // Next offset per partition. Updated by the consumer thread only; read by stop()
+    // once the listener containers have stopped
+    private final Map<Integer, Long> nextOffsets = new HashMap<>();
+    private final Map<Integer, Long> pendingSeeks = new HashMap<>();
+
+    private long sequence;
+    private int sinceFull;
+    private boolean fullDue = true;
+    private long lastCheckpointNanos;
+    private volatile Map<String, Object> lastCheckpoint = Map.of();
+    private volatile Map<String, Object> restored = Map.of();
+
+    private Counter failures;
+    private Timer restoreTime;
+
+    @PostConstruct
+    public void init() {
+        dir = Paths.get(directory);
+        failures = Counter.builder("processor.checkpoint.failures")
+            .description("Checkpoints that could not be written")
+            .register(meterRegistry);
+        restoreTime = Timer.builder("processor.checkpoint.restore")
+            .description("Time to read and apply checkpoints at startup")
+            .register(meterRegistry);
+    }
+
+    /** Restores the latest checkpoint before the listener containers start. */
+    @Override
+    public void start() {
+        participants = new ArrayList<>(participantProvider.orderedStream().toList());
+        participants.sort(Comparator.comparing(CheckpointedState::checkpointName));
+        try {
+            Files.createDirectories(dir);
+            restore();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot restore checkpoints from " + dir.toAbsolutePath(), e);
+        }
+        lastCheckpointNanos = System.nanoTime();
+        running = true;
+    }
+
+    /** Takes a final checkpoint once the listener containers, which stop first, are done. */
+    @Override
+    public void stop() {
+        if (running) {
+            checkpoint();
+            running = false;
+        }
+    }
+
+    @Override
+    public boolean isRunning() { return running; }
+
+    // Below the listener containers, so this starts before them and stops after them
+    @Override
+    public int getPhase() { return 0; }
+
+    /** Called on the consumer thread once a record has been processed, successfully or not. */
+    public void processed(ConsumerRecord<?, ?> record) {
+        nextOffsets.put(record.partition(), record.offset() + 1);
+    }
+
+    /** Called on the consumer thread between records; checkpoints if the interval has passed. */
+    public void checkpointIfDue() {
+        if (System.nanoTime() - lastCheckpointNanos >= TimeUnit.MILLISECONDS.toNanos(intervalMs)) {
+            checkpoint();
+        }
+    }
+
+    /** Seeks each restored partition to its checkpointed offset the first time it is assigned. */
+    public void seekToCheckpoint(Collection<TopicPartition> assigned, ConsumerSeekCallback callback) {
+        for (TopicPartition partition : assigned) {
+            Long offset = topic.equals(partition.topic()) ? pendingSeeks.remove(partition.partition()) : null;
+            if (offset != null) {
+                callback.seek(partition.topic(), partition.partition(), offset);
+                logger.info("Seeking {} to checkpointed offset {}", partition, offset);
+            }
+        }
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", true);
+        stats.put("directory", dir.toAbsolutePath().toString());
+        stats.put("last", lastCheckpoint);
+        stats.put("restored", restored);
+        stats.put("failures", (long) failures.count());
+        return stats;
+    }
+
+    private void checkpoint() {
+        lock.lock();
+        try {
+            boolean full = fullDue || sinceFull + 1 >= fullEvery;
+            String type = full ? FULL : DELTA;
+            long seq = sequence + 1;
+            long start = System.nanoTime();
+            Path file = dir.resolve(fileName(seq, full));
+            try {
+                long size = write(file, seq, full);
+                long nanos = System.nanoTime() - start;
+                Timer.builder("processor.checkpoint.duration")
+                    .description("Time to write one checkpoint")
+                    .tag("type", type)
+                    .register(meterRegistry)
+                    .record(nanos, TimeUnit.NANOSECONDS);
+                DistributionSummary.builder("processor.checkpoint.size")
+                    .description("Size of one checkpoint file")
+                    .baseUnit("bytes")
+                    .tag("type", type)
+                    .register(meterRegistry)
+                    .record(size);
+                sequence = seq;
+                sinceFull = full ? 0 : sinceFull + 1;
+                fullDue = false;
+                if (full) {
+                    deleteBefore(seq);
+                }
+                Map<String, Object> last = new HashMap<>();
+                last.put("sequence", seq);
+                last.put("type", type);
+                last.put("bytes", size);
+                last.put("durationMs", TimeUnit.NANOSECONDS.toMillis(nanos));
+                last.put("offsets", new TreeMap<>(nextOffsets));
+                lastCheckpoint = last;
+                logger.debug("Wrote {} checkpoint {}: {} bytes in {} ms", type, seq, size, TimeUnit.NANOSECONDS.toMillis(nanos));
+            } catch (IOException | RuntimeException e) {
+                // Participants may have marked their changes as saved, so only a full checkpoint is safe next
+                fullDue = true;
+                failures.increment();
+                logger.error("Failed to write checkpoint {}", file, e);
+                try {
+                    Files.deleteIfExists(tmp(file));
+                } catch (IOException ignored) {
+                    // Overwritten by the next attempt
+                }
+            }
+        } finally {
+            lastCheckpointNanos = System.nanoTime();
+            lock.unlock();
+        }
+    }
+
+    private long write(Path file, long seq, boolean full) throws IOException {
+        Path tmp = tmp(file);
+        CRC32 crc = new CRC32();
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+            CheckedOutputStream checked = new CheckedOutputStream(
+                new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16), crc);
+            DataOutputStream header = new DataOutputStream(checked);
+            header.writeInt(MAGIC);
+            header.writeInt(FORMAT_VERSION);
+            header.writeLong(seq);
+            header.writeBoolean(full);
+            header.writeBoolean(compress);
+            header.writeLong(System.currentTimeMillis());
+            header.writeUTF(topic);
+            header.flush();
+
+            Deflater deflater = compress ? new Deflater(Deflater.BEST_SPEED) : null;
+            DeflaterOutputStream deflating = compress ? new DeflaterOutputStream(checked, deflater, 1 << 16) : null;
+            DataOutputStream out = compress ? new DataOutputStream(new BufferedOutputStream(deflating, 1 << 16)) : header;
+            out.writeInt(nextOffsets.size());
+            for (Map.Entry<Integer, Long> entry : nextOffsets.entrySet()) {
+                out.writeInt(entry.getKey());
+                out.writeLong(entry.getValue());
+            }
+            out.writeInt(participants.size());
+            for (CheckpointedState participant : participants) {
+                out.writeUTF(participant.checkpointName());
+                participant.writeCheckpoint(out, full);
+            }
+            out.flush();
+            if (compress) {
+                deflating.finish();
+                deflater.end();
+            }
+            checked.flush();
+            channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, (int) crc.getValue()));
+            channel.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return Files.size(file);
+    }
+
+    /**
+     * Applies the newest full checkpoint that is intact, then the incremental ones that
+     * follow it without a gap. A checkpoint for another topic or format is ignored. A file
+     * that passes its CRC but cannot be applied stops startup, as state may be half-restored.
+     */
+    private void restore() throws IOException {
+        TreeMap<Long, Path> fulls = new TreeMap<>();
+        TreeMap<Long, Path> deltas = new TreeMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "checkpoint-*")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".tmp")) {
+                    Files.delete(file);
+                } else if (name.endsWith("." + FULL) || name.endsWith("." + DELTA)) {
+                    long seq = Long.parseLong(name.substring("checkpoint-".length(), name.lastIndexOf('.')));
+                    (name.endsWith("." + FULL) ? fulls : deltas).put(seq, file);
+                }
+            }
+        }
+
+        long start = System.nanoTime();
+        List<byte[]> chain = new ArrayList<>();
+        for (Long seq : fulls.descendingKeySet()) {
+            byte[] bytes = readIntact(fulls.get(seq));
+            if (bytes != null) {
+                chain.add(bytes);
+                for (long next = seq + 1; deltas.containsKey(next); next++) {
+                    byte[] delta = readIntact(deltas.get(next));
+                    if (delta == null) {
+                        break;
+                    }
+                    chain.add(delta);
+                }
+                break;
+            }
+        }
+        if (chain.isEmpty()) {
+            logger.info("No checkpoint to restore in {}", dir.toAbsolutePath());
+            return;
+        }
+
+        long seq = 0;
+        Map<Integer, Long> offsets = new HashMap<>();
+        Map<String, CheckpointedState> byName = new HashMap<>();
+        participants.forEach(participant -> byName.put(participant.checkpointName(), participant));
+        for (byte[] bytes : chain) {
+            ByteArrayInputStream raw = new ByteArrayInputStream(bytes, 0, bytes.length - Integer.BYTES);
+            DataInputStream header = new DataInputStream(raw);
+            int magic = header.readInt();
+            int version = header.readInt();
+            if (magic != MAGIC || version != FORMAT_VERSION) {
+                logger.warn("Ignoring checkpoints of format {}", version);
+                return;
+            }
+            seq = header.readLong();
+            boolean full = header.readBoolean();
+            boolean compressed = header.readBoolean();
+            header.readLong();
+            String checkpointTopic = header.readUTF();
+            if (!topic.equals(checkpointTopic)) {
+                logger.warn("Ignoring checkpoints for topic {}", checkpointTopic);
+                return;
+            }
+            DataInputStream in = compressed ? new DataInputStream(new BufferedInputStream(new InflaterInputStream(raw), 1 << 16)) : header;
+            try {
+                int partitions = in.readInt();
+                for (int i = 0; i < partitions; i++) {
+                    offsets.put(in.readInt(), in.readLong());
+                }
+                int sections = in.readInt();
+                for (int i = 0; i < sections; i++) {
+                    String name = in.readUTF();
+                    CheckpointedState participant = byName.get(name);
+                    if (participant == null) {
+                        throw new IOException("Unknown checkpoint section " + name);
+                    }
+                    participant.readCheckpoint(in, full);
+                }
+            } catch (IOException | RuntimeException e) {
+                throw new IllegalStateException("Checkpoint " + seq + " is intact but could not be applied", e);
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        restoreTime.record(nanos, TimeUnit.NANOSECONDS);
+
+        sequence = seq;
+        nextOffsets.putAll(offsets);
+        pendingSeeks.putAll(offsets);
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("sequence", seq);
+        summary.put("files", chain.size());
+        summary.put("durationMs", TimeUnit.NANOSECONDS.toMillis(nanos));
+        summary.put("offsets", new TreeMap<>(offsets));
+        restored = summary;
+        logger.info("Restored checkpoint {} from {} files in {} ms, offsets {}",
+            seq, chain.size(), TimeUnit.NANOSECONDS.toMillis(nanos), new TreeMap<>(offsets));
+    }
+
+    // The file's bytes, or null if it is truncated or fails its CRC
+    private static byte[] readIntact(Path file) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        if (bytes.length < Integer.BYTES) {
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - Integer.BYTES);
+        if ((int) crc.getValue() != ByteBuffer.wrap(bytes, bytes.length - Integer.BYTES, Integer.BYTES).getInt()) {
+            logger.warn("Skipping damaged checkpoint {}", file);
+            return null;
+        }
+        return bytes;
+    }
+
+    // Earlier files are no longer needed once a full checkpoint is in place
+    private void deleteBefore(long seq) {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "checkpoint-*.{" + FULL + "," + DELTA + "}")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (Long.parseLong(name.substring("checkpoint-".length(), name.lastIndexOf('.'))) < seq) {
+                    Files.delete(file);
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to delete checkpoints before {}: {}", seq, e.toString());
+        }
+    }
+
+    private static String fileName(long seq, boolean full) {
+        return String.format("checkpoint-%010d.%s", seq, full ? FULL : DELTA);
+    }
+
+    private static Path tmp(Path file) {
+        return file.resolveSibling(file.getFileName() + ".tmp");
+    }
+}
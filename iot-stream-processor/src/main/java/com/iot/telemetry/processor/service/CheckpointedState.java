@@ -0,0 +1,22 @@
+package com.iot.telemetry.processor.service;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Processor state saved and restored by {@link CheckpointService}. A full checkpoint writes
+ * all of it; an incremental one writes what changed since the previous checkpoint of either
+ * kind, so each write also marks the state as saved. Writes happen between records, with no
+ * record being processed. Reads happen at startup, before the first record, once per file of
+ * the restored chain: a full checkpoint first, then its increments in order.
+ */
+interface CheckpointedState {
+
+    /** Section name in the checkpoint file; must stay the same across releases. */
+    String checkpointName();
+
+    void writeCheckpoint(DataOutput out, boolean full) throws IOException;
+
+    void readCheckpoint(DataInput in, boolean full) throws IOException;
+}
@@ -0,0 +1,342 @@
+package com.iot.telemetry.processor.service;
+
+import com.iot.telemetry.common.codec.MetricSlot;
+import com.iot.telemetry.common.codec.TelemetryRecord;
+import com.iot.telemetry.processor.models.AnomalyEvent;
+import com.iot.telemetry.processor.models.AnomalyRule;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable evaluation plan for a set of {@link AnomalyRule}s. Every metric the rules mention
+ * gets a slot, and each feature named in a rule scope gets a plan holding the unscoped rules
+ * plus its own; other features use the unscoped plan. Within a plan, rules on the same metric
+ * and comparator form one group with thresholds sorted ascending, so the rules a value fires
+ * are a prefix or suffix found by binary search. An event therefore costs one extraction per
+ * metric its plan reads and one search per group, however many rules share that group.
+ */
+final class CompiledRulePlan {
+
+    // Metrics derived from the event rather than read from its metrics
+    static final String ENGAGEMENT_SCORE = "engagementScore";
+    static final String RESPONSE_TIME_SECONDS = "responseTimeSeconds";
+
+    private static final int GT = 0;
+    private static final int GE = 1;
+    private static final int LT = 2;
+    private static final int LE = 3;
+
+    // Metric sources other than a MetricSlot ordinal
+    private static final int FROM_EXTRA = -1;
+    private static final int FROM_ENGAGEMENT = -2;
+    private static final int FROM_RESPONSE_TIME_SECONDS = -3;
+
+    private final List<AnomalyRule> rules;
+    private final String source;
+    private final long version;
+    private final long loadedAt;
+    private final int activeRules;
+    private final String[] metricNames;
+    private final int[] metricSources;
+    private final FeaturePlan unscopedPlan;
+    private final Map<String, FeaturePlan> featurePlans;
+
+    private CompiledRulePlan(List<AnomalyRule> rules, String source, long version, int activeRules,
+                             String[] metricNames, int[] metricSources,
+                             FeaturePlan unscopedPlan, Map<String, FeaturePlan> featurePlans) {
+        this.rules = rules;
+        this.source = source;
+        this.version = version;
+        this.loadedAt = System.currentTimeMillis();
+        this.activeRules = activeRules;
+        this.metricNames = metricNames;
+        this.metricSources = metricSources;
+        this.unscopedPlan = unscopedPlan;
+        this.featurePlans = featurePlans;
+    }
+
+    /** Validates {@code rules} and builds their plan; throws IllegalArgumentException naming the bad rule. */
+    static CompiledRulePlan compile(List<AnomalyRule> rules, String source, long version) {
+        if (rules == null) {
+            throw new IllegalArgumentException("No rules given");
+        }
+        Set<String> ids = new HashSet<>();
+        Map<String, Integer> slots = new LinkedHashMap<>();
+        List<CompiledRule> unscoped = new ArrayList<>();
+        Map<String, List<CompiledRule>> scoped = new LinkedHashMap<>();
+        int active = 0;
+
+        for (int i = 0; i < rules.size(); i++) {
+            AnomalyRule rule = rules.get(i);
+            if (rule == null) {
+                throw new IllegalArgumentException("Rule " + i + " is null");
+            }
+            if (isBlank(rule.getId())) {
+                rule.setId("rule-" + i);
+            }
+            String id = rule.getId();
+            if (!ids.add(id)) {
+                throw new IllegalArgumentException("Duplicate rule id " + id);
+            }
+            if (isBlank(rule.getMetric())) {
+                throw new IllegalArgumentException("Rule " + id + ": metric is required");
+            }
+            if (isBlank(rule.getAnomalyType())) {
+                throw new IllegalArgumentException("Rule " + id + ": anomalyType is required");
+            }
+            if (!Double.isFinite(rule.getThreshold())) {
+                throw new IllegalArgumentException("Rule " + id + ": threshold must be a finite number");
+            }
+            int op = parseComparator(id, rule.getComparator());
+            if (isBlank(rule.getSeverity())) {
+                rule.setSeverity("WARNING");
+            }
+            if (!rule.isEnabled()) {
+                continue;
+            }
+            active++;
+
+            int slot = slots.computeIfAbsent(rule.getMetric(), metric -> slots.size());
+            String description = isBlank(rule.getDescription())
+                ? rule.getMetric() + " " + rule.getComparator() + " " + rule.getThreshold()
+                : rule.getDescription();
+            CompiledRule compiled = new CompiledRule(slot, op, rule.getThreshold(), rule.getAnomalyType(),
+                                                     rule.getSeverity(), description);
+            if (rule.getFeatures() == null || rule.getFeatures().isEmpty()) {
+                unscoped.add(compiled);
+            } else {
+                for (String feature : new HashSet<>(rule.getFeatures())) {
+                    scoped.computeIfAbsent(feature, f -> new ArrayList<>()).add(compiled);
+                }
+            }
+        }
+
+        String[] metricNames = slots.keySet().toArray(new String[0]);
+        int[] metricSources = new int[metricNames.length];
+        for (int i = 0; i < metricNames.length; i++) {
+            MetricSlot metricSlot = MetricSlot.forName(metricNames[i]);
+            metricSources[i] = ENGAGEMENT_SCORE.equals(metricNames[i]) ? FROM_ENGAGEMENT
+                : RESPONSE_TIME_SECONDS.equals(metricNames[i]) ? FROM_RESPONSE_TIME_SECONDS
+                : metricSlot != null ? metricSlot.ordinal()
+                : FROM_EXTRA;
+        }
+        Map<String, FeaturePlan> featurePlans = new HashMap<>();
+        scoped.forEach((feature, featureRules) -> {
+            List<CompiledRule> combined = new ArrayList<>(unscoped);
+            combined.addAll(featureRules);
+            featurePlans.put(feature, FeaturePlan.build(combined));
+        });
+        return new CompiledRulePlan(Collections.unmodifiableList(new ArrayList<>(rules)), source, version, active,
+                                    metricNames, metricSources, FeaturePlan.build(unscoped), featurePlans);
+    }
+
+    /**
+     * Anomalies fired by one event. {@code values} is scratch space of at least
+     * {@link #getMetricCount()} entries; metrics that are missing or not numeric fire no rule.
+     */
+    List<AnomalyEvent> evaluate(String userId, String sessionId, String feature, TelemetryRecord record,
+                                double engagementScore, double[] values) {
+        FeaturePlan plan = feature != null ? featurePlans.getOrDefault(feature, unscopedPlan) : unscopedPlan;
+        for (int slot : plan.slots) {
+            int metricSource = metricSources[slot];
+            switch (metricSource) {
+                case FROM_ENGAGEMENT:
+                    values[slot] = engagementScore;
+                    break;
+                case FROM_RESPONSE_TIME_SECONDS:
+                    values[slot] = record.getMetric(MetricSlot.RESPONSE_TIME, Double.NaN) / 1000.0;
+                    break;
+                case FROM_EXTRA:
+                    Map<String, Object> extraMetrics = record.getExtraMetrics();
+                    values[slot] = extraMetrics != null ? number(extraMetrics.get(metricNames[slot])) : Double.NaN;
+                    break;
+                default:
+                    values[slot] = record.getMetric(MetricSlot.fromIndex(metricSource), Double.NaN);
+            }
+        }
+
+        List<AnomalyEvent> anomalies = null;
+        for (RuleGroup group : plan.groups) {
+            double value = values[group.slot];
+            if (Double.isNaN(value)) {
+                continue;
+            }
+            double[] thresholds = group.thresholds;
+            int from;
+            int to;
+            switch (group.op) {
+                case GT:
+                    from = 0;
+                    to = lowerBound(thresholds, value);
+                    break;
+                case GE:
+                    from = 0;
+                    to = upperBound(thresholds, value);
+                    break;
+                case LT:
+                    from = upperBound(thresholds, value);
+                    to = thresholds.length;
+                    break;
+                default:
+                    from = lowerBound(thresholds, value);
+                    to = thresholds.length;
+            }
+            for (int i = from; i < to; i++) {
+                if (anomalies == null) {
+                    anomalies = new ArrayList<>(2);
+                }
+                CompiledRule rule = group.rules[i];
+                anomalies.add(new AnomalyEvent(userId, sessionId, feature, rule.anomalyType, rule.severity,
+                                               rule.description, rule.threshold, value));
+            }
+        }
+        return anomalies != null ? anomalies : Collections.emptyList();
+    }
+
+    List<AnomalyRule> getRules() { return rules; }
+
+    String getSource() { return source; }
+
+    long getVersion() { return version; }
+
+    long getLoadedAt() { return loadedAt; }
+
+    int getActiveRules() { return activeRules; }
+
+    int getMetricCount() { return metricNames.length; }
+
+    List<String> getMetrics() { return Arrays.asList(metricNames); }
+
+    Set<String> getScopedFeatures() { return featurePlans.keySet(); }
+
+    private static int parseComparator(String id, String comparator) {
+        switch (comparator == null ? "" : comparator.trim().toLowerCase(Locale.ROOT)) {
+            case ">":
+            case "gt":
+                return GT;
+            case ">=":
+            case "gte":
+                return GE;
+            case "<":
+            case "lt":
+                return LT;
+            case "<=":
+            case "lte":
+                return LE;
+            default:
+                throw new IllegalArgumentException("Rule " + id + ": comparator must be one of >, >=, <, <= but was "
+                    + comparator);
+        }
+    }
+
+    private static double number(Object value) {
+        return value instanceof Number ? ((Number) value).doubleValue() : Double.NaN;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    // First index whose threshold is >= value
+    private static int lowerBound(double[] thresholds, double value) {
+        int low = 0;
+        int high = thresholds.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (thresholds[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // First index whose threshold is > value
+    private static int upperBound(double[] thresholds, double value) {
+        int low = 0;
+        int high = thresholds.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (thresholds[mid] <= value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static final class CompiledRule {
+        private final int slot;
+        private final int op;
+        private final double threshold;
+        private final String anomalyType;
+        private final String severity;
+        private final String description;
+
+        private CompiledRule(int slot, int op, double threshold, String anomalyType, String severity, String description) {
+            this.slot = slot;
+            this.op = op;
+            this.threshold = threshold;
+            this.anomalyType = anomalyType;
+            this.severity = severity;
+            this.description = description;
+        }
+    }
+
+    private static final class RuleGroup {
+        private final int slot;
+        private final int op;
+        private final double[] thresholds;
+        private final CompiledRule[] rules;
+
+        private RuleGroup(int slot, int op, CompiledRule[] rules) {
+            this.slot = slot;
+            this.op = op;
+            this.rules = rules;
+            this.thresholds = new double[rules.length];
+            for (int i = 0; i < rules.length; i++) {
+                thresholds[i] = rules[i].threshold;
+            }
+        }
+    }
+
+    private static final class FeaturePlan {
+        private final int[] slots;
+        private final RuleGroup[] groups;
+
+        private FeaturePlan(int[] slots, RuleGroup[] groups) {
+            this.slots = slots;
+            this.groups = groups;
+        }
+
+        // Groups keep the order in which their metric and comparator first appear
+        private static FeaturePlan build(List<CompiledRule> rules) {
+            Map<Integer, List<CompiledRule>> grouped = new LinkedHashMap<>();
+            Set<Integer> slots = new LinkedHashSet<>();
+            for (CompiledRule rule : rules) {
+                grouped.computeIfAbsent(rule.slot * 4 + rule.op, key -> new ArrayList<>()).add(rule);
+                slots.add(rule.slot);
+            }
+            RuleGroup[] groups = new RuleGroup[grouped.size()];
+            int g = 0;
+            for (List<CompiledRule> groupRules : grouped.values()) {
+                CompiledRule[] sorted = groupRules.toArray(new CompiledRule[0]);
+                Arrays.sort(sorted, (a, b) -> Double.compare(a.threshold, b.threshold));
+                groups[g++] = new RuleGroup(sorted[0].slot, sorted[0].op, sorted);
+            }
+            return new FeaturePlan(slots.stream().mapToInt(Integer::intValue).toArray(), groups);
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.iot.telemetry.processor.service;
+
+import com.iot.telemetry.common.sketch.DDSketch;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-feature quantile sketches of the engagement score, response time and page load time.
+ * Each is a {@link DDSketch} whose quantiles are within {@code relative-accuracy} of the true
+ * value; the hot path only does lock-free adds. Sketches are exported in serialized form so
+ * that the percentiles of several processor instances can be computed from their merge.
+ * Every checkpoint holds all sketches, so the last one read replaces what came before.
+ * Sketches checkpointed with a different accuracy or range cannot be merged and are dropped.
+ * Once {@code max-features} features have sketches, further features share the
+ * {@value #OTHER_FEATURE} sketches, which keeps memory and gauge tags bounded.
+ */
+@Component
+public class FeatureSketchService implements CheckpointedState {
+
+    public static final String[] METRICS = {"engagementScore", "responseTime", "pageLoadTime"};
+
+    /** Feature name under which features past {@code max-features} are recorded. */
+    public static final String OTHER_FEATURE = "_other";
+
+    private static final double[] QUANTILES = {0.5, 0.95, 0.99};
+    private static final String[] QUANTILE_NAMES = {"p50", "p95", "p99"};
+
+    private static final Logger logger = LoggerFactory.getLogger(FeatureSketchService.class);
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${processor.sketch.relative-accuracy:0.01}")
+    private double relativeAccuracy;
+
+    // Values at or below min-value count as zero; values above max-value fall in the top bucket
+    @Value("${processor.sketch.min-value:0.001}")
+    private double minValue;
+
+    @Value("${processor.sketch.max-value:10000000}")
+    private double maxValue;
+
+    @Value("${processor.sketch.max-features:1000}")
+    private int maxFeatures;
+
+    private final Map<String, DDSketch[]> sketches = new ConcurrentHashMap<>();
+
+    /** Adds one event's values, in the order of {@link #METRICS}. */
+    public void record(String feature, double engagementScore, double responseTime, double pageLoadTime) {
+        DDSketch[] featureSketches = sketches.get(feature);
+        if (featureSketches == null) {
+            featureSketches = sketches.computeIfAbsent(capped(feature), this::createSketches);
+        }
+        featureSketches[0].add(engagementScore);
+        featureSketches[1].add(responseTime);
+        featureSketches[2].add(pageLoadTime);
+    }
+
+    /** True mean engagement score per feature over everything recorded. */
+    public Map<String, Double> getMeanEngagementScores() {
+        Map<String, Double> means = new HashMap<>();
+        sketches.forEach((feature, featureSketches) -> means.put(feature, featureSketches[0].getMean()));
+        return means;
+    }
+
+    /** p50, p95, p99, count and mean for each feature and metric of this instance. */
+    public Map<String, Object> getPercentiles() {
+        return percentiles(sketches);
+    }
+
+    /**
+     * Percentiles of this instance merged with sketches exported by others, in the form
+     * returned by {@link #exportSketches}. The local sketches are not changed.
+     */
+    public Map<String, Object> getMergedPercentiles(Iterable<Map<String, Map<String, String>>> exports) {
+        Map<String, DDSketch[]> merged = new HashMap<>();
+        sketches.forEach((feature, featureSketches) -> mergeInto(merged, feature, featureSketches));
+        for (Map<String, Map<String, String>> export : exports) {
+            export.forEach((feature, encoded) -> {
+                DDSketch[] featureSketches = new DDSketch[METRICS.length];
+                for (int i = 0; i < METRICS.length; i++) {
+                    String bytes = encoded.get(METRICS[i]);
+                    featureSketches[i] = newSketch();
+                    if (bytes != null) {
+                        featureSketches[i].mergeBytes(Base64.getDecoder().decode(bytes));
+                    }
+                }
+                mergeInto(merged, feature, featureSketches);
+            });
+        }
+        return percentiles(merged);
+    }
+
+    /** Serialized sketches per feature and metric, Base64 encoded. */
+    public Map<String, Map<String, String>> exportSketches() {
+        Map<String, Map<String, String>> export = new HashMap<>();
+        sketches.forEach((feature, featureSketches) -> {
+            Map<String, String> encoded = new HashMap<>();
+            for (int i = 0; i < METRICS.length; i++) {
+                encoded.put(METRICS[i], Base64.getEncoder().encodeToString(featureSketches[i].toBytes()));
+            }
+            export.put(feature, encoded);
+        });
+        return export;
+    }
+
+    private void mergeInto(Map<String, DDSketch[]> target, String feature, DDSketch[] featureSketches) {
+        DDSketch[] existing = target.computeIfAbsent(feature, key -> {
+            DDSketch[] created = new DDSketch[METRICS.length];
+            for (int i = 0; i < METRICS.length; i++) {
+                created[i] = newSketch();
+            }
+            return created;
+        });
+        for (int i = 0; i < METRICS.length; i++) {
+            existing[i].merge(featureSketches[i]);
+        }
+    }
+
+    @Override
+    public String checkpointName() { return "feature-sketches"; }
+
+    @Override
+    public void writeCheckpoint(DataOutput out, boolean full) throws IOException {
+        Map<String, DDSketch[]> current = new HashMap<>(sketches);
+        out.writeInt(current.size());
+        for (Map.Entry<String, DDSketch[]> entry : current.entrySet()) {
+            out.writeUTF(entry.getKey());
+            for (DDSketch sketch : entry.getValue()) {
+                byte[] bytes = sketch.toBytes();
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+    }
+
+    @Override
+    public void readCheckpoint(DataInput in, boolean full) throws IOException {
+        int features = in.readInt();
+        int dropped = 0;
+        for (int f = 0; f < features; f++) {
+            String feature = in.readUTF();
+            DDSketch[] featureSketches = new DDSketch[METRICS.length];
+            boolean compatible = true;
+            for (int i = 0; i < METRICS.length; i++) {
+                // Always read, so the next feature starts at the right position
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                if (!compatible) {
+                    continue;
+                }
+                featureSketches[i] = newSketch();
+                try {
+                    featureSketches[i].mergeBytes(bytes);
+                } catch (IllegalArgumentException e) {
+                    // Written with other processor.sketch settings; the buckets do not line up
+                    compatible = false;
+                }
+            }
+            if (!compatible) {
+                dropped++;
+                continue;
+            }
+            if (sketches.containsKey(feature) || sketches.size() < maxFeatures) {
+                if (sketches.put(feature, featureSketches) == null) {
+                    registerGauges(feature);
+                }
+            } else {
+                DDSketch[] other = sketches.computeIfAbsent(OTHER_FEATURE, this::createSketches);
+                for (int i = 0; i < METRICS.length; i++) {
+                    other[i].merge(featureSketches[i]);
+                }
+            }
+        }
+        if (dropped > 0) {
+            logger.warn("Dropped checkpointed sketches of {} features: they were written with different "
+                + "processor.sketch settings (relative-accuracy {}, min-value {}, max-value {} now)",
+                dropped, relativeAccuracy, minValue, maxValue);
+        }
+    }
+
+    private Map<String, Object> percentiles(Map<String, DDSketch[]> source) {
+        Map<String, Object> features = new HashMap<>();
+        source.forEach((feature, featureSketches) -> {
+            Map<String, Object> metrics = new HashMap<>();
+            for (int i = 0; i < METRICS.length; i++) {
+                DDSketch sketch = featureSketches[i];
+                Map<String, Object> summary = new HashMap<>();
+                for (int q = 0; q < QUANTILES.length; q++) {
+                    summary.put(QUANTILE_NAMES[q], sketch.quantile(QUANTILES[q]));
+                }
+                summary.put("count", sketch.getCount());
+                summary.put("mean", sketch.getMean());
+                metrics.put(METRICS[i], summary);
+            }
+            features.put(feature, metrics);
+        });
+        Map<String, Object> result = new HashMap<>();
+        result.put("features", features);
+        result.put("relativeAccuracy", relativeAccuracy);
+        return result;
+    }
+
+    // Racing threads may each add one feature past the limit; that is all it can overshoot by
+    private String capped(String feature) {
+        return sketches.size() < maxFeatures ? feature : OTHER_FEATURE;
+    }
+
+    private DDSketch[] createSketches(String feature) {
+        DDSketch[] featureSketches = new DDSketch[METRICS.length];
+        for (int i = 0; i < METRICS.length; i++) {
+            featureSketches[i] = newSketch();
+        }
+        registerGauges(feature);
+        return featureSketches;
+    }
+
+    // Gauges look the sketch up on every read, so they follow sketches replaced by a restore
+    private void registerGauges(String feature) {
+        for (int i = 0; i < METRICS.length; i++) {
+            int metric = i;
+            for (int q = 0; q < QUANTILES.length; q++) {
+                double quantile = QUANTILES[q];
+                Gauge.builder("processor.feature.quantile", sketches, map -> quantile(map.get(feature), metric, quantile))
+                    .description("Quantile of a per-feature metric since startup")
+                    .tag("feature", feature)
+                    .tag("metric", METRICS[i])
+                    .tag("quantile", QUANTILE_NAMES[q])
+                    .register(meterRegistry);
+            }
+        }
+    }
+
+    private static double quantile(DDSketch[] featureSketches, int metric, double quantile) {
+        return featureSketches != null ? featureSketches[metric].quantile(quantile) : Double.NaN;
+    }
+
+    private DDSketch newSketch() {
+        return new DDSketch(relativeAccuracy, minValue, maxValue);
+    }
+}
@@ -0,0 +1,143 @@
+package com.iot.telemetry.processor.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Fans the records of one poll out to a fixed set of single-threaded shards. A record goes to
+ * the shard chosen by its Kafka key, which is the user id, or {@code userId#n} for a split hot
+ * user. Events with the same key are handled in order by one thread. The producer keeps a
+ * session on one key, so a session's events stay in order; a split user's sessions run on
+ * different shards (and arrive from different partitions), so there is no order across them.
+ * {@link #process} returns only when every record of the batch has completed, so the
+ * container commits the batch's offsets only after everything before them is done.
+ * Used by the batch listener when {@code processor.parallel.enabled=true}.
+ */
+@Component
+@ConditionalOnProperty(name = "processor.parallel.enabled", havingValue = "true")
+public class ParallelRecordProcessor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParallelRecordProcessor.class);
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // 0 uses one shard per available processor
+    @Value("${processor.parallel.workers:0}")
+    private int configuredWorkers;
+
+    // Records queued per shard before the listener thread blocks
+    @Value("${processor.parallel.queue-capacity:1000}")
+    private int queueCapacity;
+
+    private Shard[] shards;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    @PostConstruct
+    public void init() {
+        int workers = configuredWorkers > 0 ? configuredWorkers : Runtime.getRuntime().availableProcessors();
+        shards = new Shard[workers];
+        for (int i = 0; i < workers; i++) {
+            Shard shard = new Shard(i, queueCapacity);
+            shards[i] = shard;
+            Gauge.builder("processor.parallel.queue.depth", shard.queue, BlockingQueue::size)
+                .description("Records waiting in a processing shard")
+                .tag("shard", String.valueOf(i))
+                .register(meterRegistry);
+            shard.thread.start();
+        }
+        Gauge.builder("processor.parallel.in.flight", inFlight, AtomicInteger::get)
+            .description("Records of the current batch not yet completed")
+            .register(meterRegistry);
+        logger.info("Parallel record processing with {} shards", workers);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Shard shard : shards) {
+            shard.thread.interrupt();
+        }
+    }
+
+    /**
+     * Runs {@code handler} for every record and waits for all of them. The handler is
+     * expected to deal with its own failures; anything it throws is logged and the record
+     * counts as completed.
+     */
+    public <V> void process(List<ConsumerRecord<String, V>> records, Consumer<ConsumerRecord<String, V>> handler)
+            throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(records.size());
+        inFlight.addAndGet(records.size());
+        for (ConsumerRecord<String, V> record : records) {
+            shards[shardFor(record)].queue.put(() -> {
+                try {
+                    handler.accept(record);
+                } catch (RuntimeException e) {
+                    logger.error("Unhandled error processing record. Partition: {}, Offset: {}", record.partition(), record.offset(), e);
+                } finally {
+                    inFlight.decrementAndGet();
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+    }
+
+    public Map<String, Object> getStatistics() {
+        int[] depths = new int[shards.length];
+        for (int i = 0; i < shards.length; i++) {
+            depths[i] = shards[i].queue.size();
+        }
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("workers", shards.length);
+        stats.put("queueDepths", depths);
+        stats.put("inFlight", inFlight.get());
+        return stats;
+    }
+
+    // Keyless records stay with their partition, which keeps them in partition order
+    private int shardFor(ConsumerRecord<String, ?> record) {
+        int hash = record.key() != null ? record.key().hashCode() : record.partition();
+        return Math.floorMod(hash, shards.length);
+    }
+
+    private static final class Shard implements Runnable {
+        private final BlockingQueue<Runnable> queue;
+        private final Thread thread;
+
+        private Shard(int index, int capacity) {
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.thread = new Thread(this, "record-shard-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    queue.take().run();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
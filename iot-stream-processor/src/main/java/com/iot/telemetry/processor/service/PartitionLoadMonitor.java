@@ -0,0 +1,67 @@
+package com.iot.telemetry.processor.service;
+
+import com.iot.telemetry.common.partition.PartitionKeys;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Consumer-side view of how telemetry is spread over partitions, including how much of it
+ * arrives under split hot-user keys ({@code userId#n}). Split keys need no merge step here:
+ * per-session state never spans sub-keys, and per-user and per-feature figures are keyed by
+ * the payload's user id and feature, not by the record key.
+ */
+@Component
+public class PartitionLoadMonitor {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<Integer, Counter> partitionCounters = new ConcurrentHashMap<>();
+    private final Set<String> splitUsers = ConcurrentHashMap.newKeySet();
+    private Counter splitRecords;
+
+    @PostConstruct
+    public void init() {
+        splitRecords = Counter.builder("processor.partition.split.records")
+            .description("Records received under a split hot-user key")
+            .register(meterRegistry);
+    }
+
+    public void record(int partition, String key) {
+        partitionCounters.computeIfAbsent(partition, p -> Counter.builder("processor.partition.records")
+            .description("Telemetry records consumed per partition")
+            .tag("partition", String.valueOf(p))
+            .register(meterRegistry)).increment();
+        if (PartitionKeys.isSplit(key)) {
+            splitRecords.increment();
+            splitUsers.add(PartitionKeys.baseKey(key));
+        }
+    }
+
+    /** Records per partition plus skew, the busiest partition's count over the mean. */
+    public Map<String, Object> getStatistics() {
+        Map<Integer, Long> counts = new HashMap<>();
+        long total = 0;
+        long max = 0;
+        for (Map.Entry<Integer, Counter> entry : partitionCounters.entrySet()) {
+            long count = (long) entry.getValue().count();
+            counts.put(entry.getKey(), count);
+            total += count;
+            max = Math.max(max, count);
+        }
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("recordsPerPartition", counts);
+        stats.put("skew", counts.isEmpty() || total == 0 ? 0.0 : max / ((double) total / counts.size()));
+        stats.put("splitRecords", (long) splitRecords.count());
+        stats.put("splitUsers", splitUsers.size());
+        return stats;
+    }
+}
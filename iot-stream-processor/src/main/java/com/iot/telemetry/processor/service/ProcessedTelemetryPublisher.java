@@ -0,0 +1,106 @@
+package com.iot.telemetry.processor.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Publishes processed records as JSON to the processed-telemetry topic, keyed by user id, for
+ * the time-series service to consume at its own pace, and window results to the
+ * window-aggregates topic. Replaces {@link TimeSeriesSink} when
+ * {@code processor.timeseries.transport=kafka}. The producer batches and compresses records
+ * itself; when its buffer is full, {@link #send} blocks the processing thread.
+ */
+@Component
+@ConditionalOnProperty(name = "processor.timeseries.transport", havingValue = "kafka")
+public class ProcessedTelemetryPublisher {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProcessedTelemetryPublisher.class);
+
+    @Autowired
+    private KafkaTemplate<String, String> kafkaTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${kafka.topic.processed-telemetry:processed-telemetry}")
+    private String topic;
+
+    @Value("${kafka.topic.window-aggregates:window-aggregates}")
+    private String windowTopic;
+
+    private Counter sentRecords;
+    private Counter failedRecords;
+
+    @PostConstruct
+    public void init() {
+        sentRecords = records("sent");
+        failedRecords = records("failed");
+        logger.info("Publishing processed records to topic {}", topic);
+    }
+
+    public void send(Map<String, Object> processedData) {
+        try {
+            kafkaTemplate.send(topic, (String) processedData.get("userId"), objectMapper.writeValueAsString(processedData))
+                .whenComplete((result, error) -> {
+                    if (error == null) {
+                        sentRecords.increment();
+                    } else {
+                        failedRecords.increment();
+                        logger.error("Failed to publish processed record for user {}: {}", processedData.get("userId"), error.toString());
+                    }
+                });
+        } catch (JsonProcessingException | RuntimeException e) {
+            failedRecords.increment();
+            logger.error("Error publishing processed record for user {}", processedData.get("userId"), e);
+        }
+    }
+
+    /** Publishes window results, one record each, keyed by window name and key. */
+    public void sendWindows(List<Map<String, Object>> windows) {
+        for (Map<String, Object> window : windows) {
+            try {
+                kafkaTemplate.send(windowTopic, window.get("window") + ":" + window.get("key"), objectMapper.writeValueAsString(window))
+                    .whenComplete((result, error) -> {
+                        if (error != null) {
+                            logger.error("Failed to publish window result {} for key {}: {}", window.get("window"), window.get("key"), error.toString());
+                        }
+                    });
+            } catch (JsonProcessingException | RuntimeException e) {
+                logger.error("Error publishing window result {} for key {}", window.get("window"), window.get("key"), e);
+            }
+        }
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("topic", topic);
+        stats.put("sentRecords", (long) sentRecords.count());
+        stats.put("failedRecords", (long) failedRecords.count());
+        return stats;
+    }
+
+    // Same meter as TimeSeriesSink, so dashboards work with either transport
+    private Counter records(String result) {
+        return Counter.builder("processor.sink.records")
+            .description("Processed records by outcome of their delivery to the time-series service")
+            .tag("result", result)
+            .register(meterRegistry);
+    }
+}
@@ -0,0 +1,685 @@
+package com.iot.telemetry.processor.service;
+
+import com.iot.telemetry.processor.models.AnomalyEvent;
+import com.iot.telemetry.processor.models.EngagementMetrics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Bounded per-session processor state. Each session keeps fixed-size ring buffers of its most
+ * recent engagement samples and anomalies in primitive arrays, so memory per session is
+ * constant however long the session runs. Strings such as feature names and anomaly types are
+ * stored as dictionary codes. Sessions idle for longer than {@code session-ttl-ms} are swept,
+ * and once {@code max-sessions} is reached the least recently updated sessions are evicted.
+ * Each session is guarded by its own lock. Sessions are indexed by user and then by session id,
+ * so a user's queries only visit that user's sessions. An incremental checkpoint holds the
+ * sessions updated and the sessions removed since the previous one, and the dictionary
+ * strings added since then.
+ */
+@Component
+public class SessionStateStore implements CheckpointedState {
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionStateStore.class);
+
+    // Bytes per engagement sample and per anomaly held in the ring buffers
+    private static final int SAMPLE_BYTES = 8 + 2 + 3 * 8 + 2 * 4;
+    private static final int ANOMALY_BYTES = 8 + 4 * 2 + 2 * 8;
+    // Rough fixed cost of a session: map entry, key, lock and array headers
+    private static final int SESSION_OVERHEAD_BYTES = 400;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${processor.state.samples-per-session:32}")
+    private int samplesPerSession;
+
+    @Value("${processor.state.anomalies-per-session:16}")
+    private int anomaliesPerSession;
+
+    @Value("${processor.state.session-ttl-ms:1800000}")
+    private long sessionTtlMs;
+
+    @Value("${processor.state.max-sessions:50000}")
+    private int maxSessions;
+
+    // userId -> sessionId -> state; sessions are added and removed inside users.compute so that
+    // a user's map is dropped only while it is empty
+    private final Map<String, Map<String, SessionState>> users = new ConcurrentHashMap<>();
+    private final AtomicInteger sessionCount = new AtomicInteger();
+    private final StringDictionary dictionary = new StringDictionary();
+    private final ReentrantLock capacityLock = new ReentrantLock();
+    private final AtomicInteger anomalyRings = new AtomicInteger();
+    // User and session id of each session removed since the last checkpoint; kept from the
+    // first checkpoint on
+    private final Queue<String[]> removedSinceCheckpoint = new ConcurrentLinkedQueue<>();
+    private volatile boolean trackRemovals;
+    private int checkpointedNames = 1;
+    private Counter idleEvictions;
+    private Counter capacityEvictions;
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("processor.state.sessions", sessionCount, AtomicInteger::get)
+            .description("Sessions held in processor state")
+            .register(meterRegistry);
+        Gauge.builder("processor.state.users", users, Map::size)
+            .description("Users with at least one session in processor state")
+            .register(meterRegistry);
+        Gauge.builder("processor.state.occupancy", this, store -> (double) store.sessionCount.get() / store.maxSessions)
+            .description("Sessions held as a fraction of processor.state.max-sessions")
+            .register(meterRegistry);
+        Gauge.builder("processor.state.bytes", this, SessionStateStore::estimatedBytes)
+            .description("Estimated memory held by session state")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+        idleEvictions = Counter.builder("processor.state.evictions")
+            .description("Sessions evicted from processor state")
+            .tag("reason", "idle")
+            .register(meterRegistry);
+        capacityEvictions = Counter.builder("processor.state.evictions")
+            .description("Sessions evicted from processor state")
+            .tag("reason", "capacity")
+            .register(meterRegistry);
+    }
+
+    public void recordEngagement(EngagementMetrics engagement) {
+        short feature = dictionary.code(engagement.getFeature());
+        long now = System.currentTimeMillis();
+        SessionState state = lockSession(engagement.getUserId(), engagement.getSessionId());
+        try {
+            int slot = state.sampleHead;
+            state.sampleTimes[slot] = now;
+            state.sampleFeatures[slot] = feature;
+            state.engagementScores[slot] = engagement.getEngagementScore();
+            state.responseTimes[slot] = engagement.getAverageResponseTime();
+            state.sessionDurations[slot] = engagement.getSessionDuration();
+            state.clickCounts[slot] = engagement.getTotalClicks();
+            state.errorCounts[slot] = engagement.getErrorCount();
+            state.sampleHead = (slot + 1) % state.sampleTimes.length;
+            state.sampleCount = Math.min(state.sampleCount + 1, state.sampleTimes.length);
+            state.lastUpdated = now;
+            state.dirty = true;
+        } finally {
+            state.lock.unlock();
+        }
+    }
+
+    public void recordAnomaly(AnomalyEvent anomaly) {
+        short feature = dictionary.code(anomaly.getFeature());
+        short type = dictionary.code(anomaly.getAnomalyType());
+        short severity = dictionary.code(anomaly.getSeverity());
+        short description = dictionary.code(anomaly.getDescription());
+        long now = System.currentTimeMillis();
+        SessionState state = lockSession(anomaly.getUserId(), anomaly.getSessionId());
+        try {
+            if (state.anomalyTimes == null) {
+                state.allocateAnomalies(anomaliesPerSession);
+                anomalyRings.incrementAndGet();
+            }
+            int slot = state.anomalyHead;
+            state.anomalyTimes[slot] = now;
+            state.anomalyFeatures[slot] = feature;
+            state.anomalyTypes[slot] = type;
+            state.anomalySeverities[slot] = severity;
+            state.anomalyDescriptions[slot] = description;
+            state.anomalyThresholds[slot] = anomaly.getThreshold();
+            state.anomalyValues[slot] = anomaly.getActualValue();
+            state.anomalyHead = (slot + 1) % state.anomalyTimes.length;
+            state.anomalyCount = Math.min(state.anomalyCount + 1, state.anomalyTimes.length);
+            state.lastUpdated = now;
+            state.dirty = true;
+        } finally {
+            state.lock.unlock();
+        }
+    }
+
+    /**
+     * The user's engagement samples recorded in {@code [from, to)} (epoch millis), keyed by
+     * session id, oldest first. At most {@code limit} samples are returned, the most recent.
+     */
+    public Map<String, Object> getEngagementMetrics(String userId, long from, long to, int limit) {
+        Map<String, List<EngagementMetrics>> bySession = new HashMap<>();
+        Map<String, SessionState> userSessions = users.get(userId);
+        if (userSessions != null) {
+            for (SessionState state : userSessions.values()) {
+                List<EngagementMetrics> samples = state.engagementSnapshot(from, to);
+                if (!samples.isEmpty()) {
+                    bySession.put(state.sessionId, samples);
+                }
+            }
+        }
+        return newest(bySession, EngagementMetrics::getTimestamp, limit);
+    }
+
+    /**
+     * The user's anomalies recorded in {@code [from, to)} (epoch millis), keyed by session id,
+     * oldest first. At most {@code limit} anomalies are returned, the most recent.
+     */
+    public Map<String, Object> getAnomalyEvents(String userId, long from, long to, int limit) {
+        Map<String, List<AnomalyEvent>> bySession = new HashMap<>();
+        Map<String, SessionState> userSessions = users.get(userId);
+        if (userSessions != null) {
+            for (SessionState state : userSessions.values()) {
+                List<AnomalyEvent> anomalies = state.anomalySnapshot(from, to);
+                if (!anomalies.isEmpty()) {
+                    bySession.put(state.sessionId, anomalies);
+                }
+            }
+        }
+        return newest(bySession, AnomalyEvent::getTimestamp, limit);
+    }
+
+    // Keeps the limit most recent items across sessions; each list stays oldest first
+    private static <T> Map<String, Object> newest(Map<String, List<T>> bySession, Function<T, LocalDateTime> time,
+                                                  int limit) {
+        int total = bySession.values().stream().mapToInt(List::size).sum();
+        if (total <= limit) {
+            return new HashMap<>(bySession);
+        }
+        List<LocalDateTime> times = new ArrayList<>(total);
+        bySession.values().forEach(items -> items.forEach(item -> times.add(time.apply(item))));
+        times.sort(Comparator.reverseOrder());
+        LocalDateTime cutoff = times.get(limit - 1);
+        // Items at the cutoff time fill whatever room the newer ones leave
+        int atCutoff = limit - (int) times.stream().filter(t -> t.isAfter(cutoff)).count();
+
+        Map<String, Object> result = new HashMap<>();
+        for (Map.Entry<String, List<T>> entry : bySession.entrySet()) {
+            List<T> kept = new ArrayList<>();
+            for (T item : entry.getValue()) {
+                LocalDateTime itemTime = time.apply(item);
+                if (itemTime.isAfter(cutoff) || (itemTime.isEqual(cutoff) && atCutoff-- > 0)) {
+                    kept.add(item);
+                }
+            }
+            if (!kept.isEmpty()) {
+                result.put(entry.getKey(), kept);
+            }
+        }
+        return result;
+    }
+
+    @Scheduled(fixedDelayString = "${processor.state.sweep-interval-ms:60000}")
+    public void evictIdleSessions() {
+        long cutoff = System.currentTimeMillis() - sessionTtlMs;
+        int evicted = 0;
+        for (Map<String, SessionState> userSessions : users.values()) {
+            for (SessionState state : userSessions.values()) {
+                if (state.lastUpdated < cutoff && evict(state, cutoff)) {
+                    evicted++;
+                }
+            }
+        }
+        if (evicted > 0) {
+            idleEvictions.increment(evicted);
+            logger.debug("Evicted {} idle sessions, {} remain", evicted, sessionCount.get());
+        }
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("sessions", sessionCount.get());
+        stats.put("users", users.size());
+        stats.put("maxSessions", maxSessions);
+        stats.put("estimatedBytes", estimatedBytes());
+        stats.put("idleEvictions", (long) idleEvictions.count());
+        stats.put("capacityEvictions", (long) capacityEvictions.count());
+        return stats;
+    }
+
+    @Override
+    public String checkpointName() { return "sessions"; }
+
+    @Override
+    public void writeCheckpoint(DataOutput out, boolean full) throws IOException {
+        trackRemovals = true;
+        List<String[]> removed = new ArrayList<>();
+        String[] ids;
+        while ((ids = removedSinceCheckpoint.poll()) != null) {
+            if (!full) {
+                removed.add(ids);
+            }
+        }
+        out.writeInt(removed.size());
+        for (String[] removedIds : removed) {
+            out.writeUTF(removedIds[0]);
+            out.writeUTF(removedIds[1]);
+        }
+        for (Map<String, SessionState> userSessions : users.values()) {
+            for (SessionState state : userSessions.values()) {
+                state.write(out, full);
+            }
+        }
+        out.writeBoolean(false);
+        // Written after the sessions, so it covers every code they hold
+        int names = dictionary.size();
+        int from = full ? 1 : checkpointedNames;
+        out.writeInt(from);
+        out.writeInt(names - from);
+        for (int code = from; code < names; code++) {
+            out.writeUTF(dictionary.name((short) code));
+        }
+        checkpointedNames = names;
+    }
+
+    @Override
+    public void readCheckpoint(DataInput in, boolean full) throws IOException {
+        int removed = in.readInt();
+        for (int i = 0; i < removed; i++) {
+            removeSession(in.readUTF(), in.readUTF());
+        }
+        while (in.readBoolean()) {
+            restoreSession(readSession(in));
+        }
+        // Codes are positions, so the strings must be added in their original order
+        int from = in.readInt();
+        int added = in.readInt();
+        if (from != dictionary.size()) {
+            throw new IOException("Checkpoint dictionary starts at " + from + " but " + dictionary.size() + " strings are held");
+        }
+        for (int i = 0; i < added; i++) {
+            dictionary.code(in.readUTF());
+        }
+        checkpointedNames = dictionary.size();
+    }
+
+    private SessionState readSession(DataInput in) throws IOException {
+        SessionState state = new SessionState(in.readUTF(), in.readUTF(), samplesPerSession);
+        state.lastUpdated = in.readLong();
+        int samples = in.readInt();
+        for (int i = 0; i < samples; i++) {
+            int slot = state.sampleHead;
+            state.sampleTimes[slot] = in.readLong();
+            state.sampleFeatures[slot] = in.readShort();
+            state.engagementScores[slot] = in.readDouble();
+            state.responseTimes[slot] = in.readDouble();
+            state.sessionDurations[slot] = in.readDouble();
+            state.clickCounts[slot] = in.readInt();
+            state.errorCounts[slot] = in.readInt();
+            state.sampleHead = (slot + 1) % state.sampleTimes.length;
+            state.sampleCount = Math.min(state.sampleCount + 1, state.sampleTimes.length);
+        }
+        int anomalies = in.readInt();
+        if (anomalies > 0) {
+            state.allocateAnomalies(anomaliesPerSession);
+        }
+        for (int i = 0; i < anomalies; i++) {
+            int slot = state.anomalyHead;
+            state.anomalyTimes[slot] = in.readLong();
+            state.anomalyFeatures[slot] = in.readShort();
+            state.anomalyTypes[slot] = in.readShort();
+            state.anomalySeverities[slot] = in.readShort();
+            state.anomalyDescriptions[slot] = in.readShort();
+            state.anomalyThresholds[slot] = in.readDouble();
+            state.anomalyValues[slot] = in.readDouble();
+            state.anomalyHead = (slot + 1) % state.anomalyTimes.length;
+            state.anomalyCount = Math.min(state.anomalyCount + 1, state.anomalyTimes.length);
+        }
+        return state;
+    }
+
+    // Adds the session, replacing any saved earlier in the restored chain
+    private void restoreSession(SessionState state) {
+        users.compute(state.userId, (user, userSessions) -> {
+            Map<String, SessionState> sessions = userSessions != null ? userSessions : new ConcurrentHashMap<>(4);
+            SessionState previous = sessions.put(state.sessionId, state);
+            if (previous == null) {
+                sessionCount.incrementAndGet();
+            } else if (previous.anomalyTimes != null) {
+                anomalyRings.decrementAndGet();
+            }
+            return sessions;
+        });
+        if (state.anomalyTimes != null) {
+            anomalyRings.incrementAndGet();
+        }
+    }
+
+    private void removeSession(String userId, String sessionId) {
+        users.computeIfPresent(userId, (user, userSessions) -> {
+            SessionState removed = userSessions.remove(sessionId);
+            if (removed != null) {
+                sessionCount.decrementAndGet();
+                if (removed.anomalyTimes != null) {
+                    anomalyRings.decrementAndGet();
+                }
+            }
+            return userSessions.isEmpty() ? null : userSessions;
+        });
+    }
+
+    private double estimatedBytes() {
+        return (double) sessionCount.get() * (SESSION_OVERHEAD_BYTES + (long) samplesPerSession * SAMPLE_BYTES)
+            + (double) anomalyRings.get() * anomaliesPerSession * ANOMALY_BYTES;
+    }
+
+    // Returns the session with its lock held; retries if a sweep evicted it in between
+    private SessionState lockSession(String userId, String sessionId) {
+        String user = String.valueOf(userId);
+        String session = String.valueOf(sessionId);
+        while (true) {
+            Map<String, SessionState> userSessions = users.get(user);
+            SessionState state = userSessions != null ? userSessions.get(session) : null;
+            if (state == null) {
+                state = addSession(user, session);
+                if (sessionCount.get() > maxSessions) {
+                    evictForCapacity();
+                }
+            }
+            state.lock.lock();
+            if (!state.evicted) {
+                return state;
+            }
+            state.lock.unlock();
+        }
+    }
+
+    private SessionState addSession(String userId, String sessionId) {
+        SessionState[] added = new SessionState[1];
+        users.compute(userId, (user, userSessions) -> {
+            Map<String, SessionState> sessions = userSessions != null ? userSessions : new ConcurrentHashMap<>(4);
+            added[0] = sessions.computeIfAbsent(sessionId, session -> {
+                sessionCount.incrementAndGet();
+                return new SessionState(userId, sessionId, samplesPerSession);
+            });
+            return sessions;
+        });
+        return added[0];
+    }
+
+    /**
+     * Evicts the least recently updated twentieth of the sessions, so the sort behind it runs
+     * once per many inserts. One thread evicts at a time; others carry on meanwhile.
+     */
+    private void evictForCapacity() {
+        if (!capacityLock.tryLock()) {
+            return;
+        }
+        try {
+            int excess = sessionCount.get() - maxSessions;
+            if (excess <= 0) {
+                return;
+            }
+            long[] lastUpdated = users.values().stream()
+                .flatMap(userSessions -> userSessions.values().stream())
+                .mapToLong(state -> state.lastUpdated)
+                .toArray();
+            Arrays.sort(lastUpdated);
+            int target = Math.min(lastUpdated.length - 1, excess + maxSessions / 20);
+            long cutoff = lastUpdated[target];
+            int evicted = 0;
+            for (Map<String, SessionState> userSessions : users.values()) {
+                for (SessionState state : userSessions.values()) {
+                    if (state.lastUpdated < cutoff && evict(state, cutoff)) {
+                        evicted++;
+                    }
+                }
+            }
+            capacityEvictions.increment(evicted);
+            logger.debug("Evicted {} sessions over the limit of {}", evicted, maxSessions);
+        } finally {
+            capacityLock.unlock();
+        }
+    }
+
+    // Removes the session unless it was updated at or after the cutoff since it was examined
+    private boolean evict(SessionState state, long cutoff) {
+        state.lock.lock();
+        try {
+            if (state.lastUpdated >= cutoff) {
+                return false;
+            }
+            boolean[] removed = new boolean[1];
+            users.computeIfPresent(state.userId, (user, userSessions) -> {
+                removed[0] = userSessions.remove(state.sessionId, state);
+                return userSessions.isEmpty() ? null : userSessions;
+            });
+            if (!removed[0]) {
+                return false;
+            }
+            sessionCount.decrementAndGet();
+            state.evicted = true;
+            if (trackRemovals) {
+                removedSinceCheckpoint.add(new String[] {state.userId, state.sessionId});
+            }
+            if (state.anomalyTimes != null) {
+                anomalyRings.decrementAndGet();
+            }
+            return true;
+        } finally {
+            state.lock.unlock();
+        }
+    }
+
+    private final class SessionState {
+        private final String userId;
+        private final String sessionId;
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile long lastUpdated = System.currentTimeMillis();
+        private boolean evicted;
+        // Updated since the last checkpoint
+        private boolean dirty;
+
+        private final long[] sampleTimes;
+        private final short[] sampleFeatures;
+        private final double[] engagementScores;
+        private final double[] responseTimes;
+        private final double[] sessionDurations;
+        private final int[] clickCounts;
+        private final int[] errorCounts;
+        private int sampleHead;
+        private int sampleCount;
+
+        // Allocated with the session's first anomaly
+        private long[] anomalyTimes;
+        private short[] anomalyFeatures;
+        private short[] anomalyTypes;
+        private short[] anomalySeverities;
+        private short[] anomalyDescriptions;
+        private double[] anomalyThresholds;
+        private double[] anomalyValues;
+        private int anomalyHead;
+        private int anomalyCount;
+
+        private SessionState(String userId, String sessionId, int samples) {
+            this.userId = userId;
+            this.sessionId = sessionId;
+            this.sampleTimes = new long[samples];
+            this.sampleFeatures = new short[samples];
+            this.engagementScores = new double[samples];
+            this.responseTimes = new double[samples];
+            this.sessionDurations = new double[samples];
+            this.clickCounts = new int[samples];
+            this.errorCounts = new int[samples];
+        }
+
+        private void allocateAnomalies(int size) {
+            anomalyTimes = new long[size];
+            anomalyFeatures = new short[size];
+            anomalyTypes = new short[size];
+            anomalySeverities = new short[size];
+            anomalyDescriptions = new short[size];
+            anomalyThresholds = new double[size];
+            anomalyValues = new double[size];
+        }
+
+        // Writes the session, oldest entries first, if it belongs in this checkpoint
+        private void write(DataOutput out, boolean full) throws IOException {
+            lock.lock();
+            try {
+                if (evicted || !(full || dirty)) {
+                    return;
+                }
+                out.writeBoolean(true);
+                out.writeUTF(userId);
+                out.writeUTF(sessionId);
+                out.writeLong(lastUpdated);
+                out.writeInt(sampleCount);
+                int first = (sampleHead - sampleCount + sampleTimes.length) % sampleTimes.length;
+                for (int i = 0; i < sampleCount; i++) {
+                    int slot = (first + i) % sampleTimes.length;
+                    out.writeLong(sampleTimes[slot]);
+                    out.writeShort(sampleFeatures[slot]);
+                    out.writeDouble(engagementScores[slot]);
+                    out.writeDouble(responseTimes[slot]);
+                    out.writeDouble(sessionDurations[slot]);
+                    out.writeInt(clickCounts[slot]);
+                    out.writeInt(errorCounts[slot]);
+                }
+                out.writeInt(anomalyCount);
+                if (anomalyCount > 0) {
+                    int firstAnomaly = (anomalyHead - anomalyCount + anomalyTimes.length) % anomalyTimes.length;
+                    for (int i = 0; i < anomalyCount; i++) {
+                        int slot = (firstAnomaly + i) % anomalyTimes.length;
+                        out.writeLong(anomalyTimes[slot]);
+                        out.writeShort(anomalyFeatures[slot]);
+                        out.writeShort(anomalyTypes[slot]);
+                        out.writeShort(anomalySeverities[slot]);
+                        out.writeShort(anomalyDescriptions[slot]);
+                        out.writeDouble(anomalyThresholds[slot]);
+                        out.writeDouble(anomalyValues[slot]);
+                    }
+                }
+                dirty = false;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private List<EngagementMetrics> engagementSnapshot(long from, long to) {
+            lock.lock();
+            try {
+                List<EngagementMetrics> samples = new ArrayList<>();
+                int first = (sampleHead - sampleCount + sampleTimes.length) % sampleTimes.length;
+                for (int i = 0; i < sampleCount; i++) {
+                    int slot = (first + i) % sampleTimes.length;
+                    if (sampleTimes[slot] < from || sampleTimes[slot] >= to) {
+                        continue;
+                    }
+                    EngagementMetrics metrics = new EngagementMetrics(userId, sessionId, dictionary.name(sampleFeatures[slot]),
+                        engagementScores[slot], responseTimes[slot], clickCounts[slot], errorCounts[slot], sessionDurations[slot]);
+                    metrics.setTimestamp(toLocalDateTime(sampleTimes[slot]));
+                    samples.add(metrics);
+                }
+                return samples;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private List<AnomalyEvent> anomalySnapshot(long from, long to) {
+            lock.lock();
+            try {
+                List<AnomalyEvent> anomalies = new ArrayList<>();
+                if (anomalyTimes == null) {
+                    return anomalies;
+                }
+                int first = (anomalyHead - anomalyCount + anomalyTimes.length) % anomalyTimes.length;
+                for (int i = 0; i < anomalyCount; i++) {
+                    int slot = (first + i) % anomalyTimes.length;
+                    if (anomalyTimes[slot] < from || anomalyTimes[slot] >= to) {
+                        continue;
+                    }
+                    AnomalyEvent anomaly = new AnomalyEvent(userId, sessionId, dictionary.name(anomalyFeatures[slot]),
+                        dictionary.name(anomalyTypes[slot]), dictionary.name(anomalySeverities[slot]),
+                        dictionary.name(anomalyDescriptions[slot]), anomalyThresholds[slot], anomalyValues[slot]);
+                    anomaly.setTimestamp(toLocalDateTime(anomalyTimes[slot]));
+                    anomalies.add(anomaly);
+                }
+                return anomalies;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static LocalDateTime toLocalDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+
+    /**
+     * Interns the few distinct strings held in state (features, anomaly types, severities and
+     * descriptions) as short codes. Code 0 is null; past the code space, new strings share
+     * the last code, which reads back as "other".
+     */
+    private static final class StringDictionary {
+        private static final int MAX_CODES = Short.MAX_VALUE;
+
+        private final Map<String, Short> codes = new ConcurrentHashMap<>();
+        private final ReentrantLock addLock = new ReentrantLock();
+        private volatile String[] names = new String[64];
+        private int size = 1;
+
+        private short code(String value) {
+            if (value == null) {
+                return 0;
+            }
+            Short code = codes.get(value);
+            return code != null ? code : add(value);
+        }
+
+        private short add(String value) {
+            addLock.lock();
+            try {
+                Short code = codes.get(value);
+                if (code != null) {
+                    return code;
+                }
+                if (size == MAX_CODES - 1) {
+                    return (short) (MAX_CODES - 1);
+                }
+                if (size == names.length) {
+                    names = Arrays.copyOf(names, names.length * 2);
+                }
+                names[size] = value;
+                codes.put(value, (short) size);
+                return (short) size++;
+            } finally {
+                addLock.unlock();
+            }
+        }
+
+        private int size() {
+            addLock.lock();
+            try {
+                return size;
+            } finally {
+                addLock.unlock();
+            }
+        }
+
+        private String name(short code) {
+            if (code == MAX_CODES - 1) {
+                return "other";
+            }
+            return code == 0 ? null : names[code];
+        }
+    }
+}
@@ -1,139 +1,333 @@
 package com.iot.telemetry.processor.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iot.telemetry.common.codec.MetricSlot;
+import com.iot.telemetry.common.codec.TelemetryRecord;
 import com.iot.telemetry.processor.models.AnomalyEvent;
 import com.iot.telemetry.processor.models.EngagementMetrics;
+import com.iot.telemetry.processor.window.WindowAggregate;
 
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.annotation.KafkaListener;
-import org.springframework.kafka.support.KafkaHeaders;
-import org.springframework.messaging.handler.annotation.Header;
-import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.kafka.listener.ConsumerSeekAware;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 @Service
-public class TelemetryConsumerService {
+public class TelemetryConsumerService implements CheckpointedState, ConsumerSeekAware {
     
     private static final Logger logger = LoggerFactory.getLogger(TelemetryConsumerService.class);
     
+    // Anomaly type, severity and description per AdaptiveAnomalyDetector metric. Descriptions
+    // are fixed, one per metric and baseline, as the session store keeps them as dictionary
+    // codes; the z-score goes in the anomaly's context
+    private static final String[] ADAPTIVE_ANOMALY_TYPES = {"HIGH_RESPONSE_TIME", "HIGH_ERROR_RATE", "UNUSUAL_CLICK_PATTERN", "LOW_ENGAGEMENT"};
+    private static final String[] ADAPTIVE_ANOMALY_SEVERITIES = {"WARNING", "ERROR", "INFO", "WARNING"};
+    private static final String[] FEATURE_BASELINE_DESCRIPTIONS = {
+        "Response time far above the feature baseline",
+        "New errors far above the feature baseline",
+        "New clicks far above the feature baseline",
+        "Engagement far below the feature baseline"
+    };
+    private static final String[] USER_BASELINE_DESCRIPTIONS = {
+        "Response time far above the user and feature baseline",
+        "New errors far above the user and feature baseline",
+        "New clicks far above the user and feature baseline",
+        "Engagement far below the user and feature baseline"
+    };
+    
     @Autowired
     private ObjectMapper objectMapper;
     
+    // Delivers processed records to the time-series service; exactly one of the two is present,
+    // selected by processor.timeseries.transport (http or kafka)
+    @Autowired(required = false)
+    private TimeSeriesSink timeSeriesSink;
+    
+    @Autowired(required = false)
+    private ProcessedTelemetryPublisher processedTelemetryPublisher;
+    
+    @Autowired
+    private PartitionLoadMonitor partitionLoadMonitor;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    // Bounded recent engagement and anomalies per session
+    @Autowired
+    private SessionStateStore sessionStateStore;
+    
+    // Per user×feature baselines for anomaly detection
+    @Autowired
+    private AdaptiveAnomalyDetector adaptiveAnomalyDetector;
+    
+    // Reloadable threshold rules
+    @Autowired
+    private AnomalyRuleEngine anomalyRuleEngine;
+    
+    // Streams JSON messages into TelemetryRecords
+    @Autowired
+    private TelemetryJsonDecoder telemetryJsonDecoder;
+    
+    // Per-feature percentiles and mean engagement
     @Autowired
-    private WebClient webClient;
+    private FeatureSketchService featureSketchService;
+    
+    // Event-time window aggregates per feature, user or session
+    @Autowired
+    private WindowingService windowingService;
+    
+    // Absent unless processor.parallel.enabled=true
+    @Autowired(required = false)
+    private ParallelRecordProcessor parallelRecordProcessor;
+    
+    // Absent unless processor.checkpoint.enabled=true
+    @Autowired(required = false)
+    private CheckpointService checkpointService;
+    
+    // Selects which of the two listeners below is started
+    @Value("${kafka.consumer.batch-mode:false}")
+    private boolean batchMode;
+    
+    // adaptive: z-scores against per user×feature baselines; rules: AnomalyRuleEngine thresholds; both: either
+    @Value("${processor.anomaly.detector:adaptive}")
+    private String anomalyDetector;
+    
+    // Reused per thread: JSON messages are decoded into the record, window inputs into the array
+    private final ThreadLocal<TelemetryRecord> decodedRecords = ThreadLocal.withInitial(TelemetryRecord::new);
+    private final ThreadLocal<double[]> windowValues = ThreadLocal.withInitial(() -> new double[WindowAggregate.METRICS.length]);
+    
+    private final ThreadLocal<AdaptiveAnomalyDetector.Result> anomalyScores =
+        ThreadLocal.withInitial(AdaptiveAnomalyDetector.Result::new);
     
     private final AtomicLong processedCount = new AtomicLong(0);
     private final AtomicLong errorCount = new AtomicLong(0);
     private final AtomicLong anomalyCount = new AtomicLong(0);
 
-    // In-memory storage for real-time processing
-    private final Map<String, List<EngagementMetrics>> userEngagement = new ConcurrentHashMap<>();
-    private final Map<String, List<AnomalyEvent>> userAnomalies = new ConcurrentHashMap<>();
-    
     // Real-time metrics
-    private final Map<String, Double> featureEngagementScores = new ConcurrentHashMap<>();
     private final Map<String, Integer> featureErrorRates = new ConcurrentHashMap<>();
     
-    @SuppressWarnings("unchecked")
-    @KafkaListener(topics = "${kafka.topic.telemetry:telemetry-data}", groupId = "stream-processor")
-    public void processTelemetryData(
-            @Payload String message,
-            @Header(KafkaHeaders.RECEIVED_TOPIC) String topic,
-            @Header(KafkaHeaders.RECEIVED_PARTITION) int partition,
-            @Header(KafkaHeaders.OFFSET) long offset) {
+    private DistributionSummary batchSize;
+    private Timer batchDuration;
+    
+    @PostConstruct
+    public void init() {
+        batchSize = DistributionSummary.builder("processor.batch.size")
+            .description("Records per batch delivered to the batch listener")
+            .register(meterRegistry);
+        batchDuration = Timer.builder("processor.batch.duration")
+            .description("Time to decode, score and hand off one batch")
+            .register(meterRegistry);
+    }
+    
+    // Record mode (default): one record per call.
+    // Takes the ConsumerRecord itself: an Object payload parameter would be bound to the
+    // record rather than to its value.
+    @KafkaListener(id = "telemetry-record-listener", topics = "${kafka.topic.telemetry:telemetry-data}", groupId = "${kafka.consumer.group-id:stream-processor}",
+                   autoStartup = "#{!${kafka.consumer.batch-mode:false}}")
+    public void processTelemetryData(ConsumerRecord<String, Object> record) {
         
         try {
-            logger.info("Received telemetry data from Kafka. Topic: {}, Partition: {}, Offset: {}", 
-                      topic, partition, offset);
-            
-            // Parse the message
-            Map<String, Object> telemetryData = objectMapper.readValue(message, Map.class);
+            logger.debug("Received telemetry data from Kafka. Topic: {}, Partition: {}, Offset: {}", 
+                      record.topic(), record.partition(), record.offset());
+            partitionLoadMonitor.record(record.partition(), record.key());
             
-            processData(telemetryData);
+            processData(decode(record.value()));
             
             processedCount.incrementAndGet();
-            logger.info("Successfully processed telemetry data. Processed count: {}", processedCount.get());
+            logger.debug("Successfully processed telemetry data. Processed count: {}", processedCount.get());
             
         } catch (Exception e) {
             errorCount.incrementAndGet();
             logger.error("Error processing telemetry data from Kafka", e);
         }
+        if (checkpointService != null) {
+            checkpointService.processed(record);
+            checkpointService.checkpointIfDue();
+        }
     }
-
-    private void writeToTimeSeriesDB(String userId, String sessionId, String feature, String action, 
-                                    Map<String, Object> metrics, EngagementMetrics engagement) {
+    
+    /**
+     * Batch mode ({@code kafka.consumer.batch-mode=true}): one call per poll of up to
+     * {@code max-poll-records}. Every record is decoded and scored, and the results go to
+     * the time-series sink or topic. A record that fails is counted
+     * and skipped without failing the rest of the batch. With {@code processor.parallel.enabled}
+     * the records are spread over key-ordered shards, and the call still returns only once
+     * all of them are done.
+     */
+    @KafkaListener(id = "telemetry-batch-listener", topics = "${kafka.topic.telemetry:telemetry-data}", groupId = "${kafka.consumer.group-id:stream-processor}",
+                   containerFactory = "batchKafkaListenerContainerFactory", autoStartup = "${kafka.consumer.batch-mode:false}")
+    public void processTelemetryBatch(List<ConsumerRecord<String, Object>> records) throws InterruptedException {
+        long start = System.nanoTime();
+        if (parallelRecordProcessor != null) {
+            parallelRecordProcessor.process(records, this::processBatchRecord);
+        } else {
+            for (ConsumerRecord<String, Object> record : records) {
+                processBatchRecord(record);
+            }
+        }
+        
+        if (checkpointService != null) {
+            for (ConsumerRecord<String, Object> record : records) {
+                checkpointService.processed(record);
+            }
+            checkpointService.checkpointIfDue();
+        }
+        
+        batchSize.record(records.size());
+        batchDuration.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        logger.debug("Processed batch of {} records. Processed count: {}", records.size(), processedCount.get());
+    }
+    
+    private void processBatchRecord(ConsumerRecord<String, Object> record) {
         try {
-            // Create processed data object
-            Map<String, Object> processedData = new HashMap<>();
-            processedData.put("userId", userId);
-            processedData.put("sessionId", sessionId);
-            processedData.put("feature", feature);
-            processedData.put("action", action);
-            processedData.put("metrics", metrics);
-            processedData.put("engagementScore", engagement != null ? engagement.getEngagementScore() : 0.0);
-            processedData.put("responseTime", getDoubleValue(metrics, "responseTime", 0.0));
-            processedData.put("clickCount", getIntValue(metrics, "clickCount", 0));
-            processedData.put("errorCount", getIntValue(metrics, "errorCount", 0));
-            processedData.put("sessionDuration", getDoubleValue(metrics, "sessionDuration", 0.0));
-            
-            // Send to time series service
-            webClient.post()
-                .uri("http://localhost:8084/api/v1/timeseries/processed-data")
-                .bodyValue(processedData)
-                .retrieve()
-                .bodyToMono(Map.class)
-                .subscribe(
-                    response -> logger.info("Successfully sent processed data to time series service: {}", response),
-                    error -> logger.error("Failed to send processed data to time series service", error)
-                );
-                
+            partitionLoadMonitor.record(record.partition(), record.key());
+            processData(decode(record.value()));
+            processedCount.incrementAndGet();
         } catch (Exception e) {
-            logger.error("Error sending processed data to time series service", e);
+            errorCount.incrementAndGet();
+            logger.error("Error processing telemetry data from Kafka. Partition: {}, Offset: {}", 
+                       record.partition(), record.offset(), e);
         }
     }
     
+    /**
+     * Binary records arrive decoded; JSON messages are streamed into this thread's reusable
+     * record. Returns null, after logging, when the message has no metrics.
+     */
+    private TelemetryRecord decode(Object message) throws IOException {
+        if (message instanceof TelemetryRecord) {
+            return (TelemetryRecord) message;
+        }
+        TelemetryRecord record = decodedRecords.get();
+        if (!telemetryJsonDecoder.decode((String) message, record)) {
+            logger.warn("Failed to parse metrics for user: {}, feature: {}", record.getUserId(), record.getFeature());
+            return null;
+        }
+        return record;
+    }
+
+    // Events posted as maps, whose metrics may be a map or a JSON string
+    private TelemetryRecord toTelemetryRecord(Map<String, Object> data) {
+        Map<String, Object> metrics = parseMetrics(data.get("metrics"));
+        if (metrics == null) {
+            logger.warn("Failed to parse metrics for user: {}, feature: {}", data.get("userId"), data.get("feature"));
+            return null;
+        }
+        TelemetryRecord record = new TelemetryRecord();
+        record.setUserId((String) data.get("userId"));
+        record.setSessionId((String) data.get("sessionId"));
+        record.setFeature((String) data.get("feature"));
+        record.setAction((String) data.get("action"));
+        record.setTimestampMillis(WindowingService.eventTime(data.get("timestamp"), 0L));
+        record.setMetrics(metrics);
+        return record;
+    }
+    
+    private Map<String, Object> createProcessedData(TelemetryRecord record, double engagementScore, long eventTime) {
+        Map<String, Object> processedData = new HashMap<>();
+        processedData.put("userId", record.getUserId());
+        processedData.put("sessionId", record.getSessionId());
+        processedData.put("feature", record.getFeature());
+        processedData.put("action", record.getAction());
+        processedData.put("metrics", record.toMetricsMap());
+        processedData.put("engagementScore", engagementScore);
+        processedData.put("responseTime", record.getMetric(MetricSlot.RESPONSE_TIME, 0.0));
+        processedData.put("clickCount", (int) record.getMetric(MetricSlot.CLICK_COUNT, 0));
+        processedData.put("errorCount", (int) record.getMetric(MetricSlot.ERROR_COUNT, 0));
+        processedData.put("sessionDuration", record.getMetric(MetricSlot.SESSION_DURATION, 0.0));
+        // Epoch millis; the time-series service timestamps the record's points with it
+        processedData.put("eventTime", eventTime);
+        // The ingestion id, which keeps the record's points apart within that millisecond
+        if (record.getId() != TelemetryRecord.NO_ID) {
+            processedData.put("id", record.getId());
+        }
+        return processedData;
+    }
+    
     public void processData(Map<String, Object> data) {
-        String userId = (String) data.get("userId");
-        String sessionId = (String) data.get("sessionId");
-        String feature = (String) data.get("feature");
-        String action = (String) data.get("action");
-        Object metricsObj = data.get("metrics");
+        processData(toTelemetryRecord(data));
+    }
+    
+    private void processData(TelemetryRecord record) {
+        Map<String, Object> processedData = processRecord(record);
+        if (processedData != null) {
+            if (timeSeriesSink != null) {
+                timeSeriesSink.send(processedData);
+            } else {
+                processedTelemetryPublisher.send(processedData);
+            }
+        }
+    }
+    
+    /**
+     * Scores one event, updates in-memory state and dashboards, and returns the record for
+     * the time-series service, or null when the event could not be decoded. Nothing keeps a
+     * reference to {@code record}, which the caller may reuse.
+     */
+    private Map<String, Object> processRecord(TelemetryRecord record) {
+        if (record == null) {
+            return null;
+        }
+        String userId = record.getUserId();
+        String sessionId = record.getSessionId();
+        String feature = record.getFeature();
         
-        logger.info("Processing data for user: {}, feature: {}, action: {}", userId, feature, action);
+        logger.debug("Processing data for user: {}, feature: {}, action: {}", userId, feature, record.getAction());
         
-        Map<String, Object> metrics = parseMetrics(metricsObj);
-        if (metrics == null) {
-            logger.warn("Failed to parse metrics for user: {}, feature: {}", userId, feature);
-            return;
-        }
+        double responseTime = record.getMetric(MetricSlot.RESPONSE_TIME, 0.0);
+        int errorCount = (int) record.getMetric(MetricSlot.ERROR_COUNT, 0);
+        int clickCount = (int) record.getMetric(MetricSlot.CLICK_COUNT, 1);
+        double sessionDuration = record.getMetric(MetricSlot.SESSION_DURATION, 0.0);
+        double pageLoadTime = record.getMetric(MetricSlot.PAGE_LOAD_TIME, 0.0);
+        double engagementScore = calculateEngagementScore(responseTime, errorCount, clickCount, sessionDuration);
 
         // 1. Calculate Engagement Metrics
-        EngagementMetrics engagement = calculateEngagementMetrics(userId, sessionId, feature, action, metrics);
-        if (engagement != null) {
-            storeEngagementMetrics(engagement);
-            updateFeatureEngagement(feature, engagement.getEngagementScore());
-        }
+        EngagementMetrics engagement = new EngagementMetrics(userId, sessionId, feature, engagementScore,
+                                                             responseTime, clickCount, errorCount, sessionDuration);
+        storeEngagementMetrics(engagement);
+        featureSketchService.record(feature, engagementScore, responseTime, pageLoadTime);
         
         // 2. Detect Anomalies
-        List<AnomalyEvent> anomalies = detectAnomalies(userId, sessionId, feature, action, metricsObj);
+        List<AnomalyEvent> anomalies = detectAnomalies(userId, sessionId, feature, record, responseTime,
+                                                       errorCount, clickCount, engagementScore);
         for (AnomalyEvent anomaly : anomalies) {
             storeAnomalyEvent(anomaly);
             updateFeatureErrorRate(feature);
-            logger.warn("ANOMALY DETECTED: {} - {}", anomaly.getAnomalyType(), anomaly.getDescription());
+            logger.warn("ANOMALY DETECTED: {} - {} (value {}, threshold {})", anomaly.getAnomalyType(), anomaly.getDescription(),
+                        anomaly.getActualValue(), anomaly.getThreshold());
         }
         
-        // 3. Send processed data to Time Series Service
-        writeToTimeSeriesDB(userId, sessionId, feature, action, metrics, engagement);
-        
-        // 4. Real-time Dashboard Updates
+        // 3. Real-time Dashboard Updates
         updateRealTimeDashboards(userId, feature, engagement, anomalies);
+        
+        // 4. Event-time Windows
+        long eventTime = record.getTimestampMillis() != 0 ? record.getTimestampMillis() : System.currentTimeMillis();
+        double[] values = windowValues.get();
+        values[0] = engagementScore;
+        values[1] = responseTime;
+        values[2] = pageLoadTime;
+        values[3] = sessionDuration;
+        windowingService.record(userId, sessionId, feature, eventTime, values);
+        
+        // 5. Processed data for the Time Series Service
+        return createProcessedData(record, engagementScore, eventTime);
     }
 
     @SuppressWarnings("unchecked")
@@ -157,27 +351,6 @@ public class TelemetryConsumerService {
         }
     }
     
-    @SuppressWarnings("unchecked")
-    private EngagementMetrics calculateEngagementMetrics(String userId, String sessionId, String feature, 
-                                                       String action, Object metricsObj) {
-        if (metricsObj instanceof Map) {
-            Map<String, Object> metrics = (Map<String, Object>) metricsObj;
-            
-            // Extract metrics
-            double responseTime = getDoubleValue(metrics, "responseTime", 0.0);
-            int errorCount = getIntValue(metrics, "errorCount", 0);
-            int clickCount = getIntValue(metrics, "clickCount", 1);
-            double sessionDuration = getDoubleValue(metrics, "sessionDuration", 0.0);
-            
-            // Calculate engagement score (0-100)
-            double engagementScore = calculateEngagementScore(responseTime, errorCount, clickCount, sessionDuration);
-            
-            return new EngagementMetrics(userId, sessionId, feature, engagementScore, 
-                                      responseTime, clickCount, errorCount, sessionDuration);
-        }
-        return null;
-    }
-    
     private double calculateEngagementScore(double responseTime, int errorCount, int clickCount, double sessionDuration) {
         double score = 100.0;
         
@@ -199,46 +372,52 @@ public class TelemetryConsumerService {
         return Math.max(0, Math.min(100, score));
     }
     
-    @SuppressWarnings("unchecked")
-    private List<AnomalyEvent> detectAnomalies(String userId, String sessionId, String feature, 
-                                            String action, Object metricsObj) {
-        List<AnomalyEvent> anomalies = new ArrayList<>();
-        
-        if (metricsObj instanceof Map) {
-            Map<String, Object> metrics = (Map<String, Object>) metricsObj;
-            
-            // 1. High Response Time Anomaly (convert to seconds)
-            double responseTime = getDoubleValue(metrics, "responseTime", 0.0);
-            double responseTimeSeconds = responseTime / 1000.0; // Convert to seconds
-            if (responseTimeSeconds > 5.0) {
-                anomalies.add(new AnomalyEvent(userId, sessionId, feature, "HIGH_RESPONSE_TIME", 
-                                            "WARNING", "Response time exceeds 5 seconds", 5.0, responseTimeSeconds));
-            }
-            
-            // 2. High Error Rate Anomaly
-            int errorCount = getIntValue(metrics, "errorCount", 0);
-            if (errorCount > 3) {
-                anomalies.add(new AnomalyEvent(userId, sessionId, feature, "HIGH_ERROR_RATE", 
-                                            "ERROR", "Error count exceeds 3", 3, errorCount));
-            }
-            
-            // 3. Low Engagement Anomaly (use corrected calculation)
-            double engagementScore = calculateEngagementScore(responseTime, errorCount, 
-                                                        getIntValue(metrics, "clickCount", 1), 
-                                                        getDoubleValue(metrics, "sessionDuration", 0.0));
-            if (engagementScore < 30) {
-                anomalies.add(new AnomalyEvent(userId, sessionId, feature, "LOW_ENGAGEMENT", 
-                                            "WARNING", "User engagement is very low", 30.0, engagementScore));
-            }
-            
-            // 4. Unusual Click Pattern Anomaly
-            int clickCount = getIntValue(metrics, "clickCount", 0);
-            if (clickCount > 20) {
-                anomalies.add(new AnomalyEvent(userId, sessionId, feature, "UNUSUAL_CLICK_PATTERN", 
-                                            "INFO", "Unusually high click count detected", 20, clickCount));
+    private List<AnomalyEvent> detectAnomalies(String userId, String sessionId, String feature, TelemetryRecord record,
+                                            double responseTime, int errorCount, int clickCount,
+                                            double engagementScore) {
+        switch (anomalyDetector) {
+            case "rules":
+                return anomalyRuleEngine.evaluate(userId, sessionId, feature, record, engagementScore);
+            case "both":
+                List<AnomalyEvent> adaptive = detectAdaptiveAnomalies(userId, sessionId, feature, responseTime,
+                                                                      errorCount, clickCount, engagementScore);
+                List<AnomalyEvent> rules = anomalyRuleEngine.evaluate(userId, sessionId, feature, record, engagementScore);
+                if (adaptive.isEmpty()) {
+                    return rules;
+                }
+                if (!rules.isEmpty()) {
+                    adaptive.addAll(rules);
+                }
+                return adaptive;
+            default:
+                return detectAdaptiveAnomalies(userId, sessionId, feature, responseTime, errorCount, clickCount,
+                                               engagementScore);
+        }
+    }
+    
+    private List<AnomalyEvent> detectAdaptiveAnomalies(String userId, String sessionId, String feature,
+                                                    double responseTime, int errorCount, int clickCount,
+                                                    double engagementScore) {
+        AdaptiveAnomalyDetector.Result scores = anomalyScores.get();
+        int flagged = adaptiveAnomalyDetector.evaluate(userId, feature, responseTime, errorCount, clickCount,
+                                                       engagementScore, scores);
+        if (flagged == 0) {
+            return Collections.emptyList();
+        }
+        boolean featureBaseline = scores.getBaseline() == AdaptiveAnomalyDetector.Result.FEATURE;
+        String[] descriptions = featureBaseline ? FEATURE_BASELINE_DESCRIPTIONS : USER_BASELINE_DESCRIPTIONS;
+        List<AnomalyEvent> anomalies = new ArrayList<>(Integer.bitCount(flagged));
+        for (int m = 0; m < AdaptiveAnomalyDetector.METRICS; m++) {
+            if ((flagged & (1 << m)) != 0) {
+                AnomalyEvent anomaly = new AnomalyEvent(userId, sessionId, feature, ADAPTIVE_ANOMALY_TYPES[m], ADAPTIVE_ANOMALY_SEVERITIES[m],
+                                                        descriptions[m], scores.getThreshold(m), scores.getValue(m));
+                Map<String, Object> context = new HashMap<>();
+                context.put("zScore", scores.getZScore(m));
+                context.put("baseline", featureBaseline ? "feature" : "user_feature");
+                anomaly.setContext(context);
+                anomalies.add(anomaly);
             }
         }
-        
         return anomalies;
     }
     
@@ -246,84 +425,102 @@ public class TelemetryConsumerService {
                                         List<AnomalyEvent> anomalies) {
 
         // Simulate real-time dashboard updates
-        logger.info("Updating real-time dashboards for user: {}, feature: {}", userId, feature);
+        logger.debug("Updating real-time dashboards for user: {}, feature: {}", userId, feature);
         
         if (engagement != null) {
-            logger.info("Dashboard Update - User: {}, Feature: {}, Engagement Score: {}", 
+            logger.debug("Dashboard Update - User: {}, Feature: {}, Engagement Score: {}", 
                        userId, feature, engagement.getEngagementScore());
         }
         
         for (AnomalyEvent anomaly : anomalies) {
-            logger.info("Dashboard Alert - Anomaly: {} for user: {} in feature: {}", 
+            logger.debug("Dashboard Alert - Anomaly: {} for user: {} in feature: {}", 
                        anomaly.getAnomalyType(), userId, feature);
         }
     }
     
-    // Helper methods
-    private double getDoubleValue(Map<String, Object> metrics, String key, double defaultValue) {
-        Object value = metrics.get(key);
-        if (value instanceof Number) {
-            return ((Number) value).doubleValue();
-        }
-        return defaultValue;
+    private void storeEngagementMetrics(EngagementMetrics engagement) {
+        sessionStateStore.recordEngagement(engagement);
     }
     
-    private int getIntValue(Map<String, Object> metrics, String key, int defaultValue) {
-        Object value = metrics.get(key);
-        if (value instanceof Number) {
-            return ((Number) value).intValue();
-        }
-        return defaultValue;
+    private void storeAnomalyEvent(AnomalyEvent anomaly) {
+        sessionStateStore.recordAnomaly(anomaly);
+        anomalyCount.incrementAndGet();
     }
     
-    private void storeEngagementMetrics(EngagementMetrics engagement) {
-        String key = engagement.getUserId() + "_" + engagement.getSessionId();
-        userEngagement.computeIfAbsent(key, k -> new ArrayList<>()).add(engagement);
+    private void updateFeatureErrorRate(String feature) {
+        featureErrorRates.merge(feature, 1, Integer::sum);
     }
     
-    private void storeAnomalyEvent(AnomalyEvent anomaly) {
-        String key = anomaly.getUserId() + "_" + anomaly.getSessionId();
-        userAnomalies.computeIfAbsent(key, k -> new ArrayList<>()).add(anomaly);
-        anomalyCount.incrementAndGet();
+    // Resumes from the restored checkpoint's offsets rather than the committed ones
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        if (checkpointService != null) {
+            checkpointService.seekToCheckpoint(assignments.keySet(), callback);
+        }
     }
     
-    private void updateFeatureEngagement(String feature, double engagementScore) {
-        featureEngagementScores.compute(feature, (key, existingScore) -> {
-            if (existingScore == null) {
-                return engagementScore;
-            } else {
-                return (existingScore + engagementScore) / 2.0;
-            }
-        });
+    @Override
+    public String checkpointName() { return "counters"; }
+    
+    @Override
+    public void writeCheckpoint(DataOutput out, boolean full) throws IOException {
+        out.writeLong(processedCount.get());
+        out.writeLong(errorCount.get());
+        out.writeLong(anomalyCount.get());
+        Map<String, Integer> errorRates = new HashMap<>(featureErrorRates);
+        out.writeInt(errorRates.size());
+        for (Map.Entry<String, Integer> entry : errorRates.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeInt(entry.getValue());
+        }
     }
     
-    private void updateFeatureErrorRate(String feature) {
-        featureErrorRates.merge(feature, 1, Integer::sum);
+    @Override
+    public void readCheckpoint(DataInput in, boolean full) throws IOException {
+        processedCount.set(in.readLong());
+        errorCount.set(in.readLong());
+        anomalyCount.set(in.readLong());
+        featureErrorRates.clear();
+        int features = in.readInt();
+        for (int i = 0; i < features; i++) {
+            featureErrorRates.put(in.readUTF(), in.readInt());
+        }
     }
     
     public Map<String, Object> getStatistics() {
-        return Map.of(
-            "processedCount", processedCount.get(),
-            "errorCount", errorCount.get(),
-            "anomalyCount", anomalyCount.get(),
-            "totalReceived", processedCount.get() + errorCount.get(),
-            "successRate", processedCount.get() + errorCount.get() > 0 ? 
-                (double) processedCount.get() / (processedCount.get() + errorCount.get()) : 0.0,
-            "featureEngagementScores", new HashMap<>(featureEngagementScores),
-            "featureErrorRates", new HashMap<>(featureErrorRates)
-        );
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("processedCount", processedCount.get());
+        stats.put("errorCount", errorCount.get());
+        stats.put("anomalyCount", anomalyCount.get());
+        stats.put("totalReceived", processedCount.get() + errorCount.get());
+        stats.put("successRate", processedCount.get() + errorCount.get() > 0 ? 
+            (double) processedCount.get() / (processedCount.get() + errorCount.get()) : 0.0);
+        stats.put("featureEngagementScores", featureSketchService.getMeanEngagementScores());
+        stats.put("featureErrorRates", new HashMap<>(featureErrorRates));
+        stats.put("partitionLoad", partitionLoadMonitor.getStatistics());
+        stats.put("listenerMode", batchMode ? "batch" : "record");
+        stats.put("timeSeriesSink", timeSeriesSink != null ? timeSeriesSink.getStatistics() : processedTelemetryPublisher.getStatistics());
+        stats.put("state", sessionStateStore.getStatistics());
+        Map<String, Object> detector = new HashMap<>();
+        detector.put("mode", anomalyDetector);
+        if (!"rules".equals(anomalyDetector)) {
+            detector.put("adaptive", adaptiveAnomalyDetector.getStatistics());
+        }
+        if (!"adaptive".equals(anomalyDetector)) {
+            detector.put("rules", anomalyRuleEngine.getStatistics());
+        }
+        stats.put("anomalyDetector", detector);
+        stats.put("checkpoint", checkpointService != null ? checkpointService.getStatistics() : Map.of("enabled", false));
+        stats.put("parallel", parallelRecordProcessor != null ? parallelRecordProcessor.getStatistics() : Map.of("enabled", false));
+        return stats;
     }
     
     // Additional API endpoints for real-time data
-    public Map<String, Object> getEngagementMetrics(String userId) {
-        return userEngagement.entrySet().stream()
-            .filter(entry -> entry.getKey().startsWith(userId + "_"))
-            .collect(HashMap::new, (map, entry) -> map.put(entry.getKey(), entry.getValue()), HashMap::putAll);
+    public Map<String, Object> getEngagementMetrics(String userId, long from, long to, int limit) {
+        return sessionStateStore.getEngagementMetrics(userId, from, to, limit);
     }
     
-    public Map<String, Object> getAnomalyEvents(String userId) {
-        return userAnomalies.entrySet().stream()
-            .filter(entry -> entry.getKey().startsWith(userId + "_"))
-            .collect(HashMap::new, (map, entry) -> map.put(entry.getKey(), entry.getValue()), HashMap::putAll);
+    public Map<String, Object> getAnomalyEvents(String userId, long from, long to, int limit) {
+        return sessionStateStore.getAnomalyEvents(userId, from, to, limit);
     }
-}
\ No newline at end of file
+}
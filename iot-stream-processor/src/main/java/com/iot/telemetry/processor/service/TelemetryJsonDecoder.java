@@ -0,0 +1,262 @@
+package com.iot.telemetry.processor.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonFactoryBuilder;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.StreamReadFeature;
+import com.fasterxml.jackson.core.util.BufferRecycler;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iot.telemetry.common.codec.MetricSlot;
+import com.iot.telemetry.common.codec.TelemetryRecord;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Decodes JSON telemetry messages into a reusable {@link TelemetryRecord} in one streaming
+ * pass, without building intermediate maps. The metrics may be a nested object or, as the
+ * ingestion service sends them, a JSON string holding the object; either way the known
+ * metrics land in primitive slots. Timestamps in the usual ISO-8601 shapes are parsed
+ * straight from the parser's character buffer, and decimals use Jackson's fast double
+ * parser rather than {@code Double.parseDouble}.
+ */
+@Component
+public class TelemetryJsonDecoder {
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private JsonFactory jsonFactory;
+    private JsonFactory embeddedJsonFactory;
+
+    @PostConstruct
+    public void init() {
+        jsonFactory = new JsonFactory(new JsonFactoryBuilder().enable(StreamReadFeature.USE_FAST_DOUBLE_PARSER));
+        jsonFactory.setCodec(objectMapper);
+        embeddedJsonFactory = new EmbeddedJsonFactory(new JsonFactoryBuilder().enable(StreamReadFeature.USE_FAST_DOUBLE_PARSER));
+        embeddedJsonFactory.setCodec(objectMapper);
+    }
+
+    /**
+     * Resets {@code record} and fills it from {@code json}. Returns false when the message
+     * has no metrics object. Throws on malformed JSON, including malformed embedded metrics.
+     */
+    public boolean decode(String json, TelemetryRecord record) throws IOException {
+        record.reset();
+        boolean hasMetrics = false;
+        try (JsonParser parser = jsonFactory.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Telemetry message is not a JSON object");
+            }
+            String field;
+            while ((field = parser.nextFieldName()) != null) {
+                JsonToken token = parser.nextToken();
+                switch (field) {
+                    case "id":
+                        if (token == JsonToken.VALUE_NUMBER_INT) {
+                            record.setId(parser.getLongValue());
+                        }
+                        break;
+                    case "userId":
+                        record.setUserId(text(parser, token));
+                        break;
+                    case "sessionId":
+                        record.setSessionId(text(parser, token));
+                        break;
+                    case "feature":
+                        record.setFeature(text(parser, token));
+                        break;
+                    case "action":
+                        record.setAction(text(parser, token));
+                        break;
+                    case "timestamp":
+                        record.setTimestampMillis(timestamp(parser, token));
+                        break;
+                    case "createdAt":
+                        record.setCreatedAtMillis(timestamp(parser, token));
+                        break;
+                    case "metrics":
+                        hasMetrics = metrics(parser, token, record);
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+        }
+        return hasMetrics;
+    }
+
+    private boolean metrics(JsonParser parser, JsonToken token, TelemetryRecord record) throws IOException {
+        if (token == JsonToken.START_OBJECT) {
+            readMetrics(parser, record);
+            return true;
+        }
+        if (token == JsonToken.VALUE_STRING) {
+            // Parsed from the outer parser's buffer, which stays valid until it advances
+            try (JsonParser embedded = embeddedJsonFactory.createParser(parser.getTextCharacters(), parser.getTextOffset(),
+                                                                parser.getTextLength())) {
+                if (embedded.nextToken() != JsonToken.START_OBJECT) {
+                    throw new JsonParseException(embedded, "Embedded metrics are not a JSON object");
+                }
+                readMetrics(embedded, record);
+            }
+            return true;
+        }
+        parser.skipChildren();
+        return false;
+    }
+
+    // Numbers for known metrics go to their slots; anything else is kept as an extra metric
+    private static void readMetrics(JsonParser parser, TelemetryRecord record) throws IOException {
+        String name;
+        while ((name = parser.nextFieldName()) != null) {
+            JsonToken token = parser.nextToken();
+            MetricSlot slot = MetricSlot.forName(name);
+            if (slot != null && token.isNumeric()) {
+                record.setMetric(slot, parser.getDoubleValue());
+            } else if (token != JsonToken.VALUE_NULL) {
+                record.putExtraMetric(name, parser.readValueAs(Object.class));
+            }
+        }
+    }
+
+    private static String text(JsonParser parser, JsonToken token) throws IOException {
+        if (token.isScalarValue()) {
+            return token == JsonToken.VALUE_NULL ? null : parser.getText();
+        }
+        parser.skipChildren();
+        return null;
+    }
+
+    // Epoch millis, or 0 when the field is missing or not a timestamp
+    private static long timestamp(JsonParser parser, JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_STRING) {
+            char[] chars = parser.getTextCharacters();
+            int offset = parser.getTextOffset();
+            int length = parser.getTextLength();
+            long millis = parseIsoMillis(chars, offset, length);
+            return millis != Long.MIN_VALUE ? millis
+                : WindowingService.eventTime(new String(chars, offset, length), 0L);
+        }
+        if (token == JsonToken.VALUE_NUMBER_INT) {
+            return parser.getLongValue();
+        }
+        parser.skipChildren();
+        return 0L;
+    }
+
+    /**
+     * Parses {@code yyyy-MM-ddTHH:mm:ss}, with an optional fraction and an optional {@code Z}
+     * or {@code ±HH:MM} offset; a local date-time is taken as UTC. Returns Long.MIN_VALUE
+     * for anything else, which is left to java.time.
+     */
+    static long parseIsoMillis(char[] c, int offset, int length) {
+        if (length < 19 || c[offset + 4] != '-' || c[offset + 7] != '-' || c[offset + 10] != 'T'
+                || c[offset + 13] != ':' || c[offset + 16] != ':') {
+            return Long.MIN_VALUE;
+        }
+        int year = digits(c, offset, 4);
+        int month = digits(c, offset + 5, 2);
+        int day = digits(c, offset + 8, 2);
+        int hour = digits(c, offset + 11, 2);
+        int minute = digits(c, offset + 14, 2);
+        int second = digits(c, offset + 17, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31 || hour < 0 || hour > 23
+                || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return Long.MIN_VALUE;
+        }
+
+        int end = offset + length;
+        int i = offset + 19;
+        int millis = 0;
+        if (i < end && c[i] == '.') {
+            int fractionDigits = 0;
+            i++;
+            while (i < end && c[i] >= '0' && c[i] <= '9') {
+                if (fractionDigits < 3) {
+                    millis = millis * 10 + (c[i] - '0');
+                }
+                fractionDigits++;
+                i++;
+            }
+            if (fractionDigits == 0 || fractionDigits > 9) {
+                return Long.MIN_VALUE;
+            }
+            for (int d = fractionDigits; d < 3; d++) {
+                millis *= 10;
+            }
+        }
+        int offsetSeconds = 0;
+        if (i < end) {
+            if (c[i] == 'Z' && i + 1 == end) {
+                i++;
+            } else if ((c[i] == '+' || c[i] == '-') && i + 6 == end && c[i + 3] == ':') {
+                int offsetHours = digits(c, i + 1, 2);
+                int offsetMinutes = digits(c, i + 4, 2);
+                if (offsetHours < 0 || offsetHours > 18 || offsetMinutes < 0 || offsetMinutes > 59) {
+                    return Long.MIN_VALUE;
+                }
+                offsetSeconds = (c[i] == '-' ? -1 : 1) * (offsetHours * 3600 + offsetMinutes * 60);
+                i += 6;
+            }
+        }
+        if (i != end || day > daysInMonth(year, month)) {
+            return Long.MIN_VALUE;
+        }
+        long seconds = epochDay(year, month, day) * 86400L + hour * 3600 + minute * 60 + second - offsetSeconds;
+        return seconds * 1000 + millis;
+    }
+
+    private static int digits(char[] c, int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            char ch = c[i];
+            if (ch < '0' || ch > '9') {
+                return -1;
+            }
+            value = value * 10 + (ch - '0');
+        }
+        return value;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        if (month == 2) {
+            return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+        }
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+
+    // Days since 1970-01-01 in the proleptic Gregorian calendar
+    private static long epochDay(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = y / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+
+    /**
+     * Embedded metrics are parsed while the message parser holds this thread's recycled
+     * buffers, so their parser takes buffers from a second per-thread recycler instead of
+     * allocating new ones for every message.
+     */
+    private static final class EmbeddedJsonFactory extends JsonFactory {
+        private static final long serialVersionUID = 1L;
+
+        private final transient ThreadLocal<BufferRecycler> bufferRecyclers = ThreadLocal.withInitial(BufferRecycler::new);
+
+        private EmbeddedJsonFactory(JsonFactoryBuilder builder) {
+            super(builder);
+        }
+
+        @Override
+        public BufferRecycler _getBufferRecycler() {
+            return bufferRecyclers.get();
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package com.iot.telemetry.processor.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Delivers processed records and window results to the time-series service in batches. Records are queued and a
+ * single flusher thread posts them to {@code /processed-data/batch} once {@code batch-size}
+ * have accumulated or the first of them has waited {@code linger-ms}. At most
+ * {@code max-in-flight} batches are outstanding; beyond that the flusher waits, the queue fills
+ * and {@link #send} blocks the processing thread, which holds back the Kafka consumer.
+ * Window results are posted to {@code /window-aggregates} by {@link #sendWindows}, which takes
+ * one of the same in-flight slots. Connection failures, timeouts and 5xx or 429 responses are
+ * retried with jittered exponential backoff. A batch that still fails is logged and counted,
+ * not redelivered.
+ * Used unless {@code processor.timeseries.transport=kafka}.
+ */
+@Component
+@ConditionalOnProperty(name = "processor.timeseries.transport", havingValue = "http", matchIfMissing = true)
+public class TimeSeriesSink {
+
+    private static final Logger logger = LoggerFactory.getLogger(TimeSeriesSink.class);
+
+    @Autowired
+    private WebClient webClient;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${processor.timeseries.url:http://localhost:8084/api/v1/timeseries}")
+    private String timeSeriesUrl;
+
+    @Value("${processor.timeseries.sink.batch-size:500}")
+    private int batchSize;
+
+    // Longest a record waits for its batch to fill
+    @Value("${processor.timeseries.sink.linger-ms:100}")
+    private long lingerMs;
+
+    @Value("${processor.timeseries.sink.max-in-flight:4}")
+    private int maxInFlight;
+
+    // Records queued before send blocks
+    @Value("${processor.timeseries.sink.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${processor.timeseries.sink.max-retries:3}")
+    private int maxRetries;
+
+    // First retry delay, doubled per attempt and varied by up to half either way
+    @Value("${processor.timeseries.sink.retry-backoff-ms:200}")
+    private long retryBackoffMs;
+
+    // Per attempt; also bounds how long shutdown waits for outstanding batches
+    @Value("${processor.timeseries.sink.request-timeout-ms:10000}")
+    private long requestTimeoutMs;
+
+    private String batchUrl;
+    private String windowsUrl;
+    private BlockingQueue<Map<String, Object>> queue;
+    private Semaphore inFlight;
+    private Thread flusher;
+    private volatile boolean running;
+
+    private DistributionSummary batchSizes;
+    private Timer enqueueWait;
+    private Counter retries;
+    private Counter sentRecords;
+    private Counter failedRecords;
+    private Counter droppedRecords;
+    private Counter sentWindows;
+    private Counter failedWindows;
+
+    @PostConstruct
+    public void init() {
+        batchUrl = timeSeriesUrl + "/processed-data/batch";
+        windowsUrl = timeSeriesUrl + "/window-aggregates";
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        inFlight = new Semaphore(maxInFlight);
+
+        Gauge.builder("processor.sink.queue", queue, BlockingQueue::size)
+            .description("Processed records waiting to be batched for the time-series service")
+            .register(meterRegistry);
+        Gauge.builder("processor.sink.in.flight", inFlight, permits -> maxInFlight - permits.availablePermits())
+            .description("Batches sent to the time-series service and not yet answered")
+            .register(meterRegistry);
+        batchSizes = DistributionSummary.builder("processor.sink.batch.size")
+            .description("Records per batch sent to the time-series service")
+            .register(meterRegistry);
+        enqueueWait = Timer.builder("processor.sink.enqueue.wait")
+            .description("Time processing threads were blocked on a full sink queue")
+            .register(meterRegistry);
+        retries = Counter.builder("processor.sink.retries")
+            .description("Batch requests to the time-series service that were retried")
+            .register(meterRegistry);
+        sentRecords = records("sent");
+        failedRecords = records("failed");
+        droppedRecords = records("dropped");
+        sentWindows = windows("sent");
+        failedWindows = windows("failed");
+
+        running = true;
+        flusher = new Thread(this::flushLoop, "timeseries-sink");
+        flusher.setDaemon(true);
+        flusher.start();
+        logger.info("Time-series sink to {}: batches of {}, linger {} ms, {} in flight",
+            batchUrl, batchSize, lingerMs, maxInFlight);
+    }
+
+    /** Sends what is still queued and waits for outstanding batches, up to the request timeout each. */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        flusher.join(requestTimeoutMs);
+        if (!inFlight.tryAcquire(maxInFlight, requestTimeoutMs, TimeUnit.MILLISECONDS)) {
+            logger.warn("Stopped with {} batches to the time-series service unanswered", maxInFlight - inFlight.availablePermits());
+        }
+        if (!queue.isEmpty()) {
+            logger.warn("Stopped with {} processed records not sent to the time-series service", queue.size());
+        }
+    }
+
+    /**
+     * Queues one processed record, blocking while the queue is full. If the calling thread
+     * is interrupted while waiting, the record is dropped and the interrupt flag is kept.
+     */
+    public void send(Map<String, Object> processedData) {
+        if (queue.offer(processedData)) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            queue.put(processedData);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            droppedRecords.increment();
+            logger.warn("Interrupted waiting for the time-series sink, dropping record for user {}", processedData.get("userId"));
+        } finally {
+            enqueueWait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Posts window results once an in-flight slot is free, blocking the caller until then.
+     * If the calling thread is interrupted while waiting, the results are counted as failed.
+     */
+    public void sendWindows(List<Map<String, Object>> windows) {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failedWindows.increment(windows.size());
+            logger.warn("Interrupted waiting for the time-series sink, dropping {} window results", windows.size());
+            return;
+        }
+        post(windowsUrl, windows, sentWindows, failedWindows);
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("url", batchUrl);
+        stats.put("queued", queue.size());
+        stats.put("inFlight", maxInFlight - inFlight.availablePermits());
+        stats.put("batches", batchSizes.count());
+        stats.put("sentRecords", (long) sentRecords.count());
+        stats.put("failedRecords", (long) failedRecords.count());
+        stats.put("droppedRecords", (long) droppedRecords.count());
+        stats.put("sentWindows", (long) sentWindows.count());
+        stats.put("failedWindows", (long) failedWindows.count());
+        stats.put("retries", (long) retries.count());
+        return stats;
+    }
+
+    // Keeps going after shutdown starts until the queue is empty
+    private void flushLoop() {
+        long lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMs);
+        try {
+            while (running || !queue.isEmpty()) {
+                Map<String, Object> first = queue.poll(lingerMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                List<Map<String, Object>> batch = new ArrayList<>(batchSize);
+                batch.add(first);
+                long deadline = System.nanoTime() + lingerNanos;
+                while (batch.size() < batchSize) {
+                    if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    Map<String, Object> next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                inFlight.acquire();
+                batchSizes.record(batch.size());
+                post(batchUrl, batch, sentRecords, failedRecords);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Releases its in-flight permit once the batch succeeds or finally fails
+    private void post(String url, List<Map<String, Object>> batch, Counter sent, Counter failed) {
+        long start = System.nanoTime();
+        try {
+            webClient.post()
+                .uri(url)
+                .bodyValue(batch)
+                .retrieve()
+                .toBodilessEntity()
+                .timeout(Duration.ofMillis(requestTimeoutMs))
+                .retryWhen(Retry.backoff(maxRetries, Duration.ofMillis(retryBackoffMs))
+                    .jitter(0.5)
+                    .filter(TimeSeriesSink::isRetryable)
+                    .doBeforeRetry(signal -> retries.increment())
+                    .onRetryExhaustedThrow((spec, signal) -> signal.failure()))
+                .doFinally(signal -> inFlight.release())
+                .subscribe(
+                    response -> {
+                        latency("success").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                        sent.increment(batch.size());
+                        logger.debug("Sent batch of {} to {}", batch.size(), url);
+                    },
+                    error -> {
+                        latency("failure").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                        failed.increment(batch.size());
+                        logger.error("Failed to send batch of {} to {}: {}", batch.size(), url, error.toString());
+                    }
+                );
+        } catch (RuntimeException e) {
+            inFlight.release();
+            failed.increment(batch.size());
+            logger.error("Error sending batch of {} to {}", batch.size(), url, e);
+        }
+    }
+
+    private static boolean isRetryable(Throwable error) {
+        if (error instanceof WebClientResponseException) {
+            int status = ((WebClientResponseException) error).getStatusCode().value();
+            return status >= 500 || status == 429;
+        }
+        return error instanceof WebClientRequestException || error instanceof TimeoutException;
+    }
+
+    private Timer latency(String result) {
+        return Timer.builder("processor.sink.batch.latency")
+            .description("Time from sending a batch to the time-series service to its final outcome, retries included")
+            .tag("result", result)
+            .register(meterRegistry);
+    }
+
+    private Counter records(String result) {
+        return Counter.builder("processor.sink.records")
+            .description("Processed records by outcome of their delivery to the time-series service")
+            .tag("result", result)
+            .register(meterRegistry);
+    }
+
+    private Counter windows(String result) {
+        return Counter.builder("processor.sink.windows")
+            .description("Window results by outcome of their delivery to the time-series service")
+            .tag("result", result)
+            .register(meterRegistry);
+    }
+}
@@ -0,0 +1,370 @@
+package com.iot.telemetry.processor.service;
+
+import com.iot.telemetry.processor.window.WindowAggregate;
+import com.iot.telemetry.processor.window.WindowDefinition;
+import com.iot.telemetry.processor.window.WindowOperator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Event-time windows over the processed telemetry. Each configured window (tumbling, hopping,
+ * session) keeps running aggregates per key and is driven by its own watermark: the highest
+ * event time seen minus {@code max-out-of-orderness-ms}. A window is emitted once the
+ * watermark reaches its end, re-emitted with a higher revision when a late event within
+ * {@code allowed-lateness-ms} changes it, and dropped after that. When no events arrive for
+ * {@code idle-timeout-ms}, the watermark moves on with the wall clock so the last windows
+ * still close. Events stamped more than {@code max-future-ms} ahead of the wall clock are left
+ * out, so one bad clock cannot push the watermark past every open window. Emitted windows are
+ * sent to the time-series service every {@code flush-interval-ms}, over the same transport as
+ * processed records; the most recent ones are also kept for the stats endpoint.
+ */
+@Component
+public class WindowingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(WindowingService.class);
+
+    private static final int RECENT_RESULTS = 200;
+
+    // Exactly one of the two is present, depending on processor.timeseries.transport
+    @Autowired(required = false)
+    private TimeSeriesSink timeSeriesSink;
+
+    @Autowired(required = false)
+    private ProcessedTelemetryPublisher processedTelemetryPublisher;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${processor.windows.max-out-of-orderness-ms:5000}")
+    private long maxOutOfOrdernessMs;
+
+    @Value("${processor.windows.max-future-ms:60000}")
+    private long maxFutureMs;
+
+    @Value("${processor.windows.idle-timeout-ms:30000}")
+    private long idleTimeoutMs;
+
+    @Value("${processor.windows.tumbling.enabled:true}")
+    private boolean tumblingEnabled;
+
+    @Value("${processor.windows.tumbling.key-by:feature}")
+    private String tumblingKeyBy;
+
+    @Value("${processor.windows.tumbling.size-ms:60000}")
+    private long tumblingSizeMs;
+
+    @Value("${processor.windows.tumbling.allowed-lateness-ms:30000}")
+    private long tumblingLatenessMs;
+
+    @Value("${processor.windows.hopping.enabled:false}")
+    private boolean hoppingEnabled;
+
+    @Value("${processor.windows.hopping.key-by:feature}")
+    private String hoppingKeyBy;
+
+    @Value("${processor.windows.hopping.size-ms:300000}")
+    private long hoppingSizeMs;
+
+    @Value("${processor.windows.hopping.advance-ms:60000}")
+    private long hoppingAdvanceMs;
+
+    @Value("${processor.windows.hopping.allowed-lateness-ms:30000}")
+    private long hoppingLatenessMs;
+
+    @Value("${processor.windows.session.enabled:false}")
+    private boolean sessionEnabled;
+
+    @Value("${processor.windows.session.key-by:user}")
+    private String sessionKeyBy;
+
+    @Value("${processor.windows.session.gap-ms:300000}")
+    private long sessionGapMs;
+
+    @Value("${processor.windows.session.allowed-lateness-ms:30000}")
+    private long sessionLatenessMs;
+
+    private final List<Window> windows = new ArrayList<>();
+    private final ConcurrentLinkedQueue<Map<String, Object>> pending = new ConcurrentLinkedQueue<>();
+    private final ArrayDeque<Map<String, Object>> recent = new ArrayDeque<>();
+    private final ReentrantLock recentLock = new ReentrantLock();
+    private Counter emitted;
+    private Counter lateUpdated;
+    private Counter lateDropped;
+    private Counter futureDropped;
+
+    @PostConstruct
+    public void init() {
+        if (tumblingEnabled) {
+            windows.add(new Window(WindowDefinition.tumbling("tumbling", keyBy(tumblingKeyBy),
+                tumblingSizeMs, tumblingLatenessMs)));
+        }
+        if (hoppingEnabled) {
+            windows.add(new Window(WindowDefinition.hopping("hopping", keyBy(hoppingKeyBy),
+                hoppingSizeMs, hoppingAdvanceMs, hoppingLatenessMs)));
+        }
+        if (sessionEnabled) {
+            windows.add(new Window(WindowDefinition.session("session", keyBy(sessionKeyBy),
+                sessionGapMs, sessionLatenessMs)));
+        }
+
+        Gauge.builder("processor.window.open", this, WindowingService::openWindows)
+            .description("Window aggregates held open across all configured windows")
+            .register(meterRegistry);
+        emitted = Counter.builder("processor.window.emitted")
+            .description("Window results emitted, including revisions")
+            .register(meterRegistry);
+        lateUpdated = Counter.builder("processor.window.late")
+            .description("Events behind the watermark")
+            .tag("result", "updated")
+            .register(meterRegistry);
+        lateDropped = Counter.builder("processor.window.late")
+            .description("Events behind the watermark")
+            .tag("result", "dropped")
+            .register(meterRegistry);
+        futureDropped = Counter.builder("processor.window.future")
+            .description("Events left out of windows for an event time more than max-future-ms ahead of the wall clock")
+            .register(meterRegistry);
+        logger.info("Windowing enabled for {} window(s), max out-of-orderness {} ms", windows.size(), maxOutOfOrdernessMs);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    /**
+     * Folds one event into every configured window. {@code values} holds the metrics in the
+     * order of {@link WindowAggregate#METRICS}.
+     */
+    public void record(String userId, String sessionId, String feature, long eventTime, double[] values) {
+        long now = System.currentTimeMillis();
+        if (eventTime - now > maxFutureMs) {
+            futureDropped.increment();
+            return;
+        }
+        for (Window window : windows) {
+            String key = keyFor(window.definition.getKeyBy(), userId, sessionId, feature);
+            if (key == null) {
+                continue;
+            }
+            window.lock.lock();
+            try {
+                long lateBefore = window.operator.getLateUpdates();
+                if (!window.operator.add(key, eventTime, values)) {
+                    lateDropped.increment();
+                } else if (window.operator.getLateUpdates() > lateBefore) {
+                    lateUpdated.increment();
+                }
+                window.lastArrival = now;
+                if (eventTime > window.maxEventTime) {
+                    window.maxEventTime = eventTime;
+                    window.advance(eventTime - maxOutOfOrdernessMs);
+                }
+            } finally {
+                window.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Event time of a message: its {@code timestamp} field, either an ISO instant or offset
+     * date-time, or a local date-time taken as UTC (the format the ingestion service sends).
+     * Falls back to the arrival time when the field is missing or unparseable.
+     */
+    public static long eventTime(Object timestamp, long arrivalTime) {
+        if (!(timestamp instanceof String) || ((String) timestamp).isEmpty()) {
+            return arrivalTime;
+        }
+        String text = (String) timestamp;
+        try {
+            char last = text.charAt(text.length() - 1);
+            if (last == 'Z' || last == 'z') {
+                return Instant.parse(text).toEpochMilli();
+            }
+            if (text.indexOf('+', 10) > 0 || text.lastIndexOf('-') > 10) {
+                return OffsetDateTime.parse(text).toInstant().toEpochMilli();
+            }
+            return LocalDateTime.parse(text).toInstant(ZoneOffset.UTC).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return arrivalTime;
+        }
+    }
+
+    /**
+     * Sends the windows emitted since the last flush downstream. Before that, every window
+     * emits the late updates it has collected, and a window whose input has been idle for
+     * longer than the idle timeout has its watermark moved on by the idle time.
+     */
+    @Scheduled(fixedDelayString = "${processor.windows.flush-interval-ms:5000}")
+    public void flush() {
+        long now = System.currentTimeMillis();
+        for (Window window : windows) {
+            window.lock.lock();
+            try {
+                long idle = now - window.lastArrival;
+                if (window.maxEventTime != Long.MIN_VALUE && idle >= idleTimeoutMs) {
+                    window.advance(window.maxEventTime - maxOutOfOrdernessMs + idle);
+                } else {
+                    window.operator.advance(window.watermark, window.collector);
+                }
+            } finally {
+                window.lock.unlock();
+            }
+        }
+
+        List<Map<String, Object>> batch = new ArrayList<>();
+        Map<String, Object> result;
+        while ((result = pending.poll()) != null) {
+            batch.add(result);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        recentLock.lock();
+        try {
+            for (Map<String, Object> window : batch) {
+                if (recent.size() == RECENT_RESULTS) {
+                    recent.removeFirst();
+                }
+                recent.addLast(window);
+            }
+        } finally {
+            recentLock.unlock();
+        }
+
+        if (processedTelemetryPublisher != null) {
+            processedTelemetryPublisher.sendWindows(batch);
+        } else if (timeSeriesSink != null) {
+            timeSeriesSink.sendWindows(batch);
+        }
+    }
+
+    public Map<String, Object> getStatistics() {
+        List<Map<String, Object>> definitions = new ArrayList<>();
+        for (Window window : windows) {
+            WindowDefinition definition = window.definition;
+            Map<String, Object> info = new HashMap<>();
+            info.put("name", definition.getName());
+            info.put("type", definition.getType().name());
+            info.put("keyBy", definition.getKeyBy().name());
+            info.put("sizeMs", definition.getSizeMs());
+            info.put("advanceMs", definition.getAdvanceMs());
+            info.put("gapMs", definition.getGapMs());
+            info.put("allowedLatenessMs", definition.getAllowedLatenessMs());
+            window.lock.lock();
+            try {
+                info.put("openWindows", window.operator.getOpenWindows());
+                info.put("lateUpdates", window.operator.getLateUpdates());
+                info.put("watermark", window.maxEventTime == Long.MIN_VALUE ? null : window.watermark);
+            } finally {
+                window.lock.unlock();
+            }
+            definitions.add(info);
+        }
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("windows", definitions);
+        stats.put("maxOutOfOrdernessMs", maxOutOfOrdernessMs);
+        stats.put("emitted", (long) emitted.count());
+        stats.put("lateUpdated", (long) lateUpdated.count());
+        stats.put("lateDropped", (long) lateDropped.count());
+        stats.put("futureDropped", (long) futureDropped.count());
+        stats.put("pending", pending.size());
+        recentLock.lock();
+        try {
+            stats.put("recentResults", new ArrayList<>(recent));
+        } finally {
+            recentLock.unlock();
+        }
+        return stats;
+    }
+
+    private double openWindows() {
+        int open = 0;
+        for (Window window : windows) {
+            open += window.operator.getOpenWindows();
+        }
+        return open;
+    }
+
+    private static WindowDefinition.KeyBy keyBy(String value) {
+        return WindowDefinition.KeyBy.valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+
+    private static String keyFor(WindowDefinition.KeyBy keyBy, String userId, String sessionId, String feature) {
+        switch (keyBy) {
+            case USER: return userId;
+            case SESSION: return sessionId;
+            default: return feature;
+        }
+    }
+
+    // Copies an emitted aggregate; the operator keeps updating the original
+    private Map<String, Object> toResult(WindowDefinition definition, WindowAggregate aggregate) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("window", definition.getName());
+        result.put("windowType", definition.getType().name());
+        result.put("keyBy", definition.getKeyBy().name());
+        result.put("key", aggregate.getKey());
+        result.put("windowStart", aggregate.getStart());
+        result.put("windowEnd", aggregate.getEnd());
+        result.put("count", aggregate.getCount());
+        result.put("revision", aggregate.getRevision());
+        result.put("retracted", aggregate.isRetracted());
+        for (int i = 0; i < WindowAggregate.METRICS.length; i++) {
+            String metric = WindowAggregate.METRICS[i];
+            result.put(metric + "Sum", aggregate.getSum(i));
+            result.put(metric + "Min", aggregate.getMin(i));
+            result.put(metric + "Max", aggregate.getMax(i));
+            result.put(metric + "Mean", aggregate.getMean(i));
+        }
+        return result;
+    }
+
+    private final class Window {
+        private final WindowDefinition definition;
+        private final WindowOperator operator;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Consumer<WindowAggregate> collector;
+        private long maxEventTime = Long.MIN_VALUE;
+        private long watermark = Long.MIN_VALUE / 2;
+        private long lastArrival;
+
+        private Window(WindowDefinition definition) {
+            this.definition = definition;
+            this.operator = definition.createOperator();
+            this.collector = aggregate -> {
+                pending.add(toResult(definition, aggregate));
+                emitted.increment();
+            };
+        }
+
+        private void advance(long newWatermark) {
+            watermark = Math.max(watermark, newWatermark);
+            operator.advance(watermark, collector);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.iot.telemetry.processor.window;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * Tumbling and hopping windows. Windows start at multiples of the advance and are stored by
+ * start time, so the windows the watermark has closed are always a prefix of the map.
+ */
+public class AlignedWindowOperator implements WindowOperator {
+
+    private final WindowDefinition definition;
+    private final long size;
+    private final long advance;
+    private final long lateness;
+
+    private final TreeMap<Long, Map<String, WindowAggregate>> windows = new TreeMap<>();
+    private final List<WindowAggregate> dirty = new ArrayList<>();
+    private long watermark = Long.MIN_VALUE / 2;
+    private int openWindows;
+    private long lateUpdates;
+
+    public AlignedWindowOperator(WindowDefinition definition) {
+        this.definition = definition;
+        this.size = definition.getSizeMs();
+        this.advance = definition.getAdvanceMs();
+        this.lateness = definition.getAllowedLatenessMs();
+    }
+
+    @Override
+    public WindowDefinition getDefinition() { return definition; }
+
+    @Override
+    public boolean add(String key, long eventTime, double[] values) {
+        boolean accepted = false;
+        // Every start in (eventTime - size, eventTime] that is a multiple of the advance
+        for (long start = Math.floorDiv(eventTime, advance) * advance; start > eventTime - size; start -= advance) {
+            long end = start + size;
+            if (end + lateness <= watermark) {
+                break; // earlier starts are later still
+            }
+            Map<String, WindowAggregate> byKey = windows.get(start);
+            if (byKey == null) {
+                byKey = new HashMap<>();
+                windows.put(start, byKey);
+            }
+            WindowAggregate aggregate = byKey.get(key);
+            if (aggregate == null) {
+                aggregate = new WindowAggregate(key, start, end);
+                byKey.put(key, aggregate);
+                openWindows++;
+            }
+            aggregate.add(values);
+            if (end <= watermark) {
+                // The window already fired; this aggregate goes out again on the next advance
+                lateUpdates++;
+                if (!aggregate.dirty) {
+                    aggregate.dirty = true;
+                    dirty.add(aggregate);
+                }
+            }
+            accepted = true;
+        }
+        return accepted;
+    }
+
+    @Override
+    public void advance(long newWatermark, Consumer<WindowAggregate> emit) {
+        for (WindowAggregate aggregate : dirty) {
+            aggregate.dirty = false;
+            if (aggregate.fired) {
+                aggregate.revision++;
+            } else {
+                aggregate.fired = true;
+            }
+            emit.accept(aggregate);
+        }
+        dirty.clear();
+
+        if (newWatermark > watermark) {
+            // Windows whose end is in (watermark, newWatermark]
+            NavigableMap<Long, Map<String, WindowAggregate>> closing =
+                windows.subMap(watermark - size, false, newWatermark - size, true);
+            for (Map<String, WindowAggregate> byKey : closing.values()) {
+                for (WindowAggregate aggregate : byKey.values()) {
+                    aggregate.fired = true;
+                    emit.accept(aggregate);
+                }
+            }
+            watermark = newWatermark;
+        }
+
+        while (!windows.isEmpty() && windows.firstKey() + size + lateness <= watermark) {
+            openWindows -= windows.pollFirstEntry().getValue().size();
+        }
+    }
+
+    @Override
+    public int getOpenWindows() { return openWindows; }
+
+    @Override
+    public long getLateUpdates() { return lateUpdates; }
+}
@@ -0,0 +1,189 @@
+package com.iot.telemetry.processor.window;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/**
+ * Session windows. Each event opens the interval {@code [eventTime, eventTime + gap)}; a key's
+ * sessions that the interval overlaps are merged into one. Every session has a single timer,
+ * first due at its end (emit) and then at its end plus the allowed lateness (purge). Timers are
+ * not moved when a session grows: a timer that comes due early is simply pushed back. When a
+ * late event changes the bounds of a session that was already emitted, or merges it into
+ * another, the earlier result is retracted before the new one is emitted.
+ */
+public class SessionWindowOperator implements WindowOperator {
+
+    private final WindowDefinition definition;
+    private final long gap;
+    private final long lateness;
+
+    private final Map<String, List<WindowAggregate>> sessions = new HashMap<>();
+    private final PriorityQueue<Timer> timers = new PriorityQueue<>((a, b) -> Long.compare(a.time, b.time));
+    private final List<WindowAggregate> dirty = new ArrayList<>();
+    private final List<WindowAggregate> retracted = new ArrayList<>();
+    private long watermark = Long.MIN_VALUE / 2;
+    private int openWindows;
+    private long lateUpdates;
+
+    public SessionWindowOperator(WindowDefinition definition) {
+        this.definition = definition;
+        this.gap = definition.getGapMs();
+        this.lateness = definition.getAllowedLatenessMs();
+    }
+
+    @Override
+    public WindowDefinition getDefinition() { return definition; }
+
+    @Override
+    public boolean add(String key, long eventTime, double[] values) {
+        long end = eventTime + gap;
+        if (end + lateness <= watermark) {
+            return false;
+        }
+        List<WindowAggregate> keySessions = sessions.get(key);
+        if (keySessions == null) {
+            keySessions = new ArrayList<>(2);
+            sessions.put(key, keySessions);
+        }
+
+        WindowAggregate target = null;
+        for (int i = 0; i < keySessions.size(); ) {
+            WindowAggregate session = keySessions.get(i);
+            if (eventTime < session.getEnd() && end > session.getStart()) {
+                if (target == null) {
+                    target = session;
+                    i++;
+                } else {
+                    // The event bridges two sessions
+                    target.merge(session);
+                    session.removed = true;
+                    if (session.fired) {
+                        retracted.add(retraction(session));
+                    }
+                    keySessions.remove(i);
+                    openWindows--;
+                }
+            } else {
+                i++;
+            }
+        }
+
+        if (target == null) {
+            target = new WindowAggregate(key, eventTime, end);
+            keySessions.add(target);
+            timers.add(new Timer(end, target));
+            openWindows++;
+        } else {
+            if (eventTime < target.getStart()) {
+                target.setStart(eventTime);
+            }
+            if (end > target.getEnd()) {
+                target.setEnd(end);
+            }
+        }
+        target.add(values);
+
+        if (target.fired || target.getEnd() <= watermark) {
+            lateUpdates++;
+            if (!target.dirty) {
+                target.dirty = true;
+                dirty.add(target);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void advance(long newWatermark, Consumer<WindowAggregate> emit) {
+        for (WindowAggregate session : retracted) {
+            emit.accept(session);
+        }
+        retracted.clear();
+        for (WindowAggregate session : dirty) {
+            if (session.removed) {
+                continue;
+            }
+            session.dirty = false;
+            if (session.fired) {
+                if (session.getStart() != session.emittedStart || session.getEnd() != session.emittedEnd) {
+                    emit.accept(retraction(session));
+                }
+                session.revision++;
+            }
+            emit(session, emit);
+        }
+        dirty.clear();
+
+        if (newWatermark <= watermark) {
+            return;
+        }
+        watermark = newWatermark;
+        while (!timers.isEmpty() && timers.peek().time <= watermark) {
+            Timer timer = timers.poll();
+            WindowAggregate session = timer.session;
+            if (session.removed) {
+                continue;
+            }
+            if (!session.fired) {
+                if (session.getEnd() > watermark) {
+                    timer.time = session.getEnd();
+                    timers.add(timer);
+                    continue;
+                }
+                emit(session, emit);
+            }
+            long purgeAt = session.getEnd() + lateness;
+            if (purgeAt > watermark) {
+                timer.time = purgeAt;
+                timers.add(timer);
+            } else {
+                purge(session);
+            }
+        }
+    }
+
+    private void emit(WindowAggregate session, Consumer<WindowAggregate> emit) {
+        session.fired = true;
+        session.emittedStart = session.getStart();
+        session.emittedEnd = session.getEnd();
+        emit.accept(session);
+    }
+
+    // Stands for a result already sent whose bounds no longer exist
+    private static WindowAggregate retraction(WindowAggregate session) {
+        WindowAggregate retraction = new WindowAggregate(session.getKey(), session.emittedStart, session.emittedEnd);
+        retraction.revision = session.revision;
+        retraction.retracted = true;
+        return retraction;
+    }
+
+    private void purge(WindowAggregate session) {
+        session.removed = true;
+        openWindows--;
+        List<WindowAggregate> keySessions = sessions.get(session.getKey());
+        keySessions.remove(session);
+        if (keySessions.isEmpty()) {
+            sessions.remove(session.getKey());
+        }
+    }
+
+    @Override
+    public int getOpenWindows() { return openWindows; }
+
+    @Override
+    public long getLateUpdates() { return lateUpdates; }
+
+    private static final class Timer {
+        private long time;
+        private final WindowAggregate session;
+
+        private Timer(long time, WindowAggregate session) {
+            this.time = time;
+            this.session = session;
+        }
+    }
+}
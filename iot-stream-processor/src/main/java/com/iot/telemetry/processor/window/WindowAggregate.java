@@ -0,0 +1,90 @@
+package com.iot.telemetry.processor.window;
+
+import java.util.Arrays;
+
+/**
+ * Running count, sum, min and max of each of {@link #METRICS} for one key in one window.
+ * Events are folded in as they arrive; nothing about individual events is kept.
+ */
+public class WindowAggregate {
+
+    public static final String[] METRICS = {"engagementScore", "responseTime", "pageLoadTime", "sessionDuration"};
+
+    private final String key;
+    private long start;
+    private long end;
+    private long count;
+    private final double[] sum = new double[METRICS.length];
+    private final double[] min = new double[METRICS.length];
+    private final double[] max = new double[METRICS.length];
+
+    // Emission state: fired once emitted, dirty when a late event changed it since, removed once
+    // merged into another session or purged, retracted when it withdraws an earlier result
+    boolean fired;
+    boolean dirty;
+    boolean removed;
+    boolean retracted;
+    int revision;
+    // Session bounds as last emitted
+    long emittedStart;
+    long emittedEnd;
+
+    WindowAggregate(String key, long start, long end) {
+        this.key = key;
+        this.start = start;
+        this.end = end;
+        Arrays.fill(min, Double.POSITIVE_INFINITY);
+        Arrays.fill(max, Double.NEGATIVE_INFINITY);
+    }
+
+    void add(double[] values) {
+        count++;
+        for (int i = 0; i < METRICS.length; i++) {
+            double value = values[i];
+            sum[i] += value;
+            if (value < min[i]) {
+                min[i] = value;
+            }
+            if (value > max[i]) {
+                max[i] = value;
+            }
+        }
+    }
+
+    // Folds another session into this one; the result covers both
+    void merge(WindowAggregate other) {
+        start = Math.min(start, other.start);
+        end = Math.max(end, other.end);
+        count += other.count;
+        for (int i = 0; i < METRICS.length; i++) {
+            sum[i] += other.sum[i];
+            min[i] = Math.min(min[i], other.min[i]);
+            max[i] = Math.max(max[i], other.max[i]);
+        }
+        revision = Math.max(revision, other.revision);
+    }
+
+    void setStart(long start) { this.start = start; }
+
+    void setEnd(long end) { this.end = end; }
+
+    public String getKey() { return key; }
+
+    public long getStart() { return start; }
+
+    public long getEnd() { return end; }
+
+    public long getCount() { return count; }
+
+    public int getRevision() { return revision; }
+
+    public boolean isRetracted() { return retracted; }
+
+    public double getSum(int metric) { return sum[metric]; }
+
+    public double getMin(int metric) { return min[metric]; }
+
+    public double getMax(int metric) { return max[metric]; }
+
+    public double getMean(int metric) { return count == 0 ? 0.0 : sum[metric] / count; }
+}
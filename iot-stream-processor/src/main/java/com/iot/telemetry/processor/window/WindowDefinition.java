@@ -0,0 +1,68 @@
+package com.iot.telemetry.processor.window;
+
+/**
+ * One event-time window: its shape (tumbling, hopping or session), the event field it is
+ * keyed by, and how long after the watermark passes its end it still accepts late events.
+ */
+public class WindowDefinition {
+
+    public enum Type { TUMBLING, HOPPING, SESSION }
+
+    public enum KeyBy { FEATURE, USER, SESSION }
+
+    private final String name;
+    private final Type type;
+    private final KeyBy keyBy;
+    private final long sizeMs;
+    private final long advanceMs;
+    private final long gapMs;
+    private final long allowedLatenessMs;
+
+    private WindowDefinition(String name, Type type, KeyBy keyBy, long sizeMs, long advanceMs, long gapMs,
+                             long allowedLatenessMs) {
+        if (type != Type.SESSION && (sizeMs <= 0 || advanceMs <= 0 || advanceMs > sizeMs)) {
+            throw new IllegalArgumentException("Window " + name + " needs 0 < advance <= size, got size "
+                + sizeMs + " and advance " + advanceMs);
+        }
+        if (type == Type.SESSION && gapMs <= 0) {
+            throw new IllegalArgumentException("Session window " + name + " needs a positive gap");
+        }
+        this.name = name;
+        this.type = type;
+        this.keyBy = keyBy;
+        this.sizeMs = sizeMs;
+        this.advanceMs = advanceMs;
+        this.gapMs = gapMs;
+        this.allowedLatenessMs = Math.max(0, allowedLatenessMs);
+    }
+
+    public static WindowDefinition tumbling(String name, KeyBy keyBy, long sizeMs, long allowedLatenessMs) {
+        return new WindowDefinition(name, Type.TUMBLING, keyBy, sizeMs, sizeMs, 0, allowedLatenessMs);
+    }
+
+    public static WindowDefinition hopping(String name, KeyBy keyBy, long sizeMs, long advanceMs, long allowedLatenessMs) {
+        return new WindowDefinition(name, Type.HOPPING, keyBy, sizeMs, advanceMs, 0, allowedLatenessMs);
+    }
+
+    public static WindowDefinition session(String name, KeyBy keyBy, long gapMs, long allowedLatenessMs) {
+        return new WindowDefinition(name, Type.SESSION, keyBy, 0, 0, gapMs, allowedLatenessMs);
+    }
+
+    public WindowOperator createOperator() {
+        return type == Type.SESSION ? new SessionWindowOperator(this) : new AlignedWindowOperator(this);
+    }
+
+    public String getName() { return name; }
+
+    public Type getType() { return type; }
+
+    public KeyBy getKeyBy() { return keyBy; }
+
+    public long getSizeMs() { return sizeMs; }
+
+    public long getAdvanceMs() { return advanceMs; }
+
+    public long getGapMs() { return gapMs; }
+
+    public long getAllowedLatenessMs() { return allowedLatenessMs; }
+}
@@ -0,0 +1,32 @@
+package com.iot.telemetry.processor.window;
+
+import java.util.function.Consumer;
+
+/**
+ * Incremental aggregation for one {@link WindowDefinition}. Not thread-safe; callers
+ * serialize access. Emitted aggregates are live objects and must be copied before the next call.
+ */
+public interface WindowOperator {
+
+    WindowDefinition getDefinition();
+
+    /**
+     * Folds one event into every window it falls in. Returns false if the event is too late
+     * for all of them, that is the last {@link #advance} watermark has passed their end plus
+     * the allowed lateness.
+     */
+    boolean add(String key, long eventTime, double[] values);
+
+    /**
+     * Emits every window whose end the watermark has reached, re-emits fired windows that late
+     * events have changed since (with a higher revision), and drops windows past their
+     * allowed lateness. A session result whose bounds a late event changed is first
+     * withdrawn by emitting its old bounds marked as retracted. Watermarks lower than a
+     * previous one are ignored.
+     */
+    void advance(long watermark, Consumer<WindowAggregate> emit);
+
+    int getOpenWindows();
+
+    long getLateUpdates();
+}
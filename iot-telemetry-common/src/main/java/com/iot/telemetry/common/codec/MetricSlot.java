@@ -0,0 +1,54 @@
+package com.iot.telemetry.common.codec;
+
+/**
+ * The nine metrics every telemetry event is expected to carry. Each one has a fixed slot
+ * in {@link TelemetryRecord} and in the binary wire format, so they are never encoded by name.
+ */
+public enum MetricSlot {
+    RESPONSE_TIME("responseTime", false),
+    ERROR_COUNT("errorCount", true),
+    CLICK_COUNT("clickCount", true),
+    SESSION_DURATION("sessionDuration", false),
+    TIME_BETWEEN_CLICKS("timeBetweenClicks", true),
+    ERROR_RATE("errorRate", false),
+    USAGE_FREQUENCY("usageFrequency", true),
+    PAGE_LOAD_TIME("pageLoadTime", false),
+    SCROLL_DEPTH("scrollDepth", false);
+
+    public static final int COUNT = values().length;
+
+    private static final MetricSlot[] SLOTS = values();
+
+    private final String metricName;
+    private final boolean integral;
+
+    MetricSlot(String metricName, boolean integral) {
+        this.metricName = metricName;
+        this.integral = integral;
+    }
+
+    public String getMetricName() { return metricName; }
+
+    /** Integral slots are varint-encoded on the wire when the value has no fraction. */
+    public boolean isIntegral() { return integral; }
+
+    public static MetricSlot fromIndex(int index) {
+        return SLOTS[index];
+    }
+
+    /** Returns the slot for a metric name, or {@code null} when the metric is not a known one. */
+    public static MetricSlot forName(String metricName) {
+        switch (metricName) {
+            case "responseTime": return RESPONSE_TIME;
+            case "errorCount": return ERROR_COUNT;
+            case "clickCount": return CLICK_COUNT;
+            case "sessionDuration": return SESSION_DURATION;
+            case "timeBetweenClicks": return TIME_BETWEEN_CLICKS;
+            case "errorRate": return ERROR_RATE;
+            case "usageFrequency": return USAGE_FREQUENCY;
+            case "pageLoadTime": return PAGE_LOAD_TIME;
+            case "scrollDepth": return SCROLL_DEPTH;
+            default: return null;
+        }
+    }
+}
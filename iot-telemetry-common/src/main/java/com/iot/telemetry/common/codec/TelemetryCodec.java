@@ -0,0 +1,246 @@
+package com.iot.telemetry.common.codec;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Schema-based binary encoding of a {@link TelemetryRecord}.
+ *
+ * <pre>
+ * byte     version (0xB1)
+ * varlong  id (zigzag, -1 when not assigned)
+ * string   userId, sessionId            (varint length + 1, 0 = null; UTF-8 bytes)
+ * varint   feature code [string]        (dictionary code, 0 = literal string follows)
+ * varint   action code [string]
+ * varlong  timestamp, createdAt         (zigzag epoch millis)
+ * varint   present mask                 (bit n = MetricSlot n)
+ * varint   fraction mask                (integral slots whose value has a fraction)
+ * ...      present slots in order       (zigzag varlong for integral values, else 8-byte double)
+ * varint   extra metric count, then per metric: string name, byte tag, value
+ * </pre>
+ *
+ * Records are self-delimiting, so several can be written back to back into one buffer.
+ */
+public final class TelemetryCodec {
+
+    public static final byte VERSION = (byte) 0xB1;
+
+    private static final byte TAG_DOUBLE = 0;
+    private static final byte TAG_LONG = 1;
+    private static final byte TAG_STRING = 2;
+    private static final byte TAG_BOOLEAN = 3;
+
+    private static final ThreadLocal<ByteBuffer> ENCODE_BUFFER = ThreadLocal.withInitial(() -> ByteBuffer.allocate(1024));
+    private static final ThreadLocal<byte[]> STRING_SCRATCH = ThreadLocal.withInitial(() -> new byte[256]);
+
+    private TelemetryCodec() {}
+
+    public static byte[] encode(TelemetryRecord record) {
+        ByteBuffer buffer = ENCODE_BUFFER.get();
+        while (true) {
+            buffer.clear();
+            try {
+                encode(record, buffer);
+                return Arrays.copyOf(buffer.array(), buffer.position());
+            } catch (BufferOverflowException e) {
+                buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+                ENCODE_BUFFER.set(buffer);
+            }
+        }
+    }
+
+    /** Writes the record at the buffer's position; throws {@link BufferOverflowException} if it does not fit. */
+    public static void encode(TelemetryRecord record, ByteBuffer out) {
+        out.put(VERSION);
+        writeVarLong(out, zigzag(record.getId()));
+        writeString(out, record.getUserId());
+        writeString(out, record.getSessionId());
+        writeDictionaryValue(out, TelemetryDictionary.featureCode(record.getFeature()), record.getFeature());
+        writeDictionaryValue(out, TelemetryDictionary.actionCode(record.getAction()), record.getAction());
+        writeVarLong(out, zigzag(record.getTimestampMillis()));
+        writeVarLong(out, zigzag(record.getCreatedAtMillis()));
+
+        int presentMask = record.getPresentMask();
+        int fractionMask = 0;
+        for (int i = 0; i < MetricSlot.COUNT; i++) {
+            MetricSlot slot = MetricSlot.fromIndex(i);
+            if ((presentMask & (1 << i)) != 0 && slot.isIntegral() && !isIntegral(record.getMetric(slot, 0.0))) {
+                fractionMask |= 1 << i;
+            }
+        }
+        writeVarLong(out, presentMask);
+        writeVarLong(out, fractionMask);
+        for (int i = 0; i < MetricSlot.COUNT; i++) {
+            if ((presentMask & (1 << i)) == 0) {
+                continue;
+            }
+            MetricSlot slot = MetricSlot.fromIndex(i);
+            double value = record.getMetric(slot, 0.0);
+            if (slot.isIntegral() && (fractionMask & (1 << i)) == 0) {
+                writeVarLong(out, zigzag((long) value));
+            } else {
+                out.putDouble(value);
+            }
+        }
+
+        Map<String, Object> extraMetrics = record.getExtraMetrics();
+        writeVarLong(out, extraMetrics == null ? 0 : extraMetrics.size());
+        if (extraMetrics != null) {
+            for (Map.Entry<String, Object> entry : extraMetrics.entrySet()) {
+                writeString(out, entry.getKey());
+                writeExtraValue(out, entry.getValue());
+            }
+        }
+    }
+
+    public static TelemetryRecord decode(byte[] data) {
+        TelemetryRecord record = new TelemetryRecord();
+        decode(ByteBuffer.wrap(data), record);
+        return record;
+    }
+
+    /**
+     * Reads one record from the buffer's position into {@code target}, which is reset first.
+     * Works on heap and direct buffers alike.
+     */
+    public static void decode(ByteBuffer in, TelemetryRecord target) {
+        byte version = in.get();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported telemetry record version: " + version);
+        }
+        target.reset();
+        target.setId(unzigzag(readVarLong(in)));
+        target.setUserId(readString(in));
+        target.setSessionId(readString(in));
+
+        int featureCode = (int) readVarLong(in);
+        target.setFeature(featureCode == TelemetryDictionary.LITERAL ? readString(in) : TelemetryDictionary.feature(featureCode));
+        int actionCode = (int) readVarLong(in);
+        target.setAction(actionCode == TelemetryDictionary.LITERAL ? readString(in) : TelemetryDictionary.action(actionCode));
+
+        target.setTimestampMillis(unzigzag(readVarLong(in)));
+        target.setCreatedAtMillis(unzigzag(readVarLong(in)));
+
+        int presentMask = (int) readVarLong(in);
+        int fractionMask = (int) readVarLong(in);
+        for (int i = 0; i < MetricSlot.COUNT; i++) {
+            if ((presentMask & (1 << i)) == 0) {
+                continue;
+            }
+            MetricSlot slot = MetricSlot.fromIndex(i);
+            if (slot.isIntegral() && (fractionMask & (1 << i)) == 0) {
+                target.setMetric(slot, unzigzag(readVarLong(in)));
+            } else {
+                target.setMetric(slot, in.getDouble());
+            }
+        }
+
+        int extraCount = (int) readVarLong(in);
+        for (int i = 0; i < extraCount; i++) {
+            String name = readString(in);
+            target.putExtraMetric(name, readExtraValue(in));
+        }
+    }
+
+    private static boolean isIntegral(double value) {
+        return value == Math.rint(value) && Math.abs(value) < (1L << 53);
+    }
+
+    private static void writeDictionaryValue(ByteBuffer out, int code, String literal) {
+        writeVarLong(out, code);
+        if (code == TelemetryDictionary.LITERAL) {
+            writeString(out, literal);
+        }
+    }
+
+    private static void writeExtraValue(ByteBuffer out, Object value) {
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            out.put(TAG_LONG);
+            writeVarLong(out, zigzag(((Number) value).longValue()));
+        } else if (value instanceof Number) {
+            out.put(TAG_DOUBLE);
+            out.putDouble(((Number) value).doubleValue());
+        } else if (value instanceof Boolean) {
+            out.put(TAG_BOOLEAN);
+            out.put((byte) ((Boolean) value ? 1 : 0));
+        } else {
+            out.put(TAG_STRING);
+            writeString(out, value == null ? null : value.toString());
+        }
+    }
+
+    private static Object readExtraValue(ByteBuffer in) {
+        byte tag = in.get();
+        switch (tag) {
+            case TAG_DOUBLE: return in.getDouble();
+            case TAG_LONG: return unzigzag(readVarLong(in));
+            case TAG_BOOLEAN: return in.get() != 0;
+            case TAG_STRING: return readString(in);
+            default: throw new IllegalArgumentException("Unknown extra metric tag: " + tag);
+        }
+    }
+
+    private static void writeString(ByteBuffer out, String value) {
+        if (value == null) {
+            writeVarLong(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length + 1L);
+        out.put(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = (int) readVarLong(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        if (length > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        if (in.hasArray()) {
+            String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+            return value;
+        }
+        byte[] scratch = STRING_SCRATCH.get();
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+            STRING_SCRATCH.set(scratch);
+        }
+        in.get(scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    static void writeVarLong(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,53 @@
+package com.iot.telemetry.common.codec;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Static dictionaries for feature and action names. Known names are written as a one-byte
+ * code; anything else falls back to code 0 followed by the literal string. Entries may only
+ * be appended, never reordered, because the codes are part of the wire format.
+ */
+public final class TelemetryDictionary {
+
+    public static final int LITERAL = 0;
+
+    public static final List<String> FEATURES = List.of(
+        "login", "dashboard", "profile", "settings", "checkout",
+        "search", "product_details", "cart", "payment", "help"
+    );
+
+    public static final List<String> ACTIONS = List.of(
+        "click", "type", "submit", "navigate", "scroll", "hover", "focus", "blur"
+    );
+
+    private static final Map<String, Integer> FEATURE_CODES = index(FEATURES);
+    private static final Map<String, Integer> ACTION_CODES = index(ACTIONS);
+
+    private TelemetryDictionary() {}
+
+    public static int featureCode(String feature) {
+        return feature == null ? LITERAL : FEATURE_CODES.getOrDefault(feature, LITERAL);
+    }
+
+    public static int actionCode(String action) {
+        return action == null ? LITERAL : ACTION_CODES.getOrDefault(action, LITERAL);
+    }
+
+    public static String feature(int code) {
+        return FEATURES.get(code - 1);
+    }
+
+    public static String action(int code) {
+        return ACTIONS.get(code - 1);
+    }
+
+    private static Map<String, Integer> index(List<String> names) {
+        Map<String, Integer> codes = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            codes.put(names.get(i), i + 1);
+        }
+        return codes;
+    }
+}
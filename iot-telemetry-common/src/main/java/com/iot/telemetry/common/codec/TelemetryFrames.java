@@ -0,0 +1,62 @@
+package com.iot.telemetry.common.codec;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Length-prefixed frames of the raw TCP ingestion protocol. A device sends request frames
+ * carrying any number of {@link TelemetryCodec} records and gets one ack per frame, in the
+ * order the frames complete.
+ *
+ * <pre>
+ * request: int length (bytes after this field) | int sequence | int event count | records
+ * ack:     int length (9)                       | int sequence | byte status     | int accepted
+ * </pre>
+ *
+ * All integers are big-endian.
+ */
+public final class TelemetryFrames {
+
+    public static final int LENGTH_BYTES = 4;
+    public static final int REQUEST_HEADER_BYTES = 8;
+    public static final int ACK_BYTES = LENGTH_BYTES + 9;
+
+    /** Events stored and handed to Kafka. */
+    public static final byte STATUS_OK = 0;
+    /** Not processed because the service is overloaded; resend later. */
+    public static final byte STATUS_REJECTED = 1;
+    /** Processing failed; the frame may be resent. */
+    public static final byte STATUS_FAILED = 2;
+    /** The frame could not be decoded; the server closes the connection after this ack. */
+    public static final byte STATUS_MALFORMED = 3;
+
+    private TelemetryFrames() {}
+
+    /** Encodes a request frame into a new heap buffer, flipped for writing to a channel. */
+    public static ByteBuffer encodeRequest(int sequence, List<TelemetryRecord> records) {
+        int capacity = 1024 + records.size() * 128;
+        while (true) {
+            ByteBuffer buffer = ByteBuffer.allocate(capacity);
+            try {
+                buffer.position(LENGTH_BYTES);
+                buffer.putInt(sequence);
+                buffer.putInt(records.size());
+                for (TelemetryRecord record : records) {
+                    TelemetryCodec.encode(record, buffer);
+                }
+                buffer.putInt(0, buffer.position() - LENGTH_BYTES);
+                return buffer.flip();
+            } catch (BufferOverflowException e) {
+                capacity *= 2;
+            }
+        }
+    }
+
+    public static void writeAck(ByteBuffer out, int sequence, byte status, int accepted) {
+        out.putInt(ACK_BYTES - LENGTH_BYTES);
+        out.putInt(sequence);
+        out.put(status);
+        out.putInt(accepted);
+    }
+}
@@ -0,0 +1,156 @@
+package com.iot.telemetry.common.codec;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Mutable telemetry event with the known metrics held in primitive slots. Instances can be
+ * reset and reused by decoders; metrics outside {@link MetricSlot} are kept in
+ * {@code extraMetrics}, which stays {@code null} for the common case.
+ */
+public class TelemetryRecord {
+
+    public static final long NO_ID = -1L;
+
+    private long id = NO_ID;
+    private String userId;
+    private String sessionId;
+    private String feature;
+    private String action;
+    private long timestampMillis;
+    private long createdAtMillis;
+
+    private final double[] metrics = new double[MetricSlot.COUNT];
+    private int presentMask;
+    private Map<String, Object> extraMetrics;
+
+    public TelemetryRecord() {}
+
+    public void reset() {
+        id = NO_ID;
+        userId = null;
+        sessionId = null;
+        feature = null;
+        action = null;
+        timestampMillis = 0L;
+        createdAtMillis = 0L;
+        presentMask = 0;
+        extraMetrics = null;
+    }
+
+    // Metric slots
+    public boolean hasMetric(MetricSlot slot) {
+        return (presentMask & (1 << slot.ordinal())) != 0;
+    }
+
+    public double getMetric(MetricSlot slot, double defaultValue) {
+        return hasMetric(slot) ? metrics[slot.ordinal()] : defaultValue;
+    }
+
+    public void setMetric(MetricSlot slot, double value) {
+        metrics[slot.ordinal()] = value;
+        presentMask |= 1 << slot.ordinal();
+    }
+
+    public int getPresentMask() { return presentMask; }
+
+    public Map<String, Object> getExtraMetrics() { return extraMetrics; }
+
+    public void putExtraMetric(String name, Object value) {
+        if (extraMetrics == null) {
+            extraMetrics = new HashMap<>();
+        }
+        extraMetrics.put(name, value);
+    }
+
+    /** Copies a metrics map into the slots; names without a slot go to the extra metrics. */
+    public void setMetrics(Map<String, Object> metricsMap) {
+        if (metricsMap == null) {
+            return;
+        }
+        for (Map.Entry<String, Object> entry : metricsMap.entrySet()) {
+            MetricSlot slot = MetricSlot.forName(entry.getKey());
+            if (slot != null && entry.getValue() instanceof Number) {
+                setMetric(slot, ((Number) entry.getValue()).doubleValue());
+            } else if (entry.getValue() != null) {
+                putExtraMetric(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /** Builds the metrics map in the same shape the JSON format carries. */
+    public Map<String, Object> toMetricsMap() {
+        Map<String, Object> metricsMap = new LinkedHashMap<>();
+        for (int i = 0; i < MetricSlot.COUNT; i++) {
+            if ((presentMask & (1 << i)) != 0) {
+                MetricSlot slot = MetricSlot.fromIndex(i);
+                double value = metrics[i];
+                if (slot.isIntegral() && value == Math.rint(value)) {
+                    metricsMap.put(slot.getMetricName(), (int) value);
+                } else {
+                    metricsMap.put(slot.getMetricName(), value);
+                }
+            }
+        }
+        if (extraMetrics != null) {
+            metricsMap.putAll(extraMetrics);
+        }
+        return metricsMap;
+    }
+
+    // Timestamps are carried as epoch millis; LocalDateTime values are interpreted as UTC
+    public LocalDateTime getTimestamp() {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(timestampMillis), ZoneOffset.UTC);
+    }
+
+    public void setTimestamp(LocalDateTime timestamp) {
+        this.timestampMillis = timestamp == null ? 0L : timestamp.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(createdAtMillis), ZoneOffset.UTC);
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAtMillis = createdAt == null ? 0L : createdAt.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    // Getters and Setters
+    public long getId() { return id; }
+    public void setId(long id) { this.id = id; }
+
+    public String getUserId() { return userId; }
+    public void setUserId(String userId) { this.userId = userId; }
+
+    public String getSessionId() { return sessionId; }
+    public void setSessionId(String sessionId) { this.sessionId = sessionId; }
+
+    public String getFeature() { return feature; }
+    public void setFeature(String feature) { this.feature = feature; }
+
+    public String getAction() { return action; }
+    public void setAction(String action) { this.action = action; }
+
+    public long getTimestampMillis() { return timestampMillis; }
+    public void setTimestampMillis(long timestampMillis) { this.timestampMillis = timestampMillis; }
+
+    public long getCreatedAtMillis() { return createdAtMillis; }
+    public void setCreatedAtMillis(long createdAtMillis) { this.createdAtMillis = createdAtMillis; }
+
+    @Override
+    public String toString() {
+        return "TelemetryRecord{" +
+                "id=" + id +
+                ", userId='" + userId + '\'' +
+                ", sessionId='" + sessionId + '\'' +
+                ", feature='" + feature + '\'' +
+                ", action='" + action + '\'' +
+                ", timestampMillis=" + timestampMillis +
+                ", metrics=" + toMetricsMap() +
+                '}';
+    }
+}
@@ -0,0 +1,22 @@
+package com.iot.telemetry.common.codec;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+
+/**
+ * Kafka deserializer for the binary telemetry format, see {@link TelemetryCodec}.
+ */
+public class TelemetryRecordDeserializer implements Deserializer<TelemetryRecord> {
+
+    @Override
+    public TelemetryRecord deserialize(String topic, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        try {
+            return TelemetryCodec.decode(data);
+        } catch (RuntimeException e) {
+            throw new SerializationException("Invalid binary telemetry record on topic " + topic, e);
+        }
+    }
+}
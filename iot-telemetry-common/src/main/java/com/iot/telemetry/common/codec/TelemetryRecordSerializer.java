@@ -0,0 +1,14 @@
+package com.iot.telemetry.common.codec;
+
+import org.apache.kafka.common.serialization.Serializer;
+
+/**
+ * Kafka serializer for the binary telemetry format, see {@link TelemetryCodec}.
+ */
+public class TelemetryRecordSerializer implements Serializer<TelemetryRecord> {
+
+    @Override
+    public byte[] serialize(String topic, TelemetryRecord record) {
+        return record == null ? null : TelemetryCodec.encode(record);
+    }
+}
@@ -0,0 +1,78 @@
+package com.iot.telemetry.common.compression;
+
+import com.github.luben.zstd.ZstdInputStreamNoFinalizer;
+import com.github.luben.zstd.ZstdOutputStreamNoFinalizer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * HTTP {@code Content-Encoding} values accepted on ingestion request bodies. Decoding wraps
+ * the body stream, or takes it chunk by chunk through a {@link StreamingDecoder}, so bodies
+ * are inflated as they are read rather than buffered first.
+ */
+public enum ContentCoding {
+
+    GZIP("gzip"),
+    ZSTD("zstd");
+
+    private static final int BUFFER_BYTES = 8192;
+
+    private final String token;
+
+    ContentCoding(String token) {
+        this.token = token;
+    }
+
+    public String getToken() { return token; }
+
+    /**
+     * Parses a {@code Content-Encoding} header. Returns null for an absent header or
+     * {@code identity}; throws {@link IllegalArgumentException} for anything else that is
+     * not a single supported coding.
+     */
+    public static ContentCoding forHeader(String header) {
+        if (header == null || header.isBlank()) {
+            return null;
+        }
+        switch (header.trim().toLowerCase(Locale.ROOT)) {
+            case "identity":
+                return null;
+            case "gzip":
+            case "x-gzip":
+                return GZIP;
+            case "zstd":
+                return ZSTD;
+            default:
+                throw new IllegalArgumentException("Unsupported Content-Encoding: " + header);
+        }
+    }
+
+    /** Wraps {@code in}; closing the result releases native zstd state and closes {@code in}. */
+    public InputStream decode(InputStream in) throws IOException {
+        return this == GZIP ? new GZIPInputStream(in, BUFFER_BYTES) : new ZstdInputStreamNoFinalizer(in);
+    }
+
+    /** Decoder for a body that arrives in chunks; must be closed to release its native state. */
+    public StreamingDecoder newDecoder() {
+        return this == GZIP ? StreamingDecoder.gzip() : StreamingDecoder.zstd();
+    }
+
+    /** Wraps {@code out}; the result must be closed to write the trailer. */
+    public OutputStream encode(OutputStream out) throws IOException {
+        return this == GZIP ? new GZIPOutputStream(out, BUFFER_BYTES) : new ZstdOutputStreamNoFinalizer(out);
+    }
+
+    public byte[] encode(byte[] data) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+        try (OutputStream out = encode(buffer)) {
+            out.write(data);
+        }
+        return buffer.toByteArray();
+    }
+}
@@ -0,0 +1,319 @@
+package com.iot.telemetry.common.compression;
+
+import com.github.luben.zstd.ZstdDecompressCtx;
+import com.github.luben.zstd.ZstdException;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Push-style decoder for a compressed body that arrives in chunks, for callers that cannot
+ * block on an {@link java.io.InputStream}. Each chunk is handed to {@link #decode} until it
+ * returns an empty buffer; {@link #finish} then checks that the body did not stop mid-stream.
+ * Output is produced in pieces of at most {@code BUFFER_BYTES}, so one chunk never has to
+ * be inflated in full before the first bytes can be passed on.
+ */
+public abstract class StreamingDecoder implements Closeable {
+
+    private static final int BUFFER_BYTES = 8192;
+
+    protected final ByteBuffer output;
+
+    private StreamingDecoder(ByteBuffer output) {
+        this.output = output;
+    }
+
+    static StreamingDecoder gzip() {
+        return new Gzip();
+    }
+
+    static StreamingDecoder zstd() {
+        return new Zstd();
+    }
+
+    /**
+     * Inflates from {@code input}, advancing its position, and returns the bytes produced.
+     * The returned buffer is only valid until the next call. An empty result means nothing
+     * more can be produced until more input arrives.
+     */
+    public abstract ByteBuffer decode(ByteBuffer input) throws IOException;
+
+    /** Throws if the input so far ends inside a member or frame. */
+    public abstract void finish() throws IOException;
+
+    /** Releases the inflater or native zstd context; safe to call more than once. */
+    @Override
+    public abstract void close();
+
+    /**
+     * RFC 1952 members, one after another as {@link java.util.zip.GZIPInputStream} accepts
+     * them. Header and trailer bytes are collected across chunks; the CRC32 and length of
+     * every member are checked.
+     */
+    private static final class Gzip extends StreamingDecoder {
+        private static final int FHCRC = 2;
+        private static final int FEXTRA = 4;
+        private static final int FNAME = 8;
+        private static final int FCOMMENT = 16;
+        private static final int TRAILER_BYTES = 8;
+        // Names and comments are unbounded in the format; nothing legitimate comes close
+        private static final int MAX_HEADER_BYTES = 65536;
+
+        private final Inflater inflater = new Inflater(true);
+        private final CRC32 crc = new CRC32();
+        private byte[] pending = new byte[16];
+        private int pendingBytes;
+        private boolean inData;
+        private boolean inTrailer;
+        private long memberBytes;
+        private int members;
+
+        private Gzip() {
+            super(ByteBuffer.allocate(BUFFER_BYTES));
+        }
+
+        @Override
+        public ByteBuffer decode(ByteBuffer input) throws IOException {
+            output.clear();
+            while (output.hasRemaining()) {
+                if (!inData && !inTrailer) {
+                    if (!input.hasRemaining() || !readHeader(input)) {
+                        break;
+                    }
+                    inData = true;
+                }
+                if (inData) {
+                    if (inflater.needsInput()) {
+                        if (!input.hasRemaining()) {
+                            break;
+                        }
+                        inflater.setInput(input);
+                    }
+                    int start = output.position();
+                    try {
+                        inflater.inflate(output);
+                    } catch (DataFormatException e) {
+                        throw new ZipException("Invalid deflate data: " + e.getMessage());
+                    }
+                    int produced = output.position() - start;
+                    crc.update(output.array(), start, produced);
+                    memberBytes += produced;
+                    if (inflater.finished()) {
+                        inData = false;
+                        inTrailer = true;
+                    } else if (inflater.needsDictionary()) {
+                        throw new ZipException("Deflate data needs a preset dictionary");
+                    } else if (produced == 0 && inflater.needsInput() && !input.hasRemaining()) {
+                        break;
+                    }
+                }
+                if (inTrailer) {
+                    if (!fill(input, TRAILER_BYTES)) {
+                        break;
+                    }
+                    checkTrailer();
+                }
+            }
+            output.flip();
+            return output;
+        }
+
+        @Override
+        public void finish() throws IOException {
+            if (inData || inTrailer || pendingBytes > 0 || members == 0) {
+                throw new EOFException("Unexpected end of GZIP input");
+            }
+        }
+
+        @Override
+        public void close() {
+            inflater.end();
+        }
+
+        // Collects header bytes until the whole header is there, then gives back what follows it
+        private boolean readHeader(ByteBuffer input) throws IOException {
+            append(input, Math.min(input.remaining(), MAX_HEADER_BYTES + 1 - pendingBytes));
+            int length = headerLength();
+            if (length < 0) {
+                if (pendingBytes > MAX_HEADER_BYTES) {
+                    throw new ZipException("GZIP header longer than " + MAX_HEADER_BYTES + " bytes");
+                }
+                return false;
+            }
+            input.position(input.position() - (pendingBytes - length));
+            pendingBytes = 0;
+            return true;
+        }
+
+        // Header length once complete, or -1 while more bytes are needed
+        private int headerLength() throws IOException {
+            if (pendingBytes >= 2 && ((pending[0] & 0xFF) != 0x1F || (pending[1] & 0xFF) != 0x8B)) {
+                throw new ZipException("Not in GZIP format");
+            }
+            if (pendingBytes < 10) {
+                return -1;
+            }
+            if (pending[2] != 8) {
+                throw new ZipException("Unsupported compression method " + pending[2]);
+            }
+            int flags = pending[3] & 0xFF;
+            int position = 10;
+            if ((flags & FEXTRA) != 0) {
+                if (pendingBytes < position + 2) {
+                    return -1;
+                }
+                position += 2 + ((pending[position] & 0xFF) | (pending[position + 1] & 0xFF) << 8);
+            }
+            if ((flags & FNAME) != 0) {
+                position = skipZeroTerminated(position);
+            }
+            if (position >= 0 && (flags & FCOMMENT) != 0) {
+                position = skipZeroTerminated(position);
+            }
+            if (position >= 0 && (flags & FHCRC) != 0) {
+                position += 2;
+            }
+            return position >= 0 && position <= pendingBytes ? position : -1;
+        }
+
+        private int skipZeroTerminated(int position) {
+            for (int i = position; i < pendingBytes; i++) {
+                if (pending[i] == 0) {
+                    return i + 1;
+                }
+            }
+            return -1;
+        }
+
+        private void checkTrailer() throws IOException {
+            ByteBuffer trailer = ByteBuffer.wrap(pending, 0, TRAILER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            long expectedCrc = trailer.getInt() & 0xFFFFFFFFL;
+            long expectedSize = trailer.getInt() & 0xFFFFFFFFL;
+            if (expectedCrc != crc.getValue()) {
+                throw new ZipException("Corrupt GZIP trailer: CRC mismatch");
+            }
+            if (expectedSize != (memberBytes & 0xFFFFFFFFL)) {
+                throw new ZipException("Corrupt GZIP trailer: size mismatch");
+            }
+            pendingBytes = 0;
+            inTrailer = false;
+            inflater.reset();
+            crc.reset();
+            memberBytes = 0;
+            members++;
+        }
+
+        // Tops pending up to `bytes` from input; true once it holds that many
+        private boolean fill(ByteBuffer input, int bytes) {
+            append(input, Math.min(bytes - pendingBytes, input.remaining()));
+            return pendingBytes == bytes;
+        }
+
+        private void append(ByteBuffer input, int bytes) {
+            if (pendingBytes + bytes > pending.length) {
+                pending = Arrays.copyOf(pending, Math.max(pending.length * 2, pendingBytes + bytes));
+            }
+            input.get(pending, pendingBytes, bytes);
+            pendingBytes += bytes;
+        }
+    }
+
+    /**
+     * zstd frames through one native decompression context. zstd-jni streams only between
+     * direct buffers, so input is staged in a direct buffer that grows to the largest chunk.
+     * A cancelled body may be closed from another thread, so closing waits for a running decode.
+     */
+    private static final class Zstd extends StreamingDecoder {
+        private final ZstdDecompressCtx context = new ZstdDecompressCtx();
+        private final ReentrantLock lock = new ReentrantLock();
+        private ByteBuffer staged = ByteBuffer.allocateDirect(BUFFER_BYTES).flip();
+        private boolean inFrame;
+        private boolean outputFull;
+        private boolean sawInput;
+        private boolean closed;
+
+        private Zstd() {
+            super(ByteBuffer.allocateDirect(BUFFER_BYTES));
+        }
+
+        @Override
+        public ByteBuffer decode(ByteBuffer input) throws IOException {
+            lock.lock();
+            try {
+                if (closed) {
+                    throw new IOException("zstd decoder is closed");
+                }
+                return decodeStaged(input);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private ByteBuffer decodeStaged(ByteBuffer input) throws IOException {
+            if (input.hasRemaining()) {
+                stage(input);
+                sawInput = true;
+            }
+            output.clear();
+            // A full output may have left decoded bytes inside the context
+            if (staged.hasRemaining() || outputFull) {
+                int consumedBefore = staged.position();
+                boolean frameDone;
+                try {
+                    frameDone = context.decompressDirectByteBufferStream(output, staged);
+                } catch (ZstdException e) {
+                    throw new IOException("Invalid zstd data", e);
+                }
+                if (frameDone) {
+                    inFrame = false;
+                } else if (staged.position() > consumedBefore || output.position() > 0) {
+                    inFrame = true;
+                }
+                outputFull = !output.hasRemaining();
+            }
+            output.flip();
+            return output;
+        }
+
+        @Override
+        public void finish() throws IOException {
+            if (!sawInput || inFrame || staged.hasRemaining()) {
+                throw new EOFException("Unexpected end of zstd input");
+            }
+        }
+
+        @Override
+        public void close() {
+            lock.lock();
+            try {
+                if (!closed) {
+                    closed = true;
+                    context.close();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void stage(ByteBuffer input) {
+            if (staged.remaining() + input.remaining() > staged.capacity()) {
+                ByteBuffer larger = ByteBuffer.allocateDirect(staged.remaining() + input.remaining());
+                larger.put(staged);
+                staged = larger;
+            } else {
+                staged.compact();
+            }
+            staged.put(input);
+            staged.flip();
+        }
+    }
+}
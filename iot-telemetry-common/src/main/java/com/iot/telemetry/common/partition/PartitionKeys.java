@@ -0,0 +1,75 @@
+package com.iot.telemetry.common.partition;
+
+/**
+ * Kafka record keys for telemetry. A key is normally the user id; a hot user's traffic is
+ * spread over {@code baseKey#n} sub-keys so it lands on several partitions. Producers build
+ * keys with {@link #of} and {@link #split}, and consumers map them back with {@link #baseKey}.
+ * <p>
+ * A {@code #} or {@code \} inside a user id is escaped with {@code \}, so the first unescaped
+ * {@code #} always marks a split key. Ids without either character are used as they are.
+ */
+public final class PartitionKeys {
+
+    public static final char SEPARATOR = '#';
+    public static final char ESCAPE = '\\';
+
+    private PartitionKeys() {}
+
+    /** The unsplit key for {@code baseKey}. */
+    public static String of(String baseKey) {
+        if (baseKey == null || (baseKey.indexOf(SEPARATOR) < 0 && baseKey.indexOf(ESCAPE) < 0)) {
+            return baseKey;
+        }
+        StringBuilder escaped = new StringBuilder(baseKey.length() + 4);
+        for (int i = 0; i < baseKey.length(); i++) {
+            char c = baseKey.charAt(i);
+            if (c == SEPARATOR || c == ESCAPE) {
+                escaped.append(ESCAPE);
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+
+    public static String split(String baseKey, int subPartition) {
+        return of(baseKey) + SEPARATOR + subPartition;
+    }
+
+    public static boolean isSplit(String key) {
+        return key != null && separatorIndex(key) >= 0;
+    }
+
+    /** The user id a key was built from, with any {@code #n} suffix removed and escapes undone. */
+    public static String baseKey(String key) {
+        if (key == null) {
+            return null;
+        }
+        int separator = separatorIndex(key);
+        String base = separator >= 0 ? key.substring(0, separator) : key;
+        if (base.indexOf(ESCAPE) < 0) {
+            return base;
+        }
+        StringBuilder unescaped = new StringBuilder(base.length());
+        for (int i = 0; i < base.length(); i++) {
+            char c = base.charAt(i);
+            if (c == ESCAPE && i + 1 < base.length()) {
+                c = base.charAt(++i);
+            }
+            unescaped.append(c);
+        }
+        return unescaped.toString();
+    }
+
+    // Index of the first separator not preceded by an escape, or -1 for an unsplit key
+    private static int separatorIndex(String key) {
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (c == ESCAPE) {
+                i++;
+            } else if (c == SEPARATOR) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
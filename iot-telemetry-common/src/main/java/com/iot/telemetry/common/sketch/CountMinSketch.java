@@ -0,0 +1,73 @@
+package com.iot.telemetry.common.sketch;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Count-Min sketch for spotting heavy hitters in a stream of keys. Estimates never undercount
+ * and overcount by at most {@code e / width} of the total with probability
+ * {@code 1 - exp(-depth)}. Counters are updated with lock-free adds. {@link #decay} halves
+ * every counter and the total, so estimates favour recent traffic when it is called on a
+ * schedule.
+ */
+public class CountMinSketch {
+
+    private final int depth;
+    private final int width;
+    private final AtomicLongArray counters;
+    private final LongAdder total = new LongAdder();
+
+    public CountMinSketch(int depth, int width) {
+        if (depth < 1 || width < 1) {
+            throw new IllegalArgumentException("Depth and width must be positive: " + depth + "x" + width);
+        }
+        this.depth = depth;
+        this.width = width;
+        this.counters = new AtomicLongArray(depth * width);
+    }
+
+    /** Adds one occurrence of {@code key} and returns its updated estimate. */
+    public long add(CharSequence key) {
+        return addHash(HyperLogLog.hash64(key), 1);
+    }
+
+    public long addHash(long hash, long count) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int column = Math.floorMod(h1 + row * h2, width);
+            estimate = Math.min(estimate, counters.addAndGet(row * width + column, count));
+        }
+        total.add(count);
+        return estimate;
+    }
+
+    public long estimate(CharSequence key) {
+        long hash = HyperLogLog.hash64(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int column = Math.floorMod(h1 + row * h2, width);
+            estimate = Math.min(estimate, counters.get(row * width + column));
+        }
+        return estimate;
+    }
+
+    public long getTotal() {
+        return total.sum();
+    }
+
+    /** Halves all counters; concurrent adds during the pass may be halved or not. */
+    public void decay() {
+        for (int i = 0; i < counters.length(); i++) {
+            long value;
+            do {
+                value = counters.get(i);
+            } while (value != 0 && !counters.compareAndSet(i, value, value >> 1));
+        }
+        long current = total.sumThenReset();
+        total.add(current >> 1);
+    }
+}
@@ -0,0 +1,241 @@
+package com.iot.telemetry.common.sketch;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * DDSketch quantile sketch for non-negative values. Values are counted in logarithmic buckets
+ * of ratio {@code gamma = (1 + a) / (1 - a)}, so any quantile is returned within relative
+ * error {@code a} of the true value, clamped to the exact minimum and maximum seen. Values at
+ * or below {@code minValue} share a zero bucket and values above {@code maxValue} are counted
+ * in the top bucket. Updates are lock-free adds, so one sketch can be shared by processing
+ * threads. Sketches with the same accuracy and range merge by adding bucket counts, which is
+ * exact: a merged sketch equals the sketch of the combined stream, whichever instance saw
+ * which value.
+ */
+public class DDSketch {
+
+    private static final byte FORMAT_VERSION = 1;
+    // Version, accuracy, range, zero count, count, sum, min, max and the bucket count
+    private static final int HEADER_BYTES = 1 + 3 * 8 + 5 * 8 + 4;
+
+    private final double relativeAccuracy;
+    private final double minValue;
+    private final double maxValue;
+    private final double logGamma;
+    private final int minIndex;
+    private final AtomicLongArray buckets;
+    private final LongAdder zeroCount = new LongAdder();
+    private final LongAdder count = new LongAdder();
+    private final DoubleAdder sum = new DoubleAdder();
+    // Exact extremes as double bits; quantiles are clamped to them
+    private final AtomicLong min = new AtomicLong(Double.doubleToLongBits(Double.POSITIVE_INFINITY));
+    private final AtomicLong max = new AtomicLong(Double.doubleToLongBits(Double.NEGATIVE_INFINITY));
+
+    public DDSketch(double relativeAccuracy, double minValue, double maxValue) {
+        if (relativeAccuracy <= 0 || relativeAccuracy >= 1) {
+            throw new IllegalArgumentException("Relative accuracy must be between 0 and 1: " + relativeAccuracy);
+        }
+        if (minValue <= 0 || maxValue <= minValue) {
+            throw new IllegalArgumentException("Need 0 < minValue < maxValue, got " + minValue + " and " + maxValue);
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.minValue = minValue;
+        this.maxValue = maxValue;
+        this.logGamma = Math.log((1 + relativeAccuracy) / (1 - relativeAccuracy));
+        this.minIndex = rawIndex(minValue);
+        this.buckets = new AtomicLongArray(rawIndex(maxValue) - minIndex + 1);
+    }
+
+    public void add(double value) {
+        if (value > minValue) {
+            buckets.incrementAndGet(value >= maxValue ? buckets.length() - 1 : rawIndex(value) - minIndex);
+        } else {
+            zeroCount.increment();
+        }
+        count.increment();
+        sum.add(value);
+        updateMin(value);
+        updateMax(value);
+    }
+
+    /**
+     * Value at quantile {@code q} (0 to 1), or NaN when the sketch is empty. Concurrent adds
+     * may or may not be included.
+     */
+    public double quantile(double q) {
+        if (q < 0 || q > 1) {
+            throw new IllegalArgumentException("Quantile must be between 0 and 1: " + q);
+        }
+        long zeros = zeroCount.sum();
+        long total = zeros;
+        for (int i = 0; i < buckets.length(); i++) {
+            total += buckets.get(i);
+        }
+        if (total == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) (q * (total - 1));
+        if (rank < zeros) {
+            return clamp(0.0);
+        }
+        long seen = zeros;
+        for (int i = 0; i < buckets.length(); i++) {
+            seen += buckets.get(i);
+            if (seen > rank) {
+                return clamp(bucketValue(i + minIndex));
+            }
+        }
+        return clamp(bucketValue(buckets.length() - 1 + minIndex));
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getSum() {
+        return sum.sum();
+    }
+
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0.0 : sum.sum() / n;
+    }
+
+    /** Smallest value added, or +Infinity when empty. */
+    public double getMin() {
+        return Double.longBitsToDouble(min.get());
+    }
+
+    /** Largest value added, or -Infinity when empty. */
+    public double getMax() {
+        return Double.longBitsToDouble(max.get());
+    }
+
+    public double getRelativeAccuracy() { return relativeAccuracy; }
+
+    /** Folds {@code other} into this sketch. Both must have the same accuracy and range. */
+    public void merge(DDSketch other) {
+        if (other.relativeAccuracy != relativeAccuracy || other.minValue != minValue || other.maxValue != maxValue) {
+            throw new IllegalArgumentException("Cannot merge sketches of accuracy " + relativeAccuracy + " and "
+                + other.relativeAccuracy + " or different ranges");
+        }
+        for (int i = 0; i < buckets.length(); i++) {
+            long bucket = other.buckets.get(i);
+            if (bucket != 0) {
+                buckets.addAndGet(i, bucket);
+            }
+        }
+        zeroCount.add(other.zeroCount.sum());
+        count.add(other.count.sum());
+        sum.add(other.sum.sum());
+        updateMin(other.getMin());
+        updateMax(other.getMax());
+    }
+
+    /**
+     * Serialized form for shipping a sketch to another instance: version, accuracy, range,
+     * zero count, count, sum, min and max, then (index, count) pairs for the non-empty buckets.
+     */
+    public byte[] toBytes() {
+        int nonEmpty = 0;
+        long[] snapshot = new long[buckets.length()];
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = buckets.get(i);
+            if (snapshot[i] != 0) {
+                nonEmpty++;
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + nonEmpty * 12);
+        buffer.put(FORMAT_VERSION);
+        buffer.putDouble(relativeAccuracy).putDouble(minValue).putDouble(maxValue);
+        buffer.putLong(zeroCount.sum()).putLong(count.sum()).putDouble(sum.sum());
+        buffer.putDouble(getMin()).putDouble(getMax());
+        buffer.putInt(nonEmpty);
+        for (int i = 0; i < snapshot.length; i++) {
+            if (snapshot[i] != 0) {
+                buffer.putInt(i).putLong(snapshot[i]);
+            }
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Adds a sketch serialized by {@link #toBytes} to this one. The serialized accuracy and
+     * range must equal this sketch's, and are checked before anything else is read, so bytes
+     * from another instance never decide how much is allocated. Throws IllegalArgumentException
+     * for other settings or malformed input, leaving this sketch unchanged.
+     */
+    public void mergeBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        if (bytes.length < HEADER_BYTES) {
+            throw new IllegalArgumentException("DDSketch serialization too short: " + bytes.length + " bytes");
+        }
+        if (buffer.get() != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unknown DDSketch serialization version " + bytes[0]);
+        }
+        double otherAccuracy = buffer.getDouble();
+        double otherMin = buffer.getDouble();
+        double otherMax = buffer.getDouble();
+        if (otherAccuracy != relativeAccuracy || otherMin != minValue || otherMax != maxValue) {
+            throw new IllegalArgumentException("Cannot merge sketches of accuracy " + relativeAccuracy + " and "
+                + otherAccuracy + " or different ranges");
+        }
+        long otherZeroCount = buffer.getLong();
+        long otherCount = buffer.getLong();
+        double otherSum = buffer.getDouble();
+        double otherMinSeen = buffer.getDouble();
+        double otherMaxSeen = buffer.getDouble();
+        int nonEmpty = buffer.getInt();
+        if (nonEmpty < 0 || nonEmpty > buckets.length() || buffer.remaining() != nonEmpty * 12) {
+            throw new IllegalArgumentException("Invalid DDSketch bucket count " + nonEmpty);
+        }
+        int[] indexes = new int[nonEmpty];
+        long[] counts = new long[nonEmpty];
+        for (int i = 0; i < nonEmpty; i++) {
+            indexes[i] = buffer.getInt();
+            counts[i] = buffer.getLong();
+            if (indexes[i] < 0 || indexes[i] >= buckets.length()) {
+                throw new IllegalArgumentException("Invalid DDSketch bucket index " + indexes[i]);
+            }
+        }
+        for (int i = 0; i < nonEmpty; i++) {
+            buckets.addAndGet(indexes[i], counts[i]);
+        }
+        zeroCount.add(otherZeroCount);
+        count.add(otherCount);
+        sum.add(otherSum);
+        updateMin(otherMinSeen);
+        updateMax(otherMaxSeen);
+    }
+
+    private void updateMin(double value) {
+        long current = min.get();
+        while (value < Double.longBitsToDouble(current) && !min.compareAndSet(current, Double.doubleToLongBits(value))) {
+            current = min.get();
+        }
+    }
+
+    private void updateMax(double value) {
+        long current = max.get();
+        while (value > Double.longBitsToDouble(current) && !max.compareAndSet(current, Double.doubleToLongBits(value))) {
+            current = max.get();
+        }
+    }
+
+    private double clamp(double value) {
+        return Math.max(getMin(), Math.min(getMax(), value));
+    }
+
+    private int rawIndex(double value) {
+        return (int) Math.ceil(Math.log(value) / logGamma);
+    }
+
+    // Midpoint of bucket (gamma^(i-1), gamma^i] in the relative-error sense
+    private double bucketValue(int index) {
+        return 2 * Math.exp(index * logGamma) / (1 + Math.exp(logGamma));
+    }
+}
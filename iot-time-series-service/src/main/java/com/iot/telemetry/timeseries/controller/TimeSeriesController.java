@@ -3,15 +3,18 @@ package com.iot.telemetry.timeseries.controller;
 import com.iot.telemetry.timeseries.models.UserEngagementSummary;
 import com.iot.telemetry.timeseries.service.AnalyticsService;
 import com.iot.telemetry.timeseries.service.InfluxDBService;
+import com.iot.telemetry.timeseries.service.StorableRecords;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Predicate;
 
 @RestController
 @RequestMapping("/api/v1/timeseries")
@@ -87,4 +90,54 @@ public class TimeSeriesController {
             return ResponseEntity.status(500).body(Map.of("status", "error", "message", e.getMessage()));
         }
     }
+    
+    // Batch variant used by the stream processor's batch listener mode: one InfluxDB write
+    // and one database transaction per batch. Records missing a field the stores need are
+    // skipped, like on the Kafka path, so they cannot turn the batch into a retried 500
+    @PostMapping("/processed-data/batch")
+    public ResponseEntity<Map<String, Object>> receiveProcessedDataBatch(@RequestBody List<Map<String, Object>> batch) {
+        List<Map<String, Object>> storable = storable(batch, StorableRecords::isStorableRecord, "processed record");
+        try {
+            if (!storable.isEmpty()) {
+                influxDBService.writeProcessedBatch(storable);
+                analyticsService.storeEngagementSummaries(storable);
+            }
+            
+            return ResponseEntity.ok(Map.of("status", "success", "message", "Data stored successfully",
+                "count", storable.size(), "skipped", batch.size() - storable.size()));
+        } catch (Exception e) {
+            logger.error("Error storing processed data batch of {}", storable.size(), e);
+            return ResponseEntity.status(500).body(Map.of("status", "error", "message", String.valueOf(e.getMessage())));
+        }
+    }
+    
+    // Closed event-time windows from the stream processor's windowing engine
+    @PostMapping("/window-aggregates")
+    public ResponseEntity<Map<String, Object>> receiveWindowAggregates(@RequestBody List<Map<String, Object>> windows) {
+        List<Map<String, Object>> storable = storable(windows, StorableRecords::isStorableWindow, "window result");
+        try {
+            if (!storable.isEmpty()) {
+                influxDBService.writeWindowAggregates(storable);
+            }
+            
+            return ResponseEntity.ok(Map.of("status", "success", "message", "Window aggregates stored successfully",
+                "count", storable.size(), "skipped", windows.size() - storable.size()));
+        } catch (Exception e) {
+            logger.error("Error storing {} window aggregates", storable.size(), e);
+            return ResponseEntity.status(500).body(Map.of("status", "error", "message", String.valueOf(e.getMessage())));
+        }
+    }
+    
+    // The elements that pass the check; the rest are logged with their index
+    private List<Map<String, Object>> storable(List<Map<String, Object>> elements, Predicate<Map<String, Object>> check, String kind) {
+        List<Map<String, Object>> storable = new ArrayList<>(elements.size());
+        for (int i = 0; i < elements.size(); i++) {
+            if (check.test(elements.get(i))) {
+                storable.add(elements.get(i));
+            } else {
+                logger.warn("Skipping {} {} of {}: missing or mistyped fields", kind, i, elements.size());
+            }
+        }
+        return storable;
+    }
 }
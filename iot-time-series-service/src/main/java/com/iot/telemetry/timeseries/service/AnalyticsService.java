@@ -8,6 +8,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -21,27 +22,7 @@ public class AnalyticsService {
     public void storeEngagementSummary(String userId, String sessionId, String feature, String action, 
                                      double engagementScore, Map<String, Object> metrics) {
         try {
-            UserEngagementSummary summary = new UserEngagementSummary();
-            summary.setUserId(userId);
-            summary.setSessionId(sessionId);
-            summary.setFeature(feature);
-            summary.setAction(action);
-            summary.setEngagementScore(engagementScore);
-            
-            // Extract metrics
-            summary.setResponseTime(getDoubleValue(metrics, "responseTime", 0.0));
-            summary.setClickCount(getIntValue(metrics, "clickCount", 0));
-            summary.setErrorCount(getIntValue(metrics, "errorCount", 0));
-            summary.setSessionDuration(getDoubleValue(metrics, "sessionDuration", 0.0));
-            summary.setTimeBetweenClicks(getIntValue(metrics, "timeBetweenClicks", 0));
-            summary.setErrorRate(getDoubleValue(metrics, "errorRate", 0.0));
-            summary.setUsageFrequency(getIntValue(metrics, "usageFrequency", 0));
-            summary.setPageLoadTime(getDoubleValue(metrics, "pageLoadTime", 0.0));
-            summary.setScrollDepth(getDoubleValue(metrics, "scrollDepth", 0.0));
-            
-            summary.setCreatedAt(LocalDateTime.now());
-            summary.setUpdatedAt(LocalDateTime.now());
-            
+            UserEngagementSummary summary = createSummary(userId, sessionId, feature, action, engagementScore, metrics);
             userEngagementRepository.save(summary);
             logger.info("Successfully stored engagement summary for user: {}, feature: {}", userId, feature);
             
@@ -50,6 +31,44 @@ public class AnalyticsService {
         }
     }
     
+    /** Stores one summary per processed record in a single transaction. */
+    @SuppressWarnings("unchecked")
+    public void storeEngagementSummaries(List<Map<String, Object>> batch) {
+        List<UserEngagementSummary> summaries = new ArrayList<>(batch.size());
+        for (Map<String, Object> data : batch) {
+            summaries.add(createSummary((String) data.get("userId"), (String) data.get("sessionId"),
+                (String) data.get("feature"), (String) data.get("action"),
+                ((Number) data.get("engagementScore")).doubleValue(), (Map<String, Object>) data.get("metrics")));
+        }
+        userEngagementRepository.saveAll(summaries);
+        logger.debug("Stored {} engagement summaries", summaries.size());
+    }
+    
+    private UserEngagementSummary createSummary(String userId, String sessionId, String feature, String action,
+                                                double engagementScore, Map<String, Object> metrics) {
+        UserEngagementSummary summary = new UserEngagementSummary();
+        summary.setUserId(userId);
+        summary.setSessionId(sessionId);
+        summary.setFeature(feature);
+        summary.setAction(action);
+        summary.setEngagementScore(engagementScore);
+        
+        // Extract metrics
+        summary.setResponseTime(getDoubleValue(metrics, "responseTime", 0.0));
+        summary.setClickCount(getIntValue(metrics, "clickCount", 0));
+        summary.setErrorCount(getIntValue(metrics, "errorCount", 0));
+        summary.setSessionDuration(getDoubleValue(metrics, "sessionDuration", 0.0));
+        summary.setTimeBetweenClicks(getIntValue(metrics, "timeBetweenClicks", 0));
+        summary.setErrorRate(getDoubleValue(metrics, "errorRate", 0.0));
+        summary.setUsageFrequency(getIntValue(metrics, "usageFrequency", 0));
+        summary.setPageLoadTime(getDoubleValue(metrics, "pageLoadTime", 0.0));
+        summary.setScrollDepth(getDoubleValue(metrics, "scrollDepth", 0.0));
+        
+        summary.setCreatedAt(LocalDateTime.now());
+        summary.setUpdatedAt(LocalDateTime.now());
+        return summary;
+    }
+    
     public List<UserEngagementSummary> getUserEngagementData(String userId) {
         return userEngagementRepository.findByUserId(userId);
     }
@@ -10,7 +10,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 @Service
 public class InfluxDBService {
@@ -25,27 +28,8 @@ public class InfluxDBService {
         try {
             WriteApiBlocking writeApi = influxDBClient.getWriteApiBlocking();
             
-            // Create InfluxDB point for raw telemetry data
-            Point point = Point.measurement("telemetry_data")
-                .addTag("user_id", userId)
-                .addTag("session_id", sessionId)
-                .addTag("feature", feature)
-                .addTag("action", action)
-                .time(Instant.now(), WritePrecision.MS);
-            
-            // Add all realistic metrics as fields
-            addMetricField(point, "responseTime", metrics.get("responseTime"));
-            addMetricField(point, "errorCount", metrics.get("errorCount"));
-            addMetricField(point, "clickCount", metrics.get("clickCount"));
-            addMetricField(point, "sessionDuration", metrics.get("sessionDuration"));
-            addMetricField(point, "timeBetweenClicks", metrics.get("timeBetweenClicks"));
-            addMetricField(point, "errorRate", metrics.get("errorRate"));
-            addMetricField(point, "usageFrequency", metrics.get("usageFrequency"));
-            addMetricField(point, "pageLoadTime", metrics.get("pageLoadTime"));
-            addMetricField(point, "scrollDepth", metrics.get("scrollDepth"));
-            
             // Write to InfluxDB
-            writeApi.writePoint(point);
+            writeApi.writePoint(telemetryPoint(userId, sessionId, feature, action, metrics, Instant.now()));
             logger.info("Successfully wrote telemetry data to InfluxDB for user: {}, feature: {}", userId, feature);
             
         } catch (Exception e) {
@@ -58,26 +42,7 @@ public class InfluxDBService {
         try {
             WriteApiBlocking writeApi = influxDBClient.getWriteApiBlocking();
             
-            Point point = Point.measurement("engagement_metrics")
-                .addTag("user_id", userId)
-                .addTag("session_id", sessionId)
-                .addTag("feature", feature)
-                .addTag("action", action)
-                .addField("engagement_score", engagementScore)
-                .time(Instant.now(), WritePrecision.MS);
-            
-            // Add all metrics as fields
-            addMetricField(point, "responseTime", metrics.get("responseTime"));
-            addMetricField(point, "errorCount", metrics.get("errorCount"));
-            addMetricField(point, "clickCount", metrics.get("clickCount"));
-            addMetricField(point, "sessionDuration", metrics.get("sessionDuration"));
-            addMetricField(point, "timeBetweenClicks", metrics.get("timeBetweenClicks"));
-            addMetricField(point, "errorRate", metrics.get("errorRate"));
-            addMetricField(point, "usageFrequency", metrics.get("usageFrequency"));
-            addMetricField(point, "pageLoadTime", metrics.get("pageLoadTime"));
-            addMetricField(point, "scrollDepth", metrics.get("scrollDepth"));
-            
-            writeApi.writePoint(point);
+            writeApi.writePoint(engagementPoint(userId, sessionId, feature, action, engagementScore, metrics, Instant.now()));
             logger.info("Successfully wrote engagement metrics to InfluxDB for user: {}, feature: {}", userId, feature);
             
         } catch (Exception e) {
@@ -85,6 +50,114 @@ public class InfluxDBService {
         }
     }
     
+    /**
+     * Writes the telemetry_data and engagement_metrics points for a whole batch of processed
+     * records in one request. Each element has the shape posted to /processed-data. Points are
+     * timestamped with the record's {@code eventTime} (epoch millis, the arrival time if it is
+     * missing) at nanosecond precision, see {@link #pointTime}.
+     */
+    @SuppressWarnings("unchecked")
+    public void writeProcessedBatch(List<Map<String, Object>> batch) {
+        List<Point> points = new ArrayList<>(batch.size() * 2);
+        long now = System.currentTimeMillis();
+        for (Map<String, Object> data : batch) {
+            String userId = (String) data.get("userId");
+            String sessionId = (String) data.get("sessionId");
+            String feature = (String) data.get("feature");
+            String action = (String) data.get("action");
+            Map<String, Object> metrics = (Map<String, Object>) data.get("metrics");
+            double engagementScore = ((Number) data.get("engagementScore")).doubleValue();
+            Instant time = pointTime(data, now);
+            points.add(telemetryPoint(userId, sessionId, feature, action, metrics, time));
+            points.add(engagementPoint(userId, sessionId, feature, action, engagementScore, metrics, time));
+        }
+        influxDBClient.getWriteApiBlocking().writePoints(points);
+        logger.debug("Wrote {} points to InfluxDB for a batch of {} records", points.size(), batch.size());
+    }
+    
+    /**
+     * Writes closed event-time windows from the stream processor to the window_aggregates
+     * measurement, one point per window and key, timestamped with the window end. A revised
+     * window (a late event changed it) has the same tags and time, so it overwrites the
+     * earlier point. A retracted session window keeps its point, flagged retracted.
+     */
+    public void writeWindowAggregates(List<Map<String, Object>> windows) {
+        List<Point> points = new ArrayList<>(windows.size());
+        for (Map<String, Object> window : windows) {
+            Point point = Point.measurement("window_aggregates")
+                .addTag("window", (String) window.get("window"))
+                .addTag("window_type", (String) window.get("windowType"))
+                .addTag("key_by", (String) window.get("keyBy"))
+                .addTag("key", (String) window.get("key"))
+                .addField("retracted", Boolean.TRUE.equals(window.get("retracted")))
+                .time(((Number) window.get("windowEnd")).longValue(), WritePrecision.MS);
+            for (Map.Entry<String, Object> field : window.entrySet()) {
+                if (field.getValue() instanceof Number && !"windowEnd".equals(field.getKey())) {
+                    point.addField(field.getKey(), (Number) field.getValue());
+                }
+            }
+            points.add(point);
+        }
+        influxDBClient.getWriteApiBlocking().writePoints(points);
+        logger.debug("Wrote {} window aggregates to InfluxDB", points.size());
+    }
+    
+    /**
+     * InfluxDB keeps one point per measurement, tags and time, so two records of a session
+     * with the same action and millisecond would overwrite each other. The sub-millisecond
+     * digits keep them apart and are derived from the record itself: its ingestion {@code id},
+     * or a hash of its contents when it has none. A retried batch therefore overwrites its
+     * own points instead of adding copies. The millisecond itself is unchanged.
+     */
+    private Instant pointTime(Map<String, Object> data, long fallbackMillis) {
+        Object eventTime = data.get("eventTime");
+        long millis = eventTime instanceof Number && ((Number) eventTime).longValue() > 0
+            ? ((Number) eventTime).longValue() : fallbackMillis;
+        long discriminator = data.get("id") instanceof Number
+            ? ((Number) data.get("id")).longValue()
+            : Objects.hash(data.get("userId"), data.get("sessionId"), data.get("feature"), data.get("action"),
+                           data.get("metrics"), millis);
+        return Instant.ofEpochMilli(millis).plusNanos(Math.floorMod(discriminator, 1_000_000L));
+    }
+    
+    // Raw telemetry point with all realistic metrics as fields
+    private Point telemetryPoint(String userId, String sessionId, String feature, String action,
+                                 Map<String, Object> metrics, Instant time) {
+        Point point = Point.measurement("telemetry_data")
+            .addTag("user_id", userId)
+            .addTag("session_id", sessionId)
+            .addTag("feature", feature)
+            .addTag("action", action)
+            .time(time, WritePrecision.NS);
+        addMetricFields(point, metrics);
+        return point;
+    }
+    
+    private Point engagementPoint(String userId, String sessionId, String feature, String action,
+                                  double engagementScore, Map<String, Object> metrics, Instant time) {
+        Point point = Point.measurement("engagement_metrics")
+            .addTag("user_id", userId)
+            .addTag("session_id", sessionId)
+            .addTag("feature", feature)
+            .addTag("action", action)
+            .addField("engagement_score", engagementScore)
+            .time(time, WritePrecision.NS);
+        addMetricFields(point, metrics);
+        return point;
+    }
+    
+    private void addMetricFields(Point point, Map<String, Object> metrics) {
+        addMetricField(point, "responseTime", metrics.get("responseTime"));
+        addMetricField(point, "errorCount", metrics.get("errorCount"));
+        addMetricField(point, "clickCount", metrics.get("clickCount"));
+        addMetricField(point, "sessionDuration", metrics.get("sessionDuration"));
+        addMetricField(point, "timeBetweenClicks", metrics.get("timeBetweenClicks"));
+        addMetricField(point, "errorRate", metrics.get("errorRate"));
+        addMetricField(point, "usageFrequency", metrics.get("usageFrequency"));
+        addMetricField(point, "pageLoadTime", metrics.get("pageLoadTime"));
+        addMetricField(point, "scrollDepth", metrics.get("scrollDepth"));
+    }
+    
     private void addMetricField(Point point, String fieldName, Object value) {
         if (value != null) {
             if (value instanceof Number) {
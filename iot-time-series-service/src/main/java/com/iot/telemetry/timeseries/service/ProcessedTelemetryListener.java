@@ -0,0 +1,130 @@
+package com.iot.telemetry.timeseries.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Stores processed records that the stream processor publishes to the processed-telemetry
+ * topic, and window results from the window-aggregates topic. Each poll is written like a
+ * {@code /processed-data/batch} or {@code /window-aggregates} request: one InfluxDB write and,
+ * for processed records, one {@code saveAll}. A record that is not valid JSON or lacks a field
+ * the stores need is logged and skipped, so only store failures reach the container. A failed
+ * write fails the whole batch, which the container retries. Points get the same times on a
+ * retry and overwrite themselves; the PostgreSQL summaries may be stored twice.
+ */
+@Component
+@ConditionalOnProperty(name = "kafka.consumer.enabled", havingValue = "true")
+public class ProcessedTelemetryListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProcessedTelemetryListener.class);
+
+    private static final TypeReference<Map<String, Object>> RECORD = new TypeReference<>() {};
+
+    @Autowired
+    private InfluxDBService influxDBService;
+
+    @Autowired
+    private AnalyticsService analyticsService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private DistributionSummary batchSize;
+    private Timer batchDuration;
+    private Counter storedRecords;
+    private Counter skippedRecords;
+
+    @PostConstruct
+    public void init() {
+        batchSize = DistributionSummary.builder("timeseries.kafka.batch.size")
+            .description("Records per batch consumed from the processed-telemetry topic")
+            .register(meterRegistry);
+        batchDuration = Timer.builder("timeseries.kafka.batch.duration")
+            .description("Time to parse and store one consumed batch")
+            .register(meterRegistry);
+        storedRecords = records("stored");
+        skippedRecords = records("skipped");
+    }
+
+    @KafkaListener(id = "processed-telemetry-listener", topics = "${kafka.topic.processed-telemetry:processed-telemetry}",
+                   groupId = "${kafka.consumer.group-id:time-series-service}", containerFactory = "batchKafkaListenerContainerFactory")
+    public void storeProcessedBatch(List<ConsumerRecord<String, String>> records) {
+        long start = System.nanoTime();
+        List<Map<String, Object>> batch = parse(records, StorableRecords::isStorableRecord);
+        if (!batch.isEmpty()) {
+            influxDBService.writeProcessedBatch(batch);
+            analyticsService.storeEngagementSummaries(batch);
+            storedRecords.increment(batch.size());
+        }
+
+        batchSize.record(records.size());
+        batchDuration.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        logger.debug("Stored batch of {} processed records from Kafka", batch.size());
+    }
+
+    @KafkaListener(id = "window-aggregates-listener", topics = "${kafka.topic.window-aggregates:window-aggregates}",
+                   groupId = "${kafka.consumer.group-id:time-series-service}", containerFactory = "batchKafkaListenerContainerFactory")
+    public void storeWindowBatch(List<ConsumerRecord<String, String>> records) {
+        List<Map<String, Object>> windows = parse(records, StorableRecords::isStorableWindow);
+        if (!windows.isEmpty()) {
+            influxDBService.writeWindowAggregates(windows);
+            storedRecords.increment(windows.size());
+        }
+        logger.debug("Stored {} window results from Kafka", windows.size());
+    }
+
+    // The records that parse and pass the check; the rest are counted and logged
+    private List<Map<String, Object>> parse(List<ConsumerRecord<String, String>> records, Predicate<Map<String, Object>> storable) {
+        List<Map<String, Object>> parsed = new ArrayList<>(records.size());
+        for (ConsumerRecord<String, String> record : records) {
+            Map<String, Object> data;
+            try {
+                data = objectMapper.readValue(record.value(), RECORD);
+            } catch (IOException | IllegalArgumentException e) {
+                skip(record, e.getMessage());
+                continue;
+            }
+            if (data == null || !storable.test(data)) {
+                skip(record, "missing or mistyped fields");
+                continue;
+            }
+            parsed.add(data);
+        }
+        return parsed;
+    }
+
+    private void skip(ConsumerRecord<String, String> record, String reason) {
+        skippedRecords.increment();
+        logger.error("Skipping unstorable record from {}. Partition: {}, Offset: {}: {}",
+            record.topic(), record.partition(), record.offset(), reason);
+    }
+
+    private Counter records(String result) {
+        return Counter.builder("timeseries.kafka.records")
+            .description("Processed records and window results consumed from Kafka, by result")
+            .tag("result", result)
+            .register(meterRegistry);
+    }
+}
@@ -0,0 +1,27 @@
+package com.iot.telemetry.timeseries.service;
+
+import java.util.Map;
+
+/**
+ * Checks for the fields the batch writers read without checks, shared by the HTTP endpoints
+ * and the Kafka listener so that one malformed element is skipped instead of failing the
+ * whole batch.
+ */
+public final class StorableRecords {
+
+    private StorableRecords() {}
+
+    // Fields writeProcessedBatch and storeEngagementSummaries read without checks
+    public static boolean isStorableRecord(Map<String, Object> data) {
+        return data != null && data.get("userId") instanceof String && data.get("sessionId") instanceof String
+            && data.get("feature") instanceof String && data.get("action") instanceof String
+            && data.get("engagementScore") instanceof Number && data.get("metrics") instanceof Map;
+    }
+
+    // Fields writeWindowAggregates reads without checks
+    public static boolean isStorableWindow(Map<String, Object> window) {
+        return window != null && window.get("window") instanceof String && window.get("windowType") instanceof String
+            && window.get("keyBy") instanceof String && window.get("key") instanceof String
+            && window.get("windowEnd") instanceof Number;
+    }
+}